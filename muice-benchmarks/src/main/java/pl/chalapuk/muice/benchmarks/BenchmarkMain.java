@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice.benchmarks;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Runs JMH with GC profiler enabled, so each benchmark reports
+ * {@code gc.alloc.rate.norm} next to its time. All arguments are passed to
+ * JMH. Profiler is not added if any other profiler is requested with
+ * {@code -prof}.
+ * 
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+public final class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        List<String> arguments = Lists.newArrayList(args);
+        if (!arguments.contains("-prof")) {
+            arguments.addAll(0, Arrays.asList("-prof", "gc"));
+        }
+        org.openjdk.jmh.Main.main(arguments.toArray(new String[arguments.size()]));
+    }
+
+    private BenchmarkMain() {
+        // static methods only
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import pl.chalapuk.muice.BindingModule;
+import pl.chalapuk.muice.Injector;
+import pl.chalapuk.muice.Key;
+import pl.chalapuk.muice.Muice;
+
+/**
+ * Time of {@link Muice#createInjector(BindingModule...)} with different
+ * numbers of modules. Each module binds {@value #BINDINGS_PER_MODULE}
+ * instances, one module binds all {@link Fixtures}.
+ * 
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BuildBenchmark {
+    private static final int BINDINGS_PER_MODULE = 10;
+
+    @Param({ "1", "10", "100" })
+    public int modules;
+
+    private BindingModule[] mModules;
+
+    @Setup
+    public void setUp() {
+        Key<Object>[] keys = SyntheticKeys.keys(modules * BINDINGS_PER_MODULE);
+
+        mModules = new BindingModule[modules + 1];
+        for (int i = 0; i < modules; ++i) {
+            @SuppressWarnings("unchecked")
+            Key<Object>[] moduleKeys = new Key[BINDINGS_PER_MODULE];
+            System.arraycopy(keys, i * BINDINGS_PER_MODULE, moduleKeys, 0, BINDINGS_PER_MODULE);
+            mModules[i] = SyntheticKeys.instances(moduleKeys);
+        }
+        mModules[modules] = Fixtures.MODULE;
+    }
+
+    @Benchmark
+    public Injector createInjector() {
+        return Muice.createInjector(mModules);
+    }
+}
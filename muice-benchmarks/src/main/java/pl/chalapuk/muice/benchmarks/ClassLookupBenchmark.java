@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import pl.chalapuk.muice.Binder;
+import pl.chalapuk.muice.BindingModule;
+import pl.chalapuk.muice.Injector;
+import pl.chalapuk.muice.Key;
+import pl.chalapuk.muice.Muice;
+
+/**
+ * Latency and allocation of {@link Injector#getInstance(Class)}. Run with GC
+ * profiler to see bytes allocated per call ({@code gc.alloc.rate.norm}),
+ * which should be zero for lookups by class:
+ * 
+ * <pre>
+ * java -jar target/benchmarks.jar ClassLookupBenchmark -prof gc
+ * </pre>
+ * 
+ * {@code byKey} creates a key for each lookup and is here for comparison.
+ * 
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClassLookupBenchmark {
+    private Injector mInjector;
+
+    @Setup
+    public void setUp() {
+        mInjector = Muice.createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                binder.bind(Handler.class).toInstance(new Handler());
+            }
+        });
+    }
+
+    @Benchmark
+    public Object getInstanceByClass() {
+        return mInjector.getInstance(Handler.class);
+    }
+
+    @Benchmark
+    public Object getProviderByClass() {
+        return mInjector.getProvider(Handler.class);
+    }
+
+    @Benchmark
+    public Object byKey() {
+        return mInjector.getInstance(Key.get(Handler.class));
+    }
+
+    public static class Handler {
+    }
+}
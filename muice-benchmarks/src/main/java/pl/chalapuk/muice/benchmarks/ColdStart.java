@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import pl.chalapuk.muice.Injector;
+import pl.chalapuk.muice.Muice;
+
+/**
+ * Measures cold start of injectors with synthetic graphs of 1k, 10k and 100k
+ * bindings. Each measurement is done once, in a fresh JVM, so class loading
+ * and JIT compilation are part of the results, as they are in real
+ * applications. Measured are:
+ * <ul>
+ * <li>{@code buildMillis} - time of {@link Muice#newInjector()} with generated
+ * module and {@code build()},
+ * <li>{@code retainedBytes} - heap used after building the injector minus heap
+ * used before (generated classes are loaded before the first measurement),
+ * <li>{@code firstGetMicros} - time of first {@code getInstance} of graph's
+ * root.
+ * </ul>
+ * Results are printed as CSV, one line per fork, together with shape of the
+ * graph and per-binding build time, so runs on different commits can be
+ * compared line by line. Growing {@code buildNanosPerBinding} means that
+ * injector creation is superlinear.
+ * <p>
+ * Usage ({@code key=value} arguments, all optional):
+ * 
+ * <pre>
+ * java -cp target/benchmarks.jar pl.chalapuk.muice.benchmarks.ColdStart \
+ *         bindings=1000,10000,100000 forks=5 depth=6 fanOut=3 \
+ *         qualifiers=0.1 generics=0.1 singletons=0.2
+ * </pre>
+ * 
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+public final class ColdStart {
+    private static final String FORK = "--fork";
+    private static final String[] COLUMNS = {
+            "bindings", "depth", "fanOut", "qualifiers", "generics", "singletons", "fork",
+            "buildMillis", "buildNanosPerBinding", "retainedBytes", "firstGetMicros",
+    };
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals(FORK)) {
+            runFork(parse(Arrays.copyOfRange(args, 1, args.length)));
+            return;
+        }
+
+        Map<String, String> options = Maps.newLinkedHashMap();
+        options.put("bindings", "1000,10000,100000");
+        options.put("forks", "5");
+        options.put("depth", "6");
+        options.put("fanOut", "3");
+        options.put("qualifiers", "0.0");
+        options.put("generics", "0.0");
+        options.put("singletons", "0.0");
+        options.putAll(parse(args));
+
+        System.out.println(Joiner.on(',').join(COLUMNS));
+        int forks = Integer.parseInt(options.get("forks"));
+        for (String bindings : Splitter.on(',').trimResults().split(options.get("bindings"))) {
+            Map<String, String> forkOptions = Maps.newLinkedHashMap(options);
+            forkOptions.put("bindings", bindings);
+            forkOptions.remove("forks");
+            for (int fork = 0; fork < forks; ++fork) {
+                forkOptions.put("fork", Integer.toString(fork));
+                System.out.println(startFork(forkOptions));
+            }
+        }
+    }
+
+    private static String startFork(Map<String, String> options)
+            throws IOException, InterruptedException {
+        List<String> command = Lists.newArrayList(
+                System.getProperty("java.home") + File.separator + "bin" + File.separator + "java",
+                "-cp", System.getProperty("java.class.path"),
+                ColdStart.class.getName(), FORK);
+        for (Map.Entry<String, String> option : options.entrySet()) {
+            command.add(option.getKey() + "=" + option.getValue());
+        }
+
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .start();
+        String result = null;
+        try (BufferedReader output = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = output.readLine()) != null) {
+                result = line;
+            }
+        }
+        if (process.waitFor() != 0) {
+            throw new IllegalStateException("fork failed: " + result);
+        }
+        return result;
+    }
+
+    private static void runFork(Map<String, String> options) {
+        SyntheticGraph.Shape shape = new SyntheticGraph.Shape()
+                .withBindings(Integer.parseInt(options.get("bindings")))
+                .withDepth(Integer.parseInt(options.get("depth")))
+                .withFanOut(Integer.parseInt(options.get("fanOut")))
+                .withQualifiers(Double.parseDouble(options.get("qualifiers")))
+                .withGenerics(Double.parseDouble(options.get("generics")))
+                .withSingletons(Double.parseDouble(options.get("singletons")));
+        SyntheticGraph graph = new SyntheticGraph(shape);
+
+        long heapBefore = usedHeap();
+        long buildStart = System.nanoTime();
+        Injector injector = Muice.DEFAULT.newInjector()
+                .withModules(graph.module())
+                .build();
+        long buildTime = System.nanoTime() - buildStart;
+
+        long getStart = System.nanoTime();
+        Object root = injector.getInstance(graph.root());
+        long getTime = System.nanoTime() - getStart;
+
+        long retained = usedHeap() - heapBefore;
+        if (root == null || injector.getBindings() == null) {
+            throw new AssertionError("keeps injector reachable during measurement");
+        }
+
+        System.out.println(Joiner.on(',').join(
+                graph.size(), options.get("depth"), options.get("fanOut"),
+                options.get("qualifiers"), options.get("generics"), options.get("singletons"),
+                options.get("fork"),
+                buildTime / 1000000, buildTime / graph.size(), retained, getTime / 1000));
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long used = Long.MAX_VALUE;
+        // repeat until collection doesn't free anything more
+        for (int i = 0; i < 10; ++i) {
+            System.gc();
+            long current = memory.getHeapMemoryUsage().getUsed();
+            if (current >= used) {
+                break;
+            }
+            used = current;
+        }
+        return used;
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = Maps.newLinkedHashMap();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("expected key=value, got " + arg);
+            }
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        return options;
+    }
+
+    private ColdStart() {
+        // static methods only
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import pl.chalapuk.muice.Injector;
+import pl.chalapuk.muice.Muice;
+import pl.chalapuk.muice.Producer;
+import pl.chalapuk.muice.customization.ConstructorInfo;
+import pl.chalapuk.muice.customization.ProducerFactory;
+import pl.chalapuk.muice.defaults.MethodHandleProducerFactory;
+import pl.chalapuk.muice.defaults.ReflectionProducerFactory;
+
+/**
+ * Latency of instantiating root of a 10-level deep unscoped graph (see
+ * {@link SyntheticGraph}) with linked producers, which hold providers of their
+ * dependencies, and with unlinked producers, which look dependencies up in the
+ * injector for each instance.
+ * 
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeepGraphBenchmark {
+    private static final int DEPTH = 10;
+
+    @Param({ "1", "2" })
+    public int fanOut;
+
+    @Param({ "reflection", "methodHandle" })
+    public String producers;
+
+    @Param({ "true", "false" })
+    public boolean linked;
+
+    private Injector mInjector;
+    private Class<?> mRoot;
+
+    @Setup
+    public void setUp() {
+        ProducerFactory factory = producers.equals("reflection")
+                ? new ReflectionProducerFactory()
+                : new MethodHandleProducerFactory();
+        if (!linked) {
+            factory = unlinked(factory);
+        }
+
+        SyntheticGraph graph = new SyntheticGraph(DEPTH, fanOut);
+        mInjector = Muice.newMuice()
+                .withProducerFactory(factory)
+                .build()
+                .newInjector()
+                .withModules(graph.module())
+                .build();
+        mRoot = graph.root();
+    }
+
+    @Benchmark
+    public Object root() {
+        return mInjector.getInstance(mRoot);
+    }
+
+    private static ProducerFactory unlinked(final ProducerFactory factory) {
+        return new ProducerFactory() {
+
+            @Override
+            public <T> Producer<T> createProducer(ConstructorInfo<T> info) {
+                final Producer<T> producer = factory.createProducer(info);
+                return new Producer<T>() {
+
+                    @Override
+                    public T newInstance(Injector injector) {
+                        return producer.newInstance(injector);
+                    }
+                };
+            }
+        };
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice.benchmarks;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+
+import pl.chalapuk.muice.Binder;
+import pl.chalapuk.muice.BindingModule;
+import pl.chalapuk.muice.Injector;
+import pl.chalapuk.muice.Producer;
+import pl.chalapuk.muice.internal.Scopes;
+
+/**
+ * Types bound in each kind of binding supported by Muice.
+ * 
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+final class Fixtures {
+
+    public static class Leaf {
+
+        @Inject
+        public Leaf() {
+        }
+    }
+
+    public static class SingletonLeaf {
+
+        @Inject
+        public SingletonLeaf() {
+        }
+    }
+
+    public interface Service {
+    }
+
+    public static class ServiceImpl implements Service {
+
+        @Inject
+        public ServiceImpl(Leaf leaf) {
+        }
+    }
+
+    public static class Provided {
+    }
+
+    public static class Produced {
+    }
+
+    public static class Constant {
+    }
+
+    /**
+     * Binds {@link Leaf} to itself, {@link SingletonLeaf} in singleton scope,
+     * {@link Service} to {@link ServiceImpl}, {@link Provided} to a provider,
+     * {@link Produced} to a producer and {@link Constant} to an instance.
+     */
+    static final BindingModule MODULE = new BindingModule() {
+
+        @Override
+        public void configure(Binder binder) {
+            binder.bind(Leaf.class);
+            binder.bind(SingletonLeaf.class).in(Scopes.SINGLETON);
+            binder.bind(ServiceImpl.class);
+            binder.bind(Service.class).to(ServiceImpl.class);
+            binder.bind(Provided.class).toProvider(new Provider<Provided>() {
+
+                @Override
+                public Provided get() {
+                    return new Provided();
+                }
+            });
+            binder.bind(Produced.class).toProducer(new Producer<Produced>() {
+
+                @Override
+                public Produced newInstance(Injector injector) {
+                    return new Produced();
+                }
+            });
+            binder.bind(Constant.class).toInstance(new Constant());
+        }
+    };
+
+    private Fixtures() {
+        // static members only
+    }
+}
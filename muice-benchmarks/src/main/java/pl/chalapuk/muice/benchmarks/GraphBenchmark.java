@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import pl.chalapuk.muice.Injector;
+import pl.chalapuk.muice.Muice;
+
+/**
+ * Latency of instantiating root of a generated constructor graph (see
+ * {@link SyntheticGraph}). Graph without scopes creates {@code fanOut^depth}
+ * leaves for each root.
+ * 
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GraphBenchmark {
+
+    @Param({ "1", "3", "5" })
+    public int depth;
+
+    @Param({ "1", "2", "4" })
+    public int fanOut;
+
+    private Injector mInjector;
+    private Class<?> mRoot;
+
+    @Setup
+    public void setUp() {
+        SyntheticGraph graph = new SyntheticGraph(depth, fanOut);
+        mInjector = Muice.createInjector(graph.module());
+        mRoot = graph.root();
+    }
+
+    @Benchmark
+    public Object root() {
+        return mInjector.getInstance(mRoot);
+    }
+}
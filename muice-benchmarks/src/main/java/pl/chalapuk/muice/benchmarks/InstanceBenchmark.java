@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Provider;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import pl.chalapuk.muice.Injector;
+import pl.chalapuk.muice.Key;
+import pl.chalapuk.muice.Muice;
+import pl.chalapuk.muice.benchmarks.Fixtures.Constant;
+import pl.chalapuk.muice.benchmarks.Fixtures.Leaf;
+import pl.chalapuk.muice.benchmarks.Fixtures.Produced;
+import pl.chalapuk.muice.benchmarks.Fixtures.Provided;
+import pl.chalapuk.muice.benchmarks.Fixtures.Service;
+import pl.chalapuk.muice.benchmarks.Fixtures.SingletonLeaf;
+
+/**
+ * Latency of getting one instance from the injector through different lookup
+ * methods and from different kinds of bindings (see {@link Fixtures#MODULE}),
+ * with and without trusted providers.
+ * 
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InstanceBenchmark {
+    private static final Key<Leaf> LEAF_KEY = Key.get(Leaf.class);
+
+    @Param({ "false", "true" })
+    public boolean trusted;
+
+    private Injector mInjector;
+    private Provider<? extends Leaf> mLeafProvider;
+
+    @Setup
+    public void setUp() {
+        Muice muice = trusted
+                ? Muice.newMuice().withTrustedProviders().build()
+                : Muice.DEFAULT;
+        mInjector = muice.newInjector()
+                .withModules(Fixtures.MODULE)
+                .build();
+        mLeafProvider = mInjector.getProvider(Leaf.class);
+    }
+
+    @Benchmark
+    public Object byClass() {
+        return mInjector.getInstance(Leaf.class);
+    }
+
+    @Benchmark
+    public Object byKey() {
+        return mInjector.getInstance(LEAF_KEY);
+    }
+
+    @Benchmark
+    public Object cachedProvider() {
+        return mLeafProvider.get();
+    }
+
+    @Benchmark
+    public Object singleton() {
+        return mInjector.getInstance(SingletonLeaf.class);
+    }
+
+    @Benchmark
+    public Object linked() {
+        return mInjector.getInstance(Service.class);
+    }
+
+    @Benchmark
+    public Object toProvider() {
+        return mInjector.getInstance(Provided.class);
+    }
+
+    @Benchmark
+    public Object toProducer() {
+        return mInjector.getInstance(Produced.class);
+    }
+
+    @Benchmark
+    public Object toInstance() {
+        return mInjector.getInstance(Constant.class);
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice.benchmarks;
+
+import javax.inject.Provider;
+
+import com.google.common.base.Function;
+
+import pl.chalapuk.muice.Key;
+import pl.chalapuk.muice.Scope;
+
+/**
+ * Copy of singleton scope used by Muice before thread-safe implementation.
+ * Not thread-safe; kept only as a baseline for benchmarks.
+ * 
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+final class LegacySingletonScope implements Scope {
+
+    @Override
+    public <T> Provider<? extends T> decorate(Key<T> key, final Provider<? extends T> unscoped) {
+
+        return new Provider<T>() {
+            private Function<Provider<? extends T>, T> mGetter = new Function<Provider<? extends T>, T>() {
+
+                @Override
+                public T apply(Provider<? extends T> p) {
+                    final T val = p.get();
+                    mGetter = new Function<Provider<? extends T>, T>() {
+
+                        @Override
+                        public T apply(Provider<? extends T> arg0) {
+                            return val;
+                        }
+                    };
+                    return val;
+                }
+            };
+
+            @Override
+            public T get() {
+                return mGetter.apply(unscoped);
+            }
+        };
+    }
+}
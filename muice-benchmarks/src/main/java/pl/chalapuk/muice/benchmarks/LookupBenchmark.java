@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import pl.chalapuk.muice.Injector;
+import pl.chalapuk.muice.Key;
+import pl.chalapuk.muice.Muice;
+import pl.chalapuk.muice.TypeLiteral;
+
+/**
+ * Per-lookup latency of {@link Injector#getInstance(Key)} in injectors of
+ * different sizes.
+ * <p>
+ * {@code reusedKey} looks up key instances that were used before (typical for
+ * keys of constructor parameters), {@code freshKey} creates new key for each
+ * lookup (typical for keys created at lookup site).
+ * 
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LookupBenchmark {
+    private static final int LOOKUPS = 1024;
+
+    @Param({ "100", "10000", "100000" })
+    public int bindings;
+
+    private Injector mInjector;
+    private Key<Object>[] mReusedKeys;
+    private TypeLiteral<Object>[] mLiterals;
+    private int mNext;
+
+    @Setup
+    public void setUp() {
+        Key<Object>[] bound = SyntheticKeys.keys(bindings);
+        mInjector = Muice.createInjector(SyntheticKeys.instances(bound));
+
+        @SuppressWarnings("unchecked")
+        Key<Object>[] reused = new Key[LOOKUPS];
+        @SuppressWarnings("unchecked")
+        TypeLiteral<Object>[] literals = new TypeLiteral[LOOKUPS];
+
+        Random random = new Random(0);
+        for (int i = 0; i < LOOKUPS; ++i) {
+            int index = random.nextInt(bindings);
+            reused[i] = bound[index];
+            literals[i] = SyntheticKeys.key(index).getTypeLiteral();
+        }
+        mReusedKeys = reused;
+        mLiterals = literals;
+    }
+
+    @Benchmark
+    public Object reusedKey() {
+        return mInjector.getInstance(mReusedKeys[next()]);
+    }
+
+    @Benchmark
+    public Object freshKey() {
+        return mInjector.getInstance(Key.get(mLiterals[next()]));
+    }
+
+    private int next() {
+        return mNext = (mNext + 1) & (LOOKUPS - 1);
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Provider;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import pl.chalapuk.muice.Key;
+import pl.chalapuk.muice.internal.Scopes;
+
+/**
+ * Throughput of reading created singleton by 1, 8 and 64 threads, with
+ * {@link Scopes#SINGLETON} and with {@link LegacySingletonScope}.
+ * 
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SingletonBenchmark {
+    private Provider<? extends Object> mCurrent;
+    private Provider<? extends Object> mLegacy;
+
+    @Setup
+    public void setUp() {
+        Provider<Object> unscoped = new Provider<Object>() {
+
+            @Override
+            public Object get() {
+                return new Object();
+            }
+        };
+        mCurrent = Scopes.SINGLETON.decorate(Key.get(Object.class), unscoped);
+        mLegacy = new LegacySingletonScope().decorate(Key.get(Object.class), unscoped);
+        mCurrent.get();
+        mLegacy.get();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object current1() {
+        return mCurrent.get();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Object current8() {
+        return mCurrent.get();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public Object current64() {
+        return mCurrent.get();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object legacy1() {
+        return mLegacy.get();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Object legacy8() {
+        return mLegacy.get();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public Object legacy64() {
+        return mLegacy.get();
+    }
+}
@@ -0,0 +1,379 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice.benchmarks;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import pl.chalapuk.muice.Binder;
+import pl.chalapuk.muice.BindingModule;
+import pl.chalapuk.muice.Key;
+import pl.chalapuk.muice.TypeLiteral;
+
+/**
+ * Generates classes forming a layered constructor graph of given
+ * {@link Shape}. Each of {@code depth} layers contains the same number of
+ * classes. Constructor of each class takes {@code fanOut} classes of the layer
+ * below; classes of the bottom layer have no dependencies. One root class
+ * depends on {@code fanOut} classes of the top layer.
+ * <p>
+ * Randomly chosen classes (with fixed seed, so the same shape always gives
+ * the same graph) are:
+ * <ul>
+ * <li>bound with a qualifier and injected with this qualifier,
+ * <li>generic and bound (and injected) as {@code Node<String>},
+ * <li>annotated with {@link javax.inject.Singleton}.
+ * </ul>
+ * 
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+final class SyntheticGraph {
+    private static final String PACKAGE = "pl/chalapuk/muice/benchmarks/generated/";
+    private static final String QUALIFIER = PACKAGE + "Qualified";
+    private static final String INJECT = "Ljavax/inject/Inject;";
+    private static final String SINGLETON = "Ljavax/inject/Singleton;";
+    private static final String OBJECT = "java/lang/Object";
+    private static final long SEED = 0x6D75696365L;
+
+    private final Node[][] mLayers;
+    private final Class<?> mRoot;
+    private final Map<String, byte[]> mClassFiles;
+
+    /**
+     * Creates complete graph: each layer contains {@code fanOut} classes and
+     * each class depends on all classes of the layer below.
+     */
+    SyntheticGraph(int depth, int fanOut) {
+        this(new Shape().withDepth(depth).withFanOut(fanOut).withBindings(depth * fanOut));
+    }
+
+    SyntheticGraph(Shape shape) {
+        int width = Math.max(shape.mBindings / shape.mDepth, shape.mFanOut);
+        Random random = new Random(SEED);
+
+        Node[][] layers = new Node[shape.mDepth][width];
+        for (int layer = 0; layer < shape.mDepth; ++layer) {
+            for (int i = 0; i < width; ++i) {
+                layers[layer][i] = new Node(PACKAGE + "Node" + layer + "_" + i,
+                        random.nextDouble() < shape.mQualifiers,
+                        random.nextDouble() < shape.mGenerics,
+                        random.nextDouble() < shape.mSingletons);
+            }
+        }
+
+        Map<String, byte[]> classes = Maps.newHashMap();
+        classes.put(QUALIFIER, generateQualifier());
+        for (int layer = 0; layer < shape.mDepth; ++layer) {
+            for (int i = 0; i < width; ++i) {
+                Node[] dependencies = layer == 0
+                        ? new Node[0]
+                        : dependencies(layers[layer - 1], i, shape.mFanOut);
+                classes.put(layers[layer][i].mName, generate(layers[layer][i], dependencies));
+            }
+        }
+        Node root = new Node(PACKAGE + "Root", false, false, false);
+        classes.put(root.mName,
+                generate(root, dependencies(layers[shape.mDepth - 1], 0, shape.mFanOut)));
+
+        // loader removes classes it has defined
+        mClassFiles = ImmutableMap.copyOf(classes);
+        GeneratedClassLoader loader = new GeneratedClassLoader(classes);
+        Class<?> qualifier = loader.load(QUALIFIER);
+        for (Node[] layer : layers) {
+            for (Node node : layer) {
+                node.mKey = keyOf(loader.load(node.mName), node, qualifier);
+            }
+        }
+        mLayers = layers;
+        mRoot = loader.load(root.mName);
+    }
+
+    /**
+     * @return class depending on {@code fanOut} classes of the top layer
+     */
+    Class<?> root() {
+        return mRoot;
+    }
+
+    /**
+     * @return number of bindings in {@link #module()}
+     */
+    int size() {
+        return mLayers.length * mLayers[0].length + 1;
+    }
+
+    /**
+     * @return module binding all generated classes to themselves, layer by
+     *         layer, starting from the bottom
+     */
+    BindingModule module() {
+        return new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                for (Node[] layer : mLayers) {
+                    for (Node node : layer) {
+                        binder.bind(node.mKey);
+                    }
+                }
+                binder.bind(mRoot);
+            }
+        };
+    }
+
+    /**
+     * @return binary names of all classes bound in {@link #module()}
+     */
+    List<String> classNames() {
+        List<String> names = Lists.newArrayList();
+        for (String internalName : mClassFiles.keySet()) {
+            if (!internalName.equals(QUALIFIER)) {
+                names.add(internalName.replace('/', '.'));
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Writes all generated classes to given jar, so they can be loaded by
+     * {@link java.net.URLClassLoader} in the same way as application classes.
+     */
+    void writeJar(File jar) throws IOException {
+        try (JarOutputStream output = new JarOutputStream(new FileOutputStream(jar))) {
+            for (Map.Entry<String, byte[]> entry : mClassFiles.entrySet()) {
+                output.putNextEntry(new JarEntry(entry.getKey() + ".class"));
+                output.write(entry.getValue());
+                output.closeEntry();
+            }
+        }
+    }
+
+    private static Node[] dependencies(Node[] layerBelow, int index, int fanOut) {
+        Node[] dependencies = new Node[fanOut];
+        for (int i = 0; i < fanOut; ++i) {
+            dependencies[i] = layerBelow[(index * fanOut + i) % layerBelow.length];
+        }
+        return dependencies;
+    }
+
+    private static Key<?> keyOf(Class<?> type, Node node, Class<?> qualifier) {
+        TypeLiteral<?> literal = node.mGeneric
+                ? TypeLiteral.get(type, String.class)
+                : TypeLiteral.get(type);
+        return node.mQualified
+                ? Key.get(literal, qualifier.asSubclass(java.lang.annotation.Annotation.class))
+                : Key.get(literal);
+    }
+
+    /**
+     * Generates public class with one public {@code @Inject}-annotated
+     * constructor, which takes given dependencies and ignores them.
+     */
+    private static byte[] generate(Node node, Node[] dependencies) {
+        Type[] parameterTypes = new Type[dependencies.length];
+        StringBuilder signature = new StringBuilder("(");
+        for (int i = 0; i < dependencies.length; ++i) {
+            parameterTypes[i] = Type.getObjectType(dependencies[i].mName);
+            signature.append('L').append(dependencies[i].mName)
+                    .append(dependencies[i].mGeneric ? "<Ljava/lang/String;>;" : ";");
+        }
+        signature.append(")V");
+
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(Opcodes.V1_7, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, node.mName,
+                node.mGeneric ? "<T:Ljava/lang/Object;>Ljava/lang/Object;" : null, OBJECT, null);
+        if (node.mSingleton) {
+            writer.visitAnnotation(SINGLETON, true).visitEnd();
+        }
+
+        MethodVisitor constructor = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>",
+                Type.getMethodDescriptor(Type.VOID_TYPE, parameterTypes),
+                signature.toString(), null);
+        constructor.visitAnnotation(INJECT, true).visitEnd();
+        for (int i = 0; i < dependencies.length; ++i) {
+            if (dependencies[i].mQualified) {
+                constructor.visitParameterAnnotation(i, "L" + QUALIFIER + ";", true).visitEnd();
+            }
+        }
+        constructor.visitCode();
+        constructor.visitVarInsn(Opcodes.ALOAD, 0);
+        constructor.visitMethodInsn(Opcodes.INVOKESPECIAL, OBJECT, "<init>", "()V", false);
+        constructor.visitInsn(Opcodes.RETURN);
+        constructor.visitMaxs(0, 0);
+        constructor.visitEnd();
+
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    /**
+     * Generates runtime-retained {@link javax.inject.Qualifier} annotation.
+     */
+    private static byte[] generateQualifier() {
+        ClassWriter writer = new ClassWriter(0);
+        writer.visit(Opcodes.V1_7, Opcodes.ACC_PUBLIC | Opcodes.ACC_ANNOTATION
+                | Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT, QUALIFIER, null, OBJECT,
+                new String[] {
+                    "java/lang/annotation/Annotation"
+                });
+        writer.visitAnnotation("Ljavax/inject/Qualifier;", true).visitEnd();
+        AnnotationVisitor retention =
+                writer.visitAnnotation("Ljava/lang/annotation/Retention;", true);
+        retention.visitEnum("value", "Ljava/lang/annotation/RetentionPolicy;", "RUNTIME");
+        retention.visitEnd();
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    /**
+     * Shape of generated graph. By default 1000 bindings in 6 layers, fan-out
+     * of 3, without qualifiers, generic types and scopes.
+     */
+    static final class Shape {
+        int mBindings = 1000;
+        int mDepth = 6;
+        int mFanOut = 3;
+        double mQualifiers;
+        double mGenerics;
+        double mSingletons;
+
+        /**
+         * @param bindings approximate number of generated classes
+         */
+        Shape withBindings(int bindings) {
+            checkArgument(bindings > 0, "bindings must be positive");
+            mBindings = bindings;
+            return this;
+        }
+
+        /**
+         * @param depth number of layers
+         */
+        Shape withDepth(int depth) {
+            checkArgument(depth > 0, "depth must be positive");
+            mDepth = depth;
+            return this;
+        }
+
+        /**
+         * @param fanOut number of constructor parameters
+         */
+        Shape withFanOut(int fanOut) {
+            checkArgument(fanOut > 0 && fanOut < 256, "fanOut must be in range [1, 255]");
+            mFanOut = fanOut;
+            return this;
+        }
+
+        /**
+         * @param density fraction of classes bound with a qualifier
+         */
+        Shape withQualifiers(double density) {
+            mQualifiers = checkDensity(density);
+            return this;
+        }
+
+        /**
+         * @param density fraction of generic classes
+         */
+        Shape withGenerics(double density) {
+            mGenerics = checkDensity(density);
+            return this;
+        }
+
+        /**
+         * @param density fraction of singleton classes
+         */
+        Shape withSingletons(double density) {
+            mSingletons = checkDensity(density);
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("bindings=%d depth=%d fanOut=%d qualifiers=%.2f generics=%.2f "
+                    + "singletons=%.2f", mBindings, mDepth, mFanOut, mQualifiers, mGenerics,
+                    mSingletons);
+        }
+
+        private static double checkDensity(double density) {
+            checkArgument(density >= 0.0 && density <= 1.0, "density must be in range [0, 1]");
+            return density;
+        }
+    }
+
+    private static final class Node {
+        final String mName;
+        final boolean mQualified;
+        final boolean mGeneric;
+        final boolean mSingleton;
+        Key<?> mKey;
+
+        Node(String name, boolean qualified, boolean generic, boolean singleton) {
+            mName = name;
+            mQualified = qualified;
+            mGeneric = generic;
+            mSingleton = singleton;
+        }
+    }
+
+    /**
+     * Defines generated classes on demand.
+     */
+    static final class GeneratedClassLoader extends ClassLoader {
+        private final Map<String, byte[]> mClasses;
+
+        GeneratedClassLoader(Map<String, byte[]> classes) {
+            super(SyntheticGraph.class.getClassLoader());
+            mClasses = classes;
+        }
+
+        Class<?> load(String internalName) {
+            try {
+                return loadClass(internalName.replace('/', '.'));
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            byte[] bytes = mClasses.remove(name.replace('.', '/'));
+            if (bytes == null) {
+                throw new ClassNotFoundException(name);
+            }
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
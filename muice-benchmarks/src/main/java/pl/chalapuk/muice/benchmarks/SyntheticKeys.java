@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice.benchmarks;
+
+import java.lang.reflect.Array;
+import java.util.Map;
+
+import pl.chalapuk.muice.Binder;
+import pl.chalapuk.muice.BindingModule;
+import pl.chalapuk.muice.Key;
+import pl.chalapuk.muice.TypeLiteral;
+
+/**
+ * Creates any number of distinct keys without generating classes. Keys are
+ * {@code Map<A, B>} where {@code A} and {@code B} are taken from a pool of
+ * array types of different dimensions.
+ * 
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+final class SyntheticKeys {
+    private static final Class<?>[] BASE_TYPES = {
+            Object.class, String.class, Integer.class, Long.class, Double.class,
+            Boolean.class, Character.class, Byte.class, Short.class, Float.class,
+    };
+    private static final int DIMENSIONS = 32;
+    private static final Class<?>[] POOL = createPool();
+
+    /**
+     * @return key number {@code index}; equal indices give equal keys
+     */
+    @SuppressWarnings("unchecked")
+    static Key<Object> key(int index) {
+        TypeLiteral<?> literal = TypeLiteral.get(Map.class,
+                POOL[index % POOL.length], POOL[index / POOL.length % POOL.length]);
+        return (Key<Object>) Key.get(literal);
+    }
+
+    /**
+     * @return keys from {@code 0} to {@code count - 1}
+     */
+    static Key<Object>[] keys(int count) {
+        @SuppressWarnings("unchecked")
+        Key<Object>[] keys = new Key[count];
+        for (int i = 0; i < count; ++i) {
+            keys[i] = key(i);
+        }
+        return keys;
+    }
+
+    /**
+     * @return module binding each key to its index
+     */
+    static BindingModule instances(final Key<Object>[] keys) {
+        return new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                for (int i = 0; i < keys.length; ++i) {
+                    binder.bind(keys[i]).toInstance(Integer.valueOf(i));
+                }
+            }
+        };
+    }
+
+    private static Class<?>[] createPool() {
+        Class<?>[] pool = new Class<?>[BASE_TYPES.length * DIMENSIONS];
+        for (int i = 0; i < BASE_TYPES.length; ++i) {
+            Class<?> type = BASE_TYPES[i];
+            for (int j = 0; j < DIMENSIONS; ++j) {
+                pool[i * DIMENSIONS + j] = type;
+                type = Array.newInstance(type, 0).getClass();
+            }
+        }
+        return pool;
+    }
+
+    private SyntheticKeys() {
+        // static methods only
+    }
+}
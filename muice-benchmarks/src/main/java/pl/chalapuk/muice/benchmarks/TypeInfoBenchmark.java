@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import pl.chalapuk.muice.customization.TypeInfoException;
+import pl.chalapuk.muice.customization.TypeInfoFactory;
+import pl.chalapuk.muice.defaults.PersistentTypeInfoFactory;
+import pl.chalapuk.muice.defaults.ReflectionTypeInfoFactory;
+
+/**
+ * Time of reading type information of all classes of a generated graph (see
+ * {@link SyntheticGraph}) by reflection and from a file saved by
+ * {@link PersistentTypeInfoFactory} in a previous run. Classes are loaded from
+ * a jar by a fresh class loader before each measurement, so their reflection
+ * data is not cached, as it is at application startup. Creation of the
+ * factory (mapping of the file) is part of the measurement.
+ * 
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class TypeInfoBenchmark {
+
+    @Param({ "1000", "10000" })
+    public int bindings;
+
+    @Param({ "reflection", "persistent" })
+    public String factory;
+
+    private File mDirectory;
+    private File mJar;
+    private File mTypes;
+    private List<String> mClassNames;
+
+    private URLClassLoader mLoader;
+    private Class<?>[] mClasses;
+
+    @Setup
+    public void setUp() throws Exception {
+        SyntheticGraph graph = new SyntheticGraph(new SyntheticGraph.Shape()
+                .withBindings(bindings)
+                .withQualifiers(0.1)
+                .withGenerics(0.1)
+                .withSingletons(0.2));
+        mDirectory = Files.createTempDirectory("muice-types").toFile();
+        mJar = new File(mDirectory, "graph.jar");
+        mTypes = new File(mDirectory, "types.bin");
+        mClassNames = graph.classNames();
+        graph.writeJar(mJar);
+
+        if (factory.equals("persistent")) {
+            // previous run of the application
+            try (URLClassLoader loader = newLoader()) {
+                PersistentTypeInfoFactory persistent =
+                        new PersistentTypeInfoFactory(new ReflectionTypeInfoFactory(), mTypes);
+                for (Class<?> type : loadClasses(loader)) {
+                    persistent.getRawTypeInfo(type);
+                }
+                persistent.save();
+            }
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void loadClasses() throws Exception {
+        mLoader = newLoader();
+        mClasses = loadClasses(mLoader);
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeLoader() throws IOException {
+        mLoader.close();
+    }
+
+    @TearDown
+    public void tearDown() {
+        mJar.delete();
+        mTypes.delete();
+        mDirectory.delete();
+    }
+
+    @Benchmark
+    public void readAll(Blackhole blackhole) throws TypeInfoException {
+        TypeInfoFactory typeInfo = factory.equals("reflection")
+                ? new ReflectionTypeInfoFactory()
+                : new PersistentTypeInfoFactory(new ReflectionTypeInfoFactory(), mTypes);
+        for (Class<?> type : mClasses) {
+            blackhole.consume(typeInfo.getRawTypeInfo(type));
+        }
+    }
+
+    private URLClassLoader newLoader() throws IOException {
+        return new URLClassLoader(new URL[] {
+                mJar.toURI().toURL()
+        }, TypeInfoBenchmark.class.getClassLoader());
+    }
+
+    private Class<?>[] loadClasses(ClassLoader loader) throws ClassNotFoundException {
+        Class<?>[] classes = new Class<?>[mClassNames.size()];
+        for (int i = 0; i < classes.length; ++i) {
+            classes[i] = Class.forName(mClassNames.get(i), false, loader);
+        }
+        return classes;
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice.compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.apache.maven.artifact.DependencyResolutionRequiredException;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.project.MavenProject;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+
+import pl.chalapuk.muice.BindingError;
+import pl.chalapuk.muice.BindingModule;
+
+/**
+ * Compiles binding modules of the project into {@link pl.chalapuk.muice.Injector} class.
+ * <p>
+ * Should be run after project's classes are compiled:
+ * 
+ * <pre>
+ * &lt;plugin&gt;
+ *   &lt;groupId&gt;pl.chalapuk.muice&lt;/groupId&gt;
+ *   &lt;artifactId&gt;muice-compiler&lt;/artifactId&gt;
+ *   &lt;executions&gt;
+ *     &lt;execution&gt;
+ *       &lt;goals&gt;&lt;goal&gt;compile-injector&lt;/goal&gt;&lt;/goals&gt;
+ *       &lt;configuration&gt;
+ *         &lt;injectorClass&gt;com.example.AppInjector&lt;/injectorClass&gt;
+ *         &lt;modules&gt;
+ *           &lt;module&gt;com.example.AppModule&lt;/module&gt;
+ *         &lt;/modules&gt;
+ *       &lt;/configuration&gt;
+ *     &lt;/execution&gt;
+ *   &lt;/executions&gt;
+ * &lt;/plugin&gt;
+ * </pre>
+ * 
+ * @goal compile-injector
+ * @phase process-classes
+ * @requiresDependencyResolution compile
+ * @threadSafe
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+public class CompileInjectorMojo extends AbstractMojo {
+
+    /**
+     * @parameter default-value="${project}"
+     * @required
+     * @readonly
+     */
+    private MavenProject project;
+
+    /**
+     * Fully qualified name of generated injector class.
+     * 
+     * @parameter
+     * @required
+     */
+    private String injectorClass;
+
+    /**
+     * Fully qualified names of binding modules, in order of installation.
+     * 
+     * @parameter
+     * @required
+     */
+    private String[] modules;
+
+    /**
+     * @parameter default-value="${project.build.directory}/generated-sources/muice"
+     * @required
+     */
+    private File generatedSourcesDirectory;
+
+    /**
+     * @parameter default-value="${project.build.outputDirectory}"
+     * @required
+     */
+    private File outputDirectory;
+
+    /**
+     * @parameter default-value="1.7"
+     */
+    private String target;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        List<String> classpath = classpath();
+        String source = generateSource(classpath);
+
+        File sourceFile = new File(generatedSourcesDirectory,
+                injectorClass.replace('.', File.separatorChar) + ".java");
+        try {
+            Files.createDirectories(sourceFile.getParentFile().toPath());
+            try (Writer writer = new OutputStreamWriter(
+                    Files.newOutputStream(sourceFile.toPath()), StandardCharsets.UTF_8)) {
+                writer.write(source);
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("could not write " + sourceFile, e);
+        }
+        getLog().info("generated " + sourceFile);
+
+        compile(sourceFile, classpath);
+    }
+
+    private String generateSource(List<String> classpath) throws MojoExecutionException,
+            MojoFailureException {
+        Thread thread = Thread.currentThread();
+        ClassLoader previous = thread.getContextClassLoader();
+        try (URLClassLoader loader = newClassLoader(classpath)) {
+            thread.setContextClassLoader(loader);
+            List<Class<? extends BindingModule>> moduleTypes = Lists.newArrayList();
+            for (String module : modules) {
+                moduleTypes.add(Class.forName(module, true, loader).asSubclass(BindingModule.class));
+            }
+            return new InjectorCompiler(injectorClass, moduleTypes).generateSource();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new MojoExecutionException("could not load binding module", e);
+        } catch (BindingError e) {
+            throw new MojoFailureException("error in binding configuration: " + e.getMessage());
+        } catch (IOException e) {
+            throw new MojoExecutionException("could not close project class loader", e);
+        } finally {
+            thread.setContextClassLoader(previous);
+        }
+    }
+
+    private void compile(File sourceFile, List<String> classpath) throws MojoExecutionException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new MojoExecutionException("java compiler not available, please run maven on JDK");
+        }
+
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null,
+                StandardCharsets.UTF_8)) {
+            Iterable<? extends JavaFileObject> units = fileManager.getJavaFileObjects(sourceFile);
+            List<String> options = Arrays.asList(
+                    "-d", outputDirectory.getPath(),
+                    "-classpath", Joiner.on(File.pathSeparator).join(classpath),
+                    "-source", target,
+                    "-target", target,
+                    "-proc:none");
+            if (!compiler.getTask(null, fileManager, null, options, null, units).call()) {
+                throw new MojoExecutionException("compilation of " + sourceFile + " failed");
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("could not compile " + sourceFile, e);
+        }
+    }
+
+    private List<String> classpath() throws MojoExecutionException {
+        try {
+            @SuppressWarnings("unchecked")
+            List<String> elements = project.getCompileClasspathElements();
+            return elements;
+        } catch (DependencyResolutionRequiredException e) {
+            throw new MojoExecutionException("could not resolve project classpath", e);
+        }
+    }
+
+    private URLClassLoader newClassLoader(List<String> classpath) throws MojoExecutionException {
+        URL[] urls = new URL[classpath.size()];
+        try {
+            for (int i = 0; i < urls.length; ++i) {
+                urls[i] = new File(classpath.get(i)).toURI().toURL();
+            }
+        } catch (MalformedURLException e) {
+            throw new MojoExecutionException("invalid classpath element", e);
+        }
+        // parent-first delegation makes module classes use Muice loaded with the plugin
+        return new URLClassLoader(urls, getClass().getClassLoader());
+    }
+}
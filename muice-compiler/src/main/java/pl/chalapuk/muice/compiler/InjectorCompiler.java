@@ -0,0 +1,444 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice.compiler;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Singleton;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Primitives;
+
+import pl.chalapuk.muice.BindingError;
+import pl.chalapuk.muice.BindingModule;
+import pl.chalapuk.muice.Injector;
+import pl.chalapuk.muice.Key;
+import pl.chalapuk.muice.Muice;
+import pl.chalapuk.muice.Scope;
+import pl.chalapuk.muice.TypeLiteral;
+import pl.chalapuk.muice.customization.ConstructorInfo;
+import pl.chalapuk.muice.customization.RawTypeInfo;
+import pl.chalapuk.muice.customization.TypeInfoException;
+import pl.chalapuk.muice.customization.TypeInfoFactory;
+import pl.chalapuk.muice.defaults.ReflectionTypeInfoFactory;
+import pl.chalapuk.muice.generated.CompiledInjector;
+import pl.chalapuk.muice.generated.RecordedBinding;
+import pl.chalapuk.muice.generated.RecordingBinder;
+import pl.chalapuk.muice.internal.Scopes;
+
+/**
+ * Generates source code of {@link CompiledInjector} subclass from binding
+ * modules.
+ * <p>
+ * Configuration is validated by creating an injector with {@link Muice} (any
+ * configuration error is reported at build time), then recorded with
+ * {@link RecordingBinder} and translated into java code.
+ * 
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+public class InjectorCompiler {
+    private static final String COMPILED_INJECTOR = CompiledInjector.class.getName();
+    private static final String KIND = RecordedBinding.Kind.class.getCanonicalName();
+    private static final String SCOPES = Scopes.class.getName();
+
+    private final String mPackageName;
+    private final String mSimpleName;
+    private final List<Class<? extends BindingModule>> mModuleTypes;
+    private final TypeInfoFactory mTypeInfoFactory = new ReflectionTypeInfoFactory();
+
+    private List<RecordedBinding<?>> mBindings;
+    private Map<Key<?>, Integer> mIndices;
+    private StringBuilder mOut;
+
+    /**
+     * @param injectorName fully qualified name of generated class
+     * @param moduleTypes public binding module classes with public no-arg
+     *            constructors
+     */
+    public InjectorCompiler(String injectorName, List<Class<? extends BindingModule>> moduleTypes) {
+        checkNotNull(injectorName, "injectorName");
+        int dot = injectorName.lastIndexOf('.');
+        mPackageName = dot == -1 ? "" : injectorName.substring(0, dot);
+        mSimpleName = injectorName.substring(dot + 1);
+        mModuleTypes = ImmutableList.copyOf(checkNotNull(moduleTypes, "moduleTypes"));
+    }
+
+    /**
+     * @return source code of generated injector
+     * @throws BindingError if modules contain configuration errors
+     */
+    public String generateSource() throws BindingError {
+        // application code (eager singletons, providers) is not run at build time
+        Muice.DEFAULT.newInjector()
+                .withModules(newModules())
+                .withoutInstantiation()
+                .build();
+
+        RecordingBinder recording = new RecordingBinder();
+        for (BindingModule module : newModules()) {
+            recording.install(module);
+        }
+        mBindings = recording.getBindings();
+        mIndices = Maps.newHashMap();
+        for (int i = 0; i < mBindings.size(); ++i) {
+            mIndices.put(mBindings.get(i).getKey(), i);
+        }
+        mIndices.put(Key.get(Injector.class), mBindings.size());
+
+        mOut = new StringBuilder();
+        try {
+            writeClass();
+            return mOut.toString();
+        } finally {
+            mBindings = null;
+            mIndices = null;
+            mOut = null;
+        }
+    }
+
+    private BindingModule[] newModules() {
+        BindingModule[] modules = new BindingModule[mModuleTypes.size()];
+        for (int i = 0; i < modules.length; ++i) {
+            Class<? extends BindingModule> type = mModuleTypes.get(i);
+            checkBindingCondition(isAccessible(type),
+                    "module %s is not accessible from generated injector", type.getName());
+            try {
+                modules[i] = type.getConstructor().newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new BindingError("module " + type.getName()
+                        + " must have public no-arg constructor", e);
+            }
+        }
+        return modules;
+    }
+
+    private void writeClass() {
+        int count = mBindings.size();
+
+        if (!mPackageName.isEmpty()) {
+            line("package %s;", mPackageName);
+            line("");
+        }
+        line("/**");
+        line(" * Generated by Muice injector compiler. Do not edit.");
+        line(" */");
+        line("@SuppressWarnings({ \"unchecked\", \"rawtypes\" })");
+        line("public final class %s extends %s {", mSimpleName, COMPILED_INJECTOR);
+
+        line("    private static final pl.chalapuk.muice.Key<?>[] KEYS = {");
+        for (RecordedBinding<?> binding : mBindings) {
+            line("        %s,", key(binding.getKey()));
+        }
+        line("        %s,", key(Key.get(Injector.class)));
+        line("    };");
+        line("    private static final java.util.Map<pl.chalapuk.muice.Key<?>, Integer> INDICES = indicesOf(KEYS);");
+        line("    private static final %s[] KINDS = {", KIND);
+        for (RecordedBinding<?> binding : mBindings) {
+            line("        %s.%s,", KIND, binding.getKind());
+        }
+        line("    };");
+        line("");
+
+        for (int i = 0; i < count; ++i) {
+            if (scope(i).equals(SCOPES + ".SINGLETON")) {
+                line("    private volatile Object mInstance%d;", i);
+            }
+        }
+        line("");
+
+        line("    public %s() {", mSimpleName);
+        StringBuilder modules = new StringBuilder();
+        for (Class<?> type : mModuleTypes) {
+            modules.append(modules.length() == 0 ? "" : ", ").append("new ")
+                    .append(type.getCanonicalName()).append("()");
+        }
+        line("        this(%s);", modules);
+        line("    }");
+        line("");
+        line("    public %s(pl.chalapuk.muice.BindingModule... modules) {", mSimpleName);
+        line("        super(KEYS, INDICES, KINDS, modules);");
+        for (int i = 0; i < count; ++i) {
+            line("        setScope(%d, %s);", i, scope(i));
+        }
+        line("        setScope(%d, %s.NONE);", count, SCOPES);
+        line("        initializeProviders();");
+        // bindings are in order of declaration and may depend on later ones;
+        // provideN() provides dependencies on demand, so any order is safe
+        for (int i = 0; i < count; ++i) {
+            if (mBindings.get(i).isEager()) {
+                line("        provide%d();", i);
+            }
+        }
+        line("    }");
+        line("");
+
+        writeSwitch("provide", count);
+        writeSwitch("create", count);
+
+        for (int i = 0; i < count; ++i) {
+            writeProvide(i);
+            writeCreate(i);
+        }
+        line("    private Object provide%d() {", count);
+        line("        return this;");
+        line("    }");
+        line("");
+        line("    private Object create%d() {", count);
+        line("        return this;");
+        line("    }");
+        line("}");
+    }
+
+    private void writeSwitch(String method, int count) {
+        line("    @Override");
+        line("    protected Object %s(int index) {", method);
+        line("        switch (index) {");
+        for (int i = 0; i <= count; ++i) {
+            line("        case %d: return %s%d();", i, method, i);
+        }
+        line("        default: throw new IndexOutOfBoundsException(String.valueOf(index));");
+        line("        }");
+        line("    }");
+        line("");
+    }
+
+    private void writeProvide(int index) {
+        String scope = scope(index);
+        line("    private Object provide%d() {", index);
+        if (scope.equals(SCOPES + ".NONE")) {
+            line("        return create%d();", index);
+        } else if (scope.equals(SCOPES + ".SINGLETON")) {
+            line("        Object instance = mInstance%d;", index);
+            line("        if (instance == null) {");
+            line("            instance = provideScoped(%d);", index);
+            line("            mInstance%d = instance;", index);
+            line("        }");
+            line("        return instance;");
+        } else {
+            line("        return provideScoped(%d);", index);
+        }
+        line("    }");
+        line("");
+    }
+
+    private void writeCreate(int index) {
+        RecordedBinding<?> binding = mBindings.get(index);
+        Object target = binding.getTarget();
+
+        line("    private Object create%d() {", index);
+        switch (binding.getKind()) {
+            case SELF:
+                writeConstruction(index, defaultInjectionPoint(binding.getKey().getRawType()));
+                break;
+            case CONSTRUCTOR:
+                writeConstruction(index, mTypeInfoFactory.getConstructorInfo((Constructor<?>) target));
+                break;
+            case LINKED:
+                line("        return provide%d();", indexOf((Key<?>) target));
+                break;
+            case INSTANCE:
+                line("        return instanceAt(%d);", index);
+                break;
+            case PROVIDER_TYPE:
+                line("        return createFromProviderBinding(%d, %d);",
+                        index, indexOf(Key.get((Class<?>) target)));
+                break;
+            case PROVIDER:
+                line("        return createFromProvider(%d);", index);
+                break;
+            case MUICE_PROVIDER:
+                line("        return createFromMuiceProvider(%d);", index);
+                break;
+            case PRODUCER:
+                line("        return createFromProducer(%d);", index);
+                break;
+        }
+        line("    }");
+        line("");
+    }
+
+    private void writeConstruction(int index, ConstructorInfo<?> info) {
+        Constructor<?> constructor = info.getConstructor();
+        Key<?>[] keys = info.getParameterKeys();
+        Class<?>[] types = constructor.getParameterTypes();
+
+        boolean direct = isAccessible(constructor);
+        for (int i = 0; i < keys.length; ++i) {
+            line("        Object arg%d = %s;", i, dependency(keys[i]));
+            direct &= isAccessible(Primitives.wrap(types[i]));
+        }
+
+        StringBuilder args = new StringBuilder();
+        for (int i = 0; i < keys.length; ++i) {
+            args.append(", ");
+            if (direct) {
+                args.append('(').append(Primitives.wrap(types[i]).getCanonicalName()).append(") ");
+            }
+            args.append("arg").append(i);
+        }
+
+        if (!direct) {
+            line("        return newInstance(%d%s);", index, args);
+            return;
+        }
+        line("        try {");
+        line("            return new %s(%s);",
+                constructor.getDeclaringClass().getCanonicalName(),
+                args.length() == 0 ? "" : args.substring(2));
+        line("        } catch (Throwable t) {");
+        line("            throw constructorError(\"%s\", t);", escape(constructor.toString()));
+        line("        }");
+    }
+
+    private String dependency(Key<?> key) {
+        if (key.getRawType().equals(javax.inject.Provider.class)) {
+            TypeLiteral<?> providedType = key.getTypeLiteral().getTypeArgument(0);
+            return "providerAt(" + indexOf(Key.get(providedType, key.getQualifier())) + ")";
+        }
+        return "provide" + indexOf(key) + "()";
+    }
+
+    private String scope(int index) {
+        RecordedBinding<?> binding = mBindings.get(index);
+
+        Scope scope = binding.getScope();
+        if (scope != null) {
+            return scope == Scopes.NONE || scope == Scopes.SINGLETON
+                    ? SCOPES + "." + scope
+                    : "recordedScope(" + index + ")";
+        }
+        Class<? extends Annotation> scopeAnnotation = binding.getScopeAnnotation();
+        if (scopeAnnotation != null) {
+            return scopeAnnotation.equals(Singleton.class)
+                    ? SCOPES + ".SINGLETON"
+                    : "recordedScope(" + index + ")";
+        }
+
+        switch (binding.getKind()) {
+            case SELF:
+                scopeAnnotation = rawTypeInfo(binding.getKey().getRawType()).getScopeAnnotation();
+                if (scopeAnnotation == null) {
+                    return SCOPES + ".NONE";
+                }
+                return scopeAnnotation.equals(Singleton.class)
+                        ? SCOPES + ".SINGLETON"
+                        : "scopeFor(" + classLiteral(scopeAnnotation) + ")";
+            default:
+                return SCOPES + ".NONE";
+        }
+    }
+
+    private String key(Key<?> key) {
+        String typeLiteral = typeLiteral(key.getTypeLiteral());
+        if (key.getQualifier() == null) {
+            return "pl.chalapuk.muice.Key.get(" + typeLiteral + ")";
+        }
+        return "pl.chalapuk.muice.Key.get(" + typeLiteral + ", (Class) "
+                + classLiteral(key.getQualifier()) + ")";
+    }
+
+    private String typeLiteral(TypeLiteral<?> literal) {
+        StringBuilder out = new StringBuilder("pl.chalapuk.muice.TypeLiteral.get((Class) ")
+                .append(classLiteral(literal.getRawType()));
+        for (int i = 0; i < literal.getTypeArgumentCount(); ++i) {
+            out.append(", ").append(typeLiteral(literal.getTypeArgument(i)));
+        }
+        return out.append(')').toString();
+    }
+
+    private String classLiteral(Class<?> type) {
+        if (isAccessible(type)) {
+            return type.getCanonicalName() + ".class";
+        }
+        return "type(" + mSimpleName + ".class, \"" + type.getName() + "\")";
+    }
+
+    private int indexOf(Key<?> key) {
+        Integer index = mIndices.get(key);
+        checkBindingCondition(index != null, "no binding for %s", key);
+        return index;
+    }
+
+    private RawTypeInfo<?> rawTypeInfo(Class<?> type) {
+        try {
+            return mTypeInfoFactory.getRawTypeInfo(type);
+        } catch (TypeInfoException e) {
+            throw new BindingError("error while getting raw type information", e);
+        }
+    }
+
+    private ConstructorInfo<?> defaultInjectionPoint(Class<?> type) {
+        return rawTypeInfo(type).getDefaultInjectionPoint();
+    }
+
+    private boolean isAccessible(Constructor<?> constructor) {
+        int modifiers = constructor.getModifiers();
+        if (Modifier.isPrivate(modifiers)) {
+            return false;
+        }
+        Class<?> type = constructor.getDeclaringClass();
+        return isAccessible(type) && (Modifier.isPublic(modifiers) || isInInjectorPackage(type));
+    }
+
+    private boolean isAccessible(Class<?> type) {
+        if (type.isPrimitive()) {
+            return true;
+        }
+        if (type.isArray()) {
+            return isAccessible(type.getComponentType());
+        }
+        if (type.getCanonicalName() == null) {
+            return false;
+        }
+        for (Class<?> current = type; current != null; current = current.getEnclosingClass()) {
+            int modifiers = current.getModifiers();
+            if (Modifier.isPrivate(modifiers)
+                    || !Modifier.isPublic(modifiers) && !isInInjectorPackage(current)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isInInjectorPackage(Class<?> type) {
+        String name = type.getName();
+        int dot = name.lastIndexOf('.');
+        return mPackageName.equals(dot == -1 ? "" : name.substring(0, dot));
+    }
+
+    private void line(String format, Object... args) {
+        mOut.append(String.format(format, args)).append('\n');
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private static void checkBindingCondition(
+            boolean conditionSatisfied, String messageTemplate, Object... args) {
+        if (!conditionSatisfied) {
+            throw new BindingError(String.format(messageTemplate, args));
+        }
+    }
+}
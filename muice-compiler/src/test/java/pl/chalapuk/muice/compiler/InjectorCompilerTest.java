@@ -0,0 +1,438 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice.compiler;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Qualifier;
+import javax.inject.Singleton;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+import org.junit.Test;
+
+import pl.chalapuk.muice.Binder;
+import pl.chalapuk.muice.BindingError;
+import pl.chalapuk.muice.BindingModule;
+import pl.chalapuk.muice.InjectionError;
+import pl.chalapuk.muice.Injector;
+import pl.chalapuk.muice.Key;
+import pl.chalapuk.muice.Producer;
+import pl.chalapuk.muice.Scope;
+import pl.chalapuk.muice.generated.CompiledInjector;
+
+/**
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+public class InjectorCompilerTest {
+
+    @Test
+    public void testGeneratedInjectorProvidesInstancesWithDependencies() throws Exception {
+        Injector injector = compile("GeneratedAppInjector", AppModule.class);
+
+        Service service = injector.getInstance(Service.class);
+        assertEquals(ServiceImpl.class, service.getClass());
+        ServiceImpl impl = (ServiceImpl) service;
+        assertNotNull(impl.mDependency);
+        assertEquals("red", impl.mRed);
+        assertNotNull(impl.mProvider.get());
+        assertNotSame(impl.mProvider.get(), impl.mProvider.get());
+    }
+
+    @Test
+    public void testGeneratedInjectorIsCompiledInjector() throws Exception {
+        Injector injector = compile("GeneratedAppInjector", AppModule.class);
+
+        assertTrue(injector instanceof CompiledInjector);
+    }
+
+    @Test
+    public void testSingletonsHeldByGeneratedInjector() throws Exception {
+        Injector injector = compile("GeneratedAppInjector", AppModule.class);
+
+        assertSame(injector.getInstance(SingletonDependency.class),
+                injector.getInstance(SingletonDependency.class));
+        assertNotSame(injector.getInstance(Dependency.class), injector.getInstance(Dependency.class));
+    }
+
+    @Test
+    public void testLinkedKeySharesTargetSingleton() throws Exception {
+        Injector injector = compile("GeneratedLinkedInjector", LinkedModule.class);
+
+        assertSame(injector.getInstance(SingletonDependency.class), injector.getInstance(Object.class));
+        assertSame(injector.getInstance(Object.class),
+                injector.getInstance(Key.get(Object.class, Red.class)));
+    }
+
+    @Test
+    public void testBatchLookupProvidesInstancesOfAllKeys() throws Exception {
+        Injector injector = compile("GeneratedAppInjector", AppModule.class);
+
+        Object[] instances = injector.getInstances(Key.get(SingletonDependency.class),
+                Key.get(Service.class));
+        assertSame(injector.getInstance(SingletonDependency.class), instances[0]);
+        assertEquals(ServiceImpl.class, instances[1].getClass());
+    }
+
+    @Test
+    public void testOptionalLookupsOfMissingKeys() throws Exception {
+        Injector injector = compile("GeneratedAppInjector", AppModule.class);
+
+        assertTrue(injector.hasBinding(Key.get(Service.class)));
+        assertFalse(injector.hasBinding(Key.get(Long.class)));
+        assertNull(injector.getExistingProvider(Key.get(Long.class)));
+        assertFalse(injector.tryGetInstance(Key.get(Long.class)).isPresent());
+        assertFalse(injector.hasBinding(Key.get(javax.inject.Provider.class)));
+        assertNull(injector.getExistingProvider(Key.get(javax.inject.Provider.class)));
+        assertSame(injector.getInstance(SingletonDependency.class),
+                injector.tryGetInstance(Key.get(SingletonDependency.class)).get());
+    }
+
+    @Test
+    public void testMuiceProviderInitializedWhenInjectorIsCreated() throws Exception {
+        Injector injector = compile("GeneratedInitializedInjector", InitializedModule.class);
+
+        assertSame(injector, InitializedModule.sInitializedWith);
+        assertEquals("initialized", injector.getInstance(String.class));
+    }
+
+    @Test
+    public void testCustomTargetsCalled() throws Exception {
+        Injector injector = compile("GeneratedTargetsInjector", TargetsModule.class);
+
+        assertEquals("instance", injector.getInstance(Key.get(String.class, Red.class)));
+        assertEquals(Integer.valueOf(1), injector.getInstance(Integer.class));
+        assertEquals(Long.valueOf(2L), injector.getInstance(Long.class));
+        assertEquals(Double.valueOf(3.0), injector.getInstance(Double.class));
+        assertEquals(ReflectivelyCreated.class, injector.getInstance(ReflectivelyCreated.class).getClass());
+    }
+
+    @Test
+    public void testCustomScopeDecoratesProvider() throws Exception {
+        Injector injector = compile("GeneratedScopedInjector", ScopedModule.class);
+
+        assertSame(CountingScope.INSTANCE, injector.getInstance(Dependency.class));
+    }
+
+    @Test
+    public void testProvidersAvailableForAllKeys() throws Exception {
+        Injector injector = compile("GeneratedAppInjector", AppModule.class);
+
+        assertEquals(Dependency.class, injector.getProvider(Dependency.class).get().getClass());
+        assertSame(injector, injector.getInstance(Injector.class));
+    }
+
+    @Test(expected = BindingError.class)
+    public void testBindingErrorForMissingBinding() throws Exception {
+        Injector injector = compile("GeneratedAppInjector", AppModule.class);
+
+        injector.getInstance(Object.class);
+    }
+
+    @Test(expected = InjectionError.class)
+    public void testExceptionFromConstructorWrappedInInjectionError() throws Exception {
+        Injector injector = compile("GeneratedTargetsInjector", TargetsModule.class);
+
+        injector.getInstance(Throwing.class);
+    }
+
+    @Test(expected = BindingError.class)
+    public void testInvalidConfigurationReportedAtBuildTime() throws Exception {
+        new InjectorCompiler("pl.chalapuk.muice.compiler.GeneratedInvalidInjector",
+                modules(InvalidModule.class)).generateSource();
+    }
+
+    @Test
+    public void testDifferentModulesRejectedAtRuntime() throws Exception {
+        Class<?> type = compileClass("GeneratedAppInjector", AppModule.class);
+
+        try {
+            type.getConstructor(BindingModule[].class).newInstance(
+                    (Object) new BindingModule[] { new TargetsModule() });
+            fail("expected " + BindingError.class);
+        } catch (java.lang.reflect.InvocationTargetException e) {
+            assertEquals(BindingError.class, e.getCause().getClass());
+        }
+    }
+
+    @Test
+    public void testEagerSingletonCreatedByGeneratedInjectorConstructor() throws Exception {
+        Eager.sLastInstance = null;
+        Injector injector = compile("GeneratedEagerInjector", EagerModule.class);
+
+        assertNotNull(Eager.sLastInstance);
+        assertSame(Eager.sLastInstance, injector.getInstance(Eager.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testApplicationCodeNotRunWhenSourceIsGenerated() throws Exception {
+        Eager.sLastInstance = null;
+        InitializedModule.sInitializedWith = null;
+        new InjectorCompiler("test.NotRunInjector",
+                modules(EagerModule.class, InitializedModule.class)).generateSource();
+
+        assertNull(Eager.sLastInstance);
+        assertNull(InitializedModule.sInitializedWith);
+    }
+
+    @Test
+    public void testBindingsContainInjectorKey() throws Exception {
+        Injector injector = compile("GeneratedAppInjector", AppModule.class);
+
+        int count = 0;
+        Key<?> last = null;
+        for (pl.chalapuk.muice.Binding<?> binding : injector.getBindings()) {
+            last = binding.getKey();
+            ++count;
+        }
+        assertEquals(Key.get(Injector.class), last);
+        assertEquals(6, count);
+    }
+
+    public interface Service {
+    }
+
+    @Qualifier
+    @Retention(RetentionPolicy.RUNTIME)
+    public @interface Red {
+    }
+
+    public static class Dependency {
+    }
+
+    @Singleton
+    public static class SingletonDependency {
+    }
+
+    public static class ServiceImpl implements Service {
+        final Dependency mDependency;
+        final String mRed;
+        final Provider<Dependency> mProvider;
+
+        @Inject
+        public ServiceImpl(Dependency dependency, @Red String red,
+                Provider<Dependency> provider, SingletonDependency singleton) {
+            mDependency = dependency;
+            mRed = red;
+            mProvider = provider;
+        }
+    }
+
+    public static class Throwing {
+
+        @Inject
+        public Throwing() {
+            throw new IllegalStateException();
+        }
+    }
+
+    private static class ReflectivelyCreated {
+
+        @Inject
+        private ReflectivelyCreated() {
+        }
+    }
+
+    public static class AppModule implements BindingModule {
+
+        @Override
+        public void configure(Binder binder) {
+            binder.bind(Dependency.class);
+            binder.bind(SingletonDependency.class);
+            binder.bind(String.class).annotatedWith(Red.class).toInstance("red");
+            binder.bind(ServiceImpl.class);
+            binder.bind(Service.class).to(ServiceImpl.class);
+        }
+    }
+
+    public static class LinkedModule implements BindingModule {
+
+        @Override
+        public void configure(Binder binder) {
+            binder.bind(SingletonDependency.class);
+            binder.bind(Object.class).to(SingletonDependency.class);
+            binder.bind(Object.class).annotatedWith(Red.class).to(Object.class);
+        }
+    }
+
+    public static class TargetsModule implements BindingModule {
+
+        @Override
+        public void configure(Binder binder) {
+            binder.bind(String.class).annotatedWith(Red.class).toInstance("instance");
+            binder.bind(Integer.class).toProvider(new Provider<Integer>() {
+
+                @Override
+                public Integer get() {
+                    return 1;
+                }
+            });
+            binder.bind(Long.class).toProvider(new pl.chalapuk.muice.Provider<Long>() {
+
+                @Override
+                public void initialize(Injector injector) {
+                }
+
+                @Override
+                public Long get() {
+                    return 2L;
+                }
+            });
+            binder.bind(Double.class).toProducer(new Producer<Double>() {
+
+                @Override
+                public Double newInstance(Injector injector) {
+                    return 3.0;
+                }
+            });
+            binder.bind(ReflectivelyCreated.class);
+            binder.bind(Throwing.class);
+        }
+    }
+
+    public static class InitializedModule implements BindingModule {
+        static volatile Injector sInitializedWith;
+
+        @Override
+        public void configure(Binder binder) {
+            binder.bind(String.class).toProvider(new pl.chalapuk.muice.Provider<String>() {
+
+                @Override
+                public void initialize(Injector injector) {
+                    sInitializedWith = injector;
+                }
+
+                @Override
+                public String get() {
+                    return sInitializedWith != null ? "initialized" : "not initialized";
+                }
+            });
+        }
+    }
+
+    public static class Eager {
+        static volatile Eager sLastInstance;
+
+        @Inject
+        public Eager(Dependency dependency) {
+            sLastInstance = this;
+        }
+    }
+
+    public static class EagerModule implements BindingModule {
+
+        @Override
+        public void configure(Binder binder) {
+            binder.bind(Dependency.class);
+            binder.bind(Eager.class).asEagerSingleton();
+        }
+    }
+
+    public static class ScopedModule implements BindingModule {
+
+        @Override
+        public void configure(Binder binder) {
+            binder.bind(Dependency.class).in(new CountingScope());
+        }
+    }
+
+    public static class InvalidModule implements BindingModule {
+
+        @Override
+        public void configure(Binder binder) {
+            binder.bind(Service.class).to(ServiceImpl.class);
+        }
+    }
+
+    private static class CountingScope implements Scope {
+        static final Dependency INSTANCE = new Dependency();
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> Provider<? extends T> decorate(Key<T> key, Provider<? extends T> unscoped) {
+            return new Provider<T>() {
+
+                @Override
+                public T get() {
+                    return (T) INSTANCE;
+                }
+            };
+        }
+    }
+
+    @SafeVarargs
+    private static List<Class<? extends BindingModule>> modules(Class<? extends BindingModule>... types) {
+        return Arrays.asList(types);
+    }
+
+    @SafeVarargs
+    private static Injector compile(String name, Class<? extends BindingModule>... types)
+            throws Exception {
+        return (Injector) compileClass(name, types).newInstance();
+    }
+
+    @SafeVarargs
+    private static Class<?> compileClass(String name, Class<? extends BindingModule>... types)
+            throws IOException, ClassNotFoundException {
+        String className = InjectorCompilerTest.class.getPackage().getName() + "." + name;
+        String source = new InjectorCompiler(className, modules(types)).generateSource();
+
+        File output = Files.createTempDirectory("muice-compiler").toFile();
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        JavaCompiler.CompilationTask task = compiler.getTask(null, null, null, Arrays.asList(
+                "-d", output.getPath(),
+                "-classpath", System.getProperty("java.class.path")
+                ), null, Collections.singletonList(new Source(className, source)));
+        assertTrue("compilation failed:\n" + source, task.call());
+
+        return new URLClassLoader(new URL[] {
+                output.toURI().toURL()
+        }, InjectorCompilerTest.class.getClassLoader()).loadClass(className);
+    }
+
+    private static class Source extends SimpleJavaFileObject {
+        private final String mContent;
+
+        public Source(String className, String content) {
+            super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension),
+                    Kind.SOURCE);
+            mContent = content;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return mContent;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Emitted after binding is built (or resolved, in lazy bindings mode).
+ * 
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+@Name("muice.BindingResolved")
+@Label("Binding Resolved")
+@Category("Muice")
+@Description("Type analysis and producer creation of a binding")
+@StackTrace(false)
+final class BindingResolvedEvent extends Event {
+
+    @Label("Key")
+    String key;
+
+    @Label("Scope")
+    String scope;
+
+    @Label("Build Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long buildTime;
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice.jfr;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nullable;
+
+import jdk.jfr.EventType;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.MapMaker;
+
+import pl.chalapuk.muice.Binding;
+import pl.chalapuk.muice.Injector;
+import pl.chalapuk.muice.Key;
+import pl.chalapuk.muice.customization.BuildListener;
+import pl.chalapuk.muice.customization.MuiceBuilder;
+import pl.chalapuk.muice.customization.ProvisionListener;
+
+/**
+ * Emits JDK Flight Recorder events of Muice injectors:
+ * <ul>
+ * <li>{@code muice.InjectorBuild} - after each injector is built,
+ * <li>{@code muice.BindingResolved} - after each binding is built (or resolved
+ * in lazy bindings mode),
+ * <li>{@code muice.Provision} - around each call to a producer, with key,
+ * scope and nesting depth of the provision.
+ * </ul>
+ * Events are in {@code Muice} category and may be enabled and disabled like
+ * any other JFR events. When an event type is not enabled in any running
+ * recording, its notifications cost a single check of a flag (provisions are
+ * then neither measured nor tracked on the per-thread stack). Recorder doesn't
+ * time constructions as build listener, so providers are not decorated for
+ * that and instances bound with {@code toInstance()} stay constant. Build events
+ * are committed after the measured work, so their duration is available in
+ * {@code buildTime} field and not in event's duration.
+ * 
+ * <pre>
+ * MuiceFlightRecorder recorder = new MuiceFlightRecorder();
+ * Muice muice = recorder.install(Muice.newMuice()).build();
+ * </pre>
+ * 
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+public class MuiceFlightRecorder implements BuildListener, ProvisionListener {
+    private static final EventType sInjectorBuildType =
+            EventType.getEventType(InjectorBuildEvent.class);
+    private static final EventType sBindingResolvedType =
+            EventType.getEventType(BindingResolvedEvent.class);
+    private static final EventType sProvisionType =
+            EventType.getEventType(ProvisionEvent.class);
+
+    // keys are interned, so weak (identity) keys are released together with
+    // the last injector that bound them
+    private final ConcurrentMap<Key<?>, String> mScopes = new MapMaker().weakKeys().makeMap();
+    private final ThreadLocal<Provisions> mProvisions = new ThreadLocal<Provisions>() {
+
+        @Override
+        protected Provisions initialValue() {
+            return new Provisions();
+        }
+    };
+
+    /**
+     * Registers this recorder as both build and provision listener.
+     * 
+     * @return given builder
+     */
+    public MuiceBuilder install(MuiceBuilder builder) {
+        return builder.withBuildListener(this).withProvisionListener(this);
+    }
+
+    @Override
+    public void onPhase(Key<?> key, Phase phase, long nanos) {
+        // phases are not recorded
+    }
+
+    @Override
+    public void onBindingBuilt(Binding<?> binding, long nanos) {
+        if (!sBindingResolvedType.isEnabled()) {
+            return;
+        }
+        BindingResolvedEvent event = new BindingResolvedEvent();
+        if (event.shouldCommit()) {
+            event.key = binding.getKey().toString();
+            event.scope = binding.getScope().toString();
+            event.buildTime = nanos;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void onInjectorBuilt(Injector injector, long nanos) {
+        if (!sInjectorBuildType.isEnabled()) {
+            return;
+        }
+        InjectorBuildEvent event = new InjectorBuildEvent();
+        if (event.shouldCommit()) {
+            event.bindings = Iterables.size(injector.getBindings());
+            event.buildTime = nanos;
+            event.commit();
+        }
+    }
+
+    @Override
+    public boolean isTimingConstructions() {
+        // provisions are recorded as provision listener
+        return false;
+    }
+
+    @Override
+    public void beforeConstruction(Key<?> key) {
+        // constructions are not timed
+    }
+
+    @Override
+    public void afterConstruction(Key<?> key, long nanos) {
+        // constructions are not timed
+    }
+
+    @Override
+    public boolean isListening(Binding<?> binding) {
+        mScopes.put(binding.getKey(), binding.getScope().toString());
+        return true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return sProvisionType.isEnabled();
+    }
+
+    @Override
+    public void onRequest(Key<?> key) {
+        // requests are not recorded
+    }
+
+    @Override
+    public void beforeProvision(Key<?> key) {
+        ProvisionEvent event = new ProvisionEvent();
+        event.begin();
+        mProvisions.get().push(event);
+    }
+
+    @Override
+    public void afterProvision(Key<?> key, long nanos, @Nullable Throwable failure) {
+        Provisions provisions = mProvisions.get();
+        ProvisionEvent event = provisions.pop();
+        event.end();
+        if (event.shouldCommit()) {
+            event.key = key.toString();
+            event.scope = mScopes.get(key);
+            event.depth = provisions.mDepth;
+            event.failed = failure != null;
+            event.commit();
+        }
+    }
+
+    /**
+     * Per-thread stack of provisions in progress.
+     */
+    private static final class Provisions {
+        ProvisionEvent[] mEvents = new ProvisionEvent[8];
+        int mDepth;
+
+        void push(ProvisionEvent event) {
+            if (mDepth == mEvents.length) {
+                mEvents = Arrays.copyOf(mEvents, mDepth * 2);
+            }
+            mEvents[mDepth++] = event;
+        }
+
+        ProvisionEvent pop() {
+            ProvisionEvent event = mEvents[--mDepth];
+            mEvents[mDepth] = null;
+            return event;
+        }
+    }
+}
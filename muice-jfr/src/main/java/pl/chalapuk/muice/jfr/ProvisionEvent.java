@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Emitted around each call to a producer. Duration of the event includes
+ * provisioning of dependencies, which are emitted as nested events.
+ * 
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+@Name("muice.Provision")
+@Label("Provision")
+@Category("Muice")
+@Description("Call to a producer of an instance")
+final class ProvisionEvent extends Event {
+
+    @Label("Key")
+    String key;
+
+    @Label("Scope")
+    String scope;
+
+    @Label("Nesting Depth")
+    @Description("Number of provisions in progress in the same thread, 0 for top-level")
+    int depth;
+
+    @Label("Failed")
+    boolean failed;
+}
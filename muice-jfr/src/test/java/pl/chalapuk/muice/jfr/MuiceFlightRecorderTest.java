@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice.jfr;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import pl.chalapuk.muice.Binder;
+import pl.chalapuk.muice.BindingModule;
+import pl.chalapuk.muice.Injector;
+import pl.chalapuk.muice.Key;
+import pl.chalapuk.muice.Muice;
+
+/**
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+public class MuiceFlightRecorderTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void testInjectorBuildRecorded() throws Exception {
+        List<RecordedEvent> events = record(new Runnable() {
+
+            @Override
+            public void run() {
+                createInjector();
+            }
+        });
+
+        List<RecordedEvent> builds = filter(events, "muice.InjectorBuild");
+        assertEquals(1, builds.size());
+        assertEquals(3, builds.get(0).getInt("bindings"));
+        assertTrue(builds.get(0).getLong("buildTime") > 0L);
+    }
+
+    @Test
+    public void testBindingsResolvedRecorded() throws Exception {
+        List<RecordedEvent> events = record(new Runnable() {
+
+            @Override
+            public void run() {
+                createInjector();
+            }
+        });
+
+        List<String> keys = new ArrayList<>();
+        for (RecordedEvent event : filter(events, "muice.BindingResolved")) {
+            keys.add(event.getString("key"));
+        }
+        assertTrue(keys.toString(), keys.contains(Key.get(Root.class).toString()));
+        assertTrue(keys.toString(), keys.contains(Key.get(Dependency.class).toString()));
+    }
+
+    @Test
+    public void testNestedProvisionsRecorded() throws Exception {
+        final Injector injector = createInjector();
+        List<RecordedEvent> events = record(new Runnable() {
+
+            @Override
+            public void run() {
+                injector.getInstance(Root.class);
+            }
+        });
+
+        List<RecordedEvent> provisions = filter(events, "muice.Provision");
+        assertEquals(2, provisions.size());
+        RecordedEvent root = find(provisions, Root.class);
+        RecordedEvent dependency = find(provisions, Dependency.class);
+        assertEquals(0, root.getInt("depth"));
+        assertEquals(1, dependency.getInt("depth"));
+        assertEquals("SINGLETON", dependency.getString("scope"));
+        assertFalse(root.getBoolean("failed"));
+        assertTrue(root.getDuration().compareTo(dependency.getDuration()) >= 0);
+    }
+
+    @Test
+    public void testProvisionsOutsideOfRecordingIgnored() throws Exception {
+        Injector injector = createInjector();
+        injector.getInstance(Root.class);
+
+        List<RecordedEvent> events = record(new Runnable() {
+
+            @Override
+            public void run() {
+            }
+        });
+        assertTrue(filter(events, "muice.Provision").isEmpty());
+    }
+
+    @Test
+    public void testDisabledOutsideOfRecording() throws Exception {
+        assertFalse(new MuiceFlightRecorder().isEnabled());
+    }
+
+    private List<RecordedEvent> record(Runnable action) throws Exception {
+        File file = mFolder.newFile("recording.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("muice.InjectorBuild");
+            recording.enable("muice.BindingResolved");
+            recording.enable("muice.Provision");
+            recording.start();
+            action.run();
+            recording.stop();
+            recording.dump(file.toPath());
+        }
+        return RecordingFile.readAllEvents(file.toPath());
+    }
+
+    private static List<RecordedEvent> filter(List<RecordedEvent> events, String name) {
+        List<RecordedEvent> filtered = new ArrayList<>();
+        for (RecordedEvent event : events) {
+            if (event.getEventType().getName().equals(name)) {
+                filtered.add(event);
+            }
+        }
+        return filtered;
+    }
+
+    private static RecordedEvent find(List<RecordedEvent> events, Class<?> type) {
+        for (RecordedEvent event : events) {
+            if (event.getString("key").equals(Key.get(type).toString())) {
+                return event;
+            }
+        }
+        throw new AssertionError("no event of " + type);
+    }
+
+    private static Injector createInjector() {
+        return new MuiceFlightRecorder().install(Muice.newMuice())
+                .build()
+                .newInjector()
+                .withModules(new BindingModule() {
+
+                    @Override
+                    public void configure(Binder binder) {
+                        binder.bind(Dependency.class);
+                        binder.bind(Root.class);
+                    }
+                })
+                .build();
+    }
+
+    @Singleton
+    public static class Dependency {
+    }
+
+    public static class Root {
+
+        @Inject
+        public Root(Dependency dependency) {
+        }
+    }
+}
@@ -0,0 +1,453 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.inject.Inject;
+import javax.inject.Qualifier;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic.Kind;
+
+import pl.chalapuk.muice.generated.GeneratedTypeInfoFactory;
+
+/**
+ * Generates reflection-free type information and producers for classes with
+ * {@link Inject}-annotated constructors.
+ * <p>
+ * For each such class {@code Foo} a {@code Foo$$MuiceInfo} class is generated
+ * in the same package. It holds constructor dependency keys and scope
+ * annotation of {@code Foo} and instantiates {@code Foo} by calling its
+ * constructor directly. Generated classes are found by name at runtime by
+ * {@link GeneratedTypeInfoFactory}. No class aggregating all processed classes
+ * is generated, so each generated class depends only on its source class and
+ * the processor works with incremental compilation.
+ * <p>
+ * Generated code follows the same rules of selecting injection points as
+ * {@link pl.chalapuk.muice.defaults.ReflectionTypeInfoFactory}. Classes which
+ * cannot be instantiated from generated code (e.g. with private constructors)
+ * are skipped, so generated factory falls back to reflection for them.
+ *
+ * @see GeneratedTypeInfoFactory
+ * @see pl.chalapuk.muice.generated.GeneratedProducerFactory
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+@SupportedAnnotationTypes("javax.inject.Inject")
+public class MuiceProcessor extends AbstractProcessor {
+    public static final String ADAPTER_SUFFIX = GeneratedTypeInfoFactory.INFO_CLASS_SUFFIX;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Map<String, TypeElement> types = new LinkedHashMap<>();
+        for (Element element : roundEnv.getElementsAnnotatedWith(Inject.class)) {
+            if (element.getKind() == ElementKind.CONSTRUCTOR) {
+                TypeElement type = (TypeElement) element.getEnclosingElement();
+                types.put(type.getQualifiedName().toString(), type);
+            }
+        }
+
+        for (TypeElement type : types.values()) {
+            try {
+                writeAdapter(type);
+            } catch (UnsupportedException e) {
+                note(type, type.getQualifiedName() + " will be analyzed with reflection: "
+                        + e.getMessage());
+            } catch (IOException e) {
+                error(type, "could not write generated source: " + e.getMessage());
+            }
+        }
+        return false;
+    }
+
+    private void writeAdapter(TypeElement type) throws UnsupportedException, IOException {
+        checkInstantiable(type);
+        ExecutableElement constructor = selectConstructor(type);
+        if (constructor.getModifiers().contains(Modifier.PRIVATE)) {
+            throw new UnsupportedException("selected constructor is private");
+        }
+
+        String packageName = packageOf(type).getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+        String adapterName = binaryName.substring(packageName.isEmpty() ? 0 : packageName.length() + 1)
+                + ADAPTER_SUFFIX;
+        String typeName = type.getQualifiedName().toString();
+
+        List<? extends VariableElement> parameters = constructor.getParameters();
+        List<String> keys = new ArrayList<>();
+        List<String> casts = new ArrayList<>();
+        List<String> rawTypes = new ArrayList<>();
+        for (VariableElement parameter : parameters) {
+            TypeMirror parameterType = parameter.asType();
+            keys.add(keyExpression(parameterType, findQualifier(parameter, packageName), packageName));
+            casts.add(castExpression(parameterType));
+            rawTypes.add(typeName(processingEnv.getTypeUtils().erasure(parameterType)) + ".class");
+        }
+        String scope = findScope(type, packageName);
+
+        PrintWriter out = new PrintWriter(processingEnv.getFiler()
+                .createSourceFile(packageName.isEmpty() ? adapterName : packageName + "." + adapterName, type)
+                .openWriter());
+        try {
+            if (!packageName.isEmpty()) {
+                out.println("package " + packageName + ";");
+                out.println();
+            }
+            out.println("/**");
+            out.println(" * Generated by " + MuiceProcessor.class.getName() + ". Do not edit!");
+            out.println(" */");
+            out.println("@SuppressWarnings({ \"rawtypes\", \"unchecked\" })");
+            out.println("public final class " + adapterName
+                    + " extends pl.chalapuk.muice.generated.GeneratedConstructorInfo<" + typeName + "> {");
+            for (int i = 0; i < keys.size(); ++i) {
+                out.println("    private static final pl.chalapuk.muice.Key<?> KEY_" + i + " =");
+                out.println("            " + keys.get(i) + ";");
+            }
+            out.println();
+            out.println("    public static final pl.chalapuk.muice.customization.RawTypeInfo<?> "
+                    + GeneratedTypeInfoFactory.INFO_FIELD_NAME + " =");
+            out.println("            new pl.chalapuk.muice.customization.RawTypeInfo(new " + adapterName
+                    + "(), " + (scope == null ? "null" : scope + ".class") + ");");
+            out.println();
+            out.println("    private " + adapterName + "() {");
+            out.println("        super(" + typeName + ".class,");
+            out.println("                new Class<?>[] { " + join(rawTypes) + " },");
+            out.println("                new pl.chalapuk.muice.Key<?>[] { " + join(keyNames(keys.size())) + " },");
+            out.println("                " + (constructor.getAnnotation(Inject.class) != null) + ");");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public " + typeName + " newInstance(pl.chalapuk.muice.Injector injector) {");
+            List<String> args = new ArrayList<>();
+            for (int i = 0; i < casts.size(); ++i) {
+                out.println("        " + casts.get(i) + " arg" + i + " = (" + casts.get(i)
+                        + ") injector.getInstance(KEY_" + i + ");");
+                args.add("arg" + i);
+            }
+            out.println("        try {");
+            out.println("            return new " + typeName + "(" + join(args) + ");");
+            out.println("        } catch (Throwable t) {");
+            out.println("            throw constructorError(t);");
+            out.println("        }");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public pl.chalapuk.muice.Producer<" + typeName
+                    + "> link(pl.chalapuk.muice.Injector injector) {");
+            out.println("        return " + (casts.isEmpty() ? "this" : "new Linked(this, injector)") + ";");
+            out.println("    }");
+            if (!casts.isEmpty()) {
+                out.println();
+                writeLinkedProducer(out, adapterName, typeName, casts);
+            }
+            out.println("}");
+        } finally {
+            out.close();
+        }
+    }
+
+    /*
+     * Linked producer gets constructor arguments from providers resolved once,
+     * when the producer is linked.
+     */
+    private static void writeLinkedProducer(PrintWriter out, String adapterName, String typeName,
+            List<String> casts) {
+        out.println("    private static final class Linked implements pl.chalapuk.muice.Producer<"
+                + typeName + "> {");
+        out.println("        private final " + adapterName + " mInfo;");
+        for (int i = 0; i < casts.size(); ++i) {
+            out.println("        private final javax.inject.Provider<?> mProvider" + i + ";");
+        }
+        out.println();
+        out.println("        Linked(" + adapterName + " info, pl.chalapuk.muice.Injector injector) {");
+        out.println("            mInfo = info;");
+        for (int i = 0; i < casts.size(); ++i) {
+            out.println("            mProvider" + i + " = info.linkedProvider(injector, " + i + ");");
+        }
+        out.println("        }");
+        out.println();
+        out.println("        @Override");
+        out.println("        public " + typeName + " newInstance(pl.chalapuk.muice.Injector injector) {");
+        List<String> args = new ArrayList<>();
+        for (int i = 0; i < casts.size(); ++i) {
+            out.println("            " + casts.get(i) + " arg" + i + " = (" + casts.get(i)
+                    + ") mProvider" + i + ".get();");
+            args.add("arg" + i);
+        }
+        out.println("            try {");
+        out.println("                return new " + typeName + "(" + join(args) + ");");
+        out.println("            } catch (Throwable t) {");
+        out.println("                throw mInfo.constructorError(t);");
+        out.println("            }");
+        out.println("        }");
+        out.println("    }");
+    }
+
+    private static void checkInstantiable(TypeElement type) throws UnsupportedException {
+        if (type.getKind() != ElementKind.CLASS) {
+            throw new UnsupportedException("not a class");
+        }
+        if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+            throw new UnsupportedException("class is abstract");
+        }
+        if (type.getNestingKind() != NestingKind.TOP_LEVEL) {
+            if (type.getNestingKind() != NestingKind.MEMBER) {
+                throw new UnsupportedException("local and anonymous classes are not supported");
+            }
+            if (!type.getModifiers().contains(Modifier.STATIC)) {
+                throw new UnsupportedException("(not static) inner class");
+            }
+        }
+        for (Element e = type; e instanceof TypeElement; e = e.getEnclosingElement()) {
+            if (e.getModifiers().contains(Modifier.PRIVATE)) {
+                throw new UnsupportedException("class is not accessible from its package");
+            }
+        }
+    }
+
+    /*
+     * Mirrors ReflectionTypeInfoFactory: public Inject-annotated or no-arg
+     * constructor, or no-arg constructor of any visibility.
+     */
+    private static ExecutableElement selectConstructor(TypeElement type) throws UnsupportedException {
+        ExecutableElement selected = null;
+        ExecutableElement noArg = null;
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            boolean noParams = constructor.getParameters().isEmpty();
+            if (noParams) {
+                noArg = constructor;
+            }
+            if (constructor.getModifiers().contains(Modifier.PUBLIC)
+                    && (constructor.getAnnotation(Inject.class) != null || noParams)) {
+                if (selected != null) {
+                    throw new UnsupportedException("more than one injectable constructor");
+                }
+                selected = constructor;
+            }
+        }
+        if (selected == null) {
+            selected = noArg;
+        }
+        if (selected == null) {
+            throw new UnsupportedException("no injectable constructor");
+        }
+        return selected;
+    }
+
+    private String findQualifier(Element parameter, String packageName) throws UnsupportedException {
+        String found = null;
+        for (AnnotationMirror annotation : parameter.getAnnotationMirrors()) {
+            TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+            if (annotationType.getAnnotation(Qualifier.class) != null && isRetainedAtRuntime(annotationType)) {
+                if (found != null) {
+                    throw new UnsupportedException("multiple qualifiers found");
+                }
+                checkAccessible(annotationType, packageName);
+                found = annotationType.getQualifiedName().toString();
+            }
+        }
+        return found;
+    }
+
+    private String findScope(TypeElement type, String packageName) throws UnsupportedException {
+        String found = null;
+        for (AnnotationMirror annotation : processingEnv.getElementUtils().getAllAnnotationMirrors(type)) {
+            TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+            if (annotationType.getAnnotation(javax.inject.Scope.class) != null
+                    && isRetainedAtRuntime(annotationType)) {
+                if (found != null) {
+                    throw new UnsupportedException("multiple scope annotations found");
+                }
+                checkAccessible(annotationType, packageName);
+                found = annotationType.getQualifiedName().toString();
+            }
+        }
+        return found;
+    }
+
+    private static boolean isRetainedAtRuntime(TypeElement annotationType) {
+        Retention retention = annotationType.getAnnotation(Retention.class);
+        return retention != null && retention.value() == RetentionPolicy.RUNTIME;
+    }
+
+    private String keyExpression(TypeMirror type, String qualifier, String packageName)
+            throws UnsupportedException {
+        String qualifierLiteral = qualifier == null ? "" : ", " + qualifier + ".class";
+        if (type.getKind() == TypeKind.DECLARED
+                && !((DeclaredType) type).getTypeArguments().isEmpty()) {
+            return "pl.chalapuk.muice.Key.get(" + typeLiteralExpression(type, packageName)
+                    + qualifierLiteral + ")";
+        }
+        return "pl.chalapuk.muice.Key.get(" + classLiteral(type, packageName) + qualifierLiteral + ")";
+    }
+
+    private String typeLiteralExpression(TypeMirror type, String packageName)
+            throws UnsupportedException {
+        StringBuilder builder = new StringBuilder("pl.chalapuk.muice.TypeLiteral.get(");
+        if (type.getKind() == TypeKind.DECLARED) {
+            DeclaredType declared = (DeclaredType) type;
+            builder.append(classLiteral(processingEnv.getTypeUtils().erasure(type), packageName));
+            for (TypeMirror argument : declared.getTypeArguments()) {
+                builder.append(", ").append(typeLiteralExpression(argument, packageName));
+            }
+        } else {
+            builder.append(classLiteral(type, packageName));
+        }
+        return builder.append(")").toString();
+    }
+
+    private String classLiteral(TypeMirror type, String packageName) throws UnsupportedException {
+        switch (type.getKind()) {
+            case BOOLEAN:
+            case BYTE:
+            case SHORT:
+            case INT:
+            case LONG:
+            case CHAR:
+            case FLOAT:
+            case DOUBLE:
+                return type.toString() + ".class";
+            case ARRAY:
+                TypeMirror component = ((ArrayType) type).getComponentType();
+                if (component.getKind() == TypeKind.DECLARED
+                        && !((DeclaredType) component).getTypeArguments().isEmpty()) {
+                    throw new UnsupportedException("generic arrays are not supported");
+                }
+                String componentLiteral = classLiteral(component, packageName);
+                return componentLiteral.substring(0, componentLiteral.length() - ".class".length())
+                        + "[].class";
+            case DECLARED:
+                TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+                checkAccessible(element, packageName);
+                return element.getQualifiedName() + ".class";
+            default:
+                throw new UnsupportedException(type.getKind() + " " + type + " is not supported");
+        }
+    }
+
+    private static void checkAccessible(TypeElement type, String packageName) throws UnsupportedException {
+        boolean samePackage = packageOf(type).getQualifiedName().contentEquals(packageName);
+        for (Element e = type; e instanceof TypeElement; e = e.getEnclosingElement()) {
+            Set<Modifier> modifiers = e.getModifiers();
+            if (modifiers.contains(Modifier.PRIVATE)
+                    || !samePackage && !modifiers.contains(Modifier.PUBLIC)) {
+                throw new UnsupportedException(type.getQualifiedName() + " is not accessible");
+            }
+        }
+    }
+
+    private String castExpression(TypeMirror type) {
+        if (type.getKind().isPrimitive()) {
+            return typeName(processingEnv.getTypeUtils().boxedClass((PrimitiveType) type).asType());
+        }
+        return typeName(type);
+    }
+
+    private static String typeName(TypeMirror type) {
+        switch (type.getKind()) {
+            case ARRAY:
+                return typeName(((ArrayType) type).getComponentType()) + "[]";
+            case DECLARED:
+                DeclaredType declared = (DeclaredType) type;
+                StringBuilder builder = new StringBuilder(
+                        ((TypeElement) declared.asElement()).getQualifiedName());
+                List<? extends TypeMirror> arguments = declared.getTypeArguments();
+                if (!arguments.isEmpty()) {
+                    List<String> names = new ArrayList<>();
+                    for (TypeMirror argument : arguments) {
+                        names.add(typeName(argument));
+                    }
+                    builder.append('<').append(join(names)).append('>');
+                }
+                return builder.toString();
+            default:
+                return type.toString();
+        }
+    }
+
+    private static PackageElement packageOf(Element element) {
+        while (!(element instanceof PackageElement)) {
+            element = element.getEnclosingElement();
+        }
+        return (PackageElement) element;
+    }
+
+    private static List<String> keyNames(int count) {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            names.add("KEY_" + i);
+        }
+        return names;
+    }
+
+    private static String join(List<String> parts) {
+        StringBuilder builder = new StringBuilder();
+        for (String part : parts) {
+            if (builder.length() > 0) {
+                builder.append(", ");
+            }
+            builder.append(part);
+        }
+        return builder.toString();
+    }
+
+    private void note(Element element, String message) {
+        processingEnv.getMessager().printMessage(Kind.NOTE, message, element);
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Kind.ERROR, message, element);
+    }
+
+    @SuppressWarnings("serial")
+    private static class UnsupportedException extends Exception {
+
+        public UnsupportedException(String message) {
+            super(message);
+        }
+    }
+}
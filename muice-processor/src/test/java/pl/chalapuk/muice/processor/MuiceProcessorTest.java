@@ -0,0 +1,391 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice.processor;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import pl.chalapuk.muice.Binder;
+import pl.chalapuk.muice.BindingModule;
+import pl.chalapuk.muice.Injector;
+import pl.chalapuk.muice.Muice;
+import pl.chalapuk.muice.Producer;
+import pl.chalapuk.muice.customization.ConstructorInfo;
+import pl.chalapuk.muice.customization.LinkableProducer;
+import pl.chalapuk.muice.customization.ProducerFactory;
+import pl.chalapuk.muice.customization.RawTypeInfo;
+import pl.chalapuk.muice.customization.TypeInfoFactory;
+import pl.chalapuk.muice.defaults.ReflectionTypeInfoFactory;
+import pl.chalapuk.muice.generated.GeneratedConstructorInfo;
+import pl.chalapuk.muice.generated.GeneratedProducerFactory;
+import pl.chalapuk.muice.generated.GeneratedTypeInfoFactory;
+
+/**
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+public class MuiceProcessorTest {
+    private static final String[] SOURCES = {
+            "package test;\n"
+                    + "public class Dependency {\n"
+                    + "    @javax.inject.Inject public Dependency() {}\n"
+                    + "}\n",
+            "package test;\n"
+                    + "@javax.inject.Qualifier\n"
+                    + "@java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME)\n"
+                    + "public @interface Red {}\n",
+            "package test;\n"
+                    + "public class Service {\n"
+                    + "    public final Dependency dependency;\n"
+                    + "    public final Object red;\n"
+                    + "    @javax.inject.Inject\n"
+                    + "    public Service(Dependency dependency, @Red Object red) {\n"
+                    + "        this.dependency = dependency;\n"
+                    + "        this.red = red;\n"
+                    + "    }\n"
+                    + "}\n",
+            "package test;\n"
+                    + "public class Outer {\n"
+                    + "    @javax.inject.Singleton\n"
+                    + "    static class Nested {\n"
+                    + "        @javax.inject.Inject Nested() {}\n"
+                    + "    }\n"
+                    + "}\n",
+            "package test;\n"
+                    + "public class WithPrivateConstructor {\n"
+                    + "    @javax.inject.Inject private WithPrivateConstructor() {}\n"
+                    + "}\n",
+            "package test;\n"
+                    + "public class WithThrowingConstructor {\n"
+                    + "    @javax.inject.Inject public WithThrowingConstructor() throws Exception {\n"
+                    + "        throw new Exception();\n"
+                    + "    }\n"
+                    + "}\n",
+            "package test.sub;\n"
+                    + "public class WithManyDependencies {\n"
+                    + "    @javax.inject.Inject\n"
+                    + "    public WithManyDependencies(int primitive, String[] array,\n"
+                    + "            java.util.List<java.util.Map<String, Integer>> generic,\n"
+                    + "            @test.Red javax.inject.Provider<Object> provider) {}\n"
+                    + "}\n",
+    };
+
+    private static final String CLIENT_SOURCE = "package other;\n"
+            + "public class Client {\n"
+            + "    public final test.Service service;\n"
+            + "    @javax.inject.Inject public Client(test.Service service) {\n"
+            + "        this.service = service;\n"
+            + "    }\n"
+            + "}\n";
+
+    private static File sOutput;
+    private static ClassLoader sClassLoader;
+
+    @BeforeClass
+    public static void compileSources() throws IOException {
+        sOutput = compile(System.getProperty("java.class.path"), SOURCES);
+        sClassLoader = classLoader(sOutput);
+    }
+
+    @AfterClass
+    public static void removeClassLoader() {
+        sOutput = null;
+        sClassLoader = null;
+    }
+
+    @Test
+    public void testAdapterGeneratedForInjectAnnotatedClass() throws Exception {
+        sClassLoader.loadClass("test.Service" + MuiceProcessor.ADAPTER_SUFFIX);
+    }
+
+    @Test
+    public void testAdapterGeneratedForNestedClass() throws Exception {
+        sClassLoader.loadClass("test.Outer$Nested" + MuiceProcessor.ADAPTER_SUFFIX);
+    }
+
+    @Test(expected = ClassNotFoundException.class)
+    public void testAdapterNotGeneratedForClassWithPrivateConstructor() throws Exception {
+        sClassLoader.loadClass("test.WithPrivateConstructor" + MuiceProcessor.ADAPTER_SUFFIX);
+    }
+
+    @Test
+    public void testGeneratedInfoFoundForClassesCompiledSeparately() throws Exception {
+        File clientOutput = compile(System.getProperty("java.class.path") + File.pathSeparator
+                + sOutput.getPath(), CLIENT_SOURCE);
+        ClassLoader loader = new URLClassLoader(new URL[] {
+                clientOutput.toURI().toURL()
+        }, sClassLoader);
+        TypeInfoFactory factory = newFactory(new FailingTypeInfoFactory());
+
+        assertTrue(factory.getRawTypeInfo(loader.loadClass("other.Client"))
+                .getDefaultInjectionPoint() instanceof LinkableProducer);
+        assertTrue(factory.getRawTypeInfo(load("test.Service"))
+                .getDefaultInjectionPoint() instanceof LinkableProducer);
+    }
+
+    @Test
+    public void testLinkedGeneratedProducerCreatesInstances() throws Exception {
+        final Class<Object> service = load("test.Service");
+        final Class<Object> dependency = load("test.Dependency");
+        final Class<Object> red = load("test.Red");
+
+        Injector injector = Muice.DEFAULT.newInjector()
+                .withModules(new BindingModule() {
+
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public void configure(Binder binder) {
+                        binder.bind(dependency);
+                        binder.bind(Object.class)
+                                .annotatedWith(red.asSubclass(java.lang.annotation.Annotation.class))
+                                .toInstance("red");
+                    }
+                })
+                .build();
+
+        @SuppressWarnings("unchecked")
+        LinkableProducer<Object> producer = (LinkableProducer<Object>) newFactory(
+                new ReflectionTypeInfoFactory()).getRawTypeInfo(service).getDefaultInjectionPoint();
+        Producer<Object> linked = producer.link(injector);
+
+        assertNotSame(producer, linked);
+        Object instance = linked.newInstance(null);
+        assertEquals(dependency, instance.getClass().getField("dependency").get(instance).getClass());
+        assertEquals("red", instance.getClass().getField("red").get(instance));
+    }
+
+    @Test
+    public void testGeneratedParameterKeysEqualKeysCreatedWithReflection() throws Exception {
+        Class<Object> type = load("test.sub.WithManyDependencies");
+
+        ConstructorInfo<Object> generated = newFactory(new ReflectionTypeInfoFactory())
+                .getRawTypeInfo(type).getDefaultInjectionPoint();
+        ConstructorInfo<Object> reflected = new ReflectionTypeInfoFactory()
+                .getRawTypeInfo(type).getDefaultInjectionPoint();
+
+        assertNotSame(reflected.getClass(), generated.getClass());
+        assertArrayEquals(reflected.getParameterKeys(), generated.getParameterKeys());
+        assertEquals(reflected.getConstructor(), generated.getConstructor());
+    }
+
+    @Test
+    public void testGeneratedScopeAnnotationEqualsScopeFoundWithReflection() throws Exception {
+        Class<Object> type = load("test.Outer$Nested");
+
+        RawTypeInfo<Object> generated = newFactory(new ReflectionTypeInfoFactory()).getRawTypeInfo(type);
+
+        assertEquals(javax.inject.Singleton.class, generated.getScopeAnnotation());
+    }
+
+    @Test
+    public void testInjectorUsesGeneratedProducers() throws Exception {
+        final Class<Object> service = load("test.Service");
+        final Class<Object> dependency = load("test.Dependency");
+        final Class<Object> red = load("test.Red");
+
+        Muice muice = Muice.newMuice()
+                .withTypeInfoFactory(newFactory(new ReflectionTypeInfoFactory()))
+                .withProducerFactory(new GeneratedProducerFactory(new FailingProducerFactory()))
+                .build();
+
+        Injector injector = muice.newInjector()
+                .withModules(new BindingModule() {
+
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public void configure(Binder binder) {
+                        binder.bind(dependency);
+                        binder.bind(Object.class)
+                                .annotatedWith(red.asSubclass(java.lang.annotation.Annotation.class))
+                                .toInstance("red");
+                        binder.bind(service);
+                    }
+                })
+                .build();
+
+        Object instance = injector.getInstance(service);
+        assertEquals(dependency, instance.getClass().getField("dependency").get(instance).getClass());
+        assertEquals("red", instance.getClass().getField("red").get(instance));
+    }
+
+    @Test
+    public void testConstructorNotLookedUpWhenBindingGeneratedInfo() throws Exception {
+        final Class<Object> dependency = load("test.Dependency");
+        TypeInfoFactory factory = newFactory(new FailingTypeInfoFactory());
+
+        Muice muice = Muice.newMuice()
+                .withTypeInfoFactory(factory)
+                .withProducerFactory(new GeneratedProducerFactory(new FailingProducerFactory()))
+                .build();
+
+        Injector injector = muice.newInjector()
+                .withModules(new BindingModule() {
+
+                    @Override
+                    public void configure(Binder binder) {
+                        binder.bind(dependency);
+                    }
+                })
+                .build();
+        injector.getInstance(dependency);
+
+        Field constructor = GeneratedConstructorInfo.class.getDeclaredField("mConstructor");
+        constructor.setAccessible(true);
+        assertNull(constructor.get(factory.getRawTypeInfo(dependency).getDefaultInjectionPoint()));
+    }
+
+    @Test
+    public void testFallbackUsedForClassesNotSeenByProcessor() throws Exception {
+        final Class<Object> withPrivateConstructor = load("test.WithPrivateConstructor");
+
+        Muice muice = Muice.newMuice()
+                .withTypeInfoFactory(newFactory(new ReflectionTypeInfoFactory()))
+                .build();
+
+        Injector injector = muice.newInjector()
+                .withModules(new BindingModule() {
+
+                    @Override
+                    public void configure(Binder binder) {
+                        binder.bind(withPrivateConstructor);
+                    }
+                })
+                .build();
+
+        assertEquals(withPrivateConstructor, injector.getInstance(withPrivateConstructor).getClass());
+    }
+
+    @Test
+    public void testExceptionFromConstructorWrappedInInjectionError() throws Exception {
+        final Class<Object> throwing = load("test.WithThrowingConstructor");
+
+        Muice muice = Muice.newMuice()
+                .withTypeInfoFactory(newFactory(new ReflectionTypeInfoFactory()))
+                .withProducerFactory(new GeneratedProducerFactory(new FailingProducerFactory()))
+                .build();
+
+        Injector injector = muice.newInjector()
+                .withModules(new BindingModule() {
+
+                    @Override
+                    public void configure(Binder binder) {
+                        binder.bind(throwing);
+                    }
+                })
+                .build();
+
+        try {
+            injector.getInstance(throwing);
+            fail("expected " + pl.chalapuk.muice.InjectionError.class);
+        } catch (pl.chalapuk.muice.InjectionError e) {
+            assertEquals(Exception.class, e.getCause().getClass());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Class<Object> load(String name) throws ClassNotFoundException {
+        return (Class<Object>) sClassLoader.loadClass(name);
+    }
+
+    private TypeInfoFactory newFactory(TypeInfoFactory fallback) {
+        return new GeneratedTypeInfoFactory(fallback);
+    }
+
+    private static File compile(String classpath, String... sources) throws IOException {
+        File output = Files.createTempDirectory("muice-processor").toFile();
+
+        List<JavaFileObject> units = new ArrayList<>();
+        for (String source : sources) {
+            units.add(new Source(source));
+        }
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        JavaCompiler.CompilationTask task = compiler.getTask(null, null, null, Arrays.asList(
+                "-d", output.getPath(),
+                "-s", output.getPath(),
+                "-classpath", classpath
+                ), null, units);
+        task.setProcessors(Arrays.asList(new MuiceProcessor()));
+        assertTrue("compilation failed", task.call());
+        return output;
+    }
+
+    private static ClassLoader classLoader(File output) throws IOException {
+        return new URLClassLoader(new URL[] {
+                output.toURI().toURL()
+        }, MuiceProcessorTest.class.getClassLoader());
+    }
+
+    private static class Source extends SimpleJavaFileObject {
+        private final String mContent;
+
+        public Source(String content) {
+            super(URI.create("string:///" + content.substring(8, content.indexOf(';')).replace('.', '/')
+                    + "/" + className(content) + Kind.SOURCE.extension), Kind.SOURCE);
+            mContent = content;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return mContent;
+        }
+
+        private static String className(String content) {
+            String[] tokens = content.split("(class|@interface) ", 2)[1].split("[ {]", 2);
+            return tokens[0];
+        }
+    }
+
+    private static class FailingTypeInfoFactory implements TypeInfoFactory {
+
+        @Override
+        public <T> RawTypeInfo<T> getRawTypeInfo(Class<? super T> rawType) {
+            throw new AssertionError("generated info should be used for " + rawType);
+        }
+
+        @Override
+        public <T> ConstructorInfo<T> getConstructorInfo(java.lang.reflect.Constructor<T> constructor) {
+            throw new AssertionError("generated info should be used for " + constructor);
+        }
+    }
+
+    private static class FailingProducerFactory implements ProducerFactory {
+
+        @Override
+        public <T> Producer<T> createProducer(ConstructorInfo<T> info) {
+            throw new AssertionError("generated producer should be used for " + info.getConstructor());
+        }
+    }
+}
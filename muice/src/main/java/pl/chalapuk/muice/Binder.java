@@ -59,7 +59,10 @@ import javax.inject.Named;
  * annotations should be treated as if it were a request for a
  * {@code ServiceImpl} instance. It is imperative to bind {@code ServiceImpl} to
  * something (typically to itself) before binding {@code Service} to
- * {@code ServiceImpl}.
+ * {@code ServiceImpl}. Both keys share the scoped provider of
+ * {@code ServiceImpl}, so a singleton {@code ServiceImpl} is also the only
+ * instance of {@code Service}. A scope set on the linked binding itself
+ * decorates target's provider.
  * 
  * <pre>
  * bind(Service.class).toProvider(ServiceProvider.class);
@@ -101,6 +104,14 @@ import javax.inject.Named;
  * <p>
  * <b>Note:</b> a scope specified in this way <i>overrides</i> any scope that
  * was specified with an annotation on the {@code ServiceImpl} class.
+ * 
+ * <pre>
+ * bind(ServiceImpl.class).asEagerSingleton();
+ * </pre>
+ * <p>
+ * Places {@code ServiceImpl} in singleton scope and creates the instance
+ * during injector creation, instead of on first use. Eager singletons which
+ * don't depend on each other are created concurrently.
  * <p>
  * {@link Singleton} is the only scope annotation supported by default in Muice.
  * Binding module can use their own custom scopes and {@link #bindScope bind
@@ -303,5 +314,14 @@ public interface Binder {
          * @see Binder documentation of Guice Binding EDSL
          */
         void in(Scope scope);
+
+        /**
+         * Places binding in singleton scope and instructs injector to create
+         * the instance while it is being built. Independent eager singletons
+         * are created concurrently.
+         * 
+         * @see Binder documentation of Guice Binding EDSL
+         */
+        void asEagerSingleton();
     }
 }
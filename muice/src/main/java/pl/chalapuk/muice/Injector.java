@@ -16,6 +16,12 @@
 
 package pl.chalapuk.muice;
 
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Optional;
+
 /**
  * Builds the graphs of objects that make up your application. The injector
  * tracks the dependencies for each type and uses bindings to inject them.
@@ -86,7 +92,76 @@ public interface Injector {
      * @throws BindingError if binding for passed type is not found.
      */
     <T> javax.inject.Provider<? extends T> getProvider(Class<T> type);
-    
+
+    /**
+     * Returns instances for given keys (element {@code i} for key {@code i});
+     * equivalent to calling {@link #getInstance(Key)} for each key, except
+     * that providers of all keys are looked up before any instance is
+     * created.
+     * 
+     * @throws BindingError if binding for any of passed keys is not found.
+     * @throws InjectionError if there was a runtime failure while providing an
+     *             instance.
+     */
+    Object[] getInstances(Key<?>... keys);
+
+    /**
+     * Same as {@link #getInstances(Key...)}, but stores instances in passed
+     * array, so that it can be reused by repeated lookups. Array may be of
+     * any component type able to hold all instances. Elements past length of
+     * {@code keys} are not modified.
+     * 
+     * @return {@code instances}
+     * @throws IllegalArgumentException if {@code instances} is shorter than
+     *             {@code keys}.
+     * @throws ArrayStoreException if any instance can't be stored in
+     *             {@code instances} (array is cleared then).
+     * @throws BindingError if binding for any of passed keys is not found.
+     * @throws InjectionError if there was a runtime failure while providing an
+     *             instance.
+     */
+    Object[] getInstances(Key<?>[] keys, Object[] instances);
+
+    /**
+     * Returns providers used to obtain instances for given keys, in order of
+     * the keys.
+     * 
+     * @throws BindingError if binding for any of passed keys is not found.
+     */
+    List<javax.inject.Provider<?>> getProviders(Iterable<? extends Key<?>> keys);
+
+    /**
+     * Returns the provider used to obtain instances for the given key or
+     * {@code null} if there is no binding for the key. Unlike
+     * {@link #getProvider(Key)}, missing binding is not reported with an
+     * exception, so this method can be used to probe for optional bindings.
+     * 
+     * @throws BindingError if binding for passed key exists, but could not be
+     *             resolved (in lazy bindings mode).
+     */
+    @Nullable
+    <T> javax.inject.Provider<? extends T> getExistingProvider(Key<T> key);
+
+    /**
+     * Returns instance for the given injection key (as
+     * {@link #getInstance(Key)}) or absent value if there is no binding for
+     * the key. Value is also absent if custom provider of the binding returned
+     * {@code null}.
+     * 
+     * @throws BindingError if binding for passed key exists, but could not be
+     *             resolved (in lazy bindings mode).
+     * @throws InjectionError if there was a runtime failure while providing an
+     *             instance.
+     */
+    <T> Optional<T> tryGetInstance(Key<T> key);
+
+    /**
+     * @return {@code true} if {@link #getInstance(Key)} called with passed key
+     *         would not throw {@link BindingError} because of missing binding
+     *         (also for {@code Provider<T>} keys of bound types {@code T})
+     */
+    boolean hasBinding(Key<?> key);
+
     /**
      * @return all bindings used by the injector
      */
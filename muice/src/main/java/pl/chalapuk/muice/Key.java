@@ -23,6 +23,8 @@ import java.lang.annotation.Annotation;
 import javax.inject.Qualifier;
 
 import com.google.common.base.Objects;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 
 /**
  * Binding key consisting of an injection type and an optional qualifier
@@ -47,11 +49,31 @@ import com.google.common.base.Objects;
  * types (int, char, etc.) and their corresponding wrapper types (Integer,
  * Character, etc.). Key returned from {@code Key.get(int.class)} is not equal
  * to key returned from {@code Key.get(Integer.class)}
+ * <p>
+ * Keys are interned the same way as {@link TypeLiteral type literals}. Equal
+ * keys are usually the same instance, which makes lookups in injector tables
+ * cheaper and reduces number of short-lived key objects.
  * 
  * @author crazybob@google.com (Bob Lee)
  * @author maciej@chalapuk.pl (Maciej Chałapuk)
  */
 public final class Key<T> {
+    private static final Interner<Key<?>> sInterner = Interners.newWeakInterner();
+    private static final ClassValue<Key<?>> sRawKeys = new ClassValue<Key<?>>() {
+
+        @Override
+        protected Key<?> computeValue(Class<?> type) {
+            return intern(TypeLiteral.get(type), null);
+        }
+    };
+    private static final ClassValue<Boolean> sQualifiers = new ClassValue<Boolean>() {
+
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            return type.getAnnotation(Qualifier.class) != null;
+        }
+    };
+
     private final TypeLiteral<T> mTypeLiteral;
     private final Class<? extends Annotation> mQualifier;
     private final int mHashCode;
@@ -62,8 +84,9 @@ public final class Key<T> {
      * @param type type to create key for
      * @return key representing given type
      */
+    @SuppressWarnings("unchecked")
     public static <T> Key<T> get(Class<T> type) {
-        return new Key<>(TypeLiteral.get(type), null);
+        return (Key<T>) sRawKeys.get(checkNotNull(type));
     }
 
     /**
@@ -73,7 +96,7 @@ public final class Key<T> {
      * @return key representing given type
      */
     public static <T> Key<T> get(TypeLiteral<T> typeLiteral) {
-        return new Key<>(typeLiteral, null);
+        return intern(typeLiteral, null);
     }
 
     /**
@@ -87,7 +110,7 @@ public final class Key<T> {
      */
     public static <T> Key<T> get(Class<T> type, Class<? extends Annotation> qualifier)
             throws IllegalArgumentException {
-        return new Key<>(TypeLiteral.get(type), qualifier);
+        return intern(TypeLiteral.<T> get(type), qualifier);
     }
 
     /**
@@ -100,7 +123,12 @@ public final class Key<T> {
      *             annotated with {@link Qualifier}
      */
     public static <T> Key<T> get(TypeLiteral<T> typeLiteral, Class<? extends Annotation> qualifier) {
-        return new Key<>(typeLiteral, qualifier);
+        return intern(typeLiteral, qualifier);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Key<T> intern(TypeLiteral<T> typeLiteral, Class<? extends Annotation> qualifier) {
+        return (Key<T>) sInterner.intern(new Key<>(typeLiteral, qualifier));
     }
 
     private Key(TypeLiteral<T> typeLiteral, Class<? extends Annotation> qualifier) {
@@ -135,7 +163,8 @@ public final class Key<T> {
         if (getClass() != obj.getClass())
             return false;
         Key<?> other = (Key<?>) obj;
-        return mTypeLiteral.equals(other.mTypeLiteral)
+        return mHashCode == other.mHashCode
+                && mTypeLiteral.equals(other.mTypeLiteral)
                 && Objects.equal(mQualifier, other.mQualifier);
     }
 
@@ -151,7 +180,7 @@ public final class Key<T> {
     private static Class<? extends Annotation> checkIsValidQualifier(
             Class<? extends Annotation> type) {
         if (type != null) {
-            checkArgument(type.getAnnotation(Qualifier.class) != null,
+            checkArgument(sQualifiers.get(type),
                     "% MUST be annotated with %s to be valid qualifier",
                     type.getName(), Qualifier.class.getName());
         }
@@ -26,9 +26,11 @@ import com.google.common.base.Objects;
 
 import pl.chalapuk.muice.customization.BindingCollector;
 import pl.chalapuk.muice.customization.BindingCollectorFactory;
+import pl.chalapuk.muice.customization.BuildListener;
 import pl.chalapuk.muice.customization.InjectorBuilder;
 import pl.chalapuk.muice.customization.MuiceBuilder;
 import pl.chalapuk.muice.customization.ProducerFactory;
+import pl.chalapuk.muice.customization.ProvisionListener;
 import pl.chalapuk.muice.customization.TypeInfoFactory;
 import pl.chalapuk.muice.defaults.CachedTypeInfoFactory;
 import pl.chalapuk.muice.defaults.ExplicitCollectorFactory;
@@ -36,6 +38,7 @@ import pl.chalapuk.muice.defaults.ReflectionProducerFactory;
 import pl.chalapuk.muice.defaults.ReflectionTypeInfoFactory;
 import pl.chalapuk.muice.internal.BinderImpl;
 import pl.chalapuk.muice.internal.InjectorBuilderImpl;
+import pl.chalapuk.muice.internal.IterativeProducerFactory;
 import pl.chalapuk.muice.internal.ScopeMapping;
 import pl.chalapuk.muice.internal.Scopes;
 
@@ -91,6 +94,36 @@ import pl.chalapuk.muice.internal.Scopes;
  * {@link Scopes#SINGLETON} scope.
  * <li>setting default binding scope - used when no scope is configures for a
  * binding. By default it is {@link Scopes#NONE}.
+ * <li>lazy bindings - type analysis, producer creation and scope decoration of
+ * a binding are postponed until first lookup of its key. Startup time depends
+ * then on number of bindings used and not on number of bindings configured.
+ * Errors in such bindings are reported on first lookup. Disabled by default.
+ * <li>legacy linked bindings - by default, key linked to another key (see
+ * {@link Binder.LinkingBuilder#to(Key)}) is provided by the same scoped
+ * provider as its target, so e.g. singletons are shared. With legacy linked
+ * bindings, linked key copies producer and scope of its target and is scoped
+ * separately (each key of a singleton chain holds its own instance), which
+ * was the behavior of Muice 0.1. Disabled by default.
+ * <li>trusted providers - type of instances returned by custom providers and
+ * producers is verified once (when binding is created if it can be read from
+ * their generic type, on first returned instance otherwise) instead of on
+ * each call. Exceptions thrown by custom providers and producers are not
+ * wrapped in {@link InjectionError}. Disabled by default.
+ * <li>iterative construction - graphs of unscoped dependencies created by
+ * constructors are constructed in a loop with an explicit stack instead of
+ * recursive calls of producers and providers, so deep dependency chains don't
+ * need deep thread stacks. Instances are still created by producers of the
+ * configured producer factory (see
+ * {@link pl.chalapuk.muice.internal.IterativeProducerFactory}). Disabled by
+ * default.
+ * <li>setting {@link BuildListener} - notified about time spent in creation of
+ * each binding and in construction of instances. Without a listener no time
+ * is measured. {@link pl.chalapuk.muice.defaults.StartupProfiler} creates a
+ * report from these notifications.
+ * <li>setting {@link ProvisionListener} - notified about requests for
+ * instances and calls to producers of selected bindings. Providers of other
+ * bindings are not decorated. {@link pl.chalapuk.muice.defaults.ProvisionStatistics}
+ * gathers per-key statistics and exposes them through JMX.
  * </ul>
  * <p>
  * Folowing example presents full Muice customization.
@@ -102,6 +135,7 @@ import pl.chalapuk.muice.internal.Scopes;
  *         .withBindingCollector(new CustomBindingCollector())
  *         .withBootModules(new CustomBootModule())
  *         .withDefaultScope(new CustomDefaultScope)
+ *         .withLazyBindings()
  *         .build();
  * Injector injector = customizedMuice.newInjector()
  *         .withModules(new BindingModuleA())
@@ -165,6 +199,12 @@ public class Muice {
             private BindingCollectorFactory mCollectorFactory = sDefaultCollectorFactory;
             private BindingModule[] mBootModules = sDefaultBootModules;
             private Scope mDefaultScope = sDefaultScope;
+            private boolean mLazyBindings = false;
+            private boolean mLegacyLinkedBindings = false;
+            private boolean mTrustedProviders = false;
+            private boolean mIterativeConstruction = false;
+            private BuildListener mBuildListener = null;
+            private ProvisionListener mProvisionListener = null;
 
             @Override
             public MuiceBuilder withTypeInfoFactory(TypeInfoFactory factory) {
@@ -202,10 +242,50 @@ public class Muice {
                 return this;
             }
 
+            @Override
+            public MuiceBuilder withLazyBindings() {
+                mLazyBindings = true;
+                return this;
+            }
+
+            @Override
+            public MuiceBuilder withLegacyLinkedBindings() {
+                mLegacyLinkedBindings = true;
+                return this;
+            }
+
+            @Override
+            public MuiceBuilder withTrustedProviders() {
+                mTrustedProviders = true;
+                return this;
+            }
+
+            @Override
+            public MuiceBuilder withIterativeConstruction() {
+                mIterativeConstruction = true;
+                return this;
+            }
+
+            @Override
+            public MuiceBuilder withBuildListener(BuildListener listener) {
+                mBuildListener = checkNotNull(listener, "listener");
+                return this;
+            }
+
+            @Override
+            public MuiceBuilder withProvisionListener(ProvisionListener listener) {
+                mProvisionListener = checkNotNull(listener, "listener");
+                return this;
+            }
+
             @Override
             public Muice build() {
-                return new Muice(mTypeInfoFactory, mProducerFactory,
-                        mCollectorFactory, mBootModules, mDefaultScope);
+                ProducerFactory producerFactory = mIterativeConstruction
+                        ? new IterativeProducerFactory(mProducerFactory)
+                        : mProducerFactory;
+                return new Muice(mTypeInfoFactory, producerFactory, mCollectorFactory,
+                        mBootModules, mDefaultScope, mLazyBindings, mLegacyLinkedBindings,
+                        mTrustedProviders, mBuildListener, mProvisionListener);
             }
         };
     }
@@ -215,15 +295,27 @@ public class Muice {
     private final BindingCollectorFactory mCollectorFactory;
     private final BindingModule[] mBootModules;
     private final Scope mDefaultScope;
+    private final boolean mLazyBindings;
+    private final boolean mLegacyLinkedBindings;
+    private final boolean mTrustedProviders;
+    private final BuildListener mBuildListener;
+    private final ProvisionListener mProvisionListener;
 
     private Muice(TypeInfoFactory typeInfoFactory, ProducerFactory producerFactory,
             BindingCollectorFactory collectorFactory, BindingModule[] bootModules,
-            Scope defaultScope) {
+            Scope defaultScope, boolean lazyBindings, boolean legacyLinkedBindings,
+            boolean trustedProviders, BuildListener buildListener,
+            ProvisionListener provisionListener) {
         mTypeInfoFactory = typeInfoFactory;
         mProducerFactory = producerFactory;
         mCollectorFactory = collectorFactory;
         mBootModules = bootModules;
         mDefaultScope = defaultScope;
+        mLazyBindings = lazyBindings;
+        mLegacyLinkedBindings = legacyLinkedBindings;
+        mTrustedProviders = trustedProviders;
+        mBuildListener = buildListener;
+        mProvisionListener = provisionListener;
     }
 
     /**
@@ -233,9 +325,11 @@ public class Muice {
      */
     public InjectorBuilder newInjector() {
         BindingCollector collector = mCollectorFactory.createCollector();
-        BinderImpl binder = new BinderImpl(
-                collector, mTypeInfoFactory, mProducerFactory, new ScopeMapping(), mDefaultScope);
-        return new InjectorBuilderImpl(collector, binder).withModules(mBootModules);
+        BinderImpl binder = new BinderImpl(collector, mTypeInfoFactory, mProducerFactory,
+                new ScopeMapping(), mDefaultScope, mLazyBindings, mLegacyLinkedBindings,
+                mTrustedProviders, mBuildListener);
+        return new InjectorBuilderImpl(collector, binder, mLazyBindings, mBuildListener,
+                mProvisionListener).withModules(mBootModules);
     }
 
     /*
@@ -245,7 +339,8 @@ public class Muice {
     @Override
     public int hashCode() {
         return Objects.hashCode(mTypeInfoFactory, mProducerFactory, mCollectorFactory,
-                Arrays.hashCode(mBootModules), mDefaultScope);
+                Arrays.hashCode(mBootModules), mDefaultScope, mLazyBindings,
+                mLegacyLinkedBindings, mTrustedProviders, mBuildListener, mProvisionListener);
     }
 
     /*
@@ -267,6 +362,11 @@ public class Muice {
                 && mProducerFactory.equals(other.mProducerFactory)
                 && mCollectorFactory.equals(other.mCollectorFactory)
                 && Arrays.equals(mBootModules, other.mBootModules)
-                && mDefaultScope.equals(other.mDefaultScope));
+                && mDefaultScope.equals(other.mDefaultScope)
+                && mLazyBindings == other.mLazyBindings
+                && mLegacyLinkedBindings == other.mLegacyLinkedBindings
+                && mTrustedProviders == other.mTrustedProviders
+                && Objects.equal(mBuildListener, other.mBuildListener)
+                && Objects.equal(mProvisionListener, other.mProvisionListener));
     }
 }
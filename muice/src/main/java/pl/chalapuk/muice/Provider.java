@@ -65,7 +65,10 @@ import javax.inject.Inject;
 public interface Provider<T> extends javax.inject.Provider<T> {
 
     /**
-     * Invoked by Muice before first call to {@link #get()} method.
+     * Invoked by Muice once, before first call to {@link #get()} method.
+     * Providers are initialized when injector is built, in order of their
+     * bindings (on first use in lazy bindings mode), so exceptions thrown
+     * from this method are reported by the injector builder.
      * <p>
      * This method should be used in cases when one-time initialization is
      * needed before providing any instance of {@code T}.
@@ -21,6 +21,8 @@ import static com.google.common.base.Preconditions.*;
 import java.util.Arrays;
 
 import com.google.common.base.Objects;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 
 /**
  * Represents a generic type {@code T}. Java doesn't yet provide a way to
@@ -80,11 +82,33 @@ import com.google.common.base.Objects;
  * preventing it. Just be careful when you change types around invocations of
  * {@code TypeLiteral.get}.
  * 
+ * <h3>Canonical Instances</h3>
+ * <p>
+ * Type literals are interned. {@code TypeLiteral.get} returns the same
+ * instance for equal types as long as the instance is reachable, so equality
+ * checks usually end on identity comparison. Interning is weak, so type
+ * literals don't prevent unloading of classes they represent.
+ * 
  * @author maciej@chalapuk.pl (Maciej Chałapuk)
  */
 public final class TypeLiteral<T> {
+    private static final TypeLiteral<?>[] NO_ARGUMENTS = new TypeLiteral<?>[0];
+    private static final Interner<TypeLiteral<?>> sInterner = Interners.newWeakInterner();
+    private static final ClassValue<TypeLiteral<?>> sRawLiterals = new ClassValue<TypeLiteral<?>>() {
+
+        @Override
+        @SuppressWarnings({
+                "unchecked",
+                "rawtypes"
+        })
+        protected TypeLiteral<?> computeValue(Class<?> type) {
+            return sInterner.intern(new TypeLiteral(type, NO_ARGUMENTS));
+        }
+    };
+
     private final Class<? super T> mRawType;
     private final TypeLiteral<?>[] mTypeArguments;
+    private final int mHashCode;
 
     /**
      * Creates type literal representing given rawType, which has no type
@@ -93,8 +117,9 @@ public final class TypeLiteral<T> {
      * @param rawType type to be represented
      * @return type literal representing given type
      */
+    @SuppressWarnings("unchecked")
     public static <T> TypeLiteral<T> get(Class<? super T> rawType) {
-        return get(rawType, new TypeLiteral<?>[0]);
+        return (TypeLiteral<T>) sRawLiterals.get(checkNotNull(rawType));
     }
 
     @SuppressWarnings({
@@ -111,7 +136,7 @@ public final class TypeLiteral<T> {
     public static <T> TypeLiteral<T> get(Class<? super T> rawType, Class<?>... args) {
         TypeLiteral<?>[] converted = new TypeLiteral<?>[args.length];
         for (int i = 0; i < converted.length; ++i) {
-            converted[i] = new TypeLiteral(args[i], new TypeLiteral<?>[0]);
+            converted[i] = get(args[i]);
         }
         return get(rawType, converted);
     }
@@ -124,13 +149,18 @@ public final class TypeLiteral<T> {
      * @param args actual type arguments
      * @return type literal representing given type with given type arguments
      */
+    @SuppressWarnings("unchecked")
     public static <T> TypeLiteral<T> get(Class<? super T> rawType, TypeLiteral<?>... args) {
-        return new TypeLiteral<>(rawType, args);
+        if (args.length == 0) {
+            return get(rawType);
+        }
+        return (TypeLiteral<T>) sInterner.intern(new TypeLiteral<>(rawType, args.clone()));
     }
 
     private TypeLiteral(Class<? super T> rawType, TypeLiteral<?>[] typeArguments) {
         mRawType = checkNotNull(rawType);
         mTypeArguments = checkNotNull(typeArguments);
+        mHashCode = Objects.hashCode(mRawType.hashCode(), Arrays.deepHashCode(mTypeArguments));
     }
 
     public Class<? super T> getRawType() {
@@ -141,9 +171,13 @@ public final class TypeLiteral<T> {
         return mTypeArguments[index];
     }
 
+    public int getTypeArgumentCount() {
+        return mTypeArguments.length;
+    }
+
     @Override
     public int hashCode() {
-        return Objects.hashCode(mRawType.hashCode(), Arrays.deepHashCode(mTypeArguments));
+        return mHashCode;
     }
 
     @Override
@@ -155,7 +189,8 @@ public final class TypeLiteral<T> {
         if (getClass() != obj.getClass())
             return false;
         TypeLiteral<?> other = (TypeLiteral<?>) obj;
-        return mRawType.equals(other.mRawType) &&
+        return mHashCode == other.mHashCode
+                && mRawType.equals(other.mRawType) &&
                 Arrays.equals(mTypeArguments, other.mTypeArguments);
     }
 
@@ -65,6 +65,10 @@ public interface BindingCollector {
      * <b>NOTE:</b> Implementation of this method may check preconditions
      * immediately or just store passed ConstructorInfo to check preconditions
      * for all constructors in implementation of {@link #getBindings()} method.
+     * <p>
+     * In lazy bindings mode this method is called when binding is resolved,
+     * which may happen after call to {@link #getBindings()}, also
+     * concurrently from many threads.
      * 
      * @param info constructor info that will be used to construct producer
      * @throws BindingError if some precondition is not met
@@ -78,7 +82,8 @@ public interface BindingCollector {
      * incomplete method implementation should throw BindingError.
      * <p>
      * After call to this method binding collector will be disposed - no other
-     * calls will be made.
+     * calls will be made (except {@link #checkProducerPreconditions} in lazy
+     * bindings mode).
      * 
      * @return all configured bindings
      * @throws BindingError if binding configuration is incomplete
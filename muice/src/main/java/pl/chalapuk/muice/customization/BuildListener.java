@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice.customization;
+
+import pl.chalapuk.muice.Binding;
+import pl.chalapuk.muice.Injector;
+import pl.chalapuk.muice.Key;
+
+/**
+ * One of Muice customization points. Notified about time spent in each phase
+ * of injector creation and in first construction of instances. Used to find
+ * out which bindings make startup slow.
+ * <p>
+ * Listener is called only if it was registered with
+ * {@link MuiceBuilder#withBuildListener(BuildListener)}. Without it no time is
+ * measured at all. Constructions are measured only if the listener is
+ * {@link #isTimingConstructions() timing them}. Methods may be called
+ * concurrently from many threads (e.g. when eager singletons are created or
+ * when bindings are lazy).
+ * 
+ * @see pl.chalapuk.muice.defaults.StartupProfiler
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+public interface BuildListener {
+
+    /**
+     * Measured phases of binding creation.
+     */
+    enum Phase {
+        /**
+         * {@link TypeInfoFactory#getRawTypeInfo} or
+         * {@link TypeInfoFactory#getConstructorInfo} call.
+         */
+        TYPE_ANALYSIS,
+        /**
+         * {@link BindingCollector#checkProducerPreconditions} call.
+         */
+        PRECONDITIONS,
+        /**
+         * {@link ProducerFactory#createProducer} call.
+         */
+        PRODUCER_CREATION,
+        /**
+         * {@link pl.chalapuk.muice.Scope#decorate} call.
+         */
+        SCOPE_DECORATION,
+        /**
+         * {@link pl.chalapuk.muice.Provider#initialize} call.
+         */
+        PROVIDER_INITIALIZATION,
+    }
+
+    /**
+     * Called after each measured phase.
+     * 
+     * @param key key of binding being created
+     * @param phase finished phase
+     * @param nanos time spent in the phase
+     */
+    void onPhase(Key<?> key, Phase phase, long nanos);
+
+    /**
+     * Called after binding is built (or resolved, in lazy bindings mode).
+     * 
+     * @param binding built binding
+     * @param nanos time spent in building the binding, including phases
+     *            reported during the build
+     */
+    void onBindingBuilt(Binding<?> binding, long nanos);
+
+    /**
+     * Called when injector is built, after creation of eager singletons.
+     * 
+     * @param injector built injector
+     * @param nanos time spent in building the injector, not including
+     *            configuration of binding modules
+     */
+    void onInjectorBuilt(Injector injector, long nanos);
+
+    /**
+     * Called once for each binding when its provider is created. Providers
+     * of bindings created while it returns {@code false} are not decorated
+     * for timing, so their constructions cost nothing and are not reported
+     * to {@link #beforeConstruction} and {@link #afterConstruction}.
+     * 
+     * @return {@code true} if constructions of instances should be measured
+     */
+    boolean isTimingConstructions();
+
+    /**
+     * Called before producer of given key is called. Only the first
+     * construction of each binding is reported (constructions that throw
+     * don't count and concurrent ones may all be reported), so that later
+     * constructions don't pay any cost of timing.
+     * 
+     * @param key key of instance being constructed
+     */
+    void beforeConstruction(Key<?> key);
+
+    /**
+     * Called after producer of given key returns or throws. Calls for
+     * dependencies of an instance are nested between this method and
+     * {@link #beforeConstruction} of the instance in the same thread.
+     * 
+     * @param key key of instance being constructed
+     * @param nanos time of the construction, including construction of
+     *            dependencies
+     */
+    void afterConstruction(Key<?> key, long nanos);
+}
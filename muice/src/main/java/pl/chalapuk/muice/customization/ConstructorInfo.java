@@ -45,6 +45,17 @@ public class ConstructorInfo<T> {
         mInjectAnnotated = injectAnnotated;
     }
 
+    /**
+     * Creates info without constructor instance. Used by subclasses that
+     * resolve the constructor lazily (e.g. generated at compile time), which
+     * must override {@link #getConstructor()}.
+     */
+    protected ConstructorInfo(Key<?>[] parameterKeys, boolean injectAnnotated) {
+        mConstructor = null;
+        mParameterKeys = checkNotNull(parameterKeys);
+        mInjectAnnotated = injectAnnotated;
+    }
+
     /**
      * @return constructor instance that should be used to instantiate {@code T}
      */
@@ -16,8 +16,11 @@
 
 package pl.chalapuk.muice.customization;
 
+import com.google.common.util.concurrent.ListenableFuture;
+
 import pl.chalapuk.muice.BindingError;
 import pl.chalapuk.muice.BindingModule;
+import pl.chalapuk.muice.InjectionError;
 import pl.chalapuk.muice.Injector;
 import pl.chalapuk.muice.Muice;
 import pl.chalapuk.muice.internal.InjectorBuilderImpl;
@@ -65,7 +68,8 @@ public interface InjectorBuilder {
             throws IllegalStateException, BindingError;
 
     /**
-     * Finalizes building and returns created injector.
+     * Finalizes building and returns created injector. Eager singletons are
+     * created before returning.
      * 
      * @return new inejctor instance configured with bindings previously passed
      *         to {@link #withModules()} methods.
@@ -73,4 +77,17 @@ public interface InjectorBuilder {
      */
     Injector build()
             throws IllegalStateException;
+
+    /**
+     * Finalizes building and returns future, which completes when all eager
+     * singletons are created. Singletons are created in background threads,
+     * independent singletons concurrently.
+     * 
+     * @return future of new injector instance; fails with
+     *         {@link InjectionError} if any eager singleton could not be
+     *         created
+     * @throws IllegalStateException if build was already finalized
+     */
+    ListenableFuture<Injector> buildAsync()
+            throws IllegalStateException;
 }
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice.customization;
+
+import pl.chalapuk.muice.Injector;
+import pl.chalapuk.muice.Producer;
+
+/**
+ * {@link Producer} that can be linked with an injector. Linked producer holds
+ * providers of its dependencies, so it doesn't look them up in the injector
+ * for each created instance.
+ * <p>
+ * Muice links producer of each binding once, before its first instance is
+ * created, and uses the linked producer afterwards. Producers that don't
+ * implement this interface are used as they are.
+ * 
+ * @see ProducerFactory
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+public interface LinkableProducer<T> extends Producer<T> {
+
+    /**
+     * Resolves dependencies of produced instances to providers of given
+     * injector. Dependencies of type {@link javax.inject.Provider} are resolved
+     * to providers of their type arguments.
+     * 
+     * @param injector injector which will be passed to returned producer
+     * @return producer that creates the same instances as this one
+     * @throws pl.chalapuk.muice.BindingError if a dependency is not bound
+     */
+    Producer<T> link(Injector injector);
+}
@@ -63,6 +63,36 @@ public interface MuiceBuilder {
      */
     MuiceBuilder withDefaultScope(Scope scope);
 
+    /**
+     * @see Muice
+     */
+    MuiceBuilder withLazyBindings();
+
+    /**
+     * @see Muice
+     */
+    MuiceBuilder withLegacyLinkedBindings();
+
+    /**
+     * @see Muice
+     */
+    MuiceBuilder withTrustedProviders();
+
+    /**
+     * @see Muice
+     */
+    MuiceBuilder withIterativeConstruction();
+
+    /**
+     * @see Muice
+     */
+    MuiceBuilder withBuildListener(BuildListener listener);
+
+    /**
+     * @see Muice
+     */
+    MuiceBuilder withProvisionListener(ProvisionListener listener);
+
     /**
      * @see Muice
      */
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice.customization;
+
+import javax.annotation.Nullable;
+
+import pl.chalapuk.muice.Binding;
+import pl.chalapuk.muice.Key;
+
+/**
+ * One of Muice customization points. Notified about each request for an
+ * instance of selected bindings and about each call to their
+ * {@link pl.chalapuk.muice.Producer producers}. Used to gather runtime
+ * statistics of injectors (e.g. to find unscoped bindings that are
+ * constructed far more often than expected).
+ * <p>
+ * Listener is called only if it was registered with
+ * {@link MuiceBuilder#withProvisionListener(ProvisionListener)}, and only for
+ * bindings selected by {@link #isListening(Binding)}. Providers of other
+ * bindings are not decorated at all, so they don't pay any cost of listening.
+ * Providers of selected bindings check {@link #isEnabled()} before each
+ * request, which allows to switch listening on and off at runtime.
+ * Methods may be called concurrently from many threads.
+ * 
+ * @see pl.chalapuk.muice.defaults.ProvisionStatistics
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+public interface ProvisionListener {
+
+    /**
+     * Called once for each binding when its provider is created.
+     * 
+     * @param binding binding of created provider
+     * @return {@code true} if listener should be notified about provisions of
+     *         this binding
+     */
+    boolean isListening(Binding<?> binding);
+
+    /**
+     * Called before each request for an instance of selected bindings. When
+     * it returns {@code false}, the request is neither measured nor notified.
+     * Must be cheap.
+     * 
+     * @return {@code true} if listener should be notified about current
+     *         request and provision
+     */
+    boolean isEnabled();
+
+    /**
+     * Called before each request for an instance of given key, before its
+     * scope decides whether a new instance is needed.
+     * 
+     * @param key requested key
+     */
+    void onRequest(Key<?> key);
+
+    /**
+     * Called before producer of given key is called.
+     * 
+     * @param key key of instance being provisioned
+     */
+    void beforeProvision(Key<?> key);
+
+    /**
+     * Called after producer of given key returns or throws.
+     * 
+     * @param key key of provisioned instance
+     * @param nanos time spent in the producer, including provisioning of
+     *            dependencies
+     * @param failure exception thrown from the producer or {@code null}
+     */
+    void afterProvision(Key<?> key, long nanos, @Nullable Throwable failure);
+}
@@ -19,24 +19,52 @@ package pl.chalapuk.muice.defaults;
 import static com.google.common.base.Preconditions.*;
 
 import java.lang.reflect.Constructor;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import pl.chalapuk.muice.customization.ConstructorInfo;
 import pl.chalapuk.muice.customization.RawTypeInfo;
 import pl.chalapuk.muice.customization.TypeInfoException;
 import pl.chalapuk.muice.customization.TypeInfoFactory;
 
-import com.google.common.collect.Maps;
+import com.google.common.cache.CacheStats;
 
 /**
  * Wrapper for {@link TypeInfoFactory} that implements caching of all queried
  * information.
+ * <p>
+ * Cache is thread-safe and source factory is queried only once for each class
+ * and constructor, even if many threads ask for it concurrently. Failed
+ * queries are not cached. Cached information is stored in {@link ClassValue
+ * class values}, so it doesn't prevent unloading of analyzed classes.
+ * <p>
+ * Cache usage statistics are available through {@link #stats()}.
  * 
  * @author maciej@chalapuk.pl (Maciej Chałapuk)
  */
 public class CachedTypeInfoFactory implements TypeInfoFactory {
-    private final Map<Class<?>, RawTypeInfo<?>> mRawTypeCache = Maps.newHashMap();
-    private final Map<Constructor<?>, ConstructorInfo<?>> mConstructorCache = Maps.newHashMap();
+    private final ClassValue<Entry<RawTypeInfo<?>>> mRawTypeCache =
+            new ClassValue<Entry<RawTypeInfo<?>>>() {
+
+                @Override
+                protected Entry<RawTypeInfo<?>> computeValue(Class<?> type) {
+                    return new Entry<>();
+                }
+            };
+    private final ClassValue<ConstructorEntries> mConstructorCache =
+            new ClassValue<ConstructorEntries>() {
+
+                @Override
+                protected ConstructorEntries computeValue(Class<?> type) {
+                    return new ConstructorEntries();
+                }
+            };
+
+    private final AtomicLong mHitCount = new AtomicLong();
+    private final AtomicLong mMissCount = new AtomicLong();
+    private final AtomicLong mLoadSuccessCount = new AtomicLong();
+    private final AtomicLong mLoadExceptionCount = new AtomicLong();
+    private final AtomicLong mTotalLoadTime = new AtomicLong();
 
     private final TypeInfoFactory mSource;
 
@@ -45,20 +73,105 @@ public class CachedTypeInfoFactory implements TypeInfoFactory {
     }
 
     @Override
-    public <T> RawTypeInfo<T> getRawTypeInfo(Class<? super T> rawType) throws TypeInfoException {
-        RawTypeInfo<T> info = (RawTypeInfo<T>) mRawTypeCache.get(rawType);
-        if (info == null) {
-            info = mSource.getRawTypeInfo(rawType);
+    public <T> RawTypeInfo<T> getRawTypeInfo(final Class<? super T> rawType)
+            throws TypeInfoException {
+        Entry<RawTypeInfo<?>> entry = mRawTypeCache.get(rawType);
+        RawTypeInfo<T> info = (RawTypeInfo<T>) entry.mValue;
+        if (info != null) {
+            mHitCount.incrementAndGet();
+            return info;
+        }
+
+        synchronized (entry) {
+            info = (RawTypeInfo<T>) entry.mValue;
+            if (info != null) {
+                // loaded by another thread while this one was waiting
+                mHitCount.incrementAndGet();
+                return info;
+            }
+
+            mMissCount.incrementAndGet();
+            long start = System.nanoTime();
+            try {
+                info = mSource.getRawTypeInfo(rawType);
+            } catch (TypeInfoException | RuntimeException | Error e) {
+                recordLoadException(start);
+                throw e;
+            }
+            recordLoadSuccess(start);
+            entry.mValue = info;
+            return info;
         }
-        return info;
     }
 
     @Override
     public <T> ConstructorInfo<T> getConstructorInfo(Constructor<T> constructor) {
-        ConstructorInfo<T> info = (ConstructorInfo<T>) mConstructorCache.get(constructor);
-        if (info == null) {
-            info = mSource.getConstructorInfo(constructor);
+        ConstructorEntries constructors = mConstructorCache.get(constructor.getDeclaringClass());
+        Entry<ConstructorInfo<?>> entry = constructors.get(constructor);
+        if (entry == null) {
+            Entry<ConstructorInfo<?>> newEntry = new Entry<>();
+            entry = constructors.putIfAbsent(constructor, newEntry);
+            if (entry == null) {
+                entry = newEntry;
+            }
+        }
+
+        ConstructorInfo<T> info = (ConstructorInfo<T>) entry.mValue;
+        if (info != null) {
+            mHitCount.incrementAndGet();
+            return info;
+        }
+
+        synchronized (entry) {
+            info = (ConstructorInfo<T>) entry.mValue;
+            if (info != null) {
+                mHitCount.incrementAndGet();
+                return info;
+            }
+
+            mMissCount.incrementAndGet();
+            long start = System.nanoTime();
+            try {
+                info = mSource.getConstructorInfo(constructor);
+            } catch (RuntimeException | Error e) {
+                recordLoadException(start);
+                throw e;
+            }
+            recordLoadSuccess(start);
+            entry.mValue = info;
+            return info;
         }
-        return info;
+    }
+
+    /**
+     * Returns a snapshot of cache usage statistics. Each query is counted
+     * either as a hit or as a miss. Source factory is called on each miss and
+     * its execution time is added to total load time. Eviction count is
+     * always zero.
+     * 
+     * @return statistics of all queries made to this factory so far
+     */
+    public CacheStats stats() {
+        return new CacheStats(mHitCount.get(), mMissCount.get(), mLoadSuccessCount.get(),
+                mLoadExceptionCount.get(), mTotalLoadTime.get(), 0L);
+    }
+
+    private void recordLoadSuccess(long start) {
+        mLoadSuccessCount.incrementAndGet();
+        mTotalLoadTime.addAndGet(System.nanoTime() - start);
+    }
+
+    private void recordLoadException(long start) {
+        mLoadExceptionCount.incrementAndGet();
+        mTotalLoadTime.addAndGet(System.nanoTime() - start);
+    }
+
+    private static final class Entry<V> {
+        volatile V mValue;
+    }
+
+    @SuppressWarnings("serial")
+    private static final class ConstructorEntries
+            extends ConcurrentHashMap<Constructor<?>, Entry<ConstructorInfo<?>>> {
     }
 }
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice.defaults;
+
+import pl.chalapuk.muice.Injector;
+import pl.chalapuk.muice.Key;
+
+/**
+ * Resolves dependency keys of linked producers to providers.
+ * 
+ * @see pl.chalapuk.muice.customization.LinkableProducer
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+final class LinkedDependencies {
+
+    private LinkedDependencies() {
+        // static only
+    }
+
+    /**
+     * @return provider of instances that {@code injector.getInstance(key)}
+     *         would return
+     */
+    static javax.inject.Provider<?> provider(Injector injector, Key<?> key) {
+        if (key.getRawType() == javax.inject.Provider.class) {
+            final javax.inject.Provider<?> provider = injector.getProvider(
+                    Key.get(key.getTypeLiteral().getTypeArgument(0), key.getQualifier()));
+            return new javax.inject.Provider<Object>() {
+
+                @Override
+                public Object get() {
+                    return provider;
+                }
+            };
+        }
+        return injector.getProvider(key);
+    }
+
+    /**
+     * @return providers of all given keys
+     */
+    static javax.inject.Provider<?>[] providers(Injector injector, Key<?>[] keys) {
+        javax.inject.Provider<?>[] providers = new javax.inject.Provider<?>[keys.length];
+        for (int i = 0; i < keys.length; ++i) {
+            providers[i] = provider(injector, keys[i]);
+        }
+        return providers;
+    }
+}
@@ -0,0 +1,410 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pl.chalapuk.muice.defaults;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+import pl.chalapuk.muice.InjectionError;
+import pl.chalapuk.muice.Injector;
+import pl.chalapuk.muice.Key;
+import pl.chalapuk.muice.Producer;
+import pl.chalapuk.muice.customization.ConstructorInfo;
+import pl.chalapuk.muice.customization.LinkableProducer;
+import pl.chalapuk.muice.customization.ProducerFactory;
+
+/**
+ * Creates producers that invoke desired constructor through a
+ * {@link MethodHandle}.
+ * <p>
+ * Constructor is converted to a method handle only once, when creating the
+ * producer. Constructors with up to {@value #MAX_SPECIALIZED_ARITY} parameters
+ * are invoked by producers specialized for their arity, which pass arguments
+ * directly (no argument array is allocated per instantiation). Producers of
+ * constructors with more parameters spread an argument array. Created
+ * producers are {@linkplain LinkableProducer linkable}.
+ * <p>
+ * Producer creation is delegated to fallback factory (reflection-based by
+ * default) for constructors that cannot be converted to method handles.
+ * 
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+public class MethodHandleProducerFactory implements ProducerFactory {
+    public static final int MAX_SPECIALIZED_ARITY = 4;
+
+    private final ProducerFactory mFallback;
+
+    public MethodHandleProducerFactory() {
+        this(new ReflectionProducerFactory());
+    }
+
+    public MethodHandleProducerFactory(ProducerFactory fallback) {
+        mFallback = checkNotNull(fallback, "fallback");
+    }
+
+    @Override
+    public <T> Producer<T> createProducer(ConstructorInfo<T> info) {
+        MethodHandle handle;
+        try {
+            handle = MethodHandles.lookup().unreflectConstructor(info.getConstructor());
+        } catch (IllegalAccessException e) {
+            return mFallback.createProducer(info);
+        }
+
+        Key<?>[] keys = info.getParameterKeys();
+        if (keys.length > MAX_SPECIALIZED_ARITY) {
+            return new SpreadingProducer<>(info,
+                    handle.asSpreader(Object[].class, keys.length)
+                            .asType(MethodType.methodType(Object.class, Object[].class)));
+        }
+
+        handle = handle.asType(MethodType.genericMethodType(keys.length));
+        switch (keys.length) {
+            case 0:
+                return new Producer0<>(info, handle);
+            case 1:
+                return new Producer1<>(info, handle);
+            case 2:
+                return new Producer2<>(info, handle);
+            case 3:
+                return new Producer3<>(info, handle);
+            default:
+                return new Producer4<>(info, handle);
+        }
+    }
+
+    private static abstract class HandleProducer<T> implements LinkableProducer<T> {
+        protected final MethodHandle mHandle;
+        private final ConstructorInfo<T> mInfo;
+
+        protected HandleProducer(ConstructorInfo<T> info, MethodHandle handle) {
+            mInfo = info;
+            mHandle = handle;
+        }
+
+        protected Key<?> key(int index) {
+            return mInfo.getParameterKeys()[index];
+        }
+
+        protected javax.inject.Provider<?> provider(Injector injector, int index) {
+            return LinkedDependencies.provider(injector, key(index));
+        }
+
+        protected InjectionError constructorError(Throwable cause) {
+            return new InjectionError("exception when calling constructor "
+                    + mInfo.getConstructor(), cause);
+        }
+    }
+
+    private static final class Producer0<T> extends HandleProducer<T> {
+
+        public Producer0(ConstructorInfo<T> info, MethodHandle handle) {
+            super(info, handle);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T newInstance(Injector injector) {
+            try {
+                return (T) (Object) mHandle.invokeExact();
+            } catch (Throwable t) {
+                throw constructorError(t);
+            }
+        }
+
+        @Override
+        public Producer<T> link(Injector injector) {
+            return this;
+        }
+    }
+
+    private static final class Producer1<T> extends HandleProducer<T> {
+        private final Key<?> mKey0;
+
+        public Producer1(ConstructorInfo<T> info, MethodHandle handle) {
+            super(info, handle);
+            mKey0 = key(0);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T newInstance(Injector injector) {
+            Object arg0 = injector.getInstance(mKey0);
+            try {
+                return (T) (Object) mHandle.invokeExact(arg0);
+            } catch (Throwable t) {
+                throw constructorError(t);
+            }
+        }
+
+        @Override
+        public Producer<T> link(Injector injector) {
+            return new Linked1<>(this, injector);
+        }
+    }
+
+    private static final class Linked1<T> implements Producer<T> {
+        private final Producer1<T> mProducer;
+        private final javax.inject.Provider<?> mProvider0;
+
+        public Linked1(Producer1<T> producer, Injector injector) {
+            mProducer = producer;
+            mProvider0 = producer.provider(injector, 0);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T newInstance(Injector injector) {
+            Object arg0 = mProvider0.get();
+            try {
+                return (T) (Object) mProducer.mHandle.invokeExact(arg0);
+            } catch (Throwable t) {
+                throw mProducer.constructorError(t);
+            }
+        }
+    }
+
+    private static final class Producer2<T> extends HandleProducer<T> {
+        private final Key<?> mKey0;
+        private final Key<?> mKey1;
+
+        public Producer2(ConstructorInfo<T> info, MethodHandle handle) {
+            super(info, handle);
+            mKey0 = key(0);
+            mKey1 = key(1);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T newInstance(Injector injector) {
+            Object arg0 = injector.getInstance(mKey0);
+            Object arg1 = injector.getInstance(mKey1);
+            try {
+                return (T) (Object) mHandle.invokeExact(arg0, arg1);
+            } catch (Throwable t) {
+                throw constructorError(t);
+            }
+        }
+
+        @Override
+        public Producer<T> link(Injector injector) {
+            return new Linked2<>(this, injector);
+        }
+    }
+
+    private static final class Linked2<T> implements Producer<T> {
+        private final Producer2<T> mProducer;
+        private final javax.inject.Provider<?> mProvider0;
+        private final javax.inject.Provider<?> mProvider1;
+
+        public Linked2(Producer2<T> producer, Injector injector) {
+            mProducer = producer;
+            mProvider0 = producer.provider(injector, 0);
+            mProvider1 = producer.provider(injector, 1);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T newInstance(Injector injector) {
+            Object arg0 = mProvider0.get();
+            Object arg1 = mProvider1.get();
+            try {
+                return (T) (Object) mProducer.mHandle.invokeExact(arg0, arg1);
+            } catch (Throwable t) {
+                throw mProducer.constructorError(t);
+            }
+        }
+    }
+
+    private static final class Producer3<T> extends HandleProducer<T> {
+        private final Key<?> mKey0;
+        private final Key<?> mKey1;
+        private final Key<?> mKey2;
+
+        public Producer3(ConstructorInfo<T> info, MethodHandle handle) {
+            super(info, handle);
+            mKey0 = key(0);
+            mKey1 = key(1);
+            mKey2 = key(2);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T newInstance(Injector injector) {
+            Object arg0 = injector.getInstance(mKey0);
+            Object arg1 = injector.getInstance(mKey1);
+            Object arg2 = injector.getInstance(mKey2);
+            try {
+                return (T) (Object) mHandle.invokeExact(arg0, arg1, arg2);
+            } catch (Throwable t) {
+                throw constructorError(t);
+            }
+        }
+
+        @Override
+        public Producer<T> link(Injector injector) {
+            return new Linked3<>(this, injector);
+        }
+    }
+
+    private static final class Linked3<T> implements Producer<T> {
+        private final Producer3<T> mProducer;
+        private final javax.inject.Provider<?> mProvider0;
+        private final javax.inject.Provider<?> mProvider1;
+        private final javax.inject.Provider<?> mProvider2;
+
+        public Linked3(Producer3<T> producer, Injector injector) {
+            mProducer = producer;
+            mProvider0 = producer.provider(injector, 0);
+            mProvider1 = producer.provider(injector, 1);
+            mProvider2 = producer.provider(injector, 2);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T newInstance(Injector injector) {
+            Object arg0 = mProvider0.get();
+            Object arg1 = mProvider1.get();
+            Object arg2 = mProvider2.get();
+            try {
+                return (T) (Object) mProducer.mHandle.invokeExact(arg0, arg1, arg2);
+            } catch (Throwable t) {
+                throw mProducer.constructorError(t);
+            }
+        }
+    }
+
+    private static final class Producer4<T> extends HandleProducer<T> {
+        private final Key<?> mKey0;
+        private final Key<?> mKey1;
+        private final Key<?> mKey2;
+        private final Key<?> mKey3;
+
+        public Producer4(ConstructorInfo<T> info, MethodHandle handle) {
+            super(info, handle);
+            mKey0 = key(0);
+            mKey1 = key(1);
+            mKey2 = key(2);
+            mKey3 = key(3);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T newInstance(Injector injector) {
+            Object arg0 = injector.getInstance(mKey0);
+            Object arg1 = injector.getInstance(mKey1);
+            Object arg2 = injector.getInstance(mKey2);
+            Object arg3 = injector.getInstance(mKey3);
+            try {
+                return (T) (Object) mHandle.invokeExact(arg0, arg1, arg2, arg3);
+            } catch (Throwable t) {
+                throw constructorError(t);
+            }
+        }
+
+        @Override
+        public Producer<T> link(Injector injector) {
+            return new Linked4<>(this, injector);
+        }
+    }
+
+    private static final class Linked4<T> implements Producer<T> {
+        private final Producer4<T> mProducer;
+        private final javax.inject.Provider<?> mProvider0;
+        private final javax.inject.Provider<?> mProvider1;
+        private final javax.inject.Provider<?> mProvider2;
+        private final javax.inject.Provider<?> mProvider3;
+
+        public Linked4(Producer4<T> producer, Injector injector) {
+            mProducer = producer;
+            mProvider0 = producer.provider(injector, 0);
+            mProvider1 = producer.provider(injector, 1);
+            mProvider2 = producer.provider(injector, 2);
+            mProvider3 = producer.provider(injector, 3);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T newInstance(Injector injector) {
+            Object arg0 = mProvider0.get();
+            Object arg1 = mProvider1.get();
+            Object arg2 = mProvider2.get();
+            Object arg3 = mProvider3.get();
+            try {
+                return (T) (Object) mProducer.mHandle.invokeExact(arg0, arg1, arg2, arg3);
+            } catch (Throwable t) {
+                throw mProducer.constructorError(t);
+            }
+        }
+    }
+
+    private static final class SpreadingProducer<T> extends HandleProducer<T> {
+        private final Key<?>[] mKeys;
+
+        public SpreadingProducer(ConstructorInfo<T> info, MethodHandle handle) {
+            super(info, handle);
+            mKeys = info.getParameterKeys();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T newInstance(Injector injector) {
+            Object[] args = new Object[mKeys.length];
+            for (int i = 0; i < mKeys.length; ++i) {
+                args[i] = injector.getInstance(mKeys[i]);
+            }
+            try {
+                return (T) (Object) mHandle.invokeExact(args);
+            } catch (Throwable t) {
+                throw constructorError(t);
+            }
+        }
+
+        @Override
+        public Producer<T> link(Injector injector) {
+            return new LinkedSpreading<>(this, injector);
+        }
+    }
+
+    private static final class LinkedSpreading<T> implements Producer<T> {
+        private final SpreadingProducer<T> mProducer;
+        private final javax.inject.Provider<?>[] mProviders;
+
+        public LinkedSpreading(SpreadingProducer<T> producer, Injector injector) {
+            mProducer = producer;
+            mProviders = LinkedDependencies.providers(injector, producer.mKeys);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T newInstance(Injector injector) {
+            Object[] args = new Object[mProviders.length];
+            for (int i = 0; i < mProviders.length; ++i) {
+                args[i] = mProviders[i].get();
+            }
+            try {
+                return (T) (Object) mProducer.mHandle.invokeExact(args);
+            } catch (Throwable t) {
+                throw mProducer.constructorError(t);
+            }
+        }
+    }
+}
@@ -0,0 +1,496 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice.defaults;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.CodeSource;
+import java.security.ProtectionDomain;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.CRC32;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.MapMaker;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Primitives;
+
+import pl.chalapuk.muice.Key;
+import pl.chalapuk.muice.TypeLiteral;
+import pl.chalapuk.muice.customization.ConstructorInfo;
+import pl.chalapuk.muice.customization.RawTypeInfo;
+import pl.chalapuk.muice.customization.TypeInfoException;
+import pl.chalapuk.muice.customization.TypeInfoFactory;
+
+/**
+ * Wrapper for {@link TypeInfoFactory} that stores type information in a file,
+ * so it can be reused by next runs of the application without reflection.
+ * <p>
+ * Information is stored for each class together with fingerprint of class
+ * files it was read from: the class itself, its superclasses (which may
+ * declare inherited scope annotations) and its scope and qualifier annotation
+ * types. Fingerprint of a class is checksum of content of the jar containing
+ * it (computed once per jar) or of its class file (when loaded from a
+ * directory). Sizes and modification times are not used, as some build tools
+ * give the same modification time to all files. When any of them changes,
+ * stored information is ignored and source factory is used instead. Missing,
+ * corrupted or outdated file is never an error - source factory is used for
+ * all classes that can not be read from it.
+ * <p>
+ * Decoded information doesn't contain {@link Constructor} instance; it is
+ * looked up only when it is needed (e.g. by reflective producers). Classes of
+ * stored type names are resolved once per class loader.
+ * <p>
+ * File is memory-mapped when the factory is created. Information queried from
+ * source factory is written when {@link #save()} is called (typically after
+ * creation of all injectors). It is intended to wrap
+ * {@link ReflectionTypeInfoFactory}, and it should be wrapped by
+ * {@link CachedTypeInfoFactory}, as it doesn't cache decoded information in
+ * memory:
+ * 
+ * <pre>
+ * PersistentTypeInfoFactory persistent = new PersistentTypeInfoFactory(
+ *         new ReflectionTypeInfoFactory(), new File("muice-types.bin"));
+ * Muice muice = Muice.newMuice()
+ *         .withTypeInfoFactory(new CachedTypeInfoFactory(persistent))
+ *         .build();
+ * . . .
+ * persistent.save();
+ * </pre>
+ * 
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+public class PersistentTypeInfoFactory implements TypeInfoFactory {
+    private static final int MAGIC = 0x4D554943;
+    private static final int VERSION = 2;
+    private static final long NO_FINGERPRINT = -1L;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final Map<String, Class<?>> sPrimitives;
+    static {
+        ImmutableMap.Builder<String, Class<?>> primitives = ImmutableMap.builder();
+        for (Class<?> type : Primitives.allPrimitiveTypes()) {
+            primitives.put(type.getName(), type);
+        }
+        sPrimitives = primitives.build();
+    }
+
+    private final TypeInfoFactory mSource;
+    private final File mFile;
+
+    private final ByteBuffer mMapped;
+    private final Map<String, Integer> mOffsets;
+    private final ConcurrentMap<String, byte[]> mRecorded = new ConcurrentHashMap<>();
+
+    // weak keys, so that class loaders and jars can be unloaded
+    private final ConcurrentMap<ProtectionDomain, Long> mJarFingerprints =
+            new MapMaker().weakKeys().makeMap();
+    private final ConcurrentMap<Class<?>, Long> mClassFingerprints =
+            new MapMaker().weakKeys().makeMap();
+    private final ConcurrentMap<ClassLoader, ConcurrentMap<String, Class<?>>> mResolved =
+            new MapMaker().weakKeys().makeMap();
+
+    /**
+     * @param source factory used for classes not found in the file
+     * @param file file with stored type information; doesn't need to exist
+     */
+    public PersistentTypeInfoFactory(TypeInfoFactory source, File file) {
+        mSource = checkNotNull(source, "source");
+        mFile = checkNotNull(file, "file");
+
+        ByteBuffer mapped = null;
+        Map<String, Integer> offsets = Collections.emptyMap();
+        try {
+            mapped = map(file);
+            offsets = readIndex(mapped);
+        } catch (IOException | RuntimeException e) {
+            // no cached information, everything will be read by source factory
+            mapped = null;
+        }
+        mMapped = mapped;
+        mOffsets = offsets;
+    }
+
+    @Override
+    public <T> RawTypeInfo<T> getRawTypeInfo(Class<? super T> rawType) throws TypeInfoException {
+        RawTypeInfo<T> stored = readStored(rawType);
+        if (stored != null) {
+            return stored;
+        }
+
+        RawTypeInfo<T> info = mSource.getRawTypeInfo(rawType);
+        // subclasses carry more than can be stored (e.g. generated producers)
+        if (info.getDefaultInjectionPoint().getClass() == ConstructorInfo.class) {
+            long fingerprint = fingerprintOf(rawType, info);
+            if (fingerprint != NO_FINGERPRINT) {
+                mRecorded.put(rawType.getName(), encode(rawType.getName(), fingerprint, info));
+            }
+        }
+        return info;
+    }
+
+    @Override
+    public <T> ConstructorInfo<T> getConstructorInfo(Constructor<T> constructor) {
+        return mSource.getConstructorInfo(constructor);
+    }
+
+    /**
+     * Writes information about all classes read from the file or queried
+     * from source factory since creation of this object. File is replaced
+     * atomically, so concurrently started applications never see partially
+     * written file.
+     * 
+     * @throws IOException if file could not be written
+     */
+    public void save() throws IOException {
+        Map<String, byte[]> records = Maps.newTreeMap();
+        if (mMapped != null) {
+            for (Map.Entry<String, Integer> entry : mOffsets.entrySet()) {
+                ByteBuffer buffer = mMapped.duplicate();
+                buffer.position(entry.getValue());
+                byte[] record = new byte[buffer.getInt()];
+                buffer.get(record);
+                records.put(entry.getKey(), record);
+            }
+        }
+        records.putAll(mRecorded);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeInt(records.size());
+        for (byte[] record : records.values()) {
+            output.writeInt(record.length);
+            output.write(record);
+        }
+        output.flush();
+
+        Path target = mFile.toPath().toAbsolutePath();
+        Path temporary = Files.createTempFile(target.getParent(), mFile.getName(), ".tmp");
+        try {
+            Files.write(temporary, bytes.toByteArray());
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    @Nullable
+    private <T> RawTypeInfo<T> readStored(Class<? super T> rawType) {
+        Integer offset = mOffsets.get(rawType.getName());
+        if (offset == null) {
+            return null;
+        }
+
+        try {
+            ByteBuffer buffer = mMapped.duplicate();
+            buffer.position(offset + 4);
+            readString(buffer);
+            long fingerprint = buffer.getLong();
+            RawTypeInfo<T> info = decode(rawType, buffer);
+            // annotation types are known only after decoding
+            if (fingerprint == NO_FINGERPRINT || fingerprint != fingerprintOf(rawType, info)) {
+                return null;
+            }
+            return info;
+        } catch (ClassNotFoundException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private <T> RawTypeInfo<T> decode(Class<? super T> rawType, ByteBuffer buffer)
+            throws ClassNotFoundException {
+        ClassLoader loader = rawType.getClassLoader();
+
+        boolean injectAnnotated = buffer.get() != 0;
+        Key<?>[] parameterKeys = new Key<?>[buffer.getShort()];
+        for (int i = 0; i < parameterKeys.length; ++i) {
+            TypeLiteral<?> literal = readTypeLiteral(buffer, loader);
+            parameterKeys[i] = Key.get(literal, readAnnotationType(buffer, loader));
+        }
+        Class<? extends Annotation> scopeAnnotation = readAnnotationType(buffer, loader);
+
+        return new RawTypeInfo<T>(new StoredConstructorInfo<T>(rawType, parameterKeys,
+                injectAnnotated), scopeAnnotation);
+    }
+
+    private static byte[] encode(String className, long fingerprint, RawTypeInfo<?> info) {
+        ConstructorInfo<?> constructorInfo = info.getDefaultInjectionPoint();
+        Key<?>[] parameterKeys = constructorInfo.getParameterKeys();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        try {
+            writeString(output, className);
+            output.writeLong(fingerprint);
+            output.writeByte(constructorInfo.isInjectAnnotated() ? 1 : 0);
+            output.writeShort(parameterKeys.length);
+            for (Key<?> key : parameterKeys) {
+                writeTypeLiteral(output, key.getTypeLiteral());
+                writeString(output, nameOf(key.getQualifier()));
+            }
+            writeString(output, nameOf(info.getScopeAnnotation()));
+            output.flush();
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeTypeLiteral(DataOutputStream output, TypeLiteral<?> literal)
+            throws IOException {
+        writeString(output, literal.getRawType().getName());
+        output.writeByte(literal.getTypeArgumentCount());
+        for (int i = 0; i < literal.getTypeArgumentCount(); ++i) {
+            writeTypeLiteral(output, literal.getTypeArgument(i));
+        }
+    }
+
+    private TypeLiteral<?> readTypeLiteral(ByteBuffer buffer, @Nullable ClassLoader loader)
+            throws ClassNotFoundException {
+        Class<?> rawType = classForName(readString(buffer), loader);
+        TypeLiteral<?>[] arguments = new TypeLiteral<?>[buffer.get()];
+        for (int i = 0; i < arguments.length; ++i) {
+            arguments[i] = readTypeLiteral(buffer, loader);
+        }
+        return arguments.length == 0 ? TypeLiteral.get(rawType) : TypeLiteral.get(rawType, arguments);
+    }
+
+    @Nullable
+    private Class<? extends Annotation> readAnnotationType(ByteBuffer buffer,
+            @Nullable ClassLoader loader) throws ClassNotFoundException {
+        String name = readString(buffer);
+        if (name.isEmpty()) {
+            return null;
+        }
+        return classForName(name, loader).asSubclass(Annotation.class);
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeShort(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String nameOf(@Nullable Class<?> type) {
+        return type == null ? "" : type.getName();
+    }
+
+    private Class<?> classForName(String name, @Nullable ClassLoader loader)
+            throws ClassNotFoundException {
+        Class<?> primitive = sPrimitives.get(name);
+        if (primitive != null) {
+            return primitive;
+        }
+        if (loader == null) {
+            return Class.forName(name, false, null);
+        }
+
+        ConcurrentMap<String, Class<?>> resolved = mResolved.get(loader);
+        if (resolved == null) {
+            // weak values, so that resolved classes don't keep their loader alive
+            resolved = new MapMaker().weakValues().makeMap();
+            ConcurrentMap<String, Class<?>> previous = mResolved.putIfAbsent(loader, resolved);
+            if (previous != null) {
+                resolved = previous;
+            }
+        }
+        Class<?> type = resolved.get(name);
+        if (type == null) {
+            type = Class.forName(name, false, loader);
+            resolved.put(name, type);
+        }
+        return type;
+    }
+
+    /**
+     * @return fingerprint of all class files that given information was read
+     *         from or {@link #NO_FINGERPRINT} if any of them is unknown
+     */
+    private long fingerprintOf(Class<?> rawType, RawTypeInfo<?> info) {
+        long fingerprint = 0L;
+        for (Class<?> type = rawType; type != null; type = type.getSuperclass()) {
+            fingerprint = combine(fingerprint, fingerprintOf(type));
+        }
+        if (info.getScopeAnnotation() != null) {
+            fingerprint = combine(fingerprint, fingerprintOf(info.getScopeAnnotation()));
+        }
+        for (Key<?> key : info.getDefaultInjectionPoint().getParameterKeys()) {
+            if (key.getQualifier() != null) {
+                fingerprint = combine(fingerprint, fingerprintOf(key.getQualifier()));
+            }
+        }
+        return fingerprint;
+    }
+
+    private static long combine(long fingerprint, long next) {
+        if (fingerprint == NO_FINGERPRINT || next == NO_FINGERPRINT) {
+            return NO_FINGERPRINT;
+        }
+        long combined = fingerprint * 31 + next;
+        return combined == NO_FINGERPRINT ? 0L : combined;
+    }
+
+    private long fingerprintOf(Class<?> type) {
+        if (type.getClassLoader() == null) {
+            // bootstrap classes change only together with the JVM
+            return 0L;
+        }
+        ProtectionDomain domain = type.getProtectionDomain();
+        Long cached = mJarFingerprints.get(domain);
+        if (cached == null) {
+            cached = mClassFingerprints.get(type);
+        }
+        if (cached != null) {
+            return cached;
+        }
+
+        CodeSource source = domain.getCodeSource();
+        URL location = source != null ? source.getLocation() : null;
+        if (location == null) {
+            return NO_FINGERPRINT;
+        }
+        if (location.getProtocol().equals("jrt")) {
+            // platform modules change only together with the JVM
+            return 0L;
+        }
+        if (!location.getProtocol().equals("file")) {
+            return NO_FINGERPRINT;
+        }
+
+        File entry;
+        try {
+            entry = new File(location.toURI());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return NO_FINGERPRINT;
+        }
+        if (entry.isDirectory()) {
+            // class files in a directory change independently of each other
+            long fingerprint = checksumOf(new File(entry,
+                    type.getName().replace('.', File.separatorChar) + ".class"));
+            mClassFingerprints.put(type, fingerprint);
+            return fingerprint;
+        }
+        long fingerprint = checksumOf(entry);
+        mJarFingerprints.put(domain, fingerprint);
+        return fingerprint;
+    }
+
+    private static long checksumOf(File file) {
+        CRC32 checksum = new CRC32();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream input = new FileInputStream(file)) {
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                checksum.update(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            return NO_FINGERPRINT;
+        }
+        return checksum.getValue();
+    }
+
+    private static ByteBuffer map(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private static Map<String, Integer> readIndex(ByteBuffer mapped) throws IOException {
+        ByteBuffer buffer = mapped.duplicate();
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException("not a type information file");
+        }
+
+        int count = buffer.getInt();
+        Map<String, Integer> offsets = Maps.newHashMapWithExpectedSize(count);
+        for (int i = 0; i < count; ++i) {
+            int offset = buffer.position();
+            int length = buffer.getInt();
+            offsets.put(readString(buffer), offset);
+            buffer.position(offset + 4 + length);
+        }
+        return offsets;
+    }
+
+    /**
+     * Constructor info decoded from the file. Types of constructor parameters
+     * are raw types of parameter keys, so the constructor is looked up only
+     * when it is really needed.
+     */
+    private static final class StoredConstructorInfo<T> extends ConstructorInfo<T> {
+        private final Class<? super T> mDeclaringClass;
+
+        private Constructor<? super T> mConstructor;
+
+        StoredConstructorInfo(Class<? super T> declaringClass, Key<?>[] parameterKeys,
+                boolean injectAnnotated) {
+            super(parameterKeys, injectAnnotated);
+            mDeclaringClass = declaringClass;
+        }
+
+        @Override
+        public Constructor<? super T> getConstructor() {
+            Constructor<? super T> constructor = mConstructor;
+            if (constructor == null) {
+                Key<?>[] parameterKeys = getParameterKeys();
+                Class<?>[] parameterTypes = new Class<?>[parameterKeys.length];
+                for (int i = 0; i < parameterTypes.length; ++i) {
+                    parameterTypes[i] = parameterKeys[i].getRawType();
+                }
+                try {
+                    constructor = mDeclaringClass.getDeclaredConstructor(parameterTypes);
+                } catch (NoSuchMethodException e) {
+                    throw new IllegalStateException("stored type information is out of date with "
+                            + mDeclaringClass.getName(), e);
+                }
+                constructor.setAccessible(true);
+                mConstructor = constructor;
+            }
+            return constructor;
+        }
+    }
+}
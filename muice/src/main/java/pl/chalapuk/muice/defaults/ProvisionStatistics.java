@@ -0,0 +1,377 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice.defaults;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.annotation.Nullable;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+
+import pl.chalapuk.muice.Binding;
+import pl.chalapuk.muice.Key;
+import pl.chalapuk.muice.customization.ProvisionListener;
+
+/**
+ * {@link ProvisionListener} that gathers per-key provisioning statistics:
+ * number of requests, number of created instances (and thus number of
+ * requests served by scopes, e.g. singleton hits), number of failures and
+ * histogram of provisioning latency.
+ * <p>
+ * Statistics are gathered only for bindings accepted by given predicate.
+ * Providers of other bindings are not decorated and don't pay any cost of
+ * listening. Statistics of the same key are shared by all injectors created
+ * with the same listener.
+ * <p>
+ * Statistics of each key may be exposed as an MXBean named
+ * {@code pl.chalapuk.muice:type=ProvisionStatistics,name=<name>,key=<key>}
+ * (see {@link #registerMBeans(MBeanServer)}).
+ * 
+ * <pre>
+ * ProvisionStatistics statistics = new ProvisionStatistics();
+ * statistics.registerMBeans(ManagementFactory.getPlatformMBeanServer());
+ * Muice muice = Muice.newMuice().withProvisionListener(statistics).build();
+ * </pre>
+ * 
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+public class ProvisionStatistics implements ProvisionListener {
+    private static final String DOMAIN = "pl.chalapuk.muice";
+
+    private final String mName;
+    private final Predicate<? super Binding<?>> mSelector;
+    private final ConcurrentMap<Key<?>, KeyStatistics> mStatistics = new ConcurrentHashMap<>();
+
+    private MBeanServer mServer = null;
+
+    /**
+     * Creates statistics of all bindings named {@code "default"}.
+     */
+    public ProvisionStatistics() {
+        this("default", Predicates.alwaysTrue());
+    }
+
+    /**
+     * @param name name used in names of registered MBeans
+     * @param selector predicate selecting listened bindings
+     */
+    public ProvisionStatistics(String name, Predicate<? super Binding<?>> selector) {
+        mName = checkNotNull(name, "name");
+        mSelector = checkNotNull(selector, "selector");
+    }
+
+    @Override
+    public boolean isListening(Binding<?> binding) {
+        if (!mSelector.apply(binding)) {
+            return false;
+        }
+        Key<?> key = binding.getKey();
+        KeyStatistics created = new KeyStatistics(key, binding.getScope().toString());
+        if (mStatistics.putIfAbsent(key, created) == null) {
+            registerMBean(created);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void onRequest(Key<?> key) {
+        mStatistics.get(key).mRequestCount.incrementAndGet();
+    }
+
+    @Override
+    public void beforeProvision(Key<?> key) {
+        // not needed
+    }
+
+    @Override
+    public void afterProvision(Key<?> key, long nanos, @Nullable Throwable failure) {
+        KeyStatistics statistics = mStatistics.get(key);
+        if (failure != null) {
+            statistics.mFailureCount.incrementAndGet();
+        }
+        statistics.mProvisionCount.incrementAndGet();
+        statistics.mTotalNanos.addAndGet(nanos);
+        statistics.mHistogram.incrementAndGet(bucket(nanos));
+    }
+
+    /**
+     * @return statistics of given key or {@code null} if the key is not
+     *         listened
+     */
+    public KeyStatistics getStatistics(Key<?> key) {
+        return mStatistics.get(checkNotNull(key, "key"));
+    }
+
+    /**
+     * @return statistics of all listened keys sorted by number of provisions
+     *         (most provisioned first)
+     */
+    public List<KeyStatistics> getAllStatistics() {
+        List<KeyStatistics> all = new ArrayList<>(mStatistics.values());
+        Collections.sort(all, new Comparator<KeyStatistics>() {
+
+            @Override
+            public int compare(KeyStatistics lhs, KeyStatistics rhs) {
+                return Long.compare(rhs.getProvisionCount(), lhs.getProvisionCount());
+            }
+        });
+        return all;
+    }
+
+    /**
+     * Registers MXBeans of all listened keys in given server. Keys listened
+     * after this call are registered when their bindings are created.
+     * 
+     * @throws JMException if registration failed
+     * @throws IllegalStateException if beans are already registered
+     */
+    public synchronized void registerMBeans(MBeanServer server) throws JMException {
+        checkState(mServer == null, "mbeans already registered");
+        mServer = checkNotNull(server, "server");
+        for (KeyStatistics statistics : mStatistics.values()) {
+            server.registerMBean(statistics, objectName(statistics.mKey));
+        }
+    }
+
+    /**
+     * Unregisters all MXBeans registered by this object.
+     * 
+     * @throws JMException if unregistration failed
+     */
+    public synchronized void unregisterMBeans() throws JMException {
+        if (mServer == null) {
+            return;
+        }
+        for (Key<?> key : mStatistics.keySet()) {
+            ObjectName name = objectName(key);
+            if (mServer.isRegistered(name)) {
+                mServer.unregisterMBean(name);
+            }
+        }
+        mServer = null;
+    }
+
+    private synchronized void registerMBean(KeyStatistics statistics) {
+        if (mServer == null) {
+            return;
+        }
+        try {
+            mServer.registerMBean(statistics, objectName(statistics.mKey));
+        } catch (JMException e) {
+            throw new IllegalStateException("could not register statistics of "
+                    + statistics.mKey, e);
+        }
+    }
+
+    private ObjectName objectName(Key<?> key) throws JMException {
+        return new ObjectName(DOMAIN + ":type=ProvisionStatistics"
+                + ",name=" + ObjectName.quote(mName)
+                + ",key=" + ObjectName.quote(key.toString()));
+    }
+
+    private static int bucket(long nanos) {
+        return nanos <= 0L ? 0 : 63 - Long.numberOfLeadingZeros(nanos);
+    }
+
+    /**
+     * Management interface of {@link KeyStatistics}.
+     */
+    public interface KeyStatisticsMXBean {
+
+        /**
+         * @return string representation of the key
+         */
+        String getKey();
+
+        /**
+         * @return string representation of the scope of key's binding
+         */
+        String getScope();
+
+        /**
+         * @return number of requests for instances of the key
+         */
+        long getRequestCount();
+
+        /**
+         * @return number of producer calls, including failed ones
+         */
+        long getProvisionCount();
+
+        /**
+         * @return number of requests served by scope without calling the
+         *         producer (e.g. singleton hits)
+         */
+        long getScopeHitCount();
+
+        /**
+         * @return number of producer calls that threw an exception
+         */
+        long getFailureCount();
+
+        /**
+         * @return total time spent in the producer
+         */
+        long getTotalNanos();
+
+        /**
+         * @return mean time spent in the producer
+         */
+        long getMeanNanos();
+
+        /**
+         * @return upper bound of median producer latency
+         */
+        long getMedianNanos();
+
+        /**
+         * @return upper bound of 99th percentile of producer latency
+         */
+        long get99thPercentileNanos();
+
+        /**
+         * Element {@code i} of returned array contains number of provisions
+         * that took from {@code 2^i} to {@code 2^(i+1)-1} nanoseconds.
+         * 
+         * @return histogram of producer latency
+         */
+        long[] getLatencyHistogram();
+    }
+
+    /**
+     * Statistics of a single key.
+     */
+    public static final class KeyStatistics implements KeyStatisticsMXBean {
+        final Key<?> mKey;
+        final String mScope;
+        final AtomicLong mRequestCount = new AtomicLong();
+        final AtomicLong mProvisionCount = new AtomicLong();
+        final AtomicLong mFailureCount = new AtomicLong();
+        final AtomicLong mTotalNanos = new AtomicLong();
+        final AtomicLongArray mHistogram = new AtomicLongArray(64);
+
+        KeyStatistics(Key<?> key, String scope) {
+            mKey = key;
+            mScope = scope;
+        }
+
+        @Override
+        public String getKey() {
+            return mKey.toString();
+        }
+
+        @Override
+        public String getScope() {
+            return mScope;
+        }
+
+        @Override
+        public long getRequestCount() {
+            return mRequestCount.get();
+        }
+
+        @Override
+        public long getProvisionCount() {
+            return mProvisionCount.get();
+        }
+
+        @Override
+        public long getScopeHitCount() {
+            return Math.max(0L, getRequestCount() - getProvisionCount());
+        }
+
+        @Override
+        public long getFailureCount() {
+            return mFailureCount.get();
+        }
+
+        @Override
+        public long getTotalNanos() {
+            return mTotalNanos.get();
+        }
+
+        @Override
+        public long getMeanNanos() {
+            long count = getProvisionCount();
+            return count == 0L ? 0L : getTotalNanos() / count;
+        }
+
+        @Override
+        public long getMedianNanos() {
+            return percentile(0.5);
+        }
+
+        @Override
+        public long get99thPercentileNanos() {
+            return percentile(0.99);
+        }
+
+        @Override
+        public long[] getLatencyHistogram() {
+            long[] histogram = new long[mHistogram.length()];
+            for (int i = 0; i < histogram.length; ++i) {
+                histogram[i] = mHistogram.get(i);
+            }
+            return histogram;
+        }
+
+        @Override
+        public String toString() {
+            return mKey + " requests=" + getRequestCount() + " provisions=" + getProvisionCount()
+                    + " scopeHits=" + getScopeHitCount() + " failures=" + getFailureCount()
+                    + " meanNanos=" + getMeanNanos();
+        }
+
+        private long percentile(double fraction) {
+            long[] histogram = getLatencyHistogram();
+            long total = 0L;
+            for (long count : histogram) {
+                total += count;
+            }
+            if (total == 0L) {
+                return 0L;
+            }
+            long rank = (long) Math.ceil(total * fraction);
+            long seen = 0L;
+            for (int i = 0; i < histogram.length; ++i) {
+                seen += histogram[i];
+                if (seen >= rank) {
+                    return i >= 62 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+    }
+}
@@ -24,20 +24,28 @@ import pl.chalapuk.muice.Injector;
 import pl.chalapuk.muice.Key;
 import pl.chalapuk.muice.Producer;
 import pl.chalapuk.muice.customization.ConstructorInfo;
+import pl.chalapuk.muice.customization.LinkableProducer;
 import pl.chalapuk.muice.customization.ProducerFactory;
 
 /**
  * Creates producers that uses reflection to invoke desired constructor.
+ * <p>
+ * Created producers are {@linkplain LinkableProducer linkable}. Linked
+ * producers get constructor arguments directly from providers of dependencies.
  * 
  * @author maciej@chalapuk.pl (Maciej Chałapuk)
  */
 public class ReflectionProducerFactory implements ProducerFactory {
 
     @Override
-    public <T> Producer<T> createProducer(final ConstructorInfo<T> info) {
-        final Key<?>[] paramKeys = info.getParameterKeys();
+    public <T> Producer<T> createProducer(ConstructorInfo<T> info) {
+        return producer(info.getConstructor(), info.getParameterKeys());
+    }
 
-        return new Producer<T>() {
+    // static, so that producers don't reference the factory
+    private static <T> Producer<T> producer(final Constructor<? super T> constructor,
+            final Key<?>[] paramKeys) {
+        return new LinkableProducer<T>() {
 
             @Override
             public T newInstance(Injector injector) {
@@ -45,18 +53,38 @@ public class ReflectionProducerFactory implements ProducerFactory {
                 for (int i = 0; i < paramKeys.length; ++i) {
                     args[i] = injector.getInstance(paramKeys[i]);
                 }
+                return construct(constructor, args);
+            }
 
-                Constructor<? super T> constructor = info.getConstructor();
+            @Override
+            public Producer<T> link(Injector injector) {
+                final javax.inject.Provider<?>[] providers =
+                        LinkedDependencies.providers(injector, paramKeys);
 
-                try {
-                    return (T) constructor.newInstance(args);
-                } catch (InstantiationException | IllegalAccessException e) {
-                    throw new RuntimeException("BUG!", e);
-                } catch (InvocationTargetException e) {
-                    throw new InjectionError("exception when calling constructor "
-                            + constructor, e.getTargetException());
-                }
+                return new Producer<T>() {
+
+                    @Override
+                    public T newInstance(Injector injector) {
+                        Object[] args = new Object[providers.length];
+                        for (int i = 0; i < providers.length; ++i) {
+                            args[i] = providers[i].get();
+                        }
+                        return construct(constructor, args);
+                    }
+                };
             }
         };
     }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T construct(Constructor<? super T> constructor, Object[] args) {
+        try {
+            return (T) constructor.newInstance(args);
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new RuntimeException("BUG!", e);
+        } catch (InvocationTargetException e) {
+            throw new InjectionError("exception when calling constructor "
+                    + constructor, e.getTargetException());
+        }
+    }
 }
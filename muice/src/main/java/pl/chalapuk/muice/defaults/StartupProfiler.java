@@ -0,0 +1,308 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice.defaults;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import pl.chalapuk.muice.Binding;
+import pl.chalapuk.muice.Injector;
+import pl.chalapuk.muice.Key;
+import pl.chalapuk.muice.customization.BuildListener;
+
+/**
+ * {@link BuildListener} that gathers per-binding startup profile.
+ * <p>
+ * For each key profiler stores time spent in each {@link Phase phase} of
+ * binding creation and time spent in construction of its first instance
+ * (later constructions are not measured). Time of constructing an instance is
+ * split into self time and time spent in constructing each of its
+ * dependencies, which allows to find critical path of the slowest dependency
+ * chain. Instances constructed outside of other constructions (e.g. by
+ * {@link Injector#getInstance} calls or eager singletons) are the roots of the
+ * profile.
+ * <p>
+ * Profiler is thread-safe and may be shared by many injectors. Results are
+ * available through getters or as a human-readable text returned by
+ * {@link #report(int)}.
+ * 
+ * <pre>
+ * StartupProfiler profiler = new StartupProfiler();
+ * Injector injector = Muice.newMuice().withBuildListener(profiler).build()
+ *         .newInjector().withModules(modules).build();
+ * injector.getInstance(Application.class);
+ * System.out.println(profiler.report(10));
+ * </pre>
+ * 
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+public class StartupProfiler implements BuildListener {
+    private final ConcurrentMap<Key<?>, Profile> mProfiles = new ConcurrentHashMap<>();
+    private final Set<Key<?>> mRoots =
+            Collections.newSetFromMap(new ConcurrentHashMap<Key<?>, Boolean>());
+    private final AtomicLong mInjectorNanos = new AtomicLong();
+
+    private final ThreadLocal<Deque<Key<?>>> mStack = new ThreadLocal<Deque<Key<?>>>() {
+
+        @Override
+        protected Deque<Key<?>> initialValue() {
+            return new ArrayDeque<>();
+        }
+    };
+
+    @Override
+    public void onPhase(Key<?> key, Phase phase, long nanos) {
+        profile(key).mPhaseNanos.addAndGet(phase.ordinal(), nanos);
+    }
+
+    @Override
+    public void onBindingBuilt(Binding<?> binding, long nanos) {
+        profile(binding.getKey()).mBindingNanos.addAndGet(nanos);
+    }
+
+    @Override
+    public void onInjectorBuilt(Injector injector, long nanos) {
+        mInjectorNanos.addAndGet(nanos);
+    }
+
+    @Override
+    public boolean isTimingConstructions() {
+        return true;
+    }
+
+    @Override
+    public void beforeConstruction(Key<?> key) {
+        mStack.get().push(key);
+    }
+
+    @Override
+    public void afterConstruction(Key<?> key, long nanos) {
+        Deque<Key<?>> stack = mStack.get();
+        stack.pop();
+
+        Profile profile = profile(key);
+        profile.mConstructionCount.incrementAndGet();
+        profile.mConstructionNanos.addAndGet(nanos);
+
+        Key<?> parent = stack.peek();
+        if (parent == null) {
+            mRoots.add(key);
+            return;
+        }
+        Profile parentProfile = profile(parent);
+        parentProfile.mDependencyNanos.addAndGet(nanos);
+        AtomicLong child = parentProfile.mDependencies.get(key);
+        if (child == null) {
+            AtomicLong created = new AtomicLong();
+            child = parentProfile.mDependencies.putIfAbsent(key, created);
+            if (child == null) {
+                child = created;
+            }
+        }
+        child.addAndGet(nanos);
+    }
+
+    /**
+     * @return total time spent in building injectors
+     */
+    public long getInjectorBuildNanos() {
+        return mInjectorNanos.get();
+    }
+
+    /**
+     * @return time spent in given phase of creating binding of given key
+     */
+    public long getPhaseNanos(Key<?> key, Phase phase) {
+        Profile profile = mProfiles.get(checkNotNull(key));
+        return profile == null ? 0L : profile.mPhaseNanos.get(phase.ordinal());
+    }
+
+    /**
+     * @return time spent in building binding of given key
+     */
+    public long getBindingNanos(Key<?> key) {
+        Profile profile = mProfiles.get(checkNotNull(key));
+        return profile == null ? 0L : profile.mBindingNanos.get();
+    }
+
+    /**
+     * @return number of measured constructions of given key (zero or one,
+     *         unless first instances were constructed concurrently or failed)
+     */
+    public long getConstructionCount(Key<?> key) {
+        Profile profile = mProfiles.get(checkNotNull(key));
+        return profile == null ? 0L : profile.mConstructionCount.get();
+    }
+
+    /**
+     * @return time spent in constructing instances of given key, including
+     *         construction of their dependencies
+     */
+    public long getConstructionNanos(Key<?> key) {
+        Profile profile = mProfiles.get(checkNotNull(key));
+        return profile == null ? 0L : profile.mConstructionNanos.get();
+    }
+
+    /**
+     * @return time spent in constructing instances of given key, not
+     *         including construction of their dependencies
+     */
+    public long getSelfNanos(Key<?> key) {
+        Profile profile = mProfiles.get(checkNotNull(key));
+        return profile == null ? 0L : profile.selfNanos();
+    }
+
+    /**
+     * @return keys of instances constructed outside of other constructions,
+     *         sorted by construction time (slowest first)
+     */
+    public List<Key<?>> getRoots() {
+        List<Key<?>> roots = new ArrayList<>(mRoots);
+        Collections.sort(roots, new Comparator<Key<?>>() {
+
+            @Override
+            public int compare(Key<?> lhs, Key<?> rhs) {
+                return Long.compare(getConstructionNanos(rhs), getConstructionNanos(lhs));
+            }
+        });
+        return roots;
+    }
+
+    /**
+     * Critical path is a chain of dependencies which starts at given key and
+     * in each step goes to the dependency, on which construction the most time
+     * was spent.
+     * 
+     * @return critical path starting at given key (the key is always first)
+     */
+    public List<Key<?>> getCriticalPath(Key<?> key) {
+        List<Key<?>> path = new ArrayList<>();
+        Set<Key<?>> visited = new HashSet<>();
+
+        Key<?> current = checkNotNull(key);
+        while (current != null && visited.add(current)) {
+            path.add(current);
+
+            Profile profile = mProfiles.get(current);
+            if (profile == null) {
+                break;
+            }
+            current = null;
+            long max = -1L;
+            for (Map.Entry<Key<?>, AtomicLong> entry : profile.mDependencies.entrySet()) {
+                long nanos = entry.getValue().get();
+                if (nanos > max) {
+                    max = nanos;
+                    current = entry.getKey();
+                }
+            }
+        }
+        return path;
+    }
+
+    /**
+     * Creates human-readable report containing total build time, time spent in
+     * each phase of binding creation and critical paths of the slowest roots.
+     * 
+     * @param maxRoots maximum number of roots included in the report
+     * @return multi-line report
+     */
+    public String report(int maxRoots) {
+        checkArgument(maxRoots >= 0, "maxRoots must not be negative");
+
+        StringBuilder builder = new StringBuilder();
+        builder.append("injector build: ").append(millis(getInjectorBuildNanos())).append('\n');
+
+        long[] phases = new long[Phase.values().length];
+        for (Profile profile : mProfiles.values()) {
+            for (int i = 0; i < phases.length; ++i) {
+                phases[i] += profile.mPhaseNanos.get(i);
+            }
+        }
+        for (Phase phase : Phase.values()) {
+            builder.append("  ").append(phase.name().toLowerCase(Locale.ROOT)).append(": ")
+                    .append(millis(phases[phase.ordinal()])).append('\n');
+        }
+
+        List<Key<?>> roots = getRoots();
+        for (Key<?> root : roots.subList(0, Math.min(maxRoots, roots.size()))) {
+            builder.append("critical path of ").append(root).append(":\n");
+
+            String indent = "  ";
+            for (Key<?> key : getCriticalPath(root)) {
+                builder.append(indent).append(key)
+                        .append(" total=").append(millis(getConstructionNanos(key)))
+                        .append(" self=").append(millis(getSelfNanos(key)))
+                        .append(" count=").append(getConstructionCount(key))
+                        .append(" binding=").append(millis(getBindingNanos(key)))
+                        .append('\n');
+                indent += "  ";
+            }
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public String toString() {
+        return report(10);
+    }
+
+    private Profile profile(Key<?> key) {
+        Profile profile = mProfiles.get(key);
+        if (profile == null) {
+            Profile created = new Profile();
+            profile = mProfiles.putIfAbsent(key, created);
+            if (profile == null) {
+                profile = created;
+            }
+        }
+        return profile;
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3fms",
+                nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    private static class Profile {
+        final AtomicLongArray mPhaseNanos = new AtomicLongArray(Phase.values().length);
+        final AtomicLong mBindingNanos = new AtomicLong();
+        final AtomicLong mConstructionCount = new AtomicLong();
+        final AtomicLong mConstructionNanos = new AtomicLong();
+        final AtomicLong mDependencyNanos = new AtomicLong();
+        final ConcurrentMap<Key<?>, AtomicLong> mDependencies = new ConcurrentHashMap<>();
+
+        long selfNanos() {
+            return Math.max(0L, mConstructionNanos.get() - mDependencyNanos.get());
+        }
+    }
+}
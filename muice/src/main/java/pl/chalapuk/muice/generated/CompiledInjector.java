@@ -0,0 +1,562 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice.generated;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+
+import pl.chalapuk.muice.Binding;
+import pl.chalapuk.muice.BindingError;
+import pl.chalapuk.muice.BindingModule;
+import pl.chalapuk.muice.InjectionError;
+import pl.chalapuk.muice.Injector;
+import pl.chalapuk.muice.Key;
+import pl.chalapuk.muice.Producer;
+import pl.chalapuk.muice.Provider;
+import pl.chalapuk.muice.Scope;
+import pl.chalapuk.muice.TypeLiteral;
+import pl.chalapuk.muice.customization.TypeInfoException;
+import pl.chalapuk.muice.defaults.ReflectionTypeInfoFactory;
+import pl.chalapuk.muice.internal.BatchLookup;
+import pl.chalapuk.muice.internal.ConstantProvider;
+import pl.chalapuk.muice.internal.Scopes;
+
+/**
+ * Base class for injectors generated at build time by Muice injector compiler.
+ * <p>
+ * Whole binding graph is analyzed during the build, so generated subclass
+ * contains one {@code provide} and one {@code create} method per binding. They
+ * call constructors directly and pass dependencies obtained from other
+ * generated methods. Singletons are created by {@link Scopes#SINGLETON} and
+ * then held in fields of the generated class.
+ * Neither type analysis nor reflection is done at runtime, except for
+ * constructors that are not accessible from generated code.
+ * Muice providers are initialized when the injector is created, so providing
+ * instances takes no locks other than those of scopes.
+ * <p>
+ * Binding modules are still executed at runtime (with cheap
+ * {@link RecordingBinder}), because instances, providers, producers and custom
+ * scopes can be created only by the modules. Recorded configuration is
+ * checked against configuration seen at build time.
+ * 
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+public abstract class CompiledInjector implements Injector {
+    private final Key<?>[] mKeys;
+    private final Map<Key<?>, Integer> mIndices;
+    private final ConcurrentMap<Class<?>, Integer> mIndicesByClass = new ConcurrentHashMap<>();
+    private final RecordingBinder mRecording;
+    private final Object[] mTargets;
+
+    private final javax.inject.Provider<?>[] mProviders;
+    private final javax.inject.Provider<?>[] mScoped;
+    private final Scope[] mScopes;
+
+    private final RecordedBinding.Kind[] mKinds;
+    private final AtomicReferenceArray<javax.inject.Provider<?>> mProvidersOfProviders;
+    private final AtomicReferenceArray<Constructor<?>> mConstructors;
+
+    private final AtomicReference<Iterable<Binding<?>>> mBindings = new AtomicReference<>();
+
+    /**
+     * @param keys keys of all bindings (in order of binding), including
+     *            {@link Injector} key as the last one
+     * @param indices maps each key to its index in {@code keys}
+     * @param kinds kinds of recorded bindings, as seen at build time
+     * @param modules binding modules (same as used at build time)
+     * @throws BindingError if modules configure bindings other than those
+     *             seen at build time
+     */
+    protected CompiledInjector(Key<?>[] keys, Map<Key<?>, Integer> indices,
+            RecordedBinding.Kind[] kinds, BindingModule... modules) {
+        mKeys = checkNotNull(keys, "keys");
+        mIndices = checkNotNull(indices, "indices");
+        mRecording = new RecordingBinder();
+        for (BindingModule module : modules) {
+            mRecording.install(module);
+        }
+
+        List<RecordedBinding<?>> recorded = mRecording.getBindings();
+        checkConsistency(recorded.size() == kinds.length && kinds.length + 1 == keys.length,
+                "%d bindings configured, %d expected", recorded.size(), kinds.length);
+
+        mTargets = new Object[keys.length];
+        for (int i = 0; i < kinds.length; ++i) {
+            RecordedBinding<?> binding = recorded.get(i);
+            checkConsistency(binding.getKey().equals(keys[i]) && binding.getKind() == kinds[i],
+                    "binding %d configured for %s (%s), expected %s (%s)", i,
+                    binding.getKey(), binding.getKind(), keys[i], kinds[i]);
+            mTargets[i] = binding.getTarget();
+        }
+
+        mProviders = new javax.inject.Provider<?>[keys.length];
+        for (int i = 0; i < keys.length; ++i) {
+            mProviders[i] = new IndexedProvider(this, i);
+        }
+        mScoped = new javax.inject.Provider<?>[keys.length];
+        mScopes = new Scope[keys.length];
+        mKinds = kinds;
+        mProvidersOfProviders = new AtomicReferenceArray<>(keys.length);
+        mConstructors = new AtomicReferenceArray<>(keys.length);
+    }
+
+    /**
+     * Implemented in generated code. Returns scoped instance for binding of
+     * given index.
+     */
+    protected abstract Object provide(int index);
+
+    /**
+     * Implemented in generated code. Creates (unscoped) instance for binding
+     * of given index.
+     */
+    protected abstract Object create(int index);
+
+    @Override
+    public <T> T getInstance(Key<T> key) {
+        if (key.getRawType().equals(javax.inject.Provider.class)
+                && key.getTypeLiteral().getTypeArgumentCount() == 1) {
+            TypeLiteral<?> providedType = key.getTypeLiteral().getTypeArgument(0);
+            @SuppressWarnings("unchecked")
+            T provider = (T) getProvider(Key.get(providedType, key.getQualifier()));
+            return provider;
+        }
+        @SuppressWarnings("unchecked")
+        T instance = (T) provide(indexOf(key));
+        return instance;
+    }
+
+    @Override
+    public <T> T getInstance(TypeLiteral<T> typeLiteral) {
+        return getInstance(Key.get(typeLiteral));
+    }
+
+    @Override
+    public <T> T getInstance(Class<T> type) {
+        if (type == javax.inject.Provider.class) {
+            return getInstance(Key.get(type));
+        }
+        @SuppressWarnings("unchecked")
+        T instance = (T) provide(indexOf(type));
+        return instance;
+    }
+
+    @Override
+    public <T> javax.inject.Provider<? extends T> getProvider(Key<T> key) {
+        if (key.getRawType().equals(javax.inject.Provider.class)
+                && key.getTypeLiteral().getTypeArgumentCount() == 1) {
+            return new ConstantProvider<T>(getInstance(key));
+        }
+        @SuppressWarnings("unchecked")
+        javax.inject.Provider<? extends T> provider =
+                (javax.inject.Provider<? extends T>) mProviders[indexOf(key)];
+        return provider;
+    }
+
+    @Override
+    public <T> javax.inject.Provider<? extends T> getProvider(TypeLiteral<T> typeLiteral) {
+        return getProvider(Key.get(typeLiteral));
+    }
+
+    @Override
+    public <T> javax.inject.Provider<? extends T> getProvider(Class<T> type) {
+        @SuppressWarnings("unchecked")
+        javax.inject.Provider<? extends T> provider =
+                (javax.inject.Provider<? extends T>) mProviders[indexOf(type)];
+        return provider;
+    }
+
+    @Override
+    public Object[] getInstances(Key<?>... keys) {
+        return BatchLookup.getInstances(this, keys, new Object[keys.length]);
+    }
+
+    @Override
+    public Object[] getInstances(Key<?>[] keys, Object[] instances) {
+        return BatchLookup.getInstances(this, keys, instances);
+    }
+
+    @Override
+    public List<javax.inject.Provider<?>> getProviders(Iterable<? extends Key<?>> keys) {
+        return BatchLookup.getProviders(this, keys);
+    }
+
+    @Override
+    public <T> javax.inject.Provider<? extends T> getExistingProvider(Key<T> key) {
+        if (key.getRawType().equals(javax.inject.Provider.class)
+                && key.getTypeLiteral().getTypeArgumentCount() == 1) {
+            Optional<T> provider = tryGetInstance(key);
+            return provider.isPresent() ? new ConstantProvider<T>(provider.get()) : null;
+        }
+        Integer index = mIndices.get(key);
+        @SuppressWarnings("unchecked")
+        javax.inject.Provider<? extends T> provider = index != null
+                ? (javax.inject.Provider<? extends T>) mProviders[index]
+                : null;
+        return provider;
+    }
+
+    @Override
+    public <T> Optional<T> tryGetInstance(Key<T> key) {
+        if (key.getRawType().equals(javax.inject.Provider.class)
+                && key.getTypeLiteral().getTypeArgumentCount() == 1) {
+            TypeLiteral<?> providedType = key.getTypeLiteral().getTypeArgument(0);
+            @SuppressWarnings("unchecked")
+            T provider = (T) getExistingProvider(Key.get(providedType, key.getQualifier()));
+            return Optional.fromNullable(provider);
+        }
+        Integer index = mIndices.get(key);
+        @SuppressWarnings("unchecked")
+        T instance = index != null ? (T) provide(index) : null;
+        return Optional.fromNullable(instance);
+    }
+
+    @Override
+    public boolean hasBinding(Key<?> key) {
+        if (key.getRawType().equals(javax.inject.Provider.class)
+                && key.getTypeLiteral().getTypeArgumentCount() == 1) {
+            TypeLiteral<?> providedType = key.getTypeLiteral().getTypeArgument(0);
+            return mIndices.containsKey(Key.get(providedType, key.getQualifier()));
+        }
+        return mIndices.containsKey(key);
+    }
+
+    /**
+     * Bindings are listed on first use. Concurrent first calls may list them
+     * more than once, but all of them return the list stored first.
+     */
+    @Override
+    public Iterable<Binding<?>> getBindings() {
+        Iterable<Binding<?>> bindings = mBindings.get();
+        if (bindings == null) {
+            ImmutableList.Builder<Binding<?>> builder = ImmutableList.builder();
+            for (int i = 0; i < mKeys.length; ++i) {
+                builder.add(new IndexedBinding<>(this, mKeys[i], i));
+            }
+            mBindings.compareAndSet(null, builder.build());
+            bindings = mBindings.get();
+        }
+        return bindings;
+    }
+
+    /**
+     * Used by generated code to obtain provider injected as a dependency.
+     */
+    protected final javax.inject.Provider<?> providerAt(int index) {
+        return mProviders[index];
+    }
+
+    /**
+     * Used by generated code to set scope of binding of given index. Scopes
+     * other than {@link Scopes#NONE} decorate provider which calls
+     * {@link #create(int)}; such bindings must be provided with
+     * {@link #provideScoped(int)}.
+     */
+    protected final void setScope(int index, Scope scope) {
+        mScopes[index] = checkNotNull(scope, "scope");
+        if (scope != Scopes.NONE) {
+            mScoped[index] = decorate(scope, mKeys[index], index);
+        }
+    }
+
+    /**
+     * Used by generated code to provide instance of binding in custom scope.
+     */
+    protected final Object provideScoped(int index) {
+        return mScoped[index].get();
+    }
+
+    /**
+     * Used by generated code to obtain scope configured in binding module
+     * with one of {@code in()} methods.
+     */
+    protected final Scope recordedScope(int index) {
+        RecordedBinding<?> binding = mRecording.getBindings().get(index);
+        if (binding.getScope() != null) {
+            return binding.getScope();
+        }
+        return scopeFor(binding.getScopeAnnotation());
+    }
+
+    /**
+     * Used by generated code to obtain scope bound to given annotation.
+     */
+    protected final Scope scopeFor(Class<? extends Annotation> scopeAnnotation) {
+        Scope scope = mRecording.getScope(scopeAnnotation);
+        checkConsistency(scope != null, "no scope bound to annotation %s", scopeAnnotation.getName());
+        return scope;
+    }
+
+    /**
+     * Used by generated code to create instance with provider instance
+     * configured in binding module.
+     */
+    protected final Object createFromProvider(int index) {
+        javax.inject.Provider<?> provider = (javax.inject.Provider<?>) mTargets[index];
+        try {
+            return mKeys[index].getRawType().cast(provider.get());
+        } catch (ClassCastException e) {
+            throw new InjectionError("custom provider returned object of wrong type", e);
+        } catch (Throwable t) {
+            throw new InjectionError("error in custom provider", t);
+        }
+    }
+
+    /**
+     * Used by generated code to initialize Muice providers configured in
+     * binding modules, in order of their bindings. Must be called after
+     * scopes of all bindings are set and before eager singletons are created.
+     * 
+     * @throws InjectionError if initialization of any provider failed
+     */
+    protected final void initializeProviders() {
+        for (int i = 0; i < mKinds.length; ++i) {
+            if (mKinds[i] != RecordedBinding.Kind.MUICE_PROVIDER) {
+                continue;
+            }
+            try {
+                ((Provider<?>) mTargets[i]).initialize(this);
+            } catch (InjectionError e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new InjectionError("error in initialization of custom provider", t);
+            }
+        }
+    }
+
+    /**
+     * Used by generated code to create instance with Muice provider instance
+     * configured in binding module. Provider is initialized in
+     * {@link #initializeProviders()}.
+     */
+    protected final Object createFromMuiceProvider(int index) {
+        return castProvided(index, (Provider<?>) mTargets[index]);
+    }
+
+    /**
+     * Used by generated code to create instance with provider obtained from
+     * binding of {@code providerIndex}. Provider is obtained on first use.
+     * Concurrent first calls may obtain it more than once, but all of them use
+     * the one stored first.
+     */
+    protected final Object createFromProviderBinding(int index, int providerIndex) {
+        javax.inject.Provider<?> provider = mProvidersOfProviders.get(index);
+        if (provider == null) {
+            provider = (javax.inject.Provider<?>) provide(providerIndex);
+            if (!mProvidersOfProviders.compareAndSet(index, null, provider)) {
+                provider = mProvidersOfProviders.get(index);
+            }
+        }
+        return castProvided(index, provider);
+    }
+
+    /**
+     * Used by generated code to create instance with producer configured in
+     * binding module.
+     */
+    protected final Object createFromProducer(int index) {
+        Producer<?> producer = (Producer<?>) mTargets[index];
+        try {
+            return mKeys[index].getRawType().cast(producer.newInstance(this));
+        } catch (ClassCastException e) {
+            throw new InjectionError("custom producer returned object of wrong type", e);
+        } catch (Throwable t) {
+            throw new InjectionError("error in custom producer", t);
+        }
+    }
+
+    /**
+     * Used by generated code to obtain instance configured in binding module.
+     */
+    protected final Object instanceAt(int index) {
+        return mTargets[index];
+    }
+
+    /**
+     * Used by generated code to call constructors that are not accessible from
+     * generated class. Constructor is looked up only once.
+     */
+    protected final Object newInstance(int index, Object... args) {
+        Constructor<?> constructor = constructorAt(index);
+        try {
+            return constructor.newInstance(args);
+        } catch (Throwable t) {
+            throw constructorError(constructor.toString(), t);
+        }
+    }
+
+    /**
+     * Used by generated code to wrap exceptions thrown by constructors.
+     */
+    protected static InjectionError constructorError(String constructor, Throwable cause) {
+        return new InjectionError("exception when calling constructor " + constructor, cause);
+    }
+
+    /**
+     * Used by generated code to build index of keys.
+     */
+    protected static Map<Key<?>, Integer> indicesOf(Key<?>[] keys) {
+        Map<Key<?>, Integer> indices = Maps.newHashMapWithExpectedSize(keys.length);
+        for (int i = 0; i < keys.length; ++i) {
+            indices.put(keys[i], i);
+        }
+        return indices;
+    }
+
+    /**
+     * Used by generated code to load classes, which are not accessible from
+     * generated class.
+     */
+    protected static Class<?> type(Class<?> context, String name) {
+        try {
+            return Class.forName(name, false, context.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("generated code is out of date with " + name, e);
+        }
+    }
+
+    private int indexOf(Class<?> type) {
+        Integer index = mIndicesByClass.get(type);
+        if (index == null) {
+            index = indexOf(Key.get(type));
+            mIndicesByClass.put(type, index);
+        }
+        return index;
+    }
+
+    private int indexOf(Key<?> key) {
+        Integer index = mIndices.get(key);
+        if (index == null) {
+            throw new BindingError("no binding for " + key);
+        }
+        return index;
+    }
+
+    private Object castProvided(int index, javax.inject.Provider<?> provider) {
+        try {
+            return mKeys[index].getRawType().cast(provider.get());
+        } catch (ClassCastException e) {
+            throw new InjectionError("custom provider returned object of wrong type", e);
+        } catch (InjectionError e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new InjectionError("error in custom provider", t);
+        }
+    }
+
+    // lookup is idempotent, so concurrent first calls may simply repeat it
+    private Constructor<?> constructorAt(int index) {
+        Constructor<?> constructor = mConstructors.get(index);
+        if (constructor == null) {
+            if (mTargets[index] instanceof Constructor) {
+                constructor = (Constructor<?>) mTargets[index];
+            } else {
+                try {
+                    constructor = new ReflectionTypeInfoFactory()
+                            .getRawTypeInfo(mKeys[index].getRawType())
+                            .getDefaultInjectionPoint()
+                            .getConstructor();
+                } catch (TypeInfoException e) {
+                    throw new InjectionError("error while getting raw type information", e);
+                }
+            }
+            constructor.setAccessible(true);
+            mConstructors.set(index, constructor);
+        }
+        return constructor;
+    }
+
+    private <T> javax.inject.Provider<? extends T> decorate(Scope scope, Key<T> key, final int index) {
+        return scope.decorate(key, new javax.inject.Provider<T>() {
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public T get() {
+                return (T) create(index);
+            }
+        });
+    }
+
+    private static void checkConsistency(
+            boolean conditionSatisfied, String messageTemplate, Object... args) {
+        if (!conditionSatisfied) {
+            throw new BindingError("binding modules differ from modules used at build time: "
+                    + String.format(messageTemplate, args));
+        }
+    }
+
+    private static class IndexedProvider implements javax.inject.Provider<Object> {
+        private final CompiledInjector mInjector;
+        private final int mIndex;
+
+        IndexedProvider(CompiledInjector injector, int index) {
+            mInjector = injector;
+            mIndex = index;
+        }
+
+        @Override
+        public Object get() {
+            return mInjector.provide(mIndex);
+        }
+    }
+
+    private static class IndexedBinding<T> implements Binding<T>, Producer<T> {
+        private final CompiledInjector mInjector;
+        private final Key<T> mKey;
+        private final int mIndex;
+
+        IndexedBinding(CompiledInjector injector, Key<T> key, int index) {
+            mInjector = injector;
+            mKey = key;
+            mIndex = index;
+        }
+
+        @Override
+        public Key<T> getKey() {
+            return mKey;
+        }
+
+        @Override
+        public Producer<? extends T> getTarget() {
+            return this;
+        }
+
+        @Override
+        public Scope getScope() {
+            Scope scope = mInjector.mScopes[mIndex];
+            return scope != null ? scope : Scopes.NONE;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T newInstance(Injector unused) {
+            return (T) mInjector.create(mIndex);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pl.chalapuk.muice.generated;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.lang.reflect.Constructor;
+
+import pl.chalapuk.muice.InjectionError;
+import pl.chalapuk.muice.Injector;
+import pl.chalapuk.muice.Key;
+import pl.chalapuk.muice.customization.ConstructorInfo;
+import pl.chalapuk.muice.customization.LinkableProducer;
+
+/**
+ * Base class for constructor infos generated at compile time by Muice
+ * annotation processor.
+ * <p>
+ * Generated subclass is also a {@link LinkableProducer}, which invokes the
+ * constructor directly (without reflection). {@link Constructor} instance is
+ * looked up lazily, only when it is really needed (e.g. when reporting errors).
+ * 
+ * @param <T> type instantiated by the constructor
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+public abstract class GeneratedConstructorInfo<T> extends ConstructorInfo<T>
+        implements LinkableProducer<T> {
+    private final Class<T> mDeclaringClass;
+    private final Class<?>[] mParameterTypes;
+
+    private Constructor<T> mConstructor;
+
+    protected GeneratedConstructorInfo(Class<T> declaringClass,
+            Class<?>[] parameterTypes, Key<?>[] parameterKeys, boolean injectAnnotated) {
+        super(parameterKeys, injectAnnotated);
+        mDeclaringClass = checkNotNull(declaringClass);
+        mParameterTypes = checkNotNull(parameterTypes);
+    }
+
+    /**
+     * @return class declaring represented constructor
+     */
+    public Class<T> getDeclaringClass() {
+        return mDeclaringClass;
+    }
+
+    @Override
+    public Constructor<? super T> getConstructor() {
+        Constructor<T> constructor = mConstructor;
+        if (constructor == null) {
+            try {
+                constructor = mDeclaringClass.getDeclaredConstructor(mParameterTypes);
+            } catch (NoSuchMethodException e) {
+                throw new IllegalStateException("generated code is out of date with "
+                        + mDeclaringClass.getName(), e);
+            }
+            constructor.setAccessible(true);
+            mConstructor = constructor;
+        }
+        return constructor;
+    }
+
+    /**
+     * Used by generated linked producers to resolve constructor parameters.
+     * 
+     * @param injector injector passed to {@link #link(Injector)}
+     * @param index index of constructor parameter
+     * @return provider of instances that {@code injector.getInstance(key)}
+     *         would return for key of given parameter
+     */
+    protected javax.inject.Provider<?> linkedProvider(Injector injector, int index) {
+        Key<?> key = getParameterKeys()[index];
+        if (key.getRawType() == javax.inject.Provider.class) {
+            final javax.inject.Provider<?> provider = injector.getProvider(
+                    Key.get(key.getTypeLiteral().getTypeArgument(0), key.getQualifier()));
+            return new javax.inject.Provider<Object>() {
+
+                @Override
+                public Object get() {
+                    return provider;
+                }
+            };
+        }
+        return injector.getProvider(key);
+    }
+
+    /**
+     * Used by generated code to wrap exceptions thrown by the constructor.
+     * 
+     * @param cause exception thrown by the constructor
+     * @return error to be thrown by the producer
+     */
+    protected InjectionError constructorError(Throwable cause) {
+        return new InjectionError("exception when calling constructor " + getConstructor(), cause);
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pl.chalapuk.muice.generated;
+
+import static com.google.common.base.Preconditions.*;
+
+import pl.chalapuk.muice.Producer;
+import pl.chalapuk.muice.customization.ConstructorInfo;
+import pl.chalapuk.muice.customization.ProducerFactory;
+
+/**
+ * Creates producers for constructor infos generated at compile time by Muice
+ * annotation processor. Such producers call constructors directly, without
+ * reflection. Producer creation for all other constructor infos is delegated
+ * to fallback factory.
+ * <p>
+ * Should be used together with {@link GeneratedTypeInfoFactory}:
+ * 
+ * <pre>
+ * Muice muice = Muice.newMuice()
+ *         .withTypeInfoFactory(new GeneratedTypeInfoFactory(new ReflectionTypeInfoFactory()))
+ *         .withProducerFactory(new GeneratedProducerFactory(new ReflectionProducerFactory()))
+ *         .build();
+ * </pre>
+ * 
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+public class GeneratedProducerFactory implements ProducerFactory {
+    private final ProducerFactory mFallback;
+
+    public GeneratedProducerFactory(ProducerFactory fallback) {
+        mFallback = checkNotNull(fallback, "fallback");
+    }
+
+    @Override
+    public <T> Producer<T> createProducer(ConstructorInfo<T> info) {
+        if (info instanceof GeneratedConstructorInfo) {
+            return (GeneratedConstructorInfo<T>) info;
+        }
+        return mFallback.createProducer(info);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pl.chalapuk.muice.generated;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.lang.reflect.Constructor;
+
+import pl.chalapuk.muice.customization.ConstructorInfo;
+import pl.chalapuk.muice.customization.RawTypeInfo;
+import pl.chalapuk.muice.customization.TypeInfoException;
+import pl.chalapuk.muice.customization.TypeInfoFactory;
+
+import com.google.common.base.Optional;
+
+/**
+ * Returns type information generated at compile time by Muice annotation
+ * processor.
+ * <p>
+ * Processor generates a separate info class for each processed class
+ * {@code Foo}, named {@code Foo}{@value #INFO_CLASS_SUFFIX} and placed in the
+ * same package. This factory looks up the info class by name, with class
+ * loader of {@code Foo}, so classes compiled separately (e.g. in incremental
+ * builds or in different modules) are all found. Lookup is done once per
+ * class. Information about all other classes is taken from fallback factory
+ * (typically a reflection-based one).
+ * 
+ * @see GeneratedProducerFactory
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+public class GeneratedTypeInfoFactory implements TypeInfoFactory {
+    public static final String INFO_CLASS_SUFFIX = "$$MuiceInfo";
+    public static final String INFO_FIELD_NAME = "RAW_TYPE_INFO";
+
+    private final ClassValue<Optional<RawTypeInfo<?>>> mGenerated =
+            new ClassValue<Optional<RawTypeInfo<?>>>() {
+
+                @Override
+                protected Optional<RawTypeInfo<?>> computeValue(Class<?> type) {
+                    return Optional.<RawTypeInfo<?>> fromNullable(loadGenerated(type));
+                }
+            };
+
+    private final TypeInfoFactory mFallback;
+
+    public GeneratedTypeInfoFactory(TypeInfoFactory fallback) {
+        mFallback = checkNotNull(fallback, "fallback");
+    }
+
+    @Override
+    public <T> RawTypeInfo<T> getRawTypeInfo(Class<? super T> rawType) throws TypeInfoException {
+        RawTypeInfo<T> info = findGenerated(rawType);
+        if (info == null) {
+            return mFallback.getRawTypeInfo(rawType);
+        }
+        return info;
+    }
+
+    @Override
+    public <T> ConstructorInfo<T> getConstructorInfo(Constructor<T> constructor) {
+        RawTypeInfo<T> info = findGenerated(constructor.getDeclaringClass());
+        if (info == null || !info.getDefaultInjectionPoint().getConstructor().equals(constructor)) {
+            return mFallback.getConstructorInfo(constructor);
+        }
+        return info.getDefaultInjectionPoint();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> RawTypeInfo<T> findGenerated(Class<?> rawType) {
+        return (RawTypeInfo<T>) mGenerated.get(rawType).orNull();
+    }
+
+    private static RawTypeInfo<?> loadGenerated(Class<?> rawType) {
+        ClassLoader loader = rawType.getClassLoader();
+        if (loader == null || rawType.isArray() || rawType.isPrimitive()) {
+            return null;
+        }
+
+        Object info;
+        try {
+            info = Class.forName(rawType.getName() + INFO_CLASS_SUFFIX, true, loader)
+                    .getField(INFO_FIELD_NAME)
+                    .get(null);
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("generated code is out of date with "
+                    + rawType.getName(), e);
+        }
+        // the same class name may come from parent class loader
+        GeneratedConstructorInfo<?> constructorInfo = (GeneratedConstructorInfo<?>)
+                ((RawTypeInfo<?>) info).getDefaultInjectionPoint();
+        return constructorInfo.getDeclaringClass() == rawType ? (RawTypeInfo<?>) info : null;
+    }
+}
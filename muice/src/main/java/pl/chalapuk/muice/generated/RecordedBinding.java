@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice.generated;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+
+import javax.inject.Named;
+
+import pl.chalapuk.muice.Key;
+import pl.chalapuk.muice.Producer;
+import pl.chalapuk.muice.Provider;
+import pl.chalapuk.muice.Scope;
+import pl.chalapuk.muice.TypeLiteral;
+import pl.chalapuk.muice.Binder.AnnotatingBuilder;
+import pl.chalapuk.muice.Binder.LinkingBuilder;
+import pl.chalapuk.muice.Binder.ScopingBuilder;
+import pl.chalapuk.muice.internal.Scopes;
+
+/**
+ * Binding configuration recorded by {@link RecordingBinder}. Contains exactly
+ * what binding module passed to the binder, without any type analysis.
+ * 
+ * @param <T> bound type
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+public class RecordedBinding<T> implements AnnotatingBuilder<T> {
+
+    /**
+     * Kind of binding target.
+     */
+    public enum Kind {
+        SELF,
+        CONSTRUCTOR,
+        LINKED,
+        INSTANCE,
+        PROVIDER_TYPE,
+        PROVIDER,
+        MUICE_PROVIDER,
+        PRODUCER,
+    }
+
+    private Key<T> mKey;
+    private Kind mKind = Kind.SELF;
+    private Object mTarget;
+
+    private Class<? extends Annotation> mScopeAnnotation;
+    private Scope mScope;
+    private boolean mEager;
+
+    RecordedBinding(Key<T> key) {
+        mKey = key;
+    }
+
+    public Key<T> getKey() {
+        return mKey;
+    }
+
+    public Kind getKind() {
+        return mKind;
+    }
+
+    /**
+     * @return {@link Key} for {@link Kind#LINKED}, {@link Constructor} for
+     *         {@link Kind#CONSTRUCTOR}, provider {@link Class} for
+     *         {@link Kind#PROVIDER_TYPE}, object passed to the binder for
+     *         other kinds and {@code null} for {@link Kind#SELF}
+     */
+    public Object getTarget() {
+        return mTarget;
+    }
+
+    /**
+     * @return annotation passed to {@link #in(Class)} or {@code null}
+     */
+    public Class<? extends Annotation> getScopeAnnotation() {
+        return mScopeAnnotation;
+    }
+
+    /**
+     * @return scope passed to {@link #in(Scope)} or {@code null}
+     */
+    public Scope getScope() {
+        return mScope;
+    }
+
+    /**
+     * @return {@code true} if {@link #asEagerSingleton()} was called
+     */
+    public boolean isEager() {
+        return mEager;
+    }
+
+    @Override
+    public LinkingBuilder<T> annotatedWith(Class<? extends Annotation> qualifier) {
+        mKey = Key.get(mKey.getTypeLiteral(), qualifier);
+        return this;
+    }
+
+    @Override
+    public LinkingBuilder<T> annotatedWith(Named qualifier) {
+        throw new UnsupportedOperationException(); // TODO
+    }
+
+    @Override
+    public ScopingBuilder to(Class<? extends T> targetType) {
+        return to(Key.get(targetType));
+    }
+
+    @Override
+    public ScopingBuilder to(TypeLiteral<? extends T> targetLiteral) {
+        return to(Key.get(targetLiteral));
+    }
+
+    @Override
+    public ScopingBuilder to(Key<? extends T> targetKey) {
+        return record(Kind.LINKED, checkNotNull(targetKey, "targetKey"));
+    }
+
+    @Override
+    public void toInstance(T instance) {
+        record(Kind.INSTANCE, checkNotNull(instance, "instance"));
+    }
+
+    @Override
+    public ScopingBuilder toProvider(Class<? extends javax.inject.Provider<? extends T>> providerType) {
+        return record(Kind.PROVIDER_TYPE, checkNotNull(providerType, "providerType"));
+    }
+
+    @Override
+    public ScopingBuilder toProvider(javax.inject.Provider<? extends T> provider) {
+        return record(Kind.PROVIDER, checkNotNull(provider, "provider"));
+    }
+
+    @Override
+    public ScopingBuilder toProvider(Provider<? extends T> provider) {
+        return record(Kind.MUICE_PROVIDER, checkNotNull(provider, "provider"));
+    }
+
+    @Override
+    public ScopingBuilder toConstructor(Constructor<? extends T> constructor) {
+        return record(Kind.CONSTRUCTOR, checkNotNull(constructor, "constructor"));
+    }
+
+    @Override
+    public ScopingBuilder toProducer(Producer<? extends T> producer) {
+        return record(Kind.PRODUCER, checkNotNull(producer, "producer"));
+    }
+
+    @Override
+    public void in(Class<? extends Annotation> scopeAnnotation) {
+        mScopeAnnotation = checkNotNull(scopeAnnotation, "scopeAnnotation");
+        mScope = null;
+    }
+
+    @Override
+    public void in(Scope scope) {
+        mScope = checkNotNull(scope, "scope");
+        mScopeAnnotation = null;
+    }
+
+    @Override
+    public void asEagerSingleton() {
+        in(Scopes.SINGLETON);
+        mEager = true;
+    }
+
+    private ScopingBuilder record(Kind kind, Object target) {
+        mKind = kind;
+        mTarget = target;
+        return this;
+    }
+}
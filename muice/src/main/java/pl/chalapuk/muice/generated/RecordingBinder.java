@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice.generated;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.lang.annotation.Annotation;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Singleton;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import pl.chalapuk.muice.Binder;
+import pl.chalapuk.muice.BindingModule;
+import pl.chalapuk.muice.Key;
+import pl.chalapuk.muice.Scope;
+import pl.chalapuk.muice.TypeLiteral;
+import pl.chalapuk.muice.internal.Scopes;
+
+/**
+ * Binder that only records binding configuration, in order of {@code bind()}
+ * calls. No types are analyzed and no producers are created, which makes
+ * recording much cheaper than building an injector.
+ * <p>
+ * Used by injector compiler to read module configuration at build time and by
+ * {@link CompiledInjector} to read the same configuration at runtime.
+ * 
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+public class RecordingBinder implements Binder {
+    private final List<RecordedBinding<?>> mBindings = Lists.newArrayList();
+    private final Map<Class<? extends Annotation>, Scope> mScopes = Maps.newHashMap();
+
+    public RecordingBinder() {
+        mScopes.put(Singleton.class, Scopes.SINGLETON);
+    }
+
+    /**
+     * @return recorded bindings in order of {@code bind()} calls
+     */
+    public List<RecordedBinding<?>> getBindings() {
+        return Collections.unmodifiableList(mBindings);
+    }
+
+    /**
+     * @return scope bound to given annotation or {@code null}
+     */
+    public Scope getScope(Class<? extends Annotation> scopeAnnotation) {
+        return mScopes.get(scopeAnnotation);
+    }
+
+    @Override
+    public void bindScope(Class<? extends Annotation> scopeAnnotation, Scope scope) {
+        mScopes.put(checkNotNull(scopeAnnotation, "scopeAnnotation"), checkNotNull(scope, "scope"));
+    }
+
+    @Override
+    public void install(BindingModule module) {
+        module.configure(this);
+    }
+
+    @Override
+    public <T> AnnotatingBuilder<T> bind(Class<T> type) {
+        return bind(TypeLiteral.get(type));
+    }
+
+    @Override
+    public <T> AnnotatingBuilder<T> bind(TypeLiteral<T> typeLiteral) {
+        return record(Key.get(typeLiteral));
+    }
+
+    @Override
+    public <T> LinkingBuilder<T> bind(Key<T> key) {
+        return record(checkNotNull(key));
+    }
+
+    private <T> RecordedBinding<T> record(Key<T> key) {
+        RecordedBinding<T> binding = new RecordedBinding<>(key);
+        mBindings.add(binding);
+        return binding;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pl.chalapuk.muice.internal;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+
+import pl.chalapuk.muice.Injector;
+import pl.chalapuk.muice.Key;
+
+/**
+ * Implements batch lookups of {@link Injector} on top of its single-key
+ * lookups. Providers of all keys are found before any instance is created, so
+ * a missing binding is reported before side effects of constructors. Batch
+ * doesn't share any work between its keys; each instance is created by its
+ * provider exactly as by {@link Injector#getInstance(Key)}. Dependencies are
+ * not looked up by keys during creation only because linked producers hold
+ * providers of their dependencies.
+ * 
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+public final class BatchLookup {
+
+    /**
+     * @see Injector#getInstances(Key[], Object[])
+     */
+    public static Object[] getInstances(Injector injector, Key<?>[] keys, Object[] instances) {
+        checkNotNull(keys, "keys");
+        checkNotNull(instances, "instances");
+        checkArgument(instances.length >= keys.length,
+                "array of length %s can't hold instances of %s keys", instances.length,
+                keys.length);
+
+        // instances of provider keys are the providers themselves
+        javax.inject.Provider<?>[] providers = new javax.inject.Provider<?>[keys.length];
+        for (int i = 0; i < keys.length; ++i) {
+            providers[i] = isProviderKey(keys[i])
+                    ? (javax.inject.Provider<?>) injector.getInstance(keys[i])
+                    : injector.getProvider(keys[i]);
+        }
+
+        // array is cleared on failure, so it never holds only some instances
+        try {
+            for (int i = 0; i < keys.length; ++i) {
+                instances[i] = isProviderKey(keys[i]) ? providers[i] : providers[i].get();
+            }
+        } catch (RuntimeException | Error e) {
+            Arrays.fill(instances, 0, keys.length, null);
+            throw e;
+        }
+        return instances;
+    }
+
+    /**
+     * @see Injector#getProviders(Iterable)
+     */
+    public static List<javax.inject.Provider<?>> getProviders(Injector injector,
+            Iterable<? extends Key<?>> keys) {
+        checkNotNull(keys, "keys");
+
+        ImmutableList.Builder<javax.inject.Provider<?>> providers = ImmutableList.builder();
+        for (Key<?> key : keys) {
+            providers.add(injector.getProvider(key));
+        }
+        return providers.build();
+    }
+
+    private static boolean isProviderKey(Key<?> key) {
+        return key.getRawType().equals(javax.inject.Provider.class);
+    }
+
+    private BatchLookup() {
+        // static methods only
+    }
+}
@@ -17,9 +17,12 @@
 package pl.chalapuk.muice.internal;
 
 import java.lang.annotation.Annotation;
+import java.util.List;
 
 import static com.google.common.base.Preconditions.*;
 
+import javax.annotation.Nullable;
+
 import pl.chalapuk.muice.Binder;
 import pl.chalapuk.muice.Binding;
 import pl.chalapuk.muice.BindingError;
@@ -28,9 +31,12 @@ import pl.chalapuk.muice.Key;
 import pl.chalapuk.muice.Scope;
 import pl.chalapuk.muice.TypeLiteral;
 import pl.chalapuk.muice.customization.BindingCollector;
+import pl.chalapuk.muice.customization.BuildListener;
 import pl.chalapuk.muice.customization.ProducerFactory;
 import pl.chalapuk.muice.customization.TypeInfoFactory;
 
+import com.google.common.collect.Lists;
+
 /**
  * @author maciej@chalapuk.pl (Maciej Chałapuk)
  */
@@ -40,6 +46,12 @@ public class BinderImpl implements Binder {
     private final ProducerFactory mProducerFactory;
     private final ScopeMapping mScopeMapping;
     private final Scope mDefaultScope;
+    private final boolean mLazyBindings;
+    private final boolean mLegacyLinks;
+    private final boolean mTrusted;
+    private final BuildListener mBuildListener;
+
+    private final List<Binding<?>> mProviderBindings = Lists.newArrayList();
 
     private BindingBuilder<?> mCurrentBuilder;
 
@@ -47,12 +59,20 @@ public class BinderImpl implements Binder {
             TypeInfoFactory typeInfoFactory,
             ProducerFactory producerFactory,
             ScopeMapping scopeMapping,
-            Scope defaultScope) {
+            Scope defaultScope,
+            boolean lazyBindings,
+            boolean legacyLinks,
+            boolean trusted,
+            @Nullable BuildListener buildListener) {
         mCollector = checkNotNull(collector, "collector");
         mTypeInfoFactory = checkNotNull(typeInfoFactory, "typeInfoFactory");
         mProducerFactory = checkNotNull(producerFactory, "producerFactory");
         mScopeMapping = checkNotNull(scopeMapping, "scopeMapping");
         mDefaultScope = checkNotNull(defaultScope, "defaultScope");
+        mLazyBindings = lazyBindings;
+        mLegacyLinks = legacyLinks;
+        mTrusted = trusted;
+        mBuildListener = buildListener;
     }
 
     @Override
@@ -93,15 +113,27 @@ public class BinderImpl implements Binder {
             Binding<?> binding = mCurrentBuilder.build();
 
             mCollector.add(binding);
+            // targets of lazy bindings are not resolved here
+            if (binding instanceof BindingImpl && binding.getTarget() instanceof ProviderProducer) {
+                mProviderBindings.add(binding);
+            }
             mCurrentBuilder = null;
         }
     }
 
+    /**
+     * @return bindings to custom providers in order of their declaration
+     */
+    public List<Binding<?>> getProviderBindings() {
+        return mProviderBindings;
+    }
+
     private <T> BindingBuilder<T> createBinding(Key<T> key) {
         finishBuilding();
 
-        BindingBuilder<T> builder = new BindingBuilder<>(key,
-                mCollector, mTypeInfoFactory, mScopeMapping, mDefaultScope, mProducerFactory);
+        BindingBuilder<T> builder = new BindingBuilder<>(key, mCollector, mTypeInfoFactory,
+                mScopeMapping, mDefaultScope, mProducerFactory, mLazyBindings, mLegacyLinks,
+                mTrusted, mBuildListener);
         mCurrentBuilder = builder;
         return builder;
     }
@@ -21,9 +21,13 @@ import static com.google.common.base.Preconditions.*;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Modifier;
+import java.util.List;
 
+import javax.annotation.Nullable;
 import javax.inject.Named;
 
+import com.google.common.collect.Lists;
+
 import pl.chalapuk.muice.Binding;
 import pl.chalapuk.muice.BindingError;
 import pl.chalapuk.muice.InjectionError;
@@ -37,11 +41,14 @@ import pl.chalapuk.muice.Binder.AnnotatingBuilder;
 import pl.chalapuk.muice.Binder.LinkingBuilder;
 import pl.chalapuk.muice.Binder.ScopingBuilder;
 import pl.chalapuk.muice.customization.BindingCollector;
+import pl.chalapuk.muice.customization.BuildListener;
+import pl.chalapuk.muice.customization.BuildListener.Phase;
 import pl.chalapuk.muice.customization.ConstructorInfo;
 import pl.chalapuk.muice.customization.ProducerFactory;
 import pl.chalapuk.muice.customization.RawTypeInfo;
 import pl.chalapuk.muice.customization.TypeInfoException;
 import pl.chalapuk.muice.customization.TypeInfoFactory;
+import pl.chalapuk.muice.generated.GeneratedConstructorInfo;
 
 /**
  * @author maciej@chalapuk.pl (Maciej Chałapuk)
@@ -53,20 +60,37 @@ public class BindingBuilder<T> implements AnnotatingBuilder<T> {
     private final Scope mDefaultScope;
     private final TypeInfoFactory mTypeInfoFactory;
     private final ProducerFactory mProducerFactory;
+    private final boolean mLazy;
+    private final boolean mLegacyLinks;
+    private final boolean mTrusted;
+    private final BuildListener mListener;
+
+    private static final Key<?>[] NO_DEPENDENCIES = new Key<?>[0];
 
     private Key<T> mKey;
     private Producer<? extends T> mProducer;
     private Scope mScope;
+    private Key<?>[] mDependencies = NO_DEPENDENCIES;
+    private boolean mEager;
+
+    private Binding<? extends T> mLinkedBinding;
+    private boolean mAliased;
+    private Constructor<? extends T> mConstructor;
 
     public BindingBuilder(Key<T> key, BindingCollector collector,
             TypeInfoFactory infoFactory, ScopeMapping scopeMapping,
-            Scope defaultScope, ProducerFactory producerFactory) {
+            Scope defaultScope, ProducerFactory producerFactory, boolean lazy,
+            boolean legacyLinks, boolean trusted, @Nullable BuildListener listener) {
         mBindingCollector = collector;
         mScopeMapping = scopeMapping;
 
         mDefaultScope = defaultScope;
         mTypeInfoFactory = infoFactory;
         mProducerFactory = producerFactory;
+        mLazy = lazy;
+        mLegacyLinks = legacyLinks;
+        mTrusted = trusted;
+        mListener = listener;
 
         mKey = key;
     }
@@ -97,22 +121,28 @@ public class BindingBuilder<T> implements AnnotatingBuilder<T> {
         Binding<? extends T> targetBinding = mBindingCollector.get(targetKey);
         checkBindingCondition(targetBinding != null, "no binding for %s", targetKey);
 
+        mDependencies = new Key<?>[] {
+                targetKey
+        };
+        if (!mLegacyLinks) {
+            // injector shares target's scoped provider
+            mLinkedBinding = targetBinding;
+            mAliased = true;
+            return this;
+        }
+        if (mLazy) {
+            // target binding may be lazy too, resolve it together with this one
+            mLinkedBinding = targetBinding;
+            return this;
+        }
         mProducer = targetBinding.getTarget();
         mScope = targetBinding.getScope();
         return this;
     }
 
     @Override
-    public void toInstance(final T instance) {
-        checkNotNull(instance, "instance");
-
-        mProducer = new Producer<T>() {
-
-            @Override
-            public T newInstance(Injector unused) {
-                return instance;
-            }
-        };
+    public void toInstance(T instance) {
+        mProducer = new InstanceProducer<T>(checkNotNull(instance, "instance"));
     }
 
     @Override
@@ -125,75 +155,38 @@ public class BindingBuilder<T> implements AnnotatingBuilder<T> {
                 "no binding for %s, please bind the provider type to itself first",
                 targetKey);
 
-        return toProvider(new Provider<T>() {
-            private javax.inject.Provider<? extends T> mProvider;
-
-            @Override
-            public void initialize(Injector injector) {
-                mProvider = injector.getInstance(targetKey);
-            }
-
-            @Override
-            public T get() {
-                return mProvider.get();
-            }
-        });
+        mDependencies = new Key<?>[] {
+                targetKey
+        };
+        return toProvider(providerTypeProvider(targetKey), providerType);
     }
 
     @Override
-    public ScopingBuilder toProvider(final javax.inject.Provider<? extends T> provider) {
+    public ScopingBuilder toProvider(javax.inject.Provider<? extends T> provider) {
         checkNotNull(provider, "provider");
+        mDependencies = NO_DEPENDENCIES;
 
-        mProducer = new Producer<T>() {
-
-            @Override
-            public T newInstance(Injector unused) {
-                try {
-                    return (T) mKey.getRawType().cast(provider.get());
-                } catch (ClassCastException e) {
-                    throw new InjectionError("custom provider returned object of wrong type", e);
-                } catch (Throwable t) {
-                    throw new InjectionError("error in custom provider", t);
-                }
-            }
-        };
+        mProducer = mTrusted
+                ? TrustedProducers.ofProvider(mKey.getRawType(), provider)
+                : javaxProviderProducer(mKey.getRawType(), provider);
         return this;
     }
 
     @Override
-    public ScopingBuilder toProvider(final Provider<? extends T> provider) {
-        checkNotNull(provider, "provider");
-
-        mProducer = new Producer<T>() {
-            private boolean mInitialized = false; // change this to a strategy?
-
-            @Override
-            public T newInstance(Injector injector) {
-                maybeInitialize(injector);
-                try {
-                    return (T) mKey.getRawType().cast(provider.get());
-                } catch (ClassCastException e) {
-                    throw new InjectionError("custom provider returned object of wrong type", e);
-                } catch (InjectionError e) {
-                    throw e;
-                } catch (Throwable t) {
-                    throw new InjectionError("error in custom provider", t);
-                }
-            }
+    public ScopingBuilder toProvider(Provider<? extends T> provider) {
+        return toProvider(checkNotNull(provider, "provider"), provider.getClass());
+    }
 
-            private void maybeInitialize(Injector injector) {
-                if (!mInitialized) {
-                    try {
-                        provider.initialize(injector);
-                        mInitialized = true;
-                    } catch (InjectionError e) {
-                        throw e;
-                    } catch (Throwable t) {
-                        throw new InjectionError("error in initialization of custom provider", t);
-                    }
-                }
-            }
-        };
+    private ScopingBuilder toProvider(Provider<? extends T> provider, Class<?> providerType) {
+        if (mTrusted) {
+            boolean typed = TrustedProducers.isTyped(providerType, mKey.getRawType(),
+                    javax.inject.Provider.class, Provider.class);
+            mProducer = new ProviderProducer<T>(provider,
+                    TrustedProducers.ofProvider(mKey.getRawType(), provider, typed));
+            return this;
+        }
+        mProducer = new ProviderProducer<T>(provider,
+                muiceProviderProducer(mKey.getRawType(), provider));
         return this;
     }
 
@@ -207,28 +200,22 @@ public class BindingBuilder<T> implements AnnotatingBuilder<T> {
                 "declaring class of passed constructor (%s) is not compatible with %s",
                 declaringClass, mKey);
 
-        mProducer = producerFromConstructor(declaringClass,
-                mTypeInfoFactory.getConstructorInfo(constructor));
+        if (mLazy) {
+            mConstructor = constructor;
+            return this;
+        }
+        mProducer = producerFromConstructor(declaringClass, constructorInfo(constructor));
         return this;
     }
 
     @Override
-    public ScopingBuilder toProducer(final Producer<? extends T> producer) {
+    public ScopingBuilder toProducer(Producer<? extends T> producer) {
         checkNotNull(producer, "producer");
+        mDependencies = NO_DEPENDENCIES;
 
-        mProducer = new Producer<T>() {
-
-            @Override
-            public T newInstance(Injector injector) {
-                try {
-                    return (T) mKey.getRawType().cast(producer.newInstance(injector));
-                } catch (ClassCastException e) {
-                    throw new InjectionError("custom producer returned object of wrong type", e);
-                } catch (Throwable t) {
-                    throw new InjectionError("error in custom producer", t);
-                }
-            }
-        };
+        mProducer = mTrusted
+                ? TrustedProducers.ofProducer(mKey.getRawType(), producer)
+                : customProducer(mKey.getRawType(), producer);
         return this;
     }
 
@@ -244,11 +231,45 @@ public class BindingBuilder<T> implements AnnotatingBuilder<T> {
         mScope = checkNotNull(scope, "scope");
     }
 
+    @Override
+    public void asEagerSingleton() {
+        mScope = Scopes.SINGLETON;
+        mEager = true;
+    }
+
     public Binding<T> build() {
-        if (mProducer == null) {
+        if (mAliased) {
+            long start = startTime();
+            LinkedBinding<T> binding = new LinkedBinding<T>(mKey, mLinkedBinding,
+                    mScope != null ? mScope : Scopes.NONE, mEager);
+            if (mListener != null) {
+                mListener.onBindingBuilt(binding, System.nanoTime() - start);
+            }
+            return binding;
+        }
+        if (mLazy && mProducer == null) {
+            return new LazyBinding<T>(mKey, mEager, this);
+        }
+        return resolve();
+    }
+
+    BindingImpl<T> resolve() {
+        long start = startTime();
+
+        if (mLinkedBinding != null) {
+            mProducer = mLinkedBinding.getTarget();
+            if (mScope == null) {
+                mScope = mLinkedBinding.getScope();
+            }
+        } else if (mConstructor != null) {
+            mProducer = producerFromConstructor(mConstructor.getDeclaringClass(),
+                    constructorInfo(mConstructor));
+        } else if (mProducer == null) {
             try {
                 Class<? super T> rawType = mKey.getTypeLiteral().getRawType();
+                long analysisStart = startTime();
                 RawTypeInfo<T> typeInfo = mTypeInfoFactory.getRawTypeInfo(rawType);
+                recordPhase(Phase.TYPE_ANALYSIS, analysisStart);
                 mProducer = producerFromConstructor(rawType, typeInfo.getDefaultInjectionPoint());
 
                 if (mScope == null) {
@@ -266,25 +287,94 @@ public class BindingBuilder<T> implements AnnotatingBuilder<T> {
             mScope = mDefaultScope;
         }
 
-        return new Binding<T>() {
+        BindingImpl<T> binding =
+                new BindingImpl<T>(mKey, mProducer, mScope, mDependencies, mEager);
+        if (mListener != null) {
+            mListener.onBindingBuilt(binding, System.nanoTime() - start);
+        }
+        return binding;
+    }
+
+    // Producers are created in static methods, so that they do not reference
+    // the builder (and its collector and factories) after injector is built.
+
+    private static <T> Provider<T> providerTypeProvider(
+            final Key<? extends javax.inject.Provider<? extends T>> targetKey) {
+        return new Provider<T>() {
+            private javax.inject.Provider<? extends T> mProvider;
 
             @Override
-            public Key<T> getKey() {
-                return mKey;
+            public void initialize(Injector injector) {
+                mProvider = injector.getInstance(targetKey);
             }
 
             @Override
-            public Producer<? extends T> getTarget() {
-                return mProducer;
+            public T get() {
+                return mProvider.get();
+            }
+        };
+    }
+
+    private static <T> Producer<T> javaxProviderProducer(final Class<? super T> rawType,
+            final javax.inject.Provider<? extends T> provider) {
+        return new Producer<T>() {
+
+            @Override
+            public T newInstance(Injector unused) {
+                try {
+                    return (T) rawType.cast(provider.get());
+                } catch (ClassCastException e) {
+                    throw new InjectionError("custom provider returned object of wrong type", e);
+                } catch (Throwable t) {
+                    throw new InjectionError("error in custom provider", t);
+                }
+            }
+        };
+    }
+
+    private static <T> Producer<T> muiceProviderProducer(final Class<? super T> rawType,
+            final Provider<? extends T> provider) {
+        return new Producer<T>() {
+
+            @Override
+            public T newInstance(Injector unused) {
+                try {
+                    return (T) rawType.cast(provider.get());
+                } catch (ClassCastException e) {
+                    throw new InjectionError("custom provider returned object of wrong type", e);
+                } catch (InjectionError e) {
+                    throw e;
+                } catch (Throwable t) {
+                    throw new InjectionError("error in custom provider", t);
+                }
             }
+        };
+    }
+
+    private static <T> Producer<T> customProducer(final Class<? super T> rawType,
+            final Producer<? extends T> producer) {
+        return new Producer<T>() {
 
             @Override
-            public Scope getScope() {
-                return mScope;
+            public T newInstance(Injector injector) {
+                try {
+                    return (T) rawType.cast(producer.newInstance(injector));
+                } catch (ClassCastException e) {
+                    throw new InjectionError("custom producer returned object of wrong type", e);
+                } catch (Throwable t) {
+                    throw new InjectionError("error in custom producer", t);
+                }
             }
         };
     }
 
+    private ConstructorInfo<? extends T> constructorInfo(Constructor<? extends T> constructor) {
+        long start = startTime();
+        ConstructorInfo<? extends T> info = mTypeInfoFactory.getConstructorInfo(constructor);
+        recordPhase(Phase.TYPE_ANALYSIS, start);
+        return info;
+    }
+
     private Producer<? extends T> producerFromConstructor(
             final Class<?> rawType,
             final ConstructorInfo<? extends T> constructorInfo
@@ -297,14 +387,45 @@ public class BindingBuilder<T> implements AnnotatingBuilder<T> {
                 !isNotStaticInnerClass(rawType),
                 "%s is (not static) inner class; only STATIC inner class can be bound",
                 rawType.getName());
-        checkBindingCondition(
-                constructorInfo.isInjectAnnotated()
-                        || !isPrivateConstructorInNotPrivateClass(constructorInfo),
-                "%s is private but %s is not; add @Inject annotation if you want to use this constructor",
-                constructorInfo.getConstructor().toString(), rawType.getName());
+        if (!constructorInfo.isInjectAnnotated()
+                && isPrivateConstructorInNotPrivateClass(constructorInfo)) {
+            // constructor is looked up only for the message (generated infos
+            // resolve it lazily)
+            throw new BindingError(String.format(
+                    "%s is private but %s is not; add @Inject annotation if you want to use this constructor",
+                    constructorInfo.getConstructor(), rawType.getName()));
+        }
 
+        long start = startTime();
         mBindingCollector.checkProducerPreconditions(constructorInfo);
-        return mProducerFactory.createProducer(constructorInfo);
+        recordPhase(Phase.PRECONDITIONS, start);
+
+        mDependencies = constructionDependencies(constructorInfo.getParameterKeys());
+
+        start = startTime();
+        Producer<? extends T> producer = mProducerFactory.createProducer(constructorInfo);
+        recordPhase(Phase.PRODUCER_CREATION, start);
+        return producer;
+    }
+
+    private long startTime() {
+        return mListener != null ? System.nanoTime() : 0L;
+    }
+
+    private void recordPhase(Phase phase, long start) {
+        if (mListener != null) {
+            mListener.onPhase(mKey, phase, System.nanoTime() - start);
+        }
+    }
+
+    private static Key<?>[] constructionDependencies(Key<?>[] parameterKeys) {
+        List<Key<?>> dependencies = Lists.newArrayListWithCapacity(parameterKeys.length);
+        for (Key<?> key : parameterKeys) {
+            if (!key.getRawType().equals(javax.inject.Provider.class)) {
+                dependencies.add(key);
+            }
+        }
+        return dependencies.toArray(new Key<?>[dependencies.size()]);
     }
 
     private static void checkBindingCondition(
@@ -323,6 +444,10 @@ public class BindingBuilder<T> implements AnnotatingBuilder<T> {
     }
 
     private static boolean isPrivateConstructorInNotPrivateClass(ConstructorInfo<?> info) {
+        if (info instanceof GeneratedConstructorInfo) {
+            // annotation processor never generates infos of private constructors
+            return false;
+        }
         Constructor<?> constructor = info.getConstructor();
         return Modifier.isPrivate(constructor.getModifiers())
                 && !Modifier.isPrivate(constructor.getDeclaringClass().getModifiers());
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice.internal;
+
+import pl.chalapuk.muice.Binding;
+import pl.chalapuk.muice.Key;
+import pl.chalapuk.muice.Producer;
+import pl.chalapuk.muice.Scope;
+
+/**
+ * Binding created by {@link BindingBuilder}. Besides binding target, it
+ * contains keys of bindings needed to create instances of this binding.
+ * 
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+public final class BindingImpl<T> implements Binding<T> {
+    private final Key<T> mKey;
+    private final Producer<? extends T> mTarget;
+    private final Scope mScope;
+    private final Key<?>[] mDependencies;
+    private final boolean mEager;
+
+    public BindingImpl(Key<T> key, Producer<? extends T> target, Scope scope,
+            Key<?>[] dependencies, boolean eager) {
+        mKey = key;
+        mTarget = target;
+        mScope = scope;
+        mDependencies = dependencies;
+        mEager = eager;
+    }
+
+    @Override
+    public Key<T> getKey() {
+        return mKey;
+    }
+
+    @Override
+    public Producer<? extends T> getTarget() {
+        return mTarget;
+    }
+
+    @Override
+    public Scope getScope() {
+        return mScope;
+    }
+
+    /**
+     * @return keys of bindings, which are instantiated when creating instance
+     *         of this binding (injected providers are not included)
+     */
+    public Key<?>[] getDependencies() {
+        return mDependencies.clone();
+    }
+
+    /**
+     * @return {@code true} if instance should be created with the injector
+     */
+    public boolean isEager() {
+        return mEager;
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pl.chalapuk.muice.internal;
+
+import javax.inject.Provider;
+
+/**
+ * Provides always the same instance. Used for instance bindings, which don't
+ * need neither a producer nor a scope, and for keys of providers, which are
+ * bound implicitly to providers of their type arguments.
+ * 
+ * @param <T> type of provided instance
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+public final class ConstantProvider<T> implements Provider<T> {
+    private final T mInstance;
+
+    public ConstantProvider(T instance) {
+        mInstance = instance;
+    }
+
+    @Override
+    public T get() {
+        return mInstance;
+    }
+
+    @Override
+    public String toString() {
+        return "ConstantProvider[" + mInstance + "]";
+    }
+}
@@ -0,0 +1,333 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pl.chalapuk.muice.internal;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.base.Optional;
+
+import pl.chalapuk.muice.Binding;
+import pl.chalapuk.muice.Injector;
+import pl.chalapuk.muice.Key;
+import pl.chalapuk.muice.Producer;
+import pl.chalapuk.muice.TypeLiteral;
+
+/**
+ * Linked {@link IterativeProducer}. Plan consists of steps, one for each
+ * unscoped binding created by iterative producer. A step creates arguments of
+ * its producer in order: it either obtains argument from a provider or
+ * executes step of argument's binding. When all arguments are created, the
+ * producer is called with them.
+ * <p>
+ * Steps are executed in a loop: arguments and steps being executed are kept
+ * on explicit per-thread stacks, so depth of dependency graph doesn't affect
+ * depth of the thread stack. Producers (created by the factory wrapped in
+ * {@link IterativeProducerFactory}) are called with an injector that returns
+ * prepared arguments for keys of their parameters, so they don't look up
+ * dependencies themselves.
+ * <p>
+ * Plans executed from inside of other plans (e.g. by a singleton provider) use
+ * the stacks above the values of outer plan.
+ * 
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+final class ConstructionPlan<T> implements Producer<T> {
+    private static final ThreadLocal<Stack> sStacks = new ThreadLocal<Stack>() {
+
+        @Override
+        protected Stack initialValue() {
+            return new Stack();
+        }
+    };
+
+    private final Step mFirstStep;
+    private final Injector mInjector;
+
+    /**
+     * @param firstStep step of planned binding
+     * @param injector injector which provides other bindings to producers
+     */
+    ConstructionPlan(Step firstStep, Injector injector) {
+        mFirstStep = firstStep;
+        mInjector = injector;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T newInstance(Injector unused) {
+        Stack stack = sStacks.get();
+        int valuesBase = stack.mTop;
+        int stepsBase = stack.mDepth;
+        stack.pushStep(mFirstStep);
+        try {
+            while (stack.mDepth > stepsBase) {
+                int current = stack.mDepth - 1;
+                Step step = stack.mSteps[current];
+                int argument = stack.mArguments[current];
+                if (argument == step.mKeys.length) {
+                    stack.popStep();
+                    stack.push(stack.produce(step, mInjector));
+                    continue;
+                }
+
+                stack.mArguments[current] = argument + 1;
+                Step inner = step.mSteps[argument];
+                if (inner != null) {
+                    stack.pushStep(inner);
+                } else {
+                    stack.push(step.mProviders[argument].get());
+                }
+            }
+            return (T) stack.mValues[valuesBase];
+        } finally {
+            stack.release(valuesBase, stepsBase);
+        }
+    }
+
+    Step getFirstStep() {
+        return mFirstStep;
+    }
+
+    /**
+     * Creates instance of one binding. Immutable, shared by plans of all
+     * bindings which depend on it.
+     */
+    static final class Step {
+        final Producer<?> mProducer;
+        final Key<?>[] mKeys;
+        final Step[] mSteps;
+        final javax.inject.Provider<?>[] mProviders;
+
+        /**
+         * @param producer producer of the binding
+         * @param keys keys of producer's parameters
+         * @param steps steps creating arguments ({@code null} for arguments
+         *            obtained from providers)
+         * @param providers providers of arguments ({@code null} for arguments
+         *            created by steps)
+         */
+        Step(Producer<?> producer, Key<?>[] keys, Step[] steps,
+                javax.inject.Provider<?>[] providers) {
+            mProducer = producer;
+            mKeys = keys;
+            mSteps = steps;
+            mProviders = providers;
+        }
+    }
+
+    /**
+     * Values and steps of plans executed in one thread.
+     */
+    private static final class Stack {
+        final ArgumentInjector mArgumentInjector = new ArgumentInjector(this);
+
+        Object[] mValues = new Object[32];
+        int mTop = 0;
+
+        Step[] mSteps = new Step[16];
+        int[] mArguments = new int[16];
+        int mDepth = 0;
+
+        void push(Object value) {
+            if (mTop == mValues.length) {
+                mValues = Arrays.copyOf(mValues, mTop * 2);
+            }
+            mValues[mTop++] = value;
+        }
+
+        void pushStep(Step step) {
+            if (mDepth == mSteps.length) {
+                mSteps = Arrays.copyOf(mSteps, mDepth * 2);
+                mArguments = Arrays.copyOf(mArguments, mDepth * 2);
+            }
+            mSteps[mDepth] = step;
+            mArguments[mDepth] = 0;
+            ++mDepth;
+        }
+
+        void popStep() {
+            mSteps[--mDepth] = null;
+        }
+
+        /**
+         * Calls producer of the step with arguments from top of the stack and
+         * removes them.
+         */
+        Object produce(Step step, Injector injector) {
+            int base = mTop - step.mKeys.length;
+            ArgumentInjector arguments = mArgumentInjector;
+            // producer may run other plans, which use the same argument injector
+            Injector outerInjector = arguments.mInjector;
+            Key<?>[] outerKeys = arguments.mKeys;
+            int outerBase = arguments.mBase;
+            int outerNext = arguments.mNext;
+            arguments.set(injector, step.mKeys, base);
+            try {
+                return step.mProducer.newInstance(arguments);
+            } finally {
+                arguments.mInjector = outerInjector;
+                arguments.mKeys = outerKeys;
+                arguments.mBase = outerBase;
+                arguments.mNext = outerNext;
+                release(base, mDepth);
+            }
+        }
+
+        void release(int top, int depth) {
+            Arrays.fill(mValues, top, mTop, null);
+            mTop = top;
+            Arrays.fill(mSteps, depth, mDepth, null);
+            mDepth = depth;
+        }
+    }
+
+    /**
+     * Injector passed to producers. Returns arguments prepared on the stack for
+     * keys of producer's parameters and delegates other lookups to injector of
+     * the plan.
+     */
+    private static final class ArgumentInjector implements Injector {
+        private static final Key<?>[] NO_KEYS = new Key<?>[0];
+
+        private final Stack mStack;
+
+        Injector mInjector;
+        Key<?>[] mKeys = NO_KEYS;
+        int mBase;
+        int mNext;
+
+        ArgumentInjector(Stack stack) {
+            mStack = stack;
+        }
+
+        void set(Injector injector, Key<?>[] keys, int base) {
+            mInjector = injector;
+            mKeys = keys;
+            mBase = base;
+            mNext = 0;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T getInstance(Key<T> key) {
+            int index = indexOf(key);
+            if (index == -1) {
+                return mInjector.getInstance(key);
+            }
+            return (T) argument(index);
+        }
+
+        @Override
+        public <T> T getInstance(TypeLiteral<T> typeLiteral) {
+            return getInstance(Key.get(typeLiteral));
+        }
+
+        @Override
+        public <T> T getInstance(Class<T> type) {
+            return getInstance(Key.get(type));
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> javax.inject.Provider<? extends T> getProvider(Key<T> key) {
+            int index = indexOf(key);
+            if (index == -1) {
+                return mInjector.getProvider(key);
+            }
+            return new ConstantProvider<T>((T) argument(index));
+        }
+
+        @Override
+        public <T> javax.inject.Provider<? extends T> getProvider(TypeLiteral<T> typeLiteral) {
+            return getProvider(Key.get(typeLiteral));
+        }
+
+        @Override
+        public <T> javax.inject.Provider<? extends T> getProvider(Class<T> type) {
+            return getProvider(Key.get(type));
+        }
+
+        @Override
+        public Object[] getInstances(Key<?>... keys) {
+            return BatchLookup.getInstances(this, keys, new Object[keys.length]);
+        }
+
+        @Override
+        public Object[] getInstances(Key<?>[] keys, Object[] instances) {
+            return BatchLookup.getInstances(this, keys, instances);
+        }
+
+        @Override
+        public List<javax.inject.Provider<?>> getProviders(Iterable<? extends Key<?>> keys) {
+            return BatchLookup.getProviders(this, keys);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> javax.inject.Provider<? extends T> getExistingProvider(Key<T> key) {
+            int index = indexOf(key);
+            if (index == -1) {
+                return mInjector.getExistingProvider(key);
+            }
+            return new ConstantProvider<T>((T) argument(index));
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> Optional<T> tryGetInstance(Key<T> key) {
+            int index = indexOf(key);
+            if (index == -1) {
+                return mInjector.tryGetInstance(key);
+            }
+            return Optional.fromNullable((T) argument(index));
+        }
+
+        @Override
+        public boolean hasBinding(Key<?> key) {
+            return indexOf(key) != -1 || mInjector.hasBinding(key);
+        }
+
+        @Override
+        public Iterable<Binding<?>> getBindings() {
+            return mInjector.getBindings();
+        }
+
+        private Object argument(int index) {
+            return mStack.mValues[mBase + index];
+        }
+
+        /**
+         * Parameters are expected to be looked up in order, others are
+         * searched for.
+         * 
+         * @return index of parameter with given key or {@code -1}
+         */
+        private int indexOf(Key<?> key) {
+            if (mNext < mKeys.length && mKeys[mNext].equals(key)) {
+                return mNext++;
+            }
+            for (int i = 0; i < mKeys.length; ++i) {
+                if (mKeys[i].equals(key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice.internal;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import pl.chalapuk.muice.InjectionError;
+
+/**
+ * Lock serializing one-time creation of an object which may need other
+ * objects guarded by creation locks (e.g. singleton instances in
+ * {@link SingletonProvider} and initialization of custom providers in
+ * {@link ProviderProducer}).
+ * <p>
+ * Threads waiting for a lock held by another thread are registered in a
+ * wait-for graph shared by all creation locks. They check periodically whether
+ * they are not part of a cycle (thread A holds X and waits for Y, while thread
+ * B holds Y and waits for X) and fail with {@link InjectionError} instead of
+ * waiting forever.
+ * 
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+final class CreationLock extends ReentrantLock {
+    private static final long serialVersionUID = 1L;
+    private static final long CYCLE_CHECK_INTERVAL_MS = 10;
+
+    /**
+     * Locks that threads are waiting for.
+     */
+    private static final ConcurrentMap<Thread, CreationLock> sWaiting =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Acquires the lock, waiting if it is held by another thread.
+     * 
+     * @param subject created object (used only in error messages)
+     * @throws InjectionError if waiting thread is part of a cycle or was
+     *             interrupted
+     */
+    void acquire(Object subject) {
+        if (tryLock()) {
+            return;
+        }
+
+        Thread current = Thread.currentThread();
+        sWaiting.put(current, this);
+        try {
+            do {
+                checkNoCycle(current, subject);
+            } while (!tryLock(CYCLE_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS));
+        } catch (InterruptedException e) {
+            current.interrupt();
+            throw new InjectionError("interrupted while waiting for " + subject, e);
+        } finally {
+            sWaiting.remove(current);
+        }
+    }
+
+    private void checkNoCycle(Thread current, Object subject) {
+        CreationLock awaited = this;
+        // chain longer than number of waiting threads means that it changed
+        for (int i = sWaiting.size(); i >= 0 && awaited != null; --i) {
+            Thread owner = awaited.getOwner();
+            if (owner == null) {
+                return;
+            }
+            if (owner == current) {
+                throw new InjectionError("circular dependency between objects created in "
+                        + "different threads detected while waiting for " + subject);
+            }
+            awaited = sWaiting.get(owner);
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice.internal;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+import pl.chalapuk.muice.Binding;
+import pl.chalapuk.muice.BindingError;
+import pl.chalapuk.muice.InjectionError;
+import pl.chalapuk.muice.Key;
+
+/**
+ * Creates instances of eager singletons in a {@link ForkJoinPool}.
+ * <p>
+ * Each eager singleton is created by one task, which first forks and joins
+ * tasks of eager singletons it depends on (directly or through other
+ * bindings). Singletons that don't depend on each other are therefore created
+ * concurrently, while each singleton is created after all its dependencies.
+ * 
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+class EagerSingletons {
+    private final List<Creation> mCreations;
+    private final AtomicReference<Throwable> mFailure = new AtomicReference<>();
+
+    EagerSingletons(Iterable<Binding<?>> bindings, ProviderTable providers) {
+        Map<Key<?>, Binding<?>> byKey = Maps.newHashMap();
+        for (Binding<?> binding : bindings) {
+            byKey.put(binding.getKey(), binding);
+        }
+
+        Map<Key<?>, Creation> creations = Maps.newHashMap();
+        for (Binding<?> binding : byKey.values()) {
+            if (isEager(binding)) {
+                creations.put(binding.getKey(),
+                        new Creation(binding.getKey(), providers.get(binding.getKey())));
+            }
+        }
+
+        Map<Key<?>, Set<Creation>> visited = Maps.newHashMap();
+        Set<Key<?>> walking = Sets.newHashSet();
+        for (Creation creation : creations.values()) {
+            Set<Creation> dependencies = Sets.newLinkedHashSet();
+            for (Key<?> key : dependenciesOf(byKey.get(creation.mKey))) {
+                dependencies.addAll(eagerDependencies(key, byKey, creations, visited, walking));
+            }
+            creation.mDependencies = ImmutableList.copyOf(dependencies);
+        }
+        Set<Creation> checked = Sets.newHashSet();
+        for (Creation creation : creations.values()) {
+            checkAcyclic(creation, Sets.<Creation> newHashSet(), checked);
+        }
+        mCreations = ImmutableList.copyOf(creations.values());
+    }
+
+    /**
+     * Creates all eager singletons and waits for completion.
+     * 
+     * @throws InjectionError if any singleton could not be created
+     */
+    void create(ForkJoinPool pool) throws InjectionError {
+        pool.invoke(new Root());
+        rethrowFailure();
+    }
+
+    /**
+     * Starts creation of all eager singletons.
+     * 
+     * @param result value set in returned future when all singletons are
+     *            created
+     * @return future, which fails with {@link InjectionError} if any
+     *         singleton could not be created
+     */
+    <T> ListenableFuture<T> createAsync(ForkJoinPool pool, final T result) {
+        final SettableFuture<T> future = SettableFuture.create();
+        pool.execute(new Root() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void compute() {
+                try {
+                    super.compute();
+                    rethrowFailure();
+                    future.set(result);
+                } catch (Throwable t) {
+                    future.setException(t);
+                }
+            }
+        });
+        return future;
+    }
+
+    private void rethrowFailure() {
+        Throwable failure = mFailure.get();
+        if (failure instanceof InjectionError) {
+            throw (InjectionError) failure;
+        }
+        if (failure != null) {
+            throw new InjectionError("error while creating eager singleton", failure);
+        }
+    }
+
+    /**
+     * @return {@code true} if instance of given binding should be created
+     *         with the injector
+     */
+    static boolean isEager(Binding<?> binding) {
+        if (binding instanceof LazyBinding) {
+            return ((LazyBinding<?>) binding).isEager();
+        }
+        if (binding instanceof LinkedBinding) {
+            return ((LinkedBinding<?>) binding).isEager();
+        }
+        return binding instanceof BindingImpl && ((BindingImpl<?>) binding).isEager();
+    }
+
+    private static Key<?>[] dependenciesOf(Binding<?> binding) {
+        if (binding instanceof LazyBinding) {
+            // lazy bindings know their dependencies only after resolution
+            return ((LazyBinding<?>) binding).resolve().getDependencies();
+        }
+        if (binding instanceof BindingImpl) {
+            return ((BindingImpl<?>) binding).getDependencies();
+        }
+        if (binding instanceof LinkedBinding) {
+            return new Key<?>[] {
+                    ((LinkedBinding<?>) binding).getTargetKey()
+            };
+        }
+        return new Key<?>[0];
+    }
+
+    /**
+     * @param walking keys which dependencies are being walked
+     */
+    private static Set<Creation> eagerDependencies(Key<?> key, Map<Key<?>, Binding<?>> bindings,
+            Map<Key<?>, Creation> creations, Map<Key<?>, Set<Creation>> visited,
+            Set<Key<?>> walking) {
+        Creation creation = creations.get(key);
+        if (creation != null) {
+            return Sets.newHashSet(creation);
+        }
+
+        Set<Creation> dependencies = visited.get(key);
+        if (dependencies == null) {
+            // bindings depend only on keys bound before them, except in lazy
+            // bindings mode, where this is not checked
+            if (!walking.add(key)) {
+                throw new BindingError("circular dependency of " + key);
+            }
+            dependencies = Sets.newLinkedHashSet();
+            Binding<?> binding = bindings.get(key);
+            if (binding != null) {
+                for (Key<?> dependency : dependenciesOf(binding)) {
+                    dependencies.addAll(eagerDependencies(dependency, bindings, creations,
+                            visited, walking));
+                }
+            }
+            walking.remove(key);
+            visited.put(key, dependencies);
+        }
+        return dependencies;
+    }
+
+    private static void checkAcyclic(Creation creation, Set<Creation> inProgress,
+            Set<Creation> checked) {
+        if (checked.contains(creation)) {
+            return;
+        }
+        if (!inProgress.add(creation)) {
+            throw new BindingError("circular dependency of eager singleton " + creation.mKey);
+        }
+        for (Creation dependency : creation.mDependencies) {
+            checkAcyclic(dependency, inProgress, checked);
+        }
+        inProgress.remove(creation);
+        checked.add(creation);
+    }
+
+    private class Root extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void compute() {
+            forkAndJoin(mCreations);
+        }
+    }
+
+    private class Creation extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        final Key<?> mKey;
+        final javax.inject.Provider<?> mProvider;
+        final AtomicBoolean mForked = new AtomicBoolean();
+        List<Creation> mDependencies;
+
+        Creation(Key<?> key, javax.inject.Provider<?> provider) {
+            mKey = key;
+            mProvider = provider;
+        }
+
+        @Override
+        protected void compute() {
+            forkAndJoin(mDependencies);
+            if (mFailure.get() != null) {
+                return;
+            }
+
+            try {
+                mProvider.get();
+            } catch (Throwable t) {
+                mFailure.compareAndSet(null, t);
+            }
+        }
+    }
+
+    private static void forkAndJoin(List<Creation> creations) {
+        for (Creation creation : creations) {
+            // many singletons may depend on this one, but it must be forked only once
+            if (creation.mForked.compareAndSet(false, true)) {
+                creation.fork();
+            }
+        }
+        for (Creation creation : creations) {
+            creation.join();
+        }
+    }
+}
@@ -18,19 +18,34 @@ package pl.chalapuk.muice.internal;
 
 import static com.google.common.base.Preconditions.*;
 
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Map;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
-import com.google.common.collect.Maps;
+import javax.annotation.Nullable;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 
 import pl.chalapuk.muice.Binding;
 import pl.chalapuk.muice.BindingError;
 import pl.chalapuk.muice.BindingModule;
 import pl.chalapuk.muice.Injector;
 import pl.chalapuk.muice.Key;
+import pl.chalapuk.muice.Scope;
 import pl.chalapuk.muice.TypeLiteral;
 import pl.chalapuk.muice.customization.BindingCollector;
+import pl.chalapuk.muice.customization.BuildListener;
+import pl.chalapuk.muice.customization.BuildListener.Phase;
 import pl.chalapuk.muice.customization.InjectorBuilder;
+import pl.chalapuk.muice.customization.ProvisionListener;
 
 /**
  * @author maciej@chalapuk.pl (Maciej Chałapuk)
@@ -38,12 +53,22 @@ import pl.chalapuk.muice.customization.InjectorBuilder;
 public class InjectorBuilderImpl implements InjectorBuilder {
     private final BindingCollector mCollector;
     private final BinderImpl mBinder;
+    private final boolean mLazyBindings;
+    private final BuildListener mListener;
+    private final ProvisionListener mProvisionListener;
 
+    private boolean mInstantiation = true;
     private Injector mInjector = null;
+    private EagerSingletons mEagerSingletons = null;
 
-    public InjectorBuilderImpl(BindingCollector collector, BinderImpl binder) {
+    public InjectorBuilderImpl(BindingCollector collector, BinderImpl binder,
+            boolean lazyBindings, @Nullable BuildListener listener,
+            @Nullable ProvisionListener provisionListener) {
         mCollector = collector;
         mBinder = binder;
+        mLazyBindings = lazyBindings;
+        mListener = listener;
+        mProvisionListener = provisionListener;
     }
 
     @Override
@@ -63,18 +88,145 @@ public class InjectorBuilderImpl implements InjectorBuilder {
         return this;
     }
 
+    /**
+     * Disables creation of eager singletons and initialization of Muice
+     * providers during build. Binding configuration is checked as usual. Used
+     * by tools which check binding modules at build time (e.g. injector
+     * compiler) and must not run application code. Providers of injector
+     * built this way are initialized on first use.
+     * 
+     * @return {@code this}
+     * @throws IllegalStateException if build was already finalized
+     */
+    public InjectorBuilderImpl withoutInstantiation() throws IllegalStateException {
+        checkState(mInjector == null, "injector already built");
+        mInstantiation = false;
+        return this;
+    }
+
     @Override
     public Injector build() throws IllegalStateException {
+        long start = System.nanoTime();
+        Injector injector = createInjector();
+        if (mInstantiation && mEagerSingletons != null) {
+            ForkJoinPool pool = new ForkJoinPool();
+            try {
+                mEagerSingletons.create(pool);
+            } finally {
+                pool.shutdown();
+            }
+        }
+        if (mListener != null) {
+            mListener.onInjectorBuilt(injector, System.nanoTime() - start);
+        }
+        return injector;
+    }
+
+    @Override
+    public ListenableFuture<Injector> buildAsync() throws IllegalStateException {
+        final long start = System.nanoTime();
+        final Injector injector = createInjector();
+        if (!mInstantiation || mEagerSingletons == null) {
+            if (mListener != null) {
+                mListener.onInjectorBuilt(injector, System.nanoTime() - start);
+            }
+            return Futures.immediateFuture(injector);
+        }
+
+        final ForkJoinPool pool = new ForkJoinPool();
+        ListenableFuture<Injector> future = mEagerSingletons.createAsync(pool, injector);
+        future.addListener(new Runnable() {
+
+            @Override
+            public void run() {
+                pool.shutdown();
+                if (mListener != null) {
+                    mListener.onInjectorBuilt(injector, System.nanoTime() - start);
+                }
+            }
+        }, MoreExecutors.sameThreadExecutor());
+        return future;
+    }
+
+    private Injector createInjector() {
         checkState(mInjector == null, "injector already built");
-        
-        final Iterable<Binding<?>> bindings = mCollector.getBindings();
-        final Map<Key<?>, javax.inject.Provider<?>> scoped = Maps.newHashMap();
 
-        mInjector = new Injector() {
+        final ArrayList<Binding<?>> bindings = Lists.newArrayList();
+        final ProviderTable scoped = new ProviderTable();
+        mInjector = newInjector(Collections.unmodifiableList(bindings), scoped);
+
+        mBinder.bind(Injector.class).toInstance(mInjector);
+        mBinder.finishBuilding();
+        // injector keeps its own copy of bindings, so that neither the binder
+        // nor the collector are reachable from it
+        Iterables.addAll(bindings, mCollector.getBindings());
+        bindings.trimToSize();
+
+        boolean eager = false;
+        List<LinkedBinding<?>> linked = Lists.newArrayList();
+        for (Binding<?> binding : bindings) {
+            eager |= EagerSingletons.isEager(binding);
+            if (binding instanceof LinkedBinding) {
+                linked.add((LinkedBinding<?>) binding);
+                continue;
+            }
+            scoped.put(binding.getKey(), createProvider(binding));
+        }
+        // chains of links are collapsed, so each linked key holds provider of
+        // the last target in the chain (or its decoration)
+        while (!linked.isEmpty()) {
+            int remaining = linked.size();
+            for (Iterator<LinkedBinding<?>> it = linked.iterator(); it.hasNext();) {
+                LinkedBinding<?> binding = it.next();
+                if (scoped.get(binding.getTargetKey()) != null) {
+                    scoped.put(binding.getKey(), linkedProvider(binding, scoped));
+                    it.remove();
+                }
+            }
+            if (linked.size() == remaining) {
+                throw new BindingError("no binding for " + linked.get(0).getTargetKey()
+                        + " linked from " + linked.get(0).getKey());
+            }
+        }
+        scoped.trimToSize();
+        if (!mLazyBindings && mInstantiation) {
+            initializeProviders(mBinder.getProviderBindings());
+        }
+        // most injectors have no eager singletons, so they don't pay for the
+        // dependency graph of their bindings
+        mEagerSingletons = eager ? new EagerSingletons(bindings, scoped) : null;
+
+        return mInjector;
+    }
+
+    /**
+     * Initializes custom providers in order of declaration of their bindings,
+     * so that errors are reported during build and linked producers don't
+     * check whether provider is initialized. Providers used by
+     * {@link pl.chalapuk.muice.Provider#initialize} of other provider are
+     * initialized on that use, regardless of the order. Providers are not
+     * initialized concurrently, as initialization may use any binding.
+     */
+    private void initializeProviders(Iterable<Binding<?>> bindings) {
+        for (Binding<?> binding : bindings) {
+            long start = mListener != null ? System.nanoTime() : 0L;
+            ((ProviderProducer<?>) binding.getTarget()).initialize(mInjector);
+            if (mListener != null) {
+                mListener.onPhase(binding.getKey(), Phase.PROVIDER_INITIALIZATION,
+                        System.nanoTime() - start);
+            }
+        }
+    }
+
+    // Created in a static method, so that the injector does not reference its builder.
+    private static Injector newInjector(final Iterable<Binding<?>> bindings,
+            final ProviderTable scoped) {
+        return new Injector() {
 
             @Override
             public <T> T getInstance(Key<T> key) {
-                if (key.getRawType().equals(javax.inject.Provider.class)) {
+                if (key.getRawType().equals(javax.inject.Provider.class)
+                        && key.getTypeLiteral().getTypeArgumentCount() == 1) {
                     TypeLiteral<?> providedType = key.getTypeLiteral().getTypeArgument(0);
                     @SuppressWarnings("unchecked")
                     T provider = (T) getProvider(Key.get(providedType, key.getQualifier()));
@@ -90,13 +242,15 @@ public class InjectorBuilderImpl implements InjectorBuilder {
 
             @Override
             public <T> T getInstance(Class<T> type) {
-                return getInstance(Key.get(type));
+                if (type == javax.inject.Provider.class) {
+                    return getInstance(Key.get(type));
+                }
+                return getProvider(type).get();
             }
 
             @Override
             public <T> javax.inject.Provider<? extends T> getProvider(Key<T> key) {
-                javax.inject.Provider<? extends T> provider =
-                        (javax.inject.Provider<? extends T>) scoped.get(key);
+                javax.inject.Provider<? extends T> provider = getExistingProvider(key);
                 if (provider == null) {
                     throw new BindingError("no binding for " + key);
                 }
@@ -110,7 +264,66 @@ public class InjectorBuilderImpl implements InjectorBuilder {
 
             @Override
             public <T> javax.inject.Provider<? extends T> getProvider(Class<T> type) {
-                return getProvider(Key.get(type));
+                @SuppressWarnings("unchecked")
+                javax.inject.Provider<? extends T> provider =
+                        (javax.inject.Provider<? extends T>) scoped.get(type);
+                if (provider == null) {
+                    throw new BindingError("no binding for " + Key.get(type));
+                }
+                return resolved(provider);
+            }
+
+            @Override
+            public Object[] getInstances(Key<?>... keys) {
+                return BatchLookup.getInstances(this, keys, new Object[keys.length]);
+            }
+
+            @Override
+            public Object[] getInstances(Key<?>[] keys, Object[] instances) {
+                return BatchLookup.getInstances(this, keys, instances);
+            }
+
+            @Override
+            public List<javax.inject.Provider<?>> getProviders(Iterable<? extends Key<?>> keys) {
+                return BatchLookup.getProviders(this, keys);
+            }
+
+            @Override
+            public <T> javax.inject.Provider<? extends T> getExistingProvider(Key<T> key) {
+                if (key.getRawType().equals(javax.inject.Provider.class)
+                        && key.getTypeLiteral().getTypeArgumentCount() == 1) {
+                    Optional<T> provider = tryGetInstance(key);
+                    return provider.isPresent() ? new ConstantProvider<T>(provider.get()) : null;
+                }
+                @SuppressWarnings("unchecked")
+                javax.inject.Provider<? extends T> provider =
+                        (javax.inject.Provider<? extends T>) scoped.get(key);
+                return provider != null ? resolved(provider) : null;
+            }
+
+            @Override
+            public <T> Optional<T> tryGetInstance(Key<T> key) {
+                if (key.getRawType().equals(javax.inject.Provider.class)
+                        && key.getTypeLiteral().getTypeArgumentCount() == 1) {
+                    TypeLiteral<?> providedType = key.getTypeLiteral().getTypeArgument(0);
+                    @SuppressWarnings("unchecked")
+                    T provider = (T) getExistingProvider(Key.get(providedType, key.getQualifier()));
+                    return Optional.fromNullable(provider);
+                }
+                javax.inject.Provider<? extends T> provider = getExistingProvider(key);
+                return provider != null
+                        ? Optional.<T> fromNullable(provider.get())
+                        : Optional.<T> absent();
+            }
+
+            @Override
+            public boolean hasBinding(Key<?> key) {
+                if (key.getRawType().equals(javax.inject.Provider.class)
+                        && key.getTypeLiteral().getTypeArgumentCount() == 1) {
+                    TypeLiteral<?> providedType = key.getTypeLiteral().getTypeArgument(0);
+                    return scoped.get(Key.get(providedType, key.getQualifier())) != null;
+                }
+                return scoped.get(key) != null;
             }
 
             @Override
@@ -118,26 +331,155 @@ public class InjectorBuilderImpl implements InjectorBuilder {
                 return bindings;
             }
         };
+    }
 
-        mBinder.bind(Injector.class).toInstance(mInjector);
-        mBinder.finishBuilding();
-        
-        for (Binding<?> binding : bindings) {
-            scoped.put(binding.getKey(), applyScope(binding, mInjector));
+    private <T> javax.inject.Provider<? extends T> createProvider(Binding<T> binding) {
+        if (mLazyBindings) {
+            return new LazyProvider<T>(binding, mInjector, mListener, mProvisionListener);
         }
+        return applyScope(binding, mInjector, mListener, mProvisionListener);
+    }
 
-        return mInjector;
+    /**
+     * Instances of linked keys are provisioned by provider of the target, so
+     * provision listener is only notified about requests of linked keys.
+     */
+    private <T> javax.inject.Provider<? extends T> linkedProvider(
+            LinkedBinding<T> binding, ProviderTable scoped) {
+        @SuppressWarnings("unchecked")
+        javax.inject.Provider<? extends T> target =
+                (javax.inject.Provider<? extends T>) scoped.get(binding.getTargetKey());
+
+        javax.inject.Provider<? extends T> linked;
+        if (mListener == null) {
+            linked = binding.getLinkScope().decorate(binding.getKey(), target);
+        } else {
+            long start = System.nanoTime();
+            linked = binding.getLinkScope().decorate(binding.getKey(), target);
+            mListener.onPhase(binding.getKey(), Phase.SCOPE_DECORATION, System.nanoTime() - start);
+        }
+        if (mProvisionListener != null && mProvisionListener.isListening(binding)) {
+            return requested(binding.getKey(), linked, mProvisionListener);
+        }
+        return linked;
     }
 
-    private static <T> javax.inject.Provider<? extends T> applyScope(
-            final Binding<T> binding, final Injector injector
-            ) {
-        return binding.getScope().decorate(binding.getKey(), new javax.inject.Provider<T>() {
+    private static <T> javax.inject.Provider<? extends T> resolved(
+            javax.inject.Provider<? extends T> provider) {
+        if (provider instanceof LazyProvider) {
+            return ((LazyProvider<? extends T>) provider).resolve();
+        }
+        return provider;
+    }
+
+    static <T> javax.inject.Provider<? extends T> applyScope(
+            Binding<T> binding, Injector injector, @Nullable BuildListener listener,
+            @Nullable ProvisionListener provisionListener) {
+        boolean listening = provisionListener != null && provisionListener.isListening(binding);
+        boolean timing = listener != null && listener.isTimingConstructions();
+        if (!listening && !timing && isConstant(binding)) {
+            T instance = ((InstanceProducer<? extends T>) binding.getTarget()).getInstance();
+            return new ConstantProvider<T>(instance);
+        }
+
+        javax.inject.Provider<T> unscoped = new UnscopedProvider<T>(binding, injector);
+        if (listening) {
+            unscoped = provisioned(binding.getKey(), unscoped, provisionListener);
+        }
+        if (timing) {
+            unscoped = timed(binding.getKey(), unscoped, listener);
+        }
+        if (listening) {
+            return requested(binding.getKey(),
+                    decorate(binding, unscoped, listener), provisionListener);
+        }
+        return decorate(binding, unscoped, listener);
+    }
+
+    /**
+     * Instances bound with {@code toInstance()} are provided without producer
+     * and scope, unless they are in a custom scope.
+     */
+    private static boolean isConstant(Binding<?> binding) {
+        Scope scope = binding.getScope();
+        return binding.getTarget() instanceof InstanceProducer
+                && (scope == Scopes.NONE || scope == Scopes.SINGLETON);
+    }
+
+    private static <T> javax.inject.Provider<? extends T> decorate(Binding<T> binding,
+            javax.inject.Provider<T> unscoped, @Nullable BuildListener listener) {
+        if (listener == null) {
+            return binding.getScope().decorate(binding.getKey(), unscoped);
+        }
+
+        long start = System.nanoTime();
+        javax.inject.Provider<? extends T> scoped =
+                binding.getScope().decorate(binding.getKey(), unscoped);
+        listener.onPhase(binding.getKey(), Phase.SCOPE_DECORATION, System.nanoTime() - start);
+        return scoped;
+    }
+
+    private static <T> javax.inject.Provider<T> provisioned(final Key<T> key,
+            final javax.inject.Provider<T> unscoped, final ProvisionListener listener) {
+        return new javax.inject.Provider<T>() {
 
             @Override
             public T get() {
-                return binding.getTarget().newInstance(injector);
+                if (!listener.isEnabled()) {
+                    return unscoped.get();
+                }
+                listener.beforeProvision(key);
+                long start = System.nanoTime();
+                try {
+                    T instance = unscoped.get();
+                    listener.afterProvision(key, System.nanoTime() - start, null);
+                    return instance;
+                } catch (RuntimeException | Error e) {
+                    listener.afterProvision(key, System.nanoTime() - start, e);
+                    throw e;
+                }
             }
-        });
+        };
+    }
+
+    private static <T> javax.inject.Provider<? extends T> requested(final Key<T> key,
+            final javax.inject.Provider<? extends T> scoped, final ProvisionListener listener) {
+        return new javax.inject.Provider<T>() {
+
+            @Override
+            public T get() {
+                if (listener.isEnabled()) {
+                    listener.onRequest(key);
+                }
+                return scoped.get();
+            }
+        };
+    }
+
+    /**
+     * Only constructions until the first successful one are timed, so that
+     * profiling of startup doesn't slow down the injector for its lifetime.
+     */
+    private static <T> javax.inject.Provider<T> timed(final Key<T> key,
+            final javax.inject.Provider<T> unscoped, final BuildListener listener) {
+        return new javax.inject.Provider<T>() {
+            private volatile boolean mConstructed = false;
+
+            @Override
+            public T get() {
+                if (mConstructed) {
+                    return unscoped.get();
+                }
+                listener.beforeConstruction(key);
+                long start = System.nanoTime();
+                try {
+                    T instance = unscoped.get();
+                    mConstructed = true;
+                    return instance;
+                } finally {
+                    listener.afterConstruction(key, System.nanoTime() - start);
+                }
+            }
+        };
     }
 }
@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pl.chalapuk.muice.internal;
+
+import pl.chalapuk.muice.Injector;
+import pl.chalapuk.muice.Producer;
+
+/**
+ * Producer of instance bindings. Injector recognizes it and provides the
+ * instance with {@link ConstantProvider} if binding is not scoped by a custom
+ * scope.
+ * 
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+final class InstanceProducer<T> implements Producer<T> {
+    private final T mInstance;
+
+    InstanceProducer(T instance) {
+        mInstance = instance;
+    }
+
+    @Override
+    public T newInstance(Injector unused) {
+        return mInstance;
+    }
+
+    T getInstance() {
+        return mInstance;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pl.chalapuk.muice.internal;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import pl.chalapuk.muice.BindingError;
+import pl.chalapuk.muice.Injector;
+import pl.chalapuk.muice.Key;
+import pl.chalapuk.muice.Producer;
+import pl.chalapuk.muice.TypeLiteral;
+import pl.chalapuk.muice.customization.ConstructorInfo;
+import pl.chalapuk.muice.customization.LinkableProducer;
+
+/**
+ * Producer created by {@link IterativeProducerFactory}. Linking creates
+ * {@link ConstructionPlan} of the binding.
+ * 
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+final class IterativeProducer<T> implements LinkableProducer<T> {
+    private final Key<?>[] mKeys;
+    private final Producer<T> mDelegate;
+
+    IterativeProducer(ConstructorInfo<T> info, Producer<T> delegate) {
+        mKeys = info.getParameterKeys();
+        mDelegate = delegate;
+    }
+
+    @Override
+    public T newInstance(Injector injector) {
+        return mDelegate.newInstance(injector);
+    }
+
+    /**
+     * Walks dependencies of the binding (with explicit stack) and creates one
+     * step for each unscoped binding created by iterative producer. Steps of
+     * bindings reachable through many paths are created once and shared, so
+     * size of the plan is linear in number of reachable bindings.
+     * 
+     * @throws BindingError if a dependency is not bound or unscoped bindings
+     *             depend on each other (possible in lazy bindings mode)
+     */
+    @Override
+    public Producer<T> link(Injector injector) {
+        Map<IterativeProducer<?>, ConstructionPlan.Step> steps = Maps.newIdentityHashMap();
+        Set<IterativeProducer<?>> inProgress = Sets.newIdentityHashSet();
+        List<Node> path = Lists.newArrayList();
+        path.add(new Node(this));
+        inProgress.add(this);
+
+        ConstructionPlan.Step step = null;
+        while (!path.isEmpty()) {
+            Node node = path.get(path.size() - 1);
+            if (node.mNext == node.mSteps.length) {
+                path.remove(path.size() - 1);
+                inProgress.remove(node.mProducer);
+                step = new ConstructionPlan.Step(node.mProducer.mDelegate, node.mProducer.mKeys,
+                        node.mSteps, node.mProviders);
+                steps.put(node.mProducer, step);
+                continue;
+            }
+
+            Key<?> key = node.mProducer.mKeys[node.mNext];
+            javax.inject.Provider<?> provider = provider(injector, key);
+            IterativeProducer<?> inner = plannable(provider);
+            if (inner == null) {
+                node.mProviders[node.mNext++] = provider;
+                continue;
+            }
+            ConstructionPlan.Step innerStep = steps.get(inner);
+            if (innerStep == null) {
+                innerStep = linkedStep(provider);
+            }
+            if (innerStep != null) {
+                node.mSteps[node.mNext++] = innerStep;
+                continue;
+            }
+            if (!inProgress.add(inner)) {
+                throw new BindingError("circular dependency of " + key);
+            }
+            // step of the key is used when walk gets back to this node
+            path.add(new Node(inner));
+        }
+        return new ConstructionPlan<T>(step, injector);
+    }
+
+    private static javax.inject.Provider<?> provider(Injector injector, Key<?> key) {
+        if (key.getRawType().equals(javax.inject.Provider.class)) {
+            TypeLiteral<?> providedType = key.getTypeLiteral().getTypeArgument(0);
+            return new ConstantProvider<>(
+                    injector.getProvider(Key.get(providedType, key.getQualifier())));
+        }
+        return injector.getProvider(key);
+    }
+
+    /**
+     * @return iterative producer of unscoped binding or {@code null}
+     */
+    private static IterativeProducer<?> plannable(javax.inject.Provider<?> provider) {
+        if (provider instanceof UnscopedProvider) {
+            Producer<?> producer = ((UnscopedProvider<?>) provider).getProducer();
+            if (producer instanceof IterativeProducer) {
+                return (IterativeProducer<?>) producer;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return first step of plan already linked by the provider or
+     *         {@code null}
+     */
+    private static ConstructionPlan.Step linkedStep(javax.inject.Provider<?> provider) {
+        Producer<?> linked = ((UnscopedProvider<?>) provider).getLinkedProducer();
+        if (linked instanceof ConstructionPlan) {
+            return ((ConstructionPlan<?>) linked).getFirstStep();
+        }
+        return null;
+    }
+
+    private static final class Node {
+        final IterativeProducer<?> mProducer;
+        final ConstructionPlan.Step[] mSteps;
+        final javax.inject.Provider<?>[] mProviders;
+        int mNext = 0;
+
+        Node(IterativeProducer<?> producer) {
+            mProducer = producer;
+            mSteps = new ConstructionPlan.Step[producer.mKeys.length];
+            mProviders = new javax.inject.Provider<?>[producer.mKeys.length];
+        }
+    }
+}
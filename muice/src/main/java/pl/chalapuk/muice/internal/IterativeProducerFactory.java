@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pl.chalapuk.muice.internal;
+
+import static com.google.common.base.Preconditions.*;
+
+import pl.chalapuk.muice.Producer;
+import pl.chalapuk.muice.customization.ConstructorInfo;
+import pl.chalapuk.muice.customization.ProducerFactory;
+
+/**
+ * Creates producers, which construct whole graphs of unscoped dependencies
+ * without recursion. Used when iterative construction is enabled in
+ * {@link pl.chalapuk.muice.Muice}.
+ * <p>
+ * When linked, producer plans construction of its binding: it walks parameter
+ * keys of unscoped dependencies (also created by this factory) and creates
+ * one step per binding, shared by all paths which reach it. Steps are then
+ * executed in a loop, with arguments kept on an explicit per-thread stack, and
+ * each step calls producer created by the delegate factory with prepared
+ * arguments. Other dependencies (singletons, instances, custom providers,
+ * bindings in custom scopes or observed by listeners) are obtained from their
+ * providers.
+ * <p>
+ * Producers created by the delegate factory are also used directly when
+ * producer is called without linking.
+ * 
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+public class IterativeProducerFactory implements ProducerFactory {
+    private final ProducerFactory mDelegate;
+
+    public IterativeProducerFactory(ProducerFactory delegate) {
+        mDelegate = checkNotNull(delegate, "delegate");
+    }
+
+    @Override
+    public <T> Producer<T> createProducer(ConstructorInfo<T> info) {
+        return new IterativeProducer<T>(info, mDelegate.createProducer(info));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof IterativeProducerFactory
+                && mDelegate.equals(((IterativeProducerFactory) obj).mDelegate);
+    }
+
+    @Override
+    public int hashCode() {
+        return mDelegate.hashCode() * 31 + 1;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice.internal;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+import pl.chalapuk.muice.Binding;
+import pl.chalapuk.muice.BindingError;
+import pl.chalapuk.muice.Key;
+import pl.chalapuk.muice.Producer;
+import pl.chalapuk.muice.Scope;
+
+/**
+ * Binding, which analyzes bound type and creates its producer when target or
+ * scope is requested for the first time. Used in lazy bindings mode.
+ * <p>
+ * Resolution is done only once, even if requested concurrently. Failed
+ * resolution is repeated on next request. Concurrent resolutions are
+ * serialized with {@link ReentrantLock} (as creation of singletons in
+ * {@link SingletonProvider}), so that they don't pin virtual threads to their
+ * carriers. Resolution doesn't call any producers, so waiting for it is not
+ * registered for detection of cycles between threads.
+ * 
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+public final class LazyBinding<T> implements Binding<T> {
+    private final Key<T> mKey;
+    private final boolean mEager;
+
+    private final ReentrantLock mLock = new ReentrantLock();
+
+    private BindingBuilder<T> mBuilder;
+    private volatile BindingImpl<T> mResolved;
+
+    LazyBinding(Key<T> key, boolean eager, BindingBuilder<T> builder) {
+        mKey = key;
+        mEager = eager;
+        mBuilder = builder;
+    }
+
+    @Override
+    public Key<T> getKey() {
+        return mKey;
+    }
+
+    @Override
+    public Producer<? extends T> getTarget() {
+        return resolve().getTarget();
+    }
+
+    @Override
+    public Scope getScope() {
+        return resolve().getScope();
+    }
+
+    /**
+     * @return {@code true} if instance should be created with the injector
+     */
+    public boolean isEager() {
+        return mEager;
+    }
+
+    /**
+     * @return {@code true} if binding was already resolved
+     */
+    public boolean isResolved() {
+        return mResolved != null;
+    }
+
+    /**
+     * @return binding with created producer
+     * @throws BindingError if bound type can not be instantiated
+     */
+    public BindingImpl<T> resolve() {
+        BindingImpl<T> resolved = mResolved;
+        if (resolved == null) {
+            mLock.lock();
+            try {
+                resolved = mResolved;
+                if (resolved == null) {
+                    resolved = mBuilder.resolve();
+                    mResolved = resolved;
+                    mBuilder = null;
+                }
+            } finally {
+                mLock.unlock();
+            }
+        }
+        return resolved;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice.internal;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.Nullable;
+
+import pl.chalapuk.muice.Binding;
+import pl.chalapuk.muice.BindingError;
+import pl.chalapuk.muice.Injector;
+import pl.chalapuk.muice.customization.BuildListener;
+import pl.chalapuk.muice.customization.ProvisionListener;
+
+/**
+ * Placeholder stored in injector's provider table in lazy bindings mode.
+ * Binding is resolved and decorated with its scope on first use.
+ * <p>
+ * Concurrent resolutions are serialized with {@link ReentrantLock}, as in
+ * {@link LazyBinding}. Instances are not created under the lock.
+ * 
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+final class LazyProvider<T> implements javax.inject.Provider<T> {
+    private final Injector mInjector;
+    private final BuildListener mListener;
+    private final ProvisionListener mProvisionListener;
+
+    private final ReentrantLock mLock = new ReentrantLock();
+
+    private Binding<T> mBinding;
+    private volatile javax.inject.Provider<? extends T> mScoped;
+
+    LazyProvider(Binding<T> binding, Injector injector, @Nullable BuildListener listener,
+            @Nullable ProvisionListener provisionListener) {
+        mBinding = binding;
+        mInjector = injector;
+        mListener = listener;
+        mProvisionListener = provisionListener;
+    }
+
+    @Override
+    public T get() {
+        return resolve().get();
+    }
+
+    /**
+     * @return scoped provider of the binding
+     * @throws BindingError if binding could not be resolved
+     */
+    javax.inject.Provider<? extends T> resolve() {
+        javax.inject.Provider<? extends T> scoped = mScoped;
+        if (scoped == null) {
+            mLock.lock();
+            try {
+                scoped = mScoped;
+                if (scoped == null) {
+                    scoped = InjectorBuilderImpl.applyScope(mBinding, mInjector, mListener,
+                            mProvisionListener);
+                    mScoped = scoped;
+                    mBinding = null;
+                }
+            } finally {
+                mLock.unlock();
+            }
+        }
+        return scoped;
+    }
+}
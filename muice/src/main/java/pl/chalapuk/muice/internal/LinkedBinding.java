@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice.internal;
+
+import pl.chalapuk.muice.Binding;
+import pl.chalapuk.muice.Key;
+import pl.chalapuk.muice.Producer;
+import pl.chalapuk.muice.Scope;
+
+/**
+ * Binding of a key to another key. Injector provides instances of linked key
+ * with exactly the same scoped provider as instances of target key, so
+ * instances scoped in target binding (e.g. singletons) are shared. Scope of
+ * linked binding (if set explicitly) decorates scoped provider of target key.
+ * 
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+public final class LinkedBinding<T> implements Binding<T> {
+    private final Key<T> mKey;
+    private final Key<? extends T> mTargetKey;
+    private final Binding<? extends T> mTargetBinding;
+    private final Scope mScope;
+    private final boolean mEager;
+
+    LinkedBinding(Key<T> key, Binding<? extends T> targetBinding, Scope scope, boolean eager) {
+        mKey = key;
+        mTargetKey = targetBinding.getKey();
+        mTargetBinding = targetBinding;
+        mScope = scope;
+        mEager = eager;
+    }
+
+    @Override
+    public Key<T> getKey() {
+        return mKey;
+    }
+
+    /**
+     * @return producer of target binding
+     */
+    @Override
+    public Producer<? extends T> getTarget() {
+        return mTargetBinding.getTarget();
+    }
+
+    /**
+     * @return scope set explicitly for this binding or scope of target binding
+     *         (which scopes provided instances, as its provider is shared)
+     */
+    @Override
+    public Scope getScope() {
+        return mScope != Scopes.NONE ? mScope : mTargetBinding.getScope();
+    }
+
+    /**
+     * @return scope set explicitly for this binding (which decorates scoped
+     *         provider of target key) or {@link Scopes#NONE}
+     */
+    public Scope getLinkScope() {
+        return mScope;
+    }
+
+    /**
+     * @return key of target binding
+     */
+    public Key<? extends T> getTargetKey() {
+        return mTargetKey;
+    }
+
+    /**
+     * @return {@code true} if instance should be created with the injector
+     */
+    public boolean isEager() {
+        return mEager;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pl.chalapuk.muice.internal;
+
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import pl.chalapuk.muice.InjectionError;
+import pl.chalapuk.muice.Injector;
+import pl.chalapuk.muice.Producer;
+import pl.chalapuk.muice.Provider;
+import pl.chalapuk.muice.customization.LinkableProducer;
+
+/**
+ * Producer of bindings to {@link Provider muice providers}. Provider is
+ * initialized exactly once, by the injector builder (after all providers of
+ * the injector are created) or on first use if that did not happen (e.g. in
+ * lazy bindings mode). Linked producer delegates to the provider without
+ * checking initialization state.
+ * <p>
+ * Initialization is serialized with {@link CreationLock} (as creation of
+ * singletons in {@link SingletonProvider}), so that it doesn't pin virtual
+ * threads to their carriers and waiting for it takes part in detection of
+ * cycles between threads (e.g. initialization that needs a singleton being
+ * created in another thread, which in turn needs this provider).
+ * The lock is allocated only while the provider is being initialized.
+ * Initialization which needs instance of its own binding fails with
+ * {@link InjectionError}.
+ * 
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+final class ProviderProducer<T> implements LinkableProducer<T> {
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<ProviderProducer, CreationLock> sLock =
+            AtomicReferenceFieldUpdater.newUpdater(ProviderProducer.class, CreationLock.class,
+                    "mLock");
+
+    private final Provider<? extends T> mProvider;
+    private final Producer<T> mInitialized;
+
+    private volatile boolean mInitializationDone = false;
+    private volatile CreationLock mLock;
+
+    /**
+     * @param provider provider to initialize
+     * @param initialized producer calling the provider after it is initialized
+     */
+    ProviderProducer(Provider<? extends T> provider, Producer<T> initialized) {
+        mProvider = provider;
+        mInitialized = initialized;
+    }
+
+    @Override
+    public T newInstance(Injector injector) {
+        initialize(injector);
+        return mInitialized.newInstance(injector);
+    }
+
+    @Override
+    public Producer<T> link(Injector injector) {
+        initialize(injector);
+        return mInitialized;
+    }
+
+    @Override
+    public String toString() {
+        return "custom provider " + mProvider;
+    }
+
+    /**
+     * Initializes the provider if it was not initialized yet.
+     * 
+     * @throws InjectionError if initialization failed
+     */
+    void initialize(Injector injector) {
+        if (mInitializationDone) {
+            return;
+        }
+        CreationLock lock = lock();
+        if (lock.isHeldByCurrentThread()) {
+            throw new InjectionError("circular dependency while initializing custom provider "
+                    + mProvider);
+        }
+        lock.acquire(this);
+        try {
+            if (!mInitializationDone) {
+                try {
+                    mProvider.initialize(injector);
+                } catch (InjectionError e) {
+                    throw e;
+                } catch (Throwable t) {
+                    throw new InjectionError("error in initialization of custom provider", t);
+                }
+                mInitializationDone = true;
+                // threads that find no lock after this point also see the flag
+                mLock = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private CreationLock lock() {
+        CreationLock lock = mLock;
+        while (lock == null) {
+            CreationLock created = new CreationLock();
+            if (sLock.compareAndSet(this, null, created)) {
+                return created;
+            }
+            lock = mLock;
+        }
+        return lock;
+    }
+}
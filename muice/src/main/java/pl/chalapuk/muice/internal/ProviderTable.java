@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice.internal;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import pl.chalapuk.muice.Key;
+
+/**
+ * Stores scoped providers of an injector in a flat array.
+ * <p>
+ * Each binding gets an integer slot when its provider is stored. Slots are
+ * found in an open-addressing index owned by the table. {@link Key Keys} are
+ * interned, so the index compares them by identity and a lookup costs a read
+ * of cached {@link Key#hashCode()} and a few array accesses, without any
+ * {@link Key#equals(Object)} calls. Keys shared by many injectors don't hold
+ * any state of the tables.
+ * <p>
+ * Providers of unqualified bindings are additionally cached by {@link Class}
+ * (which has identity equality), so lookups by class don't create keys.
+ * {@link ClassValue} is not used for this purpose, because its values are
+ * strongly reachable from classes and would keep injectors alive.
+ * 
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+public class ProviderTable {
+    private static final int MIN_CAPACITY = 16;
+
+    private final ConcurrentMap<Class<?>, javax.inject.Provider<?>> mByClass =
+            new ConcurrentHashMap<>();
+
+    // index is kept at most half full, so probe sequences are short
+    private Key<?>[] mKeys = new Key<?>[MIN_CAPACITY * 2];
+    private int[] mSlots = new int[MIN_CAPACITY * 2];
+    private javax.inject.Provider<?>[] mProviders = new javax.inject.Provider<?>[MIN_CAPACITY];
+    private int mSize;
+
+    /**
+     * Stores provider in slot assigned to given key. New slot is assigned if
+     * the key was not stored before.
+     */
+    public void put(Key<?> key, javax.inject.Provider<?> provider) {
+        int index = indexOf(mKeys, key);
+        if (mKeys[index] == null) {
+            if (mSize == mProviders.length) {
+                mProviders = Arrays.copyOf(mProviders, Math.max(MIN_CAPACITY, mSize * 2));
+            }
+            mKeys[index] = key;
+            mSlots[index] = mSize++;
+            mProviders[mSize - 1] = provider;
+
+            if (mSize * 2 > mKeys.length) {
+                rehash(mKeys.length * 2);
+            }
+            return;
+        }
+        mProviders[mSlots[index]] = provider;
+    }
+
+    /**
+     * @return provider stored for given key or {@code null}
+     */
+    public javax.inject.Provider<?> get(Key<?> key) {
+        int index = indexOf(mKeys, key);
+        if (mKeys[index] == null) {
+            return null;
+        }
+        return mProviders[mSlots[index]];
+    }
+
+    /**
+     * Allocation-free lookup of unqualified binding of given class. Should be
+     * used only after all providers are stored.
+     * 
+     * @return provider stored for {@code Key.get(type)} or {@code null}
+     */
+    public javax.inject.Provider<?> get(Class<?> type) {
+        javax.inject.Provider<?> provider = mByClass.get(type);
+        if (provider == null) {
+            provider = get(Key.get(type));
+            if (provider != null) {
+                mByClass.put(type, provider);
+            }
+        }
+        return provider;
+    }
+
+    /**
+     * Releases unused capacity of the table. Should be called after all
+     * providers are stored.
+     */
+    public void trimToSize() {
+        if (mProviders.length > mSize) {
+            mProviders = Arrays.copyOf(mProviders, mSize);
+        }
+    }
+
+    /**
+     * @return number of slots in the table
+     */
+    public int size() {
+        return mSize;
+    }
+
+    private void rehash(int capacity) {
+        Key<?>[] keys = new Key<?>[capacity];
+        int[] slots = new int[capacity];
+        for (int i = 0; i < mKeys.length; ++i) {
+            if (mKeys[i] != null) {
+                int index = indexOf(keys, mKeys[i]);
+                keys[index] = mKeys[i];
+                slots[index] = mSlots[i];
+            }
+        }
+        mKeys = keys;
+        mSlots = slots;
+    }
+
+    /**
+     * @return index of given key or of the empty entry where it should be put
+     */
+    private static int indexOf(Key<?>[] keys, Key<?> key) {
+        int mask = keys.length - 1;
+        int hash = key.hashCode();
+        int index = (hash ^ (hash >>> 16)) & mask;
+        while (keys[index] != null && keys[index] != key) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+}
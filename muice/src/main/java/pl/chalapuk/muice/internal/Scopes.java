@@ -22,8 +22,6 @@ import javax.inject.Provider;
 import pl.chalapuk.muice.Key;
 import pl.chalapuk.muice.Scope;
 
-import com.google.common.base.Function;
-
 /**
  * Contains scopes supported in Muice by default.
  * 
@@ -42,34 +40,15 @@ public enum Scopes implements Scope {
     },
 
     /**
-     * Bound by default to {@link Singleton} annotation.
+     * Bound by default to {@link Singleton} annotation. Thread-safe: only one
+     * instance is created even if many threads request it at the same time.
+     * Decorated provider holds a creation lock only while its instance is
+     * being created.
      */
     SINGLETON {
         @Override
-        public <T> Provider<? extends T> decorate(Key<T> key, final Provider<? extends T> unscoped) {
-
-            return new Provider<T>() {
-                private Function<Provider<? extends T>, T> mGetter = new Function<Provider<? extends T>, T>() {
-
-                    @Override
-                    public T apply(Provider<? extends T> p) {
-                        final T val = p.get();
-                        mGetter = new Function<Provider<? extends T>, T>() {
-
-                            @Override
-                            public T apply(Provider<? extends T> arg0) {
-                                return val;
-                            }
-                        };
-                        return val;
-                    }
-                };
-
-                @Override
-                public T get() {
-                    return mGetter.apply(unscoped);
-                }
-            };
+        public <T> Provider<? extends T> decorate(Key<T> key, Provider<? extends T> unscoped) {
+            return new SingletonProvider<T>(key, unscoped);
         }
     }
 }
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice.internal;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.inject.Provider;
+
+import pl.chalapuk.muice.InjectionError;
+import pl.chalapuk.muice.Key;
+
+/**
+ * Provider used by {@link Scopes#SINGLETON}.
+ * <p>
+ * Created instance is published through a volatile field, so reading it after
+ * creation costs one volatile read. Creation is serialized per binding with
+ * {@link ReentrantLock} (which, unlike {@code synchronized}, doesn't pin
+ * virtual threads to their carriers). The lock is allocated on first request
+ * and released after the instance is created, so singletons that were never
+ * requested or are already created don't hold any lock. Threads waiting for a
+ * singleton created by another thread are registered in wait-for graph of
+ * {@link CreationLock}, so a cycle (thread A creates X which needs Y, while
+ * thread B creates Y which needs X) fails with {@link InjectionError} instead
+ * of waiting forever.
+ * 
+ * @param <T> type of provided instance
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+final class SingletonProvider<T> implements Provider<T> {
+    private static final Object UNINITIALIZED = new Object();
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<SingletonProvider, CreationLock> sLock =
+            AtomicReferenceFieldUpdater.newUpdater(SingletonProvider.class, CreationLock.class,
+                    "mLock");
+
+    private final Key<T> mKey;
+    private final Provider<? extends T> mUnscoped;
+
+    private volatile Object mInstance = UNINITIALIZED;
+    private volatile CreationLock mLock;
+
+    SingletonProvider(Key<T> key, Provider<? extends T> unscoped) {
+        mKey = checkNotNull(key, "key");
+        mUnscoped = checkNotNull(unscoped, "unscoped");
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get() {
+        Object instance = mInstance;
+        if (instance == UNINITIALIZED) {
+            instance = create();
+        }
+        return (T) instance;
+    }
+
+    @Override
+    public String toString() {
+        return "SingletonProvider[" + mKey + ", " + mUnscoped + "]";
+    }
+
+    private Object create() {
+        CreationLock lock = lock();
+        if (lock.isHeldByCurrentThread()) {
+            throw new InjectionError("circular dependency while creating singleton " + mKey);
+        }
+
+        lock.acquire(this);
+        try {
+            Object instance = mInstance;
+            if (instance == UNINITIALIZED) {
+                instance = mUnscoped.get();
+                mInstance = instance;
+                // threads that find no lock after this point also see the instance
+                mLock = null;
+            }
+            return instance;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private CreationLock lock() {
+        CreationLock lock = mLock;
+        while (lock == null) {
+            CreationLock created = new CreationLock();
+            if (sLock.compareAndSet(this, null, created)) {
+                return created;
+            }
+            lock = mLock;
+        }
+        return lock;
+    }
+}
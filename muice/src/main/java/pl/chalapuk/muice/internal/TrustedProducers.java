@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pl.chalapuk.muice.internal;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+
+import pl.chalapuk.muice.InjectionError;
+import pl.chalapuk.muice.Injector;
+import pl.chalapuk.muice.Producer;
+import pl.chalapuk.muice.Provider;
+
+/**
+ * Producers of custom providers and producers used in trusted providers mode.
+ * <p>
+ * Type of produced instances is verified once: when producer is created if
+ * class of the custom provider (or producer) directly implements provider (or
+ * producer) interface parameterized with a compatible class, on first produced
+ * instance otherwise. Exceptions thrown by custom providers and producers are
+ * not wrapped.
+ * 
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+final class TrustedProducers {
+
+    static <T> Producer<T> ofProvider(Class<? super T> rawType,
+            javax.inject.Provider<? extends T> provider) {
+        return ofProvider(rawType, provider, isTyped(provider.getClass(), rawType,
+                javax.inject.Provider.class, Provider.class));
+    }
+
+    static <T> Producer<T> ofProvider(final Class<? super T> rawType,
+            final javax.inject.Provider<? extends T> provider, boolean typed) {
+        if (typed) {
+            return new Producer<T>() {
+
+                @Override
+                public T newInstance(Injector unused) {
+                    return provider.get();
+                }
+            };
+        }
+        return new Producer<T>() {
+            private boolean mVerified = false;
+
+            @Override
+            public T newInstance(Injector unused) {
+                T instance = provider.get();
+                if (!mVerified) {
+                    verify(rawType, instance, "custom provider");
+                    mVerified = true;
+                }
+                return instance;
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> Producer<T> ofProducer(final Class<? super T> rawType,
+            final Producer<? extends T> producer) {
+        if (isTyped(producer.getClass(), rawType, Producer.class)) {
+            // producers only return instances, so this is safe
+            return (Producer<T>) producer;
+        }
+        return new Producer<T>() {
+            private boolean mVerified = false;
+
+            @Override
+            public T newInstance(Injector injector) {
+                T instance = producer.newInstance(injector);
+                if (!mVerified) {
+                    verify(rawType, instance, "custom producer");
+                    mVerified = true;
+                }
+                return instance;
+            }
+        };
+    }
+
+    /**
+     * @return {@code true} if given class implements one of given generic
+     *         interfaces with type argument assignable to {@code rawType}
+     */
+    static boolean isTyped(Class<?> type, Class<?> rawType, Class<?>... interfaces) {
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            for (Type generic : current.getGenericInterfaces()) {
+                if (!(generic instanceof ParameterizedType)) {
+                    continue;
+                }
+                ParameterizedType parameterized = (ParameterizedType) generic;
+                Type argument = parameterized.getActualTypeArguments()[0];
+                for (Class<?> iface : interfaces) {
+                    if (parameterized.getRawType() == iface && argument instanceof Class
+                            && rawType.isAssignableFrom((Class<?>) argument)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static void verify(Class<?> rawType, Object instance, String source) {
+        try {
+            rawType.cast(instance);
+        } catch (ClassCastException e) {
+            throw new InjectionError(source + " returned object of wrong type", e);
+        }
+    }
+
+    private TrustedProducers() {
+        // static members only
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice.internal;
+
+import pl.chalapuk.muice.Binding;
+import pl.chalapuk.muice.Injector;
+import pl.chalapuk.muice.Producer;
+import pl.chalapuk.muice.customization.LinkableProducer;
+
+/**
+ * Calls producer of a binding. Producer is {@linkplain LinkableProducer
+ * linked} with the injector before first instance is created, so it is done
+ * only for bindings which are actually used, after all providers of the
+ * injector are created.
+ * <p>
+ * Linking is idempotent and linked producers are immutable, so concurrent
+ * first calls may link the producer twice, but never see it partially linked.
+ * 
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+final class UnscopedProvider<T> implements javax.inject.Provider<T> {
+    private final Binding<T> mBinding;
+    private final Injector mInjector;
+
+    private Producer<? extends T> mLinked;
+
+    UnscopedProvider(Binding<T> binding, Injector injector) {
+        mBinding = binding;
+        mInjector = injector;
+    }
+
+    @Override
+    public T get() {
+        Producer<? extends T> producer = mLinked;
+        if (producer == null) {
+            producer = link();
+        }
+        return producer.newInstance(mInjector);
+    }
+
+    /**
+     * @return producer of the binding (not linked)
+     */
+    Producer<? extends T> getProducer() {
+        return mBinding.getTarget();
+    }
+
+    /**
+     * @return linked producer of the binding or {@code null} if it was not
+     *         used yet
+     */
+    Producer<? extends T> getLinkedProducer() {
+        return mLinked;
+    }
+
+    private Producer<? extends T> link() {
+        Producer<? extends T> producer = mBinding.getTarget();
+        if (producer instanceof LinkableProducer) {
+            producer = ((LinkableProducer<? extends T>) producer).link(mInjector);
+        }
+        mLinked = producer;
+        return producer;
+    }
+}
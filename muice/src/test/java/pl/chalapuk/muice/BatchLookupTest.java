@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pl.chalapuk.muice;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+public class BatchLookupTest {
+    private static final AtomicInteger sCreated = new AtomicInteger();
+
+    private Injector mInjector;
+
+    @Before
+    public void setUp() {
+        sCreated.set(0);
+        mInjector = Muice.createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                binder.bind(Shared.class);
+                binder.bind(Counted.class);
+                binder.bind(First.class);
+                binder.bind(Second.class);
+            }
+        });
+    }
+
+    @Test
+    public void testInstancesReturnedInOrderOfKeys() {
+        Object[] instances = mInjector.getInstances(Key.get(First.class), Key.get(Second.class));
+
+        assertEquals(2, instances.length);
+        assertEquals(First.class, instances[0].getClass());
+        assertEquals(Second.class, instances[1].getClass());
+        assertSame(((First) instances[0]).mShared, ((Second) instances[1]).mShared);
+    }
+
+    @Test
+    public void testProviderKeyReturnsProvider() {
+        Key<javax.inject.Provider<First>> providerKey =
+                Key.get(TypeLiteral.<javax.inject.Provider<First>> get(
+                        javax.inject.Provider.class, First.class));
+
+        Object[] instances = mInjector.getInstances(providerKey);
+
+        assertSame(mInjector.getProvider(First.class), instances[0]);
+    }
+
+    @Test
+    public void testInstancesStoredInPassedArray() {
+        Key<?>[] keys = {
+                Key.get(First.class), Key.get(Second.class)
+        };
+        Object[] instances = new Object[3];
+        instances[2] = "untouched";
+
+        assertSame(instances, mInjector.getInstances(keys, instances));
+        assertEquals(First.class, instances[0].getClass());
+        assertEquals(Second.class, instances[1].getClass());
+        assertEquals("untouched", instances[2]);
+    }
+
+    @Test
+    public void testInstancesStoredInTypedArray() {
+        Key<?>[] keys = {
+                Key.get(First.class), Key.get(First.class)
+        };
+        First[] instances = new First[2];
+
+        assertSame(instances, mInjector.getInstances(keys, instances));
+        assertNotNull(instances[0]);
+        assertNotNull(instances[1]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalArgumentExceptionWhenArrayTooShort() {
+        mInjector.getInstances(new Key<?>[] {
+                Key.get(First.class), Key.get(Second.class)
+        }, new Object[1]);
+    }
+
+    @Test
+    public void testNoInstancesCreatedWhenAnyKeyIsMissing() {
+        Object[] instances = new Object[2];
+        try {
+            mInjector.getInstances(new Key<?>[] {
+                    Key.get(Counted.class), Key.get(String.class)
+            }, instances);
+            fail("expected " + BindingError.class);
+        } catch (BindingError e) {
+            // expected
+        }
+
+        assertEquals(0, sCreated.get());
+        assertNull(instances[0]);
+        assertNull(instances[1]);
+    }
+
+    @Test
+    public void testArrayClearedWhenInstanceCreationFails() {
+        Injector injector = Muice.createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                binder.bind(Counted.class);
+                binder.bind(String.class).toProducer(new Producer<String>() {
+
+                    @Override
+                    public String newInstance(Injector injector) {
+                        throw new InjectionError("failed");
+                    }
+                });
+            }
+        });
+
+        Object[] instances = new Object[2];
+        try {
+            injector.getInstances(new Key<?>[] {
+                    Key.get(Counted.class), Key.get(String.class)
+            }, instances);
+            fail("expected " + InjectionError.class);
+        } catch (InjectionError e) {
+            // expected
+        }
+
+        assertNull(instances[0]);
+        assertNull(instances[1]);
+    }
+
+    @Test
+    public void testProvidersReturnedInOrderOfKeys() {
+        List<javax.inject.Provider<?>> providers = mInjector.getProviders(
+                ImmutableList.<Key<?>> of(Key.get(Second.class), Key.get(First.class)));
+
+        assertEquals(2, providers.size());
+        assertSame(mInjector.getProvider(Second.class), providers.get(0));
+        assertSame(mInjector.getProvider(First.class), providers.get(1));
+    }
+
+    @Test(expected = BindingError.class)
+    public void testBindingErrorWhenProviderOfMissingKeyRequested() {
+        mInjector.getProviders(ImmutableList.<Key<?>> of(Key.get(First.class),
+                Key.get(String.class)));
+    }
+
+    @Singleton
+    public static class Shared {
+    }
+
+    public static class Counted {
+
+        public Counted() {
+            sCreated.incrementAndGet();
+        }
+    }
+
+    public static class First {
+        final Shared mShared;
+
+        @Inject
+        public First(Shared shared) {
+            mShared = shared;
+        }
+    }
+
+    public static class Second {
+        final Shared mShared;
+
+        @Inject
+        public Second(Shared shared) {
+            mShared = shared;
+        }
+    }
+}
@@ -22,6 +22,7 @@ import static org.mockito.Mockito.*;
 
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 
 import pl.chalapuk.muice.TestedTypes.Generic;
 
@@ -91,7 +92,7 @@ public class BindindToMuiceProviderTest {
     }
 
     @Test
-    public void testInitializeMethodCalledWhenCallingGetOnScopedProvider() {
+    public void testInitializeMethodCalledOnceBeforeCallingGetOnScopedProvider() {
         final Provider<Object> mockProvider = mock(Provider.class);
 
         Injector injector = Muice.createInjector(new BindingModule() {
@@ -102,11 +103,15 @@ public class BindindToMuiceProviderTest {
             }
         });
 
-        javax.inject.Provider<? extends Object> provider = injector.getProvider(Object.class);
-        verifyZeroInteractions(mockProvider);
-
-        provider.get();
         verify(mockProvider).initialize((Injector) any());
+        verifyNoMoreInteractions(mockProvider);
+
+        injector.getProvider(Object.class).get();
+
+        InOrder inOrder = inOrder(mockProvider);
+        inOrder.verify(mockProvider).initialize((Injector) any());
+        inOrder.verify(mockProvider).get();
+        inOrder.verifyNoMoreInteractions();
     }
 
     @Test
@@ -233,28 +238,26 @@ public class BindindToMuiceProviderTest {
     @Test
     public void testInjectionErrorWhenProviderInitializeThrowsRuntimeException() {
 
-        Injector injector = Muice.createInjector(new BindingModule() {
-
-            @Override
-            public void configure(Binder binder) {
-                binder.bind(Object.class)
-                        .toProvider(new Provider<Object>() {
-
-                            @Override
-                            public Object get() {
-                                return new Object();
-                            }
-
-                            @Override
-                            public void initialize(Injector unused) {
-                                throw new RuntimeException();
-                            }
-                        });
-            }
-        });
-        
         try {
-            injector.getInstance(Object.class);
+            Muice.createInjector(new BindingModule() {
+
+                @Override
+                public void configure(Binder binder) {
+                    binder.bind(Object.class)
+                            .toProvider(new Provider<Object>() {
+
+                                @Override
+                                public Object get() {
+                                    return new Object();
+                                }
+
+                                @Override
+                                public void initialize(Injector unused) {
+                                    throw new RuntimeException();
+                                }
+                            });
+                }
+            });
             fail("expected " + InjectionError.class);
         } catch (InjectionError e) {
             assertEquals(RuntimeException.class, e.getCause().getClass());
@@ -16,7 +16,11 @@
 
 package pl.chalapuk.muice;
 
-import static org.junit.Assert.assertSame;
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Provider;
 
 import org.junit.Test;
 
@@ -53,4 +57,56 @@ public class BindingToInstanceTest {
             }
         });
     }
+
+    @Test
+    public void testBoundInstanceReturnedByProviderAndProducer() {
+        final Object instance = new Object();
+
+        Injector injector = Muice.createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                binder.bind(Object.class)
+                        .toInstance(instance);
+            }
+        });
+
+        assertSame(instance, injector.getProvider(Object.class).get());
+        for (Binding<?> binding : injector.getBindings()) {
+            if (binding.getKey().equals(Key.get(Object.class))) {
+                assertSame(instance, binding.getTarget().newInstance(injector));
+            }
+        }
+    }
+
+    @Test
+    public void testCustomDefaultScopeDecoratesInstanceBinding() {
+        final AtomicInteger decorations = new AtomicInteger();
+        Muice muice = Muice.newMuice()
+                .withDefaultScope(new Scope() {
+
+                    @Override
+                    public <T> Provider<? extends T> decorate(Key<T> key,
+                            Provider<? extends T> unscoped) {
+                        decorations.incrementAndGet();
+                        return unscoped;
+                    }
+                })
+                .build();
+        final Object instance = new Object();
+
+        Injector injector = muice.newInjector()
+                .withModules(new BindingModule() {
+
+                    @Override
+                    public void configure(Binder binder) {
+                        binder.bind(Object.class)
+                                .toInstance(instance);
+                    }
+                })
+                .build();
+
+        assertSame(instance, injector.getInstance(Object.class));
+        assertTrue(decorations.get() > 0);
+    }
 }
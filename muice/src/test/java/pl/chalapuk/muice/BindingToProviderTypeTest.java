@@ -185,18 +185,16 @@ public class BindingToProviderTypeTest {
     @Test
     public void testInjectionErrorWhenProviderConstructorThrowsRuntimeException() {
 
-        Injector injector = Muice.createInjector(new BindingModule() {
-
-            @Override
-            public void configure(Binder binder) {
-                binder.bind(ThrowingFromConstructorProvider.class);
-                binder.bind(Object.class)
-                        .toProvider(ThrowingFromConstructorProvider.class);
-            }
-        });
-
         try {
-            injector.getInstance(Object.class);
+            Muice.createInjector(new BindingModule() {
+
+                @Override
+                public void configure(Binder binder) {
+                    binder.bind(ThrowingFromConstructorProvider.class);
+                    binder.bind(Object.class)
+                            .toProvider(ThrowingFromConstructorProvider.class);
+                }
+            });
             fail("expected " + InjectionError.class);
         } catch (InjectionError e) {
             assertEquals(RuntimeException.class, e.getCause().getClass());
@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice;
+
+import static org.junit.Assert.*;
+import static pl.chalapuk.muice.TestedTypes.*;
+
+import java.lang.reflect.Constructor;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.Lists;
+
+import pl.chalapuk.muice.customization.ConstructorInfo;
+import pl.chalapuk.muice.customization.RawTypeInfo;
+import pl.chalapuk.muice.customization.TypeInfoException;
+import pl.chalapuk.muice.customization.TypeInfoFactory;
+import pl.chalapuk.muice.defaults.CachedTypeInfoFactory;
+import pl.chalapuk.muice.defaults.ReflectionTypeInfoFactory;
+
+/**
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+public class CachedTypeInfoFactoryTest {
+    private static final int THREADS = 8;
+
+    private CountingTypeInfoFactory mSource;
+    private CachedTypeInfoFactory mCache;
+    private ExecutorService mExecutor;
+
+    @Before
+    public void setUp() {
+        mSource = new CountingTypeInfoFactory();
+        mCache = new CachedTypeInfoFactory(mSource);
+        mExecutor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testSourceConsultedOncePerClass() throws Exception {
+        RawTypeInfo<WithDefaultConstructor> first = mCache.getRawTypeInfo(WithDefaultConstructor.class);
+        RawTypeInfo<WithDefaultConstructor> second = mCache.getRawTypeInfo(WithDefaultConstructor.class);
+
+        assertSame(first, second);
+        assertEquals(1, mSource.mRawTypeCount.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testSourceConsultedOncePerClassUnderConcurrency() throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+
+        List<Future<RawTypeInfo<WithInjectAnnotatedConstructor>>> results = Lists.newArrayList();
+        for (int i = 0; i < THREADS; ++i) {
+            results.add(mExecutor.submit(new Callable<RawTypeInfo<WithInjectAnnotatedConstructor>>() {
+
+                @Override
+                public RawTypeInfo<WithInjectAnnotatedConstructor> call() throws Exception {
+                    start.await();
+                    return mCache.getRawTypeInfo(WithInjectAnnotatedConstructor.class);
+                }
+            }));
+        }
+        start.countDown();
+
+        for (Future<RawTypeInfo<WithInjectAnnotatedConstructor>> result : results) {
+            assertSame(results.get(0).get(), result.get());
+        }
+        assertEquals(1, mSource.mRawTypeCount.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testSourceConsultedOncePerClassWhenBuildingInjectorsConcurrently()
+            throws Exception {
+        final Muice muice = Muice.newMuice()
+                .withTypeInfoFactory(mCache)
+                .build();
+        final CountDownLatch start = new CountDownLatch(1);
+
+        List<Future<Injector>> results = Lists.newArrayList();
+        for (int i = 0; i < THREADS; ++i) {
+            results.add(mExecutor.submit(new Callable<Injector>() {
+
+                @Override
+                public Injector call() throws Exception {
+                    start.await();
+                    return muice.newInjector()
+                            .withModules(new BindingModule() {
+
+                                @Override
+                                public void configure(Binder binder) {
+                                    binder.bind(WithDefaultConstructor.class);
+                                    binder.bind(WithInjectAnnotatedConstructor.class);
+                                }
+                            })
+                            .build();
+                }
+            }));
+        }
+        start.countDown();
+
+        for (Future<Injector> result : results) {
+            assertNotNull(result.get().getInstance(WithDefaultConstructor.class));
+        }
+        assertEquals(2, mSource.mRawTypeCount.get());
+    }
+
+    @Test
+    public void testConstructorInfoCached() throws Exception {
+        Constructor<?> constructor = WithInjectAnnotatedConstructor.class.getConstructor();
+
+        ConstructorInfo<?> first = mCache.getConstructorInfo(constructor);
+        ConstructorInfo<?> second = mCache.getConstructorInfo(
+                WithInjectAnnotatedConstructor.class.getConstructor());
+
+        assertSame(first, second);
+        assertEquals(1, mSource.mConstructorCount.get());
+    }
+
+    @Test
+    public void testFailedQueryNotCached() throws Exception {
+        try {
+            mCache.getRawTypeInfo(Runnable.class);
+            fail("expected " + TypeInfoException.class);
+        } catch (TypeInfoException e) {
+            // expected
+        }
+        try {
+            mCache.getRawTypeInfo(Runnable.class);
+            fail("expected " + TypeInfoException.class);
+        } catch (TypeInfoException e) {
+            // expected
+        }
+        assertEquals(2, mSource.mRawTypeCount.get());
+    }
+
+    @Test
+    public void testStatsCountHitsMissesAndLoads() throws Exception {
+        mCache.getRawTypeInfo(WithDefaultConstructor.class);
+        mCache.getRawTypeInfo(WithDefaultConstructor.class);
+        mCache.getRawTypeInfo(WithDefaultConstructor.class);
+        try {
+            mCache.getRawTypeInfo(Runnable.class);
+        } catch (TypeInfoException e) {
+            // expected
+        }
+
+        CacheStats stats = mCache.stats();
+        assertEquals(2, stats.hitCount());
+        assertEquals(2, stats.missCount());
+        assertEquals(1, stats.loadSuccessCount());
+        assertEquals(1, stats.loadExceptionCount());
+        assertTrue(stats.totalLoadTime() > 0);
+    }
+
+    private static class CountingTypeInfoFactory implements TypeInfoFactory {
+        final TypeInfoFactory mDelegate = new ReflectionTypeInfoFactory();
+        final AtomicInteger mRawTypeCount = new AtomicInteger();
+        final AtomicInteger mConstructorCount = new AtomicInteger();
+
+        @Override
+        public <T> RawTypeInfo<T> getRawTypeInfo(Class<? super T> rawType)
+                throws TypeInfoException {
+            mRawTypeCount.incrementAndGet();
+            return mDelegate.getRawTypeInfo(rawType);
+        }
+
+        @Override
+        public <T> ConstructorInfo<T> getConstructorInfo(Constructor<T> constructor) {
+            mConstructorCount.incrementAndGet();
+            return mDelegate.getConstructorInfo(constructor);
+        }
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import pl.chalapuk.muice.internal.Scopes;
+
+/**
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+public class ConcurrentSingletonTest {
+    private static final int THREADS = 8;
+
+    private ExecutorService mExecutor;
+
+    @Before
+    public void setUp() {
+        mExecutor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+    }
+
+    @Test(timeout = 10000)
+    public void testOnlyOneInstanceCreatedWhenRequestedConcurrently() throws Exception {
+        final AtomicInteger created = new AtomicInteger();
+        final CountDownLatch requested = new CountDownLatch(THREADS);
+
+        final Injector injector = Muice.createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                binder.bind(Object.class).toProvider(new javax.inject.Provider<Object>() {
+
+                    @Override
+                    public Object get() {
+                        created.incrementAndGet();
+                        awaitQuietly(requested);
+                        return new Object();
+                    }
+                }).in(Scopes.SINGLETON);
+            }
+        });
+
+        List<Future<Object>> results = Lists.newArrayList();
+        for (int i = 0; i < THREADS; ++i) {
+            results.add(mExecutor.submit(new Callable<Object>() {
+
+                @Override
+                public Object call() {
+                    requested.countDown();
+                    return injector.getInstance(Object.class);
+                }
+            }));
+        }
+
+        Object first = results.get(0).get();
+        for (Future<Object> result : results) {
+            assertSame(first, result.get());
+        }
+        assertEquals(1, created.get());
+    }
+
+    @Test
+    public void testSingletonCreatedAgainAfterFailure() {
+        final AtomicInteger attempts = new AtomicInteger();
+
+        Injector injector = Muice.createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                binder.bind(Object.class).toProvider(new javax.inject.Provider<Object>() {
+
+                    @Override
+                    public Object get() {
+                        if (attempts.incrementAndGet() == 1) {
+                            throw new IllegalStateException();
+                        }
+                        return new Object();
+                    }
+                }).in(Scopes.SINGLETON);
+            }
+        });
+
+        try {
+            injector.getInstance(Object.class);
+            fail("expected " + InjectionError.class);
+        } catch (InjectionError e) {
+            // expected
+        }
+        assertSame(injector.getInstance(Object.class), injector.getInstance(Object.class));
+        assertEquals(2, attempts.get());
+    }
+
+    @Test(expected = InjectionError.class)
+    public void testCircularDependencyInOneThreadDetected() {
+        Injector injector = Muice.createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                binder.bind(Object.class).toProvider(new Provider<Object>() {
+                    private Injector mInjector;
+
+                    @Override
+                    public void initialize(Injector injector) {
+                        mInjector = injector;
+                    }
+
+                    @Override
+                    public Object get() {
+                        return mInjector.getInstance(Object.class);
+                    }
+                }).in(Scopes.SINGLETON);
+            }
+        });
+
+        injector.getInstance(Object.class);
+    }
+
+    @Test(timeout = 10000)
+    public void testCircularDependencyAcrossThreadsDetected() throws Exception {
+        final CyclicBarrier bothCreating = new CyclicBarrier(2);
+
+        final Injector injector = Muice.createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                binder.bind(String.class).toProvider(new CrossingProvider<String>(
+                        Integer.class, bothCreating, "string")).in(Scopes.SINGLETON);
+                binder.bind(Integer.class).toProvider(new CrossingProvider<Integer>(
+                        String.class, bothCreating, 1)).in(Scopes.SINGLETON);
+            }
+        });
+
+        Future<Object> first = mExecutor.submit(new Getter(injector, String.class));
+        Future<Object> second = mExecutor.submit(new Getter(injector, Integer.class));
+
+        int failed = 0;
+        for (Future<Object> result : Lists.newArrayList(first, second)) {
+            try {
+                result.get();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof InjectionError);
+                ++failed;
+            }
+        }
+        assertTrue(failed > 0);
+    }
+
+    @Test(timeout = 10000)
+    public void testCircularDependencyWithProviderInitializationAcrossThreadsDetected()
+            throws Exception {
+        final CountDownLatch bothCreating = new CountDownLatch(2);
+
+        final Injector injector = Muice.newMuice()
+                .withLazyBindings()
+                .build()
+                .newInjector()
+                .withModules(new BindingModule() {
+
+                    @Override
+                    public void configure(Binder binder) {
+                        binder.bind(String.class).toProvider(new Provider<String>() {
+
+                            @Override
+                            public void initialize(Injector injector) {
+                                bothCreating.countDown();
+                                awaitQuietly(bothCreating);
+                                injector.getInstance(Integer.class);
+                            }
+
+                            @Override
+                            public String get() {
+                                return "string";
+                            }
+                        });
+                        binder.bind(Integer.class).toProvider(new Provider<Integer>() {
+                            private Injector mInjector;
+
+                            @Override
+                            public void initialize(Injector injector) {
+                                mInjector = injector;
+                            }
+
+                            @Override
+                            public Integer get() {
+                                bothCreating.countDown();
+                                awaitQuietly(bothCreating);
+                                mInjector.getInstance(String.class);
+                                return 1;
+                            }
+                        }).in(Scopes.SINGLETON);
+                    }
+                })
+                .build();
+
+        Future<Object> first = mExecutor.submit(new Getter(injector, String.class));
+        Future<Object> second = mExecutor.submit(new Getter(injector, Integer.class));
+
+        int failed = 0;
+        for (Future<Object> result : Lists.newArrayList(first, second)) {
+            try {
+                result.get();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof InjectionError);
+                ++failed;
+            }
+        }
+        assertTrue(failed > 0);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class CrossingProvider<T> implements Provider<T> {
+        private final Class<?> mDependency;
+        private final CyclicBarrier mBarrier;
+        private final T mValue;
+        private Injector mInjector;
+
+        CrossingProvider(Class<?> dependency, CyclicBarrier barrier, T value) {
+            mDependency = dependency;
+            mBarrier = barrier;
+            mValue = value;
+        }
+
+        @Override
+        public void initialize(Injector injector) {
+            mInjector = injector;
+        }
+
+        @Override
+        public T get() {
+            try {
+                mBarrier.await(5, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                // other thread failed before reaching the barrier
+            }
+            mInjector.getInstance(mDependency);
+            return mValue;
+        }
+    }
+
+    private static class Getter implements Callable<Object> {
+        private final Injector mInjector;
+        private final Class<?> mType;
+
+        Getter(Injector injector, Class<?> type) {
+            mInjector = injector;
+            mType = type;
+        }
+
+        @Override
+        public Object call() {
+            return mInjector.getInstance(mType);
+        }
+    }
+}
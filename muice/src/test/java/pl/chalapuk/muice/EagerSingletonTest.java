@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+public class EagerSingletonTest {
+    static final List<Class<?>> sCreated = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() {
+        sCreated.clear();
+    }
+
+    @Test
+    public void testEagerSingletonCreatedDuringBuild() {
+        Injector injector = Muice.createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                binder.bind(Leaf.class).asEagerSingleton();
+            }
+        });
+
+        assertEquals(1, sCreated.size());
+        assertSame(injector.getInstance(Leaf.class), injector.getInstance(Leaf.class));
+        assertEquals(1, sCreated.size());
+    }
+
+    @Test
+    public void testDependenciesCreatedBeforeDependents() {
+        Muice.createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                binder.bind(Leaf.class).asEagerSingleton();
+                binder.bind(Middle.class);
+                binder.bind(Root.class).asEagerSingleton();
+                binder.bind(OtherLeaf.class).asEagerSingleton();
+            }
+        });
+
+        assertEquals(4, sCreated.size());
+        assertTrue(sCreated.indexOf(Leaf.class) < sCreated.indexOf(Middle.class));
+        assertTrue(sCreated.indexOf(Middle.class) < sCreated.indexOf(Root.class));
+    }
+
+    @Test
+    public void testNotEagerSingletonsNotCreatedDuringBuild() {
+        Muice.createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                binder.bind(Leaf.class).in(javax.inject.Singleton.class);
+            }
+        });
+
+        assertTrue(sCreated.isEmpty());
+    }
+
+    @Test
+    public void testAsyncBuildCompletesWithInjector() throws Exception {
+        ListenableFuture<Injector> future = Muice.newMuice().build().newInjector()
+                .withModules(new BindingModule() {
+
+                    @Override
+                    public void configure(Binder binder) {
+                        binder.bind(Leaf.class).asEagerSingleton();
+                        binder.bind(OtherLeaf.class).asEagerSingleton();
+                    }
+                })
+                .buildAsync();
+
+        Injector injector = future.get(10, TimeUnit.SECONDS);
+        assertEquals(2, sCreated.size());
+        assertNotNull(injector.getInstance(OtherLeaf.class));
+        assertEquals(2, sCreated.size());
+    }
+
+    @Test
+    public void testCircularDependencyOfEagerSingletonReportedDuringBuild() {
+        try {
+            Muice.newMuice().withLazyBindings().build().newInjector()
+                    .withModules(new BindingModule() {
+
+                        @Override
+                        public void configure(Binder binder) {
+                            binder.bind(DependsOnCycle.class).asEagerSingleton();
+                            binder.bind(CycleA.class);
+                            binder.bind(CycleB.class);
+                        }
+                    })
+                    .build();
+            fail("expected " + BindingError.class);
+        } catch (BindingError e) {
+            // expected
+        }
+
+        assertTrue(sCreated.isEmpty());
+    }
+
+    @Test(expected = InjectionError.class)
+    public void testFailureWrappedInInjectionError() {
+        Muice.createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                binder.bind(Failing.class).asEagerSingleton();
+            }
+        });
+    }
+
+    @Test
+    public void testAsyncBuildFailsWithInjectionError() throws Exception {
+        ListenableFuture<Injector> future = Muice.newMuice().build().newInjector()
+                .withModules(new BindingModule() {
+
+                    @Override
+                    public void configure(Binder binder) {
+                        binder.bind(Failing.class).asEagerSingleton();
+                    }
+                })
+                .buildAsync();
+
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            fail("expected " + ExecutionException.class);
+        } catch (ExecutionException e) {
+            assertEquals(InjectionError.class, e.getCause().getClass());
+        }
+    }
+
+    public static class Leaf {
+
+        @Inject
+        public Leaf() {
+            sCreated.add(Leaf.class);
+        }
+    }
+
+    public static class OtherLeaf {
+
+        @Inject
+        public OtherLeaf() {
+            sCreated.add(OtherLeaf.class);
+        }
+    }
+
+    public static class Middle {
+
+        @Inject
+        public Middle(Leaf leaf) {
+            sCreated.add(Middle.class);
+        }
+    }
+
+    public static class Root {
+
+        @Inject
+        public Root(Middle middle) {
+            sCreated.add(Root.class);
+        }
+    }
+
+    public static class DependsOnCycle {
+
+        @Inject
+        public DependsOnCycle(CycleA cycle) {
+            sCreated.add(DependsOnCycle.class);
+        }
+    }
+
+    public static class CycleA {
+
+        @Inject
+        public CycleA(CycleB cycle) {
+            sCreated.add(CycleA.class);
+        }
+    }
+
+    public static class CycleB {
+
+        @Inject
+        public CycleB(CycleA cycle) {
+            sCreated.add(CycleB.class);
+        }
+    }
+
+    public static class Failing {
+
+        @Inject
+        public Failing() {
+            throw new IllegalStateException();
+        }
+    }
+}
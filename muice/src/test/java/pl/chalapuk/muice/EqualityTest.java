@@ -16,6 +16,10 @@
 
 package pl.chalapuk.muice;
 
+import static org.junit.Assert.*;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
 import java.util.Map;
 
 import org.junit.Test;
@@ -68,6 +72,46 @@ public class EqualityTest {
                 .testEquals();
     }
     
+    @Test
+    public void testEqualKeysAreTheSameInstance() {
+        assertSame(Key.get(Object.class), Key.get(TypeLiteral.get(Object.class)));
+        assertSame(Key.get(Object.class, QualifierAnnotationA.class),
+                Key.get(TypeLiteral.get(Object.class), QualifierAnnotationA.class));
+        assertSame(Key.get(TypeLiteral.get(Generic.class, Object.class)),
+                Key.get(TypeLiteral.get(Generic.class, TypeLiteral.get(Object.class))));
+    }
+
+    @Test
+    public void testEqualTypeLiteralsAreTheSameInstance() {
+        assertSame(TypeLiteral.get(Object.class), TypeLiteral.get(Object.class));
+        assertSame(TypeLiteral.get(Map.class, String.class, String.class),
+                TypeLiteral.get(Map.class, String.class, String.class));
+        assertSame(TypeLiteral.get(Generic.class, TypeLiteral.get(Generic.class, Object.class)),
+                TypeLiteral.get(Generic.class, TypeLiteral.get(Generic.class, Object.class)));
+    }
+
+    @Test
+    public void testModifyingArgumentsArrayDoesNotAffectInternedTypeLiteral() {
+        TypeLiteral<?>[] args = {
+                TypeLiteral.get(Object.class)
+        };
+        TypeLiteral<?> literal = TypeLiteral.get(Generic.class, args);
+        args[0] = TypeLiteral.get(Interface.class);
+
+        assertEquals(TypeLiteral.get(Object.class), literal.getTypeArgument(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidQualifierRejectedRepeatedly() {
+        try {
+            Key.get(Object.class, NotQualifier.class);
+            fail("expected " + IllegalArgumentException.class);
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        Key.get(Object.class, NotQualifier.class);
+    }
+
     @Test
     public void testMuiceEquality() {
         new EqualsTester()
@@ -81,4 +125,9 @@ public class EqualityTest {
                 )
                 .testEquals();
     }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @interface NotQualifier {
+        // marker
+    }
 }
@@ -0,0 +1,296 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pl.chalapuk.muice;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import pl.chalapuk.muice.customization.BindingCollector;
+import pl.chalapuk.muice.customization.ProducerFactory;
+import pl.chalapuk.muice.customization.TypeInfoFactory;
+import pl.chalapuk.muice.internal.BinderImpl;
+import pl.chalapuk.muice.internal.BindingBuilder;
+import pl.chalapuk.muice.internal.InjectorBuilderImpl;
+import pl.chalapuk.muice.internal.ScopeMapping;
+
+/**
+ * Guards heap footprint of built injectors.
+ * 
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+public class FootprintTest {
+    private static final int INJECTORS = 20;
+    private static final long MAX_BYTES_PER_BINDING = 192;
+
+    private static final Class<?>[] TYPE_ARGUMENTS = {
+            String.class, Integer.class, Long.class, Short.class, Byte.class, Double.class,
+            Float.class, Character.class, Boolean.class, Object.class, Number.class,
+            Void.class, Thread.class, Runnable.class, Class.class, Math.class,
+            StringBuilder.class, Iterable.class, Comparable.class, CharSequence.class,
+            Exception.class, Error.class, Throwable.class, RuntimeException.class,
+            Cloneable.class, Process.class, Runtime.class, System.class, Enum.class,
+            Override.class, Deprecated.class, SuppressWarnings.class,
+    };
+
+    private static final Class<?>[] BUILD_TIME_TYPES = {
+            BindingBuilder.class, BinderImpl.class, InjectorBuilderImpl.class,
+            BindingCollector.class, ScopeMapping.class, TypeInfoFactory.class,
+            ProducerFactory.class,
+    };
+
+    @Test
+    public void testBuildStateNotReachableFromInjector() {
+        Injector injector = Muice.createInjector(new AllTargetsModule());
+        injector.getInstance(Service.class);
+
+        assertNoBuildTimeState(injector);
+    }
+
+    @Test
+    public void testBuildStateNotReachableFromInjectorWithResolvedLazyBindings() {
+        Injector injector = Muice.newMuice()
+                .withLazyBindings()
+                .build()
+                .newInjector()
+                .withModules(new AllTargetsModule())
+                .build();
+        for (Binding<?> binding : injector.getBindings()) {
+            injector.getProvider(binding.getKey());
+        }
+
+        assertNoBuildTimeState(injector);
+    }
+
+    @Test
+    public void testNoLocksReachableFromInjectorAfterInitialization() {
+        Injector injector = Muice.createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                binder.bind(Dependency.class).asEagerSingleton();
+                binder.bind(SingletonDependency.class);
+                binder.bind(String.class).toProvider(new Provider<String>() {
+
+                    @Override
+                    public void initialize(Injector injector) {
+                        // nothing to initialize
+                    }
+
+                    @Override
+                    public String get() {
+                        return "provided";
+                    }
+                });
+            }
+        });
+        injector.getInstance(SingletonDependency.class);
+
+        for (Object object : reachableFrom(injector)) {
+            assertFalse(object.getClass().getName() + " reachable from injector",
+                    object instanceof Lock);
+        }
+    }
+
+    @Test
+    public void testRetainedBytesPerBinding() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        List<Injector> injectors = Lists.newArrayList();
+
+        long before = usedHeap(memory);
+        for (int i = 0; i < INJECTORS; ++i) {
+            injectors.add(Muice.createInjector(new ManyBindingsModule()));
+        }
+        long after = usedHeap(memory);
+
+        int bindings = injectors.size() * TYPE_ARGUMENTS.length * TYPE_ARGUMENTS.length;
+        long bytesPerBinding = (after - before) / bindings;
+        assertTrue(bytesPerBinding + " bytes per binding",
+                bytesPerBinding <= MAX_BYTES_PER_BINDING);
+    }
+
+    private static void assertNoBuildTimeState(Injector injector) {
+        for (Object object : reachableFrom(injector)) {
+            for (Class<?> type : BUILD_TIME_TYPES) {
+                assertFalse(object.getClass().getName() + " reachable from injector",
+                        type.isInstance(object));
+            }
+        }
+    }
+
+    /**
+     * Walks fields of Muice objects and contents of arrays, collections and
+     * maps. Other JDK objects are not walked into.
+     */
+    private static Set<Object> reachableFrom(Object root) {
+        Set<Object> visited = Sets.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        LinkedList<Object> queue = Lists.newLinkedList();
+        queue.add(root);
+
+        while (!queue.isEmpty()) {
+            Object object = queue.poll();
+            if (object == null || object instanceof Class || !visited.add(object)) {
+                continue;
+            }
+            if (object.getClass().isArray()) {
+                if (!object.getClass().getComponentType().isPrimitive()) {
+                    for (int i = 0; i < Array.getLength(object); ++i) {
+                        queue.add(Array.get(object, i));
+                    }
+                }
+            } else if (object instanceof Collection) {
+                queue.addAll((Collection<?>) object);
+            } else if (object instanceof Map) {
+                queue.addAll(((Map<?, ?>) object).keySet());
+                queue.addAll(((Map<?, ?>) object).values());
+            }
+            for (Class<?> type = object.getClass(); isMuiceType(type); type = type.getSuperclass()) {
+                for (Field field : type.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers()) || field.getType().isPrimitive()) {
+                        continue;
+                    }
+                    field.setAccessible(true);
+                    try {
+                        queue.add(field.get(object));
+                    } catch (IllegalAccessException e) {
+                        throw new AssertionError(e);
+                    }
+                }
+            }
+        }
+        return visited;
+    }
+
+    private static boolean isMuiceType(Class<?> type) {
+        return type != null && type.getName().startsWith("pl.chalapuk.muice.");
+    }
+
+    private static long usedHeap(MemoryMXBean memory) {
+        for (int i = 0; i < 5; ++i) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    public static class Dependency {
+    }
+
+    @Singleton
+    public static class SingletonDependency {
+    }
+
+    public static class Service {
+
+        @Inject
+        public Service(Dependency dependency, SingletonDependency singleton,
+                javax.inject.Provider<Dependency> provider, Object object, Number number,
+                CharSequence sequence, Runnable runnable) {
+        }
+    }
+
+    public static class NumberProvider implements javax.inject.Provider<Number> {
+
+        @Override
+        public Number get() {
+            return 1;
+        }
+    }
+
+    public static class Pair<A, B> {
+    }
+
+    private static class AllTargetsModule implements BindingModule {
+
+        @Override
+        public void configure(Binder binder) {
+            binder.bind(Dependency.class);
+            binder.bind(SingletonDependency.class).asEagerSingleton();
+            binder.bind(Object.class).to(SingletonDependency.class);
+            binder.bind(NumberProvider.class);
+            binder.bind(Number.class).toProvider(NumberProvider.class);
+            binder.bind(CharSequence.class).toInstance("instance");
+            binder.bind(Runnable.class).toProducer(new Producer<Runnable>() {
+
+                @Override
+                public Runnable newInstance(Injector injector) {
+                    return new Thread();
+                }
+            });
+            binder.bind(String.class).toProvider(new Provider<String>() {
+
+                @Override
+                public void initialize(Injector injector) {
+                    // empty
+                }
+
+                @Override
+                public String get() {
+                    return "provided";
+                }
+            });
+            binder.bind(Integer.class).toProvider(new javax.inject.Provider<Integer>() {
+
+                @Override
+                public Integer get() {
+                    return 1;
+                }
+            });
+            binder.bind(Service.class);
+        }
+    }
+
+    private static class ManyBindingsModule implements BindingModule {
+        private static final Producer<Object> sProducer = new Producer<Object>() {
+
+            @Override
+            public Object newInstance(Injector injector) {
+                return new Pair<Object, Object>();
+            }
+        };
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        @Override
+        public void configure(Binder binder) {
+            for (Class<?> first : TYPE_ARGUMENTS) {
+                for (Class<?> second : TYPE_ARGUMENTS) {
+                    TypeLiteral typeLiteral = TypeLiteral.get(Pair.class, first, second);
+                    binder.bind(typeLiteral).toProducer(sProducer);
+                }
+            }
+        }
+    }
+}
@@ -16,7 +16,10 @@
 
 package pl.chalapuk.muice;
 
+import static org.junit.Assert.*;
+
 import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 
@@ -87,4 +90,62 @@ public class InjectorBuilderTest {
                 .newInjector()
                 .withModules(Collections.<BindingModule> singleton(null));
     }
+
+    @Test
+    public void testEagerSingletonsAndProvidersNotTouchedWithoutInstantiation() {
+        final AtomicInteger initialized = new AtomicInteger();
+        Eager.sCreated.set(0);
+        Injector injector = Muice.DEFAULT
+                .newInjector()
+                .withModules(new BindingModule() {
+
+                    @Override
+                    public void configure(Binder binder) {
+                        binder.bind(Eager.class).asEagerSingleton();
+                        binder.bind(String.class).toProvider(new Provider<String>() {
+
+                            @Override
+                            public void initialize(Injector injector) {
+                                initialized.incrementAndGet();
+                            }
+
+                            @Override
+                            public String get() {
+                                return "provided";
+                            }
+                        });
+                    }
+                })
+                .withoutInstantiation()
+                .build();
+
+        assertEquals(0, Eager.sCreated.get());
+        assertEquals(0, initialized.get());
+
+        assertEquals("provided", injector.getInstance(String.class));
+        assertEquals(1, initialized.get());
+    }
+
+    @Test(expected = BindingError.class)
+    public void testBindingErrorWithoutInstantiation() {
+        Muice.DEFAULT
+                .newInjector()
+                .withModules(new BindingModule() {
+
+                    @Override
+                    public void configure(Binder binder) {
+                        binder.bind(Object.class).to(String.class);
+                    }
+                })
+                .withoutInstantiation()
+                .build();
+    }
+
+    public static class Eager {
+        static final AtomicInteger sCreated = new AtomicInteger();
+
+        public Eager() {
+            sCreated.incrementAndGet();
+        }
+    }
 }
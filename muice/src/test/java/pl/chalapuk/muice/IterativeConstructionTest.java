@@ -0,0 +1,392 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pl.chalapuk.muice;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import pl.chalapuk.muice.customization.ConstructorInfo;
+import pl.chalapuk.muice.customization.ProducerFactory;
+import pl.chalapuk.muice.defaults.MethodHandleProducerFactory;
+
+/**
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+public class IterativeConstructionTest {
+    // reflective calls of the same constructor may differ in stack depth,
+    // depending on whether they were already optimized by the JVM
+    private static final int REFLECTION_FRAMES = 2;
+
+    private Muice mMuice;
+
+    @Before
+    public void setUp() {
+        mMuice = Muice.newMuice()
+                .withIterativeConstruction()
+                .build();
+    }
+
+    @Test
+    public void testDependencyGraphConstructed() {
+        Injector injector = createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                binder.bind(Bottom.class);
+                binder.bind(Middle.class);
+                binder.bind(Top.class);
+            }
+        });
+
+        Top top = injector.getInstance(Top.class);
+        assertNotNull(top.mMiddle.mBottom);
+        assertNotNull(top.mBottom);
+        assertNotSame(top.mBottom, top.mMiddle.mBottom);
+        assertNotSame(top, injector.getInstance(Top.class));
+    }
+
+    @Test
+    public void testDependenciesConstructedWithoutRecursion() {
+        Injector injector = createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                binder.bind(Bottom.class);
+                binder.bind(Middle.class);
+                binder.bind(Top.class);
+            }
+        });
+
+        Top top = injector.getInstance(Top.class);
+        assertSameDepth(top.mStackDepth, top.mMiddle.mStackDepth);
+        assertSameDepth(top.mStackDepth, top.mMiddle.mBottom.mStackDepth);
+        assertSameDepth(top.mStackDepth, top.mBottom.mStackDepth);
+    }
+
+    @Test
+    public void testDependenciesConstructedRecursivelyByDefault() {
+        Injector injector = Muice.DEFAULT.newInjector()
+                .withModules(new BindingModule() {
+
+                    @Override
+                    public void configure(Binder binder) {
+                        binder.bind(Bottom.class);
+                        binder.bind(Middle.class);
+                        binder.bind(Top.class);
+                    }
+                })
+                .build();
+
+        Top top = injector.getInstance(Top.class);
+        assertTrue(top.mMiddle.mBottom.mStackDepth > top.mStackDepth + REFLECTION_FRAMES);
+    }
+
+    @Test
+    public void testSharedDependencyCreatedForEachPath() {
+        Injector injector = createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                binder.bind(Bottom.class);
+                binder.bind(Middle.class);
+                binder.bind(OtherMiddle.class);
+                binder.bind(Diamond.class);
+            }
+        });
+
+        Diamond diamond = injector.getInstance(Diamond.class);
+        assertNotSame(diamond.mMiddle.mBottom, diamond.mOtherMiddle.mBottom);
+        assertSameDepth(diamond.mStackDepth, diamond.mMiddle.mBottom.mStackDepth);
+        assertSameDepth(diamond.mStackDepth, diamond.mOtherMiddle.mBottom.mStackDepth);
+    }
+
+    @Test
+    public void testProducersOfDelegateFactoryCalled() {
+        final AtomicInteger instances = new AtomicInteger();
+        final ProducerFactory delegate = new MethodHandleProducerFactory();
+        Injector injector = Muice.newMuice()
+                .withProducerFactory(new ProducerFactory() {
+
+                    @Override
+                    public <T> Producer<T> createProducer(ConstructorInfo<T> info) {
+                        final Producer<T> producer = delegate.createProducer(info);
+                        return new Producer<T>() {
+
+                            @Override
+                            public T newInstance(Injector injector) {
+                                instances.incrementAndGet();
+                                return producer.newInstance(injector);
+                            }
+                        };
+                    }
+                })
+                .withIterativeConstruction()
+                .build()
+                .newInjector()
+                .withModules(new BindingModule() {
+
+                    @Override
+                    public void configure(Binder binder) {
+                        binder.bind(Bottom.class);
+                        binder.bind(Middle.class);
+                        binder.bind(Top.class);
+                    }
+                })
+                .build();
+
+        Top top = injector.getInstance(Top.class);
+        assertNotNull(top.mMiddle.mBottom);
+        assertEquals(4, instances.get());
+        assertSameDepth(top.mStackDepth, top.mMiddle.mBottom.mStackDepth);
+    }
+
+    @Test
+    public void testBindingErrorWhenUnscopedBindingsDependOnEachOther() {
+        Injector injector = Muice.newMuice()
+                .withLazyBindings()
+                .withIterativeConstruction()
+                .build()
+                .newInjector()
+                .withModules(new BindingModule() {
+
+                    @Override
+                    public void configure(Binder binder) {
+                        binder.bind(CycleA.class);
+                        binder.bind(CycleB.class);
+                    }
+                })
+                .build();
+
+        try {
+            injector.getInstance(CycleA.class);
+            fail("expected " + BindingError.class);
+        } catch (BindingError e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testSingletonDependencyShared() {
+        Injector injector = createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                binder.bind(Bottom.class);
+                binder.bind(SingletonService.class);
+                binder.bind(Client.class);
+            }
+        });
+
+        Client first = injector.getInstance(Client.class);
+        Client second = injector.getInstance(Client.class);
+        assertSame(first.mService, second.mService);
+        assertNotSame(first.mBottom, second.mBottom);
+        assertNotSame(first.mBottom, first.mService.mBottom);
+    }
+
+    @Test
+    public void testProviderDependencyInjected() {
+        Injector injector = createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                binder.bind(Bottom.class);
+                binder.bind(ProviderClient.class);
+            }
+        });
+
+        ProviderClient client = injector.getInstance(ProviderClient.class);
+        assertNotNull(client.mProvider.get());
+        assertNotSame(client.mProvider.get(), client.mProvider.get());
+    }
+
+    @Test
+    public void testInstanceAndLinkedDependenciesInjected() {
+        final Bottom bottom = new Bottom();
+        Injector injector = createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                binder.bind(Bottom.class).toInstance(bottom);
+                binder.bind(Middle.class);
+                binder.bind(Object.class).to(Middle.class);
+            }
+        });
+
+        Middle middle = (Middle) injector.getInstance(Object.class);
+        assertSame(bottom, middle.mBottom);
+    }
+
+    @Test
+    public void testInjectionErrorWhenConstructorThrowsRuntimeException() {
+        Injector injector = createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                binder.bind(Bottom.class);
+                binder.bind(Middle.class);
+                binder.bind(Throwing.class);
+                binder.bind(ThrowingClient.class);
+            }
+        });
+
+        try {
+            injector.getInstance(ThrowingClient.class);
+            fail("expected " + InjectionError.class);
+        } catch (InjectionError e) {
+            assertEquals(IllegalStateException.class, e.getCause().getClass());
+        }
+
+        // stack of the plan is released after failure
+        try {
+            injector.getInstance(ThrowingClient.class);
+            fail("expected " + InjectionError.class);
+        } catch (InjectionError e) {
+            assertEquals(IllegalStateException.class, e.getCause().getClass());
+        }
+    }
+
+    private Injector createInjector(BindingModule module) {
+        return mMuice.newInjector()
+                .withModules(module)
+                .build();
+    }
+
+    private static void assertSameDepth(int expected, int actual) {
+        assertTrue("expected stack depth " + expected + " but was " + actual,
+                Math.abs(expected - actual) <= REFLECTION_FRAMES);
+    }
+
+    private static int stackDepth() {
+        return new Throwable().getStackTrace().length;
+    }
+
+    public static class Bottom {
+        final int mStackDepth = stackDepth();
+    }
+
+    public static class Middle {
+        final int mStackDepth = stackDepth();
+        final Bottom mBottom;
+
+        @Inject
+        public Middle(Bottom bottom) {
+            mBottom = bottom;
+        }
+    }
+
+    public static class Top {
+        final int mStackDepth = stackDepth();
+        final Middle mMiddle;
+        final Bottom mBottom;
+
+        @Inject
+        public Top(Middle middle, Bottom bottom) {
+            mMiddle = middle;
+            mBottom = bottom;
+        }
+    }
+
+    public static class OtherMiddle {
+        final Bottom mBottom;
+
+        @Inject
+        public OtherMiddle(Bottom bottom) {
+            mBottom = bottom;
+        }
+    }
+
+    public static class Diamond {
+        final int mStackDepth = stackDepth();
+        final Middle mMiddle;
+        final OtherMiddle mOtherMiddle;
+
+        @Inject
+        public Diamond(Middle middle, OtherMiddle otherMiddle) {
+            mMiddle = middle;
+            mOtherMiddle = otherMiddle;
+        }
+    }
+
+    public static class CycleA {
+
+        @Inject
+        public CycleA(CycleB b) {
+        }
+    }
+
+    public static class CycleB {
+
+        @Inject
+        public CycleB(CycleA a) {
+        }
+    }
+
+    @Singleton
+    public static class SingletonService {
+        final Bottom mBottom;
+
+        @Inject
+        public SingletonService(Bottom bottom) {
+            mBottom = bottom;
+        }
+    }
+
+    public static class Client {
+        final SingletonService mService;
+        final Bottom mBottom;
+
+        @Inject
+        public Client(SingletonService service, Bottom bottom) {
+            mService = service;
+            mBottom = bottom;
+        }
+    }
+
+    public static class ProviderClient {
+        final javax.inject.Provider<Bottom> mProvider;
+
+        @Inject
+        public ProviderClient(javax.inject.Provider<Bottom> provider) {
+            mProvider = provider;
+        }
+    }
+
+    public static class Throwing {
+
+        public Throwing() {
+            throw new IllegalStateException();
+        }
+    }
+
+    public static class ThrowingClient {
+        final Middle mMiddle;
+
+        @Inject
+        public ThrowingClient(Middle middle, Throwing throwing) {
+            mMiddle = middle;
+        }
+    }
+}
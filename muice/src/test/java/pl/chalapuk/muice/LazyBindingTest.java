@@ -0,0 +1,294 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Constructor;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import pl.chalapuk.muice.customization.ConstructorInfo;
+import pl.chalapuk.muice.customization.RawTypeInfo;
+import pl.chalapuk.muice.customization.TypeInfoException;
+import pl.chalapuk.muice.customization.TypeInfoFactory;
+import pl.chalapuk.muice.defaults.ReflectionTypeInfoFactory;
+
+/**
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+public class LazyBindingTest {
+    private CountingTypeInfoFactory mTypeInfoFactory;
+    private Muice mMuice;
+
+    @Before
+    public void setUp() {
+        mTypeInfoFactory = new CountingTypeInfoFactory();
+        mMuice = Muice.newMuice()
+                .withTypeInfoFactory(mTypeInfoFactory)
+                .withLazyBindings()
+                .build();
+    }
+
+    @Test
+    public void testTypesNotAnalyzedDuringBuild() {
+        createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                binder.bind(Dependency.class);
+                binder.bind(Service.class);
+            }
+        });
+
+        assertEquals(0, mTypeInfoFactory.mCount.get());
+    }
+
+    @Test
+    public void testOnlyUsedBindingsAnalyzed() {
+        Injector injector = createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                binder.bind(Dependency.class);
+                binder.bind(Service.class);
+                binder.bind(Unused.class);
+            }
+        });
+
+        Service service = injector.getInstance(Service.class);
+        assertNotNull(service.mDependency);
+        assertEquals(2, mTypeInfoFactory.mCount.get());
+    }
+
+    @Test
+    public void testScopeAnnotationAppliedOnResolution() {
+        Injector injector = createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                binder.bind(SingletonDependency.class);
+            }
+        });
+
+        assertSame(injector.getInstance(SingletonDependency.class),
+                injector.getInstance(SingletonDependency.class));
+    }
+
+    @Test
+    public void testLinkedBindingResolvesTarget() {
+        Injector injector = createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                binder.bind(SingletonDependency.class);
+                binder.bind(Object.class).to(SingletonDependency.class);
+            }
+        });
+
+        assertEquals(SingletonDependency.class, injector.getInstance(Object.class).getClass());
+        assertSame(injector.getInstance(Object.class), injector.getInstance(Object.class));
+    }
+
+    @Test
+    public void testErrorReportedOnFirstLookup() {
+        Injector injector = createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                binder.bind(Abstract.class);
+            }
+        });
+
+        try {
+            injector.getProvider(Abstract.class);
+            fail("expected " + BindingError.class);
+        } catch (BindingError e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testEagerSingletonResolvedDuringBuild() {
+        Injector injector = createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                binder.bind(Dependency.class);
+                binder.bind(Service.class).asEagerSingleton();
+            }
+        });
+
+        assertEquals(2, mTypeInfoFactory.mCount.get());
+        assertSame(injector.getInstance(Service.class), injector.getInstance(Service.class));
+    }
+
+    @Test(expected = BindingError.class)
+    public void testBindingErrorWhenEagerSingletonReachesCycle() {
+        createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                binder.bind(OnCycle.class).asEagerSingleton();
+                binder.bind(CycleA.class);
+                binder.bind(CycleB.class);
+            }
+        });
+    }
+
+    @Test(expected = BindingError.class)
+    public void testBindingErrorWhenEagerSingletonDependsOnItself() {
+        createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                binder.bind(EagerLoop.class).asEagerSingleton();
+                binder.bind(LoopBack.class);
+            }
+        });
+    }
+
+    @Test(timeout = 10000)
+    public void testConcurrentLookupsResolveBindingOnce() throws Exception {
+        final int threads = 8;
+        final Injector injector = createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                binder.bind(SingletonDependency.class);
+            }
+        });
+
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Object>> results = Lists.newArrayList();
+            for (int i = 0; i < threads; ++i) {
+                results.add(executor.submit(new Callable<Object>() {
+
+                    @Override
+                    public Object call() throws Exception {
+                        start.await();
+                        return injector.getInstance(SingletonDependency.class);
+                    }
+                }));
+            }
+            start.countDown();
+
+            Object first = results.get(0).get();
+            for (Future<Object> result : results) {
+                assertSame(first, result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, mTypeInfoFactory.mCount.get());
+    }
+
+    private Injector createInjector(BindingModule module) {
+        return mMuice.newInjector()
+                .withModules(module)
+                .build();
+    }
+
+    public static class Dependency {
+    }
+
+    @Singleton
+    public static class SingletonDependency {
+    }
+
+    public static class Unused {
+    }
+
+    public static abstract class Abstract {
+    }
+
+    public static class Service {
+        final Dependency mDependency;
+
+        @Inject
+        public Service(Dependency dependency) {
+            mDependency = dependency;
+        }
+    }
+
+    public static class CycleA {
+
+        @Inject
+        public CycleA(CycleB b) {
+        }
+    }
+
+    public static class CycleB {
+
+        @Inject
+        public CycleB(CycleA a) {
+        }
+    }
+
+    public static class OnCycle {
+
+        @Inject
+        public OnCycle(CycleA a) {
+        }
+    }
+
+    public static class EagerLoop {
+
+        @Inject
+        public EagerLoop(LoopBack loopBack) {
+        }
+    }
+
+    public static class LoopBack {
+
+        @Inject
+        public LoopBack(EagerLoop loop) {
+        }
+    }
+
+    private static class CountingTypeInfoFactory implements TypeInfoFactory {
+        final TypeInfoFactory mDelegate = new ReflectionTypeInfoFactory();
+        final AtomicInteger mCount = new AtomicInteger();
+
+        @Override
+        public <T> RawTypeInfo<T> getRawTypeInfo(Class<? super T> rawType)
+                throws TypeInfoException {
+            mCount.incrementAndGet();
+            return mDelegate.getRawTypeInfo(rawType);
+        }
+
+        @Override
+        public <T> ConstructorInfo<T> getConstructorInfo(Constructor<T> constructor) {
+            return mDelegate.getConstructorInfo(constructor);
+        }
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice;
+
+import static org.junit.Assert.*;
+import static pl.chalapuk.muice.TestedTypes.*;
+
+import java.util.List;
+
+import javax.inject.Inject;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Optional;
+
+import pl.chalapuk.muice.customization.ConstructorInfo;
+import pl.chalapuk.muice.customization.LinkableProducer;
+import pl.chalapuk.muice.customization.ProducerFactory;
+import pl.chalapuk.muice.defaults.MethodHandleProducerFactory;
+import pl.chalapuk.muice.defaults.ReflectionProducerFactory;
+import pl.chalapuk.muice.defaults.ReflectionTypeInfoFactory;
+
+/**
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+public class LinkableProducerTest {
+    private CountingInjector mInjector;
+
+    @Before
+    public void setUp() {
+        mInjector = new CountingInjector(Muice.createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                binder.bind(Object.class).toInstance("object");
+                binder.bind(Interface.class).toInstance(new Interface() {
+                    // empty
+                });
+                binder.bind(TypeLiteral.get(Generic.class, Object.class))
+                        .toInstance(new Generic<Object>());
+                binder.bind(WithDefaultConstructor.class);
+                binder.bind(int.class).toInstance(1);
+            }
+        }));
+    }
+
+    @Test
+    public void testReflectionProducerLinkedOnce() {
+        testLinkedProducerDoesNotLookUpDependencies(new ReflectionProducerFactory(),
+                WithTwoDependencies.class, 2);
+    }
+
+    @Test
+    public void testMethodHandleProducerLinkedOnce() {
+        testLinkedProducerDoesNotLookUpDependencies(new MethodHandleProducerFactory(),
+                WithTwoDependencies.class, 2);
+    }
+
+    @Test
+    public void testSpreadingMethodHandleProducerLinkedOnce() {
+        testLinkedProducerDoesNotLookUpDependencies(new MethodHandleProducerFactory(),
+                WithFiveDependencies.class, 5);
+    }
+
+    @Test
+    public void testProviderDependencyLinkedToProviderOfTypeArgument() {
+        Producer<WithProviderDependency> producer = link(new ReflectionProducerFactory(),
+                WithProviderDependency.class);
+
+        WithProviderDependency instance = producer.newInstance(mInjector);
+        assertEquals("object", instance.mInjected.get());
+        assertSame(instance.mInjected, producer.newInstance(mInjector).mInjected);
+    }
+
+    @Test(expected = BindingError.class)
+    public void testLinkingWithMissingDependencyThrows() {
+        link(new ReflectionProducerFactory(), WithQualifiedDependency.class);
+    }
+
+    @Test
+    public void testDeepUnscopedGraphCreated() {
+        Injector injector = Muice.createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                binder.bind(Level0.class);
+                binder.bind(Level1.class);
+                binder.bind(Level2.class);
+                binder.bind(Level3.class);
+            }
+        });
+
+        Level3 first = injector.getInstance(Level3.class);
+        Level3 second = injector.getInstance(Level3.class);
+        assertNotNull(first.mLevel2.mLevel1.mLevel0);
+        assertNotSame(first.mLevel2, second.mLevel2);
+    }
+
+    private <T> void testLinkedProducerDoesNotLookUpDependencies(ProducerFactory factory,
+            Class<T> type, int dependencies) {
+        Producer<T> producer = link(factory, type);
+        assertEquals(dependencies, mInjector.mLookups);
+
+        producer.newInstance(mInjector);
+        producer.newInstance(mInjector);
+        assertEquals(dependencies, mInjector.mLookups);
+    }
+
+    private <T> Producer<T> link(ProducerFactory factory, Class<T> type) {
+        ConstructorInfo<T> info = new ReflectionTypeInfoFactory()
+                .getConstructorInfo(constructor(type));
+        Producer<T> producer = factory.createProducer(info);
+        assertTrue(producer instanceof LinkableProducer);
+        return ((LinkableProducer<T>) producer).link(mInjector);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> java.lang.reflect.Constructor<T> constructor(Class<T> type) {
+        return (java.lang.reflect.Constructor<T>) type.getConstructors()[0];
+    }
+
+    public static class Level0 {
+    }
+
+    public static class Level1 {
+        final Level0 mLevel0;
+
+        @Inject
+        public Level1(Level0 level0) {
+            mLevel0 = level0;
+        }
+    }
+
+    public static class Level2 {
+        final Level1 mLevel1;
+
+        @Inject
+        public Level2(Level1 level1) {
+            mLevel1 = level1;
+        }
+    }
+
+    public static class Level3 {
+        final Level2 mLevel2;
+
+        @Inject
+        public Level3(Level2 level2) {
+            mLevel2 = level2;
+        }
+    }
+
+    private static class CountingInjector implements Injector {
+        final Injector mDelegate;
+        int mLookups;
+
+        CountingInjector(Injector delegate) {
+            mDelegate = delegate;
+        }
+
+        @Override
+        public <T> T getInstance(Key<T> key) {
+            ++mLookups;
+            return mDelegate.getInstance(key);
+        }
+
+        @Override
+        public <T> T getInstance(TypeLiteral<T> typeLiteral) {
+            ++mLookups;
+            return mDelegate.getInstance(typeLiteral);
+        }
+
+        @Override
+        public <T> T getInstance(Class<T> type) {
+            ++mLookups;
+            return mDelegate.getInstance(type);
+        }
+
+        @Override
+        public <T> javax.inject.Provider<? extends T> getProvider(Key<T> key) {
+            ++mLookups;
+            return mDelegate.getProvider(key);
+        }
+
+        @Override
+        public <T> javax.inject.Provider<? extends T> getProvider(TypeLiteral<T> typeLiteral) {
+            ++mLookups;
+            return mDelegate.getProvider(typeLiteral);
+        }
+
+        @Override
+        public <T> javax.inject.Provider<? extends T> getProvider(Class<T> type) {
+            ++mLookups;
+            return mDelegate.getProvider(type);
+        }
+
+        @Override
+        public Object[] getInstances(Key<?>... keys) {
+            ++mLookups;
+            return mDelegate.getInstances(keys);
+        }
+
+        @Override
+        public Object[] getInstances(Key<?>[] keys, Object[] instances) {
+            ++mLookups;
+            return mDelegate.getInstances(keys, instances);
+        }
+
+        @Override
+        public List<javax.inject.Provider<?>> getProviders(Iterable<? extends Key<?>> keys) {
+            ++mLookups;
+            return mDelegate.getProviders(keys);
+        }
+
+        @Override
+        public <T> javax.inject.Provider<? extends T> getExistingProvider(Key<T> key) {
+            ++mLookups;
+            return mDelegate.getExistingProvider(key);
+        }
+
+        @Override
+        public <T> Optional<T> tryGetInstance(Key<T> key) {
+            ++mLookups;
+            return mDelegate.tryGetInstance(key);
+        }
+
+        @Override
+        public boolean hasBinding(Key<?> key) {
+            return mDelegate.hasBinding(key);
+        }
+
+        @Override
+        public Iterable<Binding<?>> getBindings() {
+            return mDelegate.getBindings();
+        }
+    }
+}
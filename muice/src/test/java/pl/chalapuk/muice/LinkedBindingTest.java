@@ -19,6 +19,9 @@ package pl.chalapuk.muice;
 import static org.junit.Assert.*;
 import pl.chalapuk.muice.TestedTypes.WithDefaultConstructor;
 import pl.chalapuk.muice.TestedTypes.*;
+
+import javax.inject.Singleton;
+
 import org.junit.Test;
 
 /**
@@ -237,4 +240,150 @@ public class LinkedBindingTest {
             }
         });
     }
+
+    @Test
+    public void testLinkSharesTargetSingleton() {
+        Injector injector = Muice.createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                binder.bind(SingletonScoped.class);
+                binder.bind(Object.class)
+                        .to(SingletonScoped.class);
+            }
+        });
+
+        assertSame(injector.getInstance(SingletonScoped.class),
+                injector.getInstance(Object.class));
+    }
+
+    @Test
+    public void testLinkReportsScopeOfTarget() {
+        Injector injector = Muice.createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                binder.bind(SingletonScoped.class);
+                binder.bind(Object.class)
+                        .to(SingletonScoped.class);
+                binder.bind(Object.class)
+                        .annotatedWith(QualifierAnnotationA.class)
+                        .to(Object.class);
+            }
+        });
+
+        Scope targetScope = bindingOf(injector, Key.get(SingletonScoped.class)).getScope();
+        assertEquals(targetScope, bindingOf(injector, Key.get(Object.class)).getScope());
+        assertEquals(targetScope, bindingOf(injector,
+                Key.get(Object.class, QualifierAnnotationA.class)).getScope());
+    }
+
+    @Test
+    public void testLinkReportsItsOwnScope() {
+        Injector injector = Muice.createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                binder.bind(WithDefaultConstructor.class);
+                binder.bind(Object.class)
+                        .to(WithDefaultConstructor.class)
+                        .in(Singleton.class);
+            }
+        });
+
+        assertNotEquals(bindingOf(injector, Key.get(WithDefaultConstructor.class)).getScope(),
+                bindingOf(injector, Key.get(Object.class)).getScope());
+    }
+
+    @Test
+    public void testChainOfLinksCollapsedToTargetProvider() {
+        Injector injector = Muice.createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                binder.bind(WithDefaultConstructor.class)
+                        .in(Singleton.class);
+                binder.bind(Object.class)
+                        .to(WithDefaultConstructor.class);
+                binder.bind(Object.class)
+                        .annotatedWith(QualifierAnnotationA.class)
+                        .to(Object.class);
+            }
+        });
+
+        assertSame(injector.getProvider(WithDefaultConstructor.class),
+                injector.getProvider(Key.get(Object.class, QualifierAnnotationA.class)));
+        assertSame(injector.getInstance(WithDefaultConstructor.class),
+                injector.getInstance(Key.get(Object.class, QualifierAnnotationA.class)));
+    }
+
+    @Test
+    public void testScopeOfLinkDecoratesTargetProvider() {
+        Injector injector = Muice.createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                binder.bind(WithDefaultConstructor.class);
+                binder.bind(Object.class)
+                        .to(WithDefaultConstructor.class)
+                        .in(Singleton.class);
+            }
+        });
+
+        assertNotSame(injector.getInstance(WithDefaultConstructor.class),
+                injector.getInstance(WithDefaultConstructor.class));
+        assertSame(injector.getInstance(Object.class), injector.getInstance(Object.class));
+    }
+
+    @Test
+    public void testLegacyLinksDuplicateTargetSingleton() {
+        Muice muice = Muice.newMuice()
+                .withLegacyLinkedBindings()
+                .build();
+        Injector injector = muice.newInjector()
+                .withModules(new BindingModule() {
+
+                    @Override
+                    public void configure(Binder binder) {
+                        binder.bind(SingletonScoped.class);
+                        binder.bind(Object.class)
+                                .to(SingletonScoped.class);
+                    }
+                })
+                .build();
+
+        assertNotSame(injector.getInstance(SingletonScoped.class),
+                injector.getInstance(Object.class));
+        assertSame(injector.getInstance(Object.class), injector.getInstance(Object.class));
+    }
+
+    @Test
+    public void testLinkSharesTargetSingletonInLazyMode() {
+        Muice muice = Muice.newMuice()
+                .withLazyBindings()
+                .build();
+        Injector injector = muice.newInjector()
+                .withModules(new BindingModule() {
+
+                    @Override
+                    public void configure(Binder binder) {
+                        binder.bind(SingletonScoped.class);
+                        binder.bind(Object.class)
+                                .to(SingletonScoped.class);
+                    }
+                })
+                .build();
+
+        assertSame(injector.getInstance(SingletonScoped.class),
+                injector.getInstance(Object.class));
+    }
+
+    private static Binding<?> bindingOf(Injector injector, Key<?> key) {
+        for (Binding<?> binding : injector.getBindings()) {
+            if (binding.getKey().equals(key)) {
+                return binding;
+            }
+        }
+        throw new AssertionError("no binding for " + key);
+    }
 }
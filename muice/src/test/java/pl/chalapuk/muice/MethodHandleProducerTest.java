@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pl.chalapuk.muice;
+
+import static org.junit.Assert.*;
+import static pl.chalapuk.muice.TestedTypes.*;
+
+import java.net.URI;
+
+import org.junit.Test;
+
+import pl.chalapuk.muice.customization.ConstructorInfo;
+import pl.chalapuk.muice.customization.ProducerFactory;
+import pl.chalapuk.muice.defaults.MethodHandleProducerFactory;
+
+/**
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+public class MethodHandleProducerTest {
+    private static final Muice sMuice = Muice.newMuice()
+            .withProducerFactory(new MethodHandleProducerFactory(new FailingProducerFactory()))
+            .build();
+
+    @Test
+    public void testInstantiatingClassWithoutDependencies() {
+        Injector injector = sMuice.newInjector()
+                .withModules(new BindingModule() {
+
+                    @Override
+                    public void configure(Binder binder) {
+                        binder.bind(WithDefaultConstructor.class);
+                    }
+                })
+                .build();
+
+        assertNotNull(injector.getInstance(WithDefaultConstructor.class));
+    }
+
+    @Test
+    public void testInstantiatingClassWithOneDependency() {
+        final URI uri = URI.create("http://example.com/");
+
+        Injector injector = sMuice.newInjector()
+                .withModules(new BindingModule() {
+
+                    @Override
+                    public void configure(Binder binder) {
+                        binder.bind(Object.class).toInstance(uri);
+                        binder.bind(WithObjectDependency.class);
+                    }
+                })
+                .build();
+
+        assertSame(uri, injector.getInstance(WithObjectDependency.class).mInjected);
+    }
+
+    @Test
+    public void testInstantiatingClassWithTwoDependencies() {
+        final URI uri = URI.create("http://example.com/");
+        final Interface inter = new Interface() {
+            // empty
+        };
+
+        Injector injector = sMuice.newInjector()
+                .withModules(new BindingModule() {
+
+                    @Override
+                    public void configure(Binder binder) {
+                        binder.bind(Object.class).toInstance(uri);
+                        binder.bind(Interface.class).toInstance(inter);
+                        binder.bind(WithTwoDependencies.class);
+                    }
+                })
+                .build();
+
+        WithTwoDependencies instance = injector.getInstance(WithTwoDependencies.class);
+        assertSame(uri, instance.mInjectedObject);
+        assertSame(inter, instance.mInjectedInterface);
+    }
+
+    @Test
+    public void testInstantiatingClassWithThreeDependencies() {
+        final Generic<Object> withParam = new Generic<>();
+        final Generic<Object> withoutParam = new Generic<>();
+        final Generic<Object> withQualifier = new Generic<>();
+
+        Injector injector = sMuice.newInjector()
+                .withModules(new BindingModule() {
+
+                    @Override
+                    public void configure(Binder binder) {
+                        binder.bind(TypeLiteral.get(Generic.class, Object.class)).toInstance(withParam);
+                        binder.bind(Generic.class).toInstance(withoutParam);
+                        binder.bind(Generic.class)
+                                .annotatedWith(QualifierAnnotationA.class)
+                                .toInstance(withQualifier);
+                        binder.bind(WithThreeDependencies.class);
+                    }
+                })
+                .build();
+
+        WithThreeDependencies instance = injector.getInstance(WithThreeDependencies.class);
+        assertSame(withParam, instance.mInjectedWithParam);
+        assertSame(withoutParam, instance.mInjectedWithoutParam);
+        assertSame(withQualifier, instance.mInjectedWithQualifier);
+    }
+
+    @Test
+    public void testInstantiatingClassWithFourDependenciesIncludingPrimitive() {
+        Injector injector = sMuice.newInjector()
+                .withModules(new DependenciesModule())
+                .withModules(new BindingModule() {
+
+                    @Override
+                    public void configure(Binder binder) {
+                        binder.bind(WithFourDependencies.class);
+                    }
+                })
+                .build();
+
+        WithFourDependencies instance = injector.getInstance(WithFourDependencies.class);
+        assertSame(injector.getInstance(Object.class), instance.mInjectedObject);
+        assertSame(injector.getInstance(Interface.class), instance.mInjectedInterface);
+        assertNotNull(instance.mInjectedGeneric);
+        assertEquals(42, instance.mInjectedInt);
+    }
+
+    @Test
+    public void testInstantiatingClassWithFiveDependencies() {
+        Injector injector = sMuice.newInjector()
+                .withModules(new DependenciesModule())
+                .withModules(new BindingModule() {
+
+                    @Override
+                    public void configure(Binder binder) {
+                        binder.bind(WithDefaultConstructor.class);
+                        binder.bind(WithFiveDependencies.class);
+                    }
+                })
+                .build();
+
+        WithFiveDependencies instance = injector.getInstance(WithFiveDependencies.class);
+        assertSame(injector.getInstance(Object.class), instance.mInjectedObject);
+        assertSame(injector.getInstance(Interface.class), instance.mInjectedInterface);
+        assertNotNull(instance.mInjectedGeneric);
+        assertNotNull(instance.mInjectedWithDefaultConstructor);
+        assertEquals(42, instance.mInjectedInt);
+    }
+
+    @Test
+    public void testInstantiatingClassWithPrivateInjectAnnotatedConstructor() {
+        Injector injector = sMuice.newInjector()
+                .withModules(new BindingModule() {
+
+                    @Override
+                    public void configure(Binder binder) {
+                        binder.bind(PublicWithPrivateInjectAnnotatedConstrutor.class);
+                    }
+                })
+                .build();
+
+        assertNotNull(injector.getInstance(PublicWithPrivateInjectAnnotatedConstrutor.class));
+    }
+
+    @Test
+    public void testInjectionErrorWhenConstructorThrows() {
+        Injector injector = sMuice.newInjector()
+                .withModules(new BindingModule() {
+
+                    @Override
+                    public void configure(Binder binder) {
+                        binder.bind(WithThrowingConstructor.class);
+                    }
+                })
+                .build();
+
+        try {
+            injector.getInstance(WithThrowingConstructor.class);
+            fail("expected " + InjectionError.class);
+        } catch (InjectionError e) {
+            assertEquals(Exception.class, e.getCause().getClass());
+        }
+    }
+
+    @Test
+    public void testInjectionErrorFromDependencyNotWrapped() {
+        final InjectionError error = new InjectionError("error", new RuntimeException());
+
+        Injector injector = sMuice.newInjector()
+                .withModules(new BindingModule() {
+
+                    @Override
+                    public void configure(Binder binder) {
+                        binder.bind(Object.class).toProducer(new Producer<Object>() {
+
+                            @Override
+                            public Object newInstance(Injector injector) {
+                                throw error;
+                            }
+                        });
+                        binder.bind(WithObjectDependency.class);
+                    }
+                })
+                .build();
+
+        try {
+            injector.getInstance(WithObjectDependency.class);
+            fail("expected " + InjectionError.class);
+        } catch (InjectionError e) {
+            assertSame(error, e.getCause());
+        }
+    }
+
+    private static class DependenciesModule implements BindingModule {
+
+        @Override
+        public void configure(Binder binder) {
+            binder.bind(Object.class).toInstance(new Object());
+            binder.bind(Interface.class).toInstance(new Interface() {
+                // empty
+            });
+            binder.bind(TypeLiteral.get(Generic.class, Object.class)).toInstance(new Generic<>());
+            binder.bind(int.class).toInstance(42);
+        }
+    }
+
+    private static class FailingProducerFactory implements ProducerFactory {
+
+        @Override
+        public <T> Producer<T> createProducer(ConstructorInfo<T> info) {
+            throw new AssertionError("fallback should not be used for " + info.getConstructor());
+        }
+    }
+}
@@ -33,6 +33,8 @@ import pl.chalapuk.muice.customization.ProducerFactory;
 import pl.chalapuk.muice.customization.RawTypeInfo;
 import pl.chalapuk.muice.customization.TypeInfoException;
 import pl.chalapuk.muice.customization.TypeInfoFactory;
+import pl.chalapuk.muice.defaults.ProvisionStatistics;
+import pl.chalapuk.muice.defaults.StartupProfiler;
 
 /**
  * @author maciej@chalapuk.pl (Maciej Chałapuk)
@@ -166,6 +168,60 @@ public class MuiceBuilderTest {
         assertNotEquals(Muice.DEFAULT, muice);
     }
 
+    @Test
+    public void testMuiceInstanceWithLazyBindingsNotEqualsDEFAULT() {
+        Muice muice = Muice.newMuice()
+                .withLazyBindings()
+                .build();
+
+        assertNotEquals(Muice.DEFAULT, muice);
+    }
+
+    @Test
+    public void testMuiceInstanceWithLegacyLinkedBindingsNotEqualsDEFAULT() {
+        Muice muice = Muice.newMuice()
+                .withLegacyLinkedBindings()
+                .build();
+
+        assertNotEquals(Muice.DEFAULT, muice);
+    }
+
+    @Test
+    public void testMuiceInstanceWithTrustedProvidersNotEqualsDEFAULT() {
+        Muice muice = Muice.newMuice()
+                .withTrustedProviders()
+                .build();
+
+        assertNotEquals(Muice.DEFAULT, muice);
+    }
+
+    @Test
+    public void testMuiceInstanceWithIterativeConstructionNotEqualsDEFAULT() {
+        Muice muice = Muice.newMuice()
+                .withIterativeConstruction()
+                .build();
+
+        assertNotEquals(Muice.DEFAULT, muice);
+    }
+
+    @Test
+    public void testMuiceInstanceWithBuildListenerNotEqualsDEFAULT() {
+        Muice muice = Muice.newMuice()
+                .withBuildListener(new StartupProfiler())
+                .build();
+
+        assertNotEquals(Muice.DEFAULT, muice);
+    }
+
+    @Test
+    public void testMuiceInstanceWithProvisionListenerNotEqualsDEFAULT() {
+        Muice muice = Muice.newMuice()
+                .withProvisionListener(new ProvisionStatistics())
+                .build();
+
+        assertNotEquals(Muice.DEFAULT, muice);
+    }
+
     @Test
     public void testTwoMuiceInstancesEqualIfBuiltWithTheSameConfiguration() {
         Muice muice0 = Muice.newMuice()
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pl.chalapuk.muice;
+
+import static org.junit.Assert.*;
+import static pl.chalapuk.muice.TestedTypes.*;
+
+import javax.inject.Inject;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Optional;
+
+/**
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+public class OptionalLookupTest {
+    private static final Key<javax.inject.Provider<Service>> SERVICE_PROVIDER =
+            Key.get(TypeLiteral.<javax.inject.Provider<Service>> get(
+                    javax.inject.Provider.class, Service.class));
+    private static final Key<javax.inject.Provider<String>> STRING_PROVIDER =
+            Key.get(TypeLiteral.<javax.inject.Provider<String>> get(
+                    javax.inject.Provider.class, String.class));
+
+    private Injector mInjector;
+
+    @Before
+    public void setUp() {
+        mInjector = Muice.createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                binder.bind(Dependency.class);
+                binder.bind(Service.class);
+                binder.bind(Object.class).toProvider(new javax.inject.Provider<Object>() {
+
+                    @Override
+                    public Object get() {
+                        return null;
+                    }
+                });
+            }
+        });
+    }
+
+    @Test
+    public void testExistingProviderReturned() {
+        assertSame(mInjector.getProvider(Service.class),
+                mInjector.getExistingProvider(Key.get(Service.class)));
+    }
+
+    @Test
+    public void testNullReturnedWhenProviderIsMissing() {
+        assertNull(mInjector.getExistingProvider(Key.get(String.class)));
+        assertNull(mInjector.getExistingProvider(Key.get(Service.class, QualifierAnnotationA.class)));
+    }
+
+    @Test
+    public void testInstanceReturnedWhenBindingExists() {
+        Optional<Service> service = mInjector.tryGetInstance(Key.get(Service.class));
+
+        assertTrue(service.isPresent());
+        assertNotNull(service.get().mDependency);
+    }
+
+    @Test
+    public void testAbsentReturnedWhenBindingIsMissing() {
+        assertFalse(mInjector.tryGetInstance(Key.get(String.class)).isPresent());
+    }
+
+    @Test
+    public void testAbsentReturnedWhenProviderReturnsNull() {
+        assertFalse(mInjector.tryGetInstance(Key.get(Object.class)).isPresent());
+    }
+
+    @Test
+    public void testProviderReturnedForProviderKey() {
+        assertSame(mInjector.getProvider(Service.class),
+                mInjector.tryGetInstance(SERVICE_PROVIDER).get());
+        assertFalse(mInjector.tryGetInstance(STRING_PROVIDER).isPresent());
+    }
+
+    @Test
+    public void testExistingProviderReturnedForProviderKey() {
+        assertSame(mInjector.getProvider(Service.class),
+                mInjector.getExistingProvider(SERVICE_PROVIDER).get());
+        assertNull(mInjector.getExistingProvider(STRING_PROVIDER));
+    }
+
+    @Test
+    public void testRawProviderKeyNotBound() {
+        Key<javax.inject.Provider> key = Key.get(javax.inject.Provider.class);
+
+        assertFalse(mInjector.hasBinding(key));
+        assertFalse(mInjector.tryGetInstance(key).isPresent());
+        assertNull(mInjector.getExistingProvider(key));
+    }
+
+    @Test
+    public void testHasBinding() {
+        assertTrue(mInjector.hasBinding(Key.get(Service.class)));
+        assertTrue(mInjector.hasBinding(Key.get(Injector.class)));
+        assertFalse(mInjector.hasBinding(Key.get(String.class)));
+        assertFalse(mInjector.hasBinding(Key.get(Service.class, QualifierAnnotationA.class)));
+    }
+
+    @Test
+    public void testHasBindingForProviderKey() {
+        assertTrue(mInjector.hasBinding(SERVICE_PROVIDER));
+        assertFalse(mInjector.hasBinding(STRING_PROVIDER));
+    }
+
+    @Test
+    public void testBindingErrorWhenLazyBindingCannotBeResolved() {
+        Injector injector = Muice.newMuice()
+                .withLazyBindings()
+                .build()
+                .newInjector()
+                .withModules(new BindingModule() {
+
+                    @Override
+                    public void configure(Binder binder) {
+                        binder.bind(Abstract.class);
+                    }
+                })
+                .build();
+
+        assertTrue(injector.hasBinding(Key.get(Abstract.class)));
+        try {
+            injector.getExistingProvider(Key.get(Abstract.class));
+            fail("expected " + BindingError.class);
+        } catch (BindingError e) {
+            // expected
+        }
+    }
+
+    public static class Dependency {
+    }
+
+    public static class Service {
+        final Dependency mDependency;
+
+        @Inject
+        public Service(Dependency dependency) {
+            mDependency = dependency;
+        }
+    }
+
+    public static abstract class Abstract {
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice;
+
+import static org.junit.Assert.*;
+import static pl.chalapuk.muice.TestedTypes.*;
+
+import java.io.File;
+import java.lang.reflect.Constructor;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.primitives.Bytes;
+
+import pl.chalapuk.muice.customization.ConstructorInfo;
+import pl.chalapuk.muice.customization.RawTypeInfo;
+import pl.chalapuk.muice.customization.TypeInfoException;
+import pl.chalapuk.muice.customization.TypeInfoFactory;
+import pl.chalapuk.muice.defaults.PersistentTypeInfoFactory;
+import pl.chalapuk.muice.defaults.ReflectionTypeInfoFactory;
+
+/**
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+public class PersistentTypeInfoFactoryTest {
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private File mFile;
+    private CountingTypeInfoFactory mSource;
+    private final Map<File, byte[]> mChangedClassFiles = new HashMap<>();
+
+    @Before
+    public void setUp() {
+        mFile = new File(mFolder.getRoot(), "types.bin");
+        mSource = new CountingTypeInfoFactory();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (Map.Entry<File, byte[]> entry : mChangedClassFiles.entrySet()) {
+            long lastModified = entry.getKey().lastModified();
+            Files.write(entry.getKey().toPath(), entry.getValue());
+            entry.getKey().setLastModified(lastModified);
+        }
+    }
+
+    @Test
+    public void testSourceUsedWhenFileDoesNotExist() throws Exception {
+        new PersistentTypeInfoFactory(mSource, mFile).getRawTypeInfo(WithFourDependencies.class);
+
+        assertEquals(1, mSource.mCount.get());
+    }
+
+    @Test
+    public void testSavedInformationReadWithoutSource() throws Exception {
+        saveInfoOf(WithFourDependencies.class, WithTwoQualifiedDependencies.class,
+                SingletonScoped.class);
+
+        PersistentTypeInfoFactory factory = new PersistentTypeInfoFactory(mSource, mFile);
+        assertInfoEquals(WithFourDependencies.class, factory);
+        assertInfoEquals(WithTwoQualifiedDependencies.class, factory);
+        assertInfoEquals(SingletonScoped.class, factory);
+        assertEquals(0, mSource.mCount.get());
+    }
+
+    @Test
+    public void testInjectorCreatedWithSavedInformation() throws Exception {
+        saveInfoOf(WithQualifiedDependency.class);
+
+        Muice muice = Muice.newMuice()
+                .withTypeInfoFactory(new PersistentTypeInfoFactory(mSource, mFile))
+                .build();
+        Injector injector = muice.newInjector()
+                .withModules(new BindingModule() {
+
+                    @Override
+                    public void configure(Binder binder) {
+                        binder.bind(Object.class).annotatedWith(QualifierAnnotationA.class)
+                                .toInstance("a");
+                        binder.bind(WithQualifiedDependency.class);
+                    }
+                })
+                .build();
+
+        assertEquals("a", injector.getInstance(WithQualifiedDependency.class).mInjected);
+        assertEquals(0, mSource.mCount.get());
+    }
+
+    @Test
+    public void testCorruptedFileIgnored() throws Exception {
+        Files.write(mFile.toPath(), "not a type info file".getBytes(StandardCharsets.UTF_8));
+
+        PersistentTypeInfoFactory factory = new PersistentTypeInfoFactory(mSource, mFile);
+        assertInfoEquals(WithFourDependencies.class, factory);
+        assertEquals(1, mSource.mCount.get());
+    }
+
+    @Test
+    public void testTruncatedFileIgnored() throws Exception {
+        saveInfoOf(WithFourDependencies.class);
+        byte[] content = Files.readAllBytes(mFile.toPath());
+        Files.write(mFile.toPath(), Arrays.copyOf(content, content.length / 2));
+
+        PersistentTypeInfoFactory factory = new PersistentTypeInfoFactory(mSource, mFile);
+        assertInfoEquals(WithFourDependencies.class, factory);
+        assertEquals(1, mSource.mCount.get());
+    }
+
+    @Test
+    public void testInformationOfChangedClassIgnored() throws Exception {
+        saveInfoOf(WithFourDependencies.class);
+
+        // fingerprint of class files is stored right after class name
+        byte[] content = Files.readAllBytes(mFile.toPath());
+        byte[] name = WithFourDependencies.class.getName().getBytes(StandardCharsets.UTF_8);
+        content[Bytes.indexOf(content, name) + name.length] ^= 1;
+        Files.write(mFile.toPath(), content);
+
+        PersistentTypeInfoFactory factory = new PersistentTypeInfoFactory(mSource, mFile);
+        assertInfoEquals(WithFourDependencies.class, factory);
+        assertEquals(1, mSource.mCount.get());
+    }
+
+    @Test
+    public void testInformationOfClassWithChangedSuperclassIgnored() throws Exception {
+        saveInfoOf(ExtendingCustomScopeAnnotated.class);
+
+        changeClassFile(CustomScopeAnnotated.class);
+        PersistentTypeInfoFactory factory = new PersistentTypeInfoFactory(mSource, mFile);
+        assertInfoEquals(ExtendingCustomScopeAnnotated.class, factory);
+        assertEquals(1, mSource.mCount.get());
+    }
+
+    @Test
+    public void testInformationOfClassWithChangedScopeAnnotationIgnored() throws Exception {
+        saveInfoOf(CustomScopeAnnotated.class);
+
+        changeClassFile(ScopeAnnotationA.class);
+        PersistentTypeInfoFactory factory = new PersistentTypeInfoFactory(mSource, mFile);
+        assertInfoEquals(CustomScopeAnnotated.class, factory);
+        assertEquals(1, mSource.mCount.get());
+    }
+
+    @Test
+    public void testInformationOfClassWithChangedQualifierIgnored() throws Exception {
+        saveInfoOf(WithQualifiedDependency.class);
+
+        changeClassFile(QualifierAnnotationA.class);
+        PersistentTypeInfoFactory factory = new PersistentTypeInfoFactory(mSource, mFile);
+        assertInfoEquals(WithQualifiedDependency.class, factory);
+        assertEquals(1, mSource.mCount.get());
+    }
+
+    @Test
+    public void testSaveKeepsPreviouslyStoredInformation() throws Exception {
+        saveInfoOf(WithFourDependencies.class);
+        saveInfoOf(WithTwoQualifiedDependencies.class);
+
+        PersistentTypeInfoFactory factory = new PersistentTypeInfoFactory(mSource, mFile);
+        assertInfoEquals(WithFourDependencies.class, factory);
+        assertInfoEquals(WithTwoQualifiedDependencies.class, factory);
+        assertEquals(0, mSource.mCount.get());
+    }
+
+    private void saveInfoOf(Class<?>... types) throws Exception {
+        PersistentTypeInfoFactory factory = new PersistentTypeInfoFactory(
+                new ReflectionTypeInfoFactory(), mFile);
+        for (Class<?> type : types) {
+            factory.getRawTypeInfo(type);
+        }
+        factory.save();
+    }
+
+    // changes content of class file, but not its size or modification time
+    private void changeClassFile(Class<?> type) throws Exception {
+        File directory = new File(type.getProtectionDomain().getCodeSource().getLocation().toURI());
+        File classFile = new File(directory, type.getName().replace('.', File.separatorChar)
+                + ".class");
+        byte[] content = Files.readAllBytes(classFile.toPath());
+        mChangedClassFiles.put(classFile, content);
+
+        byte[] changed = content.clone();
+        changed[changed.length - 1] ^= 1;
+        long lastModified = classFile.lastModified();
+        Files.write(classFile.toPath(), changed);
+        assertTrue(classFile.setLastModified(lastModified));
+    }
+
+    private static void assertInfoEquals(Class<?> type, TypeInfoFactory factory)
+            throws TypeInfoException {
+        RawTypeInfo<?> expected = new ReflectionTypeInfoFactory().getRawTypeInfo(type);
+        RawTypeInfo<?> actual = factory.getRawTypeInfo(type);
+
+        assertEquals(expected.getScopeAnnotation(), actual.getScopeAnnotation());
+        ConstructorInfo<?> expectedConstructor = expected.getDefaultInjectionPoint();
+        ConstructorInfo<?> actualConstructor = actual.getDefaultInjectionPoint();
+        assertEquals(expectedConstructor.getConstructor(), actualConstructor.getConstructor());
+        assertArrayEquals(expectedConstructor.getParameterKeys(),
+                actualConstructor.getParameterKeys());
+        assertEquals(expectedConstructor.isInjectAnnotated(),
+                actualConstructor.isInjectAnnotated());
+    }
+
+    static class ExtendingCustomScopeAnnotated extends CustomScopeAnnotated {
+        // empty
+    }
+
+    private static class CountingTypeInfoFactory implements TypeInfoFactory {
+        final TypeInfoFactory mDelegate = new ReflectionTypeInfoFactory();
+        final AtomicInteger mCount = new AtomicInteger();
+
+        @Override
+        public <T> RawTypeInfo<T> getRawTypeInfo(Class<? super T> rawType)
+                throws TypeInfoException {
+            mCount.incrementAndGet();
+            return mDelegate.getRawTypeInfo(rawType);
+        }
+
+        @Override
+        public <T> ConstructorInfo<T> getConstructorInfo(Constructor<T> constructor) {
+            return mDelegate.getConstructorInfo(constructor);
+        }
+    }
+}
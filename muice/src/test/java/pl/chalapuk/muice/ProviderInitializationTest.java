@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pl.chalapuk.muice;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import pl.chalapuk.muice.customization.BuildListener.Phase;
+import pl.chalapuk.muice.defaults.StartupProfiler;
+
+import com.google.common.collect.Lists;
+
+/**
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+public class ProviderInitializationTest {
+    private AtomicInteger mInitializations;
+
+    @Before
+    public void setUp() {
+        mInitializations = new AtomicInteger();
+    }
+
+    @Test
+    public void testProviderInitializedDuringBuild() {
+        Muice.createInjector(new ProviderModule());
+
+        assertEquals(1, mInitializations.get());
+    }
+
+    @Test
+    public void testProviderInitializedOnlyOnce() {
+        Injector injector = Muice.createInjector(new ProviderModule());
+
+        assertEquals("dependency", injector.getInstance(String.class));
+        assertEquals("dependency", injector.getInstance(String.class));
+        assertEquals(1, mInitializations.get());
+    }
+
+    @Test
+    public void testProviderInitializedOnFirstUseInLazyMode() {
+        Injector injector = Muice.newMuice()
+                .withLazyBindings()
+                .build()
+                .newInjector()
+                .withModules(new ProviderModule())
+                .build();
+
+        assertEquals(0, mInitializations.get());
+        assertEquals("dependency", injector.getInstance(String.class));
+        assertEquals("dependency", injector.getInstance(String.class));
+        assertEquals(1, mInitializations.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testInjectionErrorWhenInitializationNeedsOwnBinding() {
+        try {
+            Muice.createInjector(new BindingModule() {
+
+                @Override
+                public void configure(Binder binder) {
+                    binder.bind(String.class).toProvider(new Provider<String>() {
+
+                        @Override
+                        public void initialize(Injector injector) {
+                            mInitializations.incrementAndGet();
+                            injector.getInstance(String.class);
+                        }
+
+                        @Override
+                        public String get() {
+                            return "provided";
+                        }
+                    });
+                }
+            });
+            fail("expected " + InjectionError.class);
+        } catch (InjectionError e) {
+            // expected
+        }
+        assertEquals(1, mInitializations.get());
+    }
+
+    @Test
+    public void testProvidersInitializedInOrderOfDeclaration() {
+        final List<Class<?>> types = Arrays.<Class<?>> asList(Integer.class, Long.class,
+                Short.class, Byte.class, Double.class, Float.class, Character.class,
+                Boolean.class, StringBuilder.class, Number.class, Object.class);
+        final List<Class<?>> initialized = Lists.newArrayList();
+
+        Muice.createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                for (final Class<?> type : types) {
+                    binder.bind(type).toProvider(new Provider() {
+
+                        @Override
+                        public void initialize(Injector injector) {
+                            initialized.add(type);
+                        }
+
+                        @Override
+                        public Object get() {
+                            return null;
+                        }
+                    });
+                }
+            }
+        });
+
+        assertEquals(types, initialized);
+    }
+
+    @Test
+    public void testProviderUsedByInitializationOfProviderDeclaredBeforeIt() {
+        Injector injector = Muice.createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                binder.bind(String.class).toProvider(new Provider<String>() {
+                    private String mValue;
+
+                    @Override
+                    public void initialize(Injector injector) {
+                        mInitializations.incrementAndGet();
+                        mValue = "dependency of " + injector.getInstance(Integer.class);
+                    }
+
+                    @Override
+                    public String get() {
+                        return mValue;
+                    }
+                });
+                binder.bind(Integer.class).toProvider(new Provider<Integer>() {
+                    private javax.inject.Provider<? extends String> mDependent;
+                    private Integer mValue;
+
+                    @Override
+                    public void initialize(Injector injector) {
+                        mInitializations.incrementAndGet();
+                        mDependent = injector.getProvider(String.class);
+                        mValue = 2;
+                    }
+
+                    @Override
+                    public Integer get() {
+                        return mValue;
+                    }
+                });
+            }
+        });
+
+        assertEquals(2, mInitializations.get());
+        assertEquals("dependency of 2", injector.getInstance(String.class));
+        assertEquals(Integer.valueOf(2), injector.getInstance(Integer.class));
+        assertEquals(2, mInitializations.get());
+    }
+
+    @Test
+    public void testInitializationReportedToBuildListener() {
+        StartupProfiler profiler = new StartupProfiler();
+        Muice.newMuice()
+                .withBuildListener(profiler)
+                .build()
+                .newInjector()
+                .withModules(new ProviderModule())
+                .build();
+
+        assertTrue(profiler.getPhaseNanos(Key.get(String.class), Phase.PROVIDER_INITIALIZATION) > 0);
+    }
+
+    private class ProviderModule implements BindingModule {
+
+        @Override
+        public void configure(Binder binder) {
+            binder.bind(CharSequence.class).toInstance("dependency");
+            binder.bind(String.class).toProvider(new Provider<String>() {
+                private String mValue;
+
+                @Override
+                public void initialize(Injector injector) {
+                    mInitializations.incrementAndGet();
+                    mValue = injector.getInstance(CharSequence.class).toString();
+                }
+
+                @Override
+                public String get() {
+                    return mValue;
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice;
+
+import static org.junit.Assert.*;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import pl.chalapuk.muice.internal.ProviderTable;
+
+/**
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+public class ProviderTableTest {
+
+    @Test
+    public void testSameKeyInstanceUsedWithManyInjectors() {
+        Key<String> key = Key.get(String.class);
+
+        Injector first = injectorWithInstance("first");
+        Injector second = injectorWithInstance("second");
+
+        for (int i = 0; i < 3; ++i) {
+            assertEquals("first", first.getInstance(key));
+            assertEquals("second", second.getInstance(key));
+        }
+    }
+
+    @Test
+    public void testKeyFoundInOtherInjectorNotFoundInEmptyOne() {
+        Key<String> key = Key.get(String.class);
+        injectorWithInstance("cached").getInstance(key);
+
+        Injector empty = Muice.createInjector();
+        try {
+            empty.getInstance(key);
+            fail("expected " + BindingError.class);
+        } catch (BindingError e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testTableGrowsWithStoredProviders() {
+        ProviderTable table = new ProviderTable();
+        Key<?>[] keys = new Key<?>[100];
+        javax.inject.Provider<?>[] providers = new javax.inject.Provider<?>[keys.length];
+
+        for (int i = 0; i < keys.length; ++i) {
+            keys[i] = Key.get(TypeLiteral.get(Comparable.class, arrayType(i)));
+            providers[i] = new ConstantProvider(i);
+            table.put(keys[i], providers[i]);
+        }
+
+        assertEquals(keys.length, table.size());
+        for (int i = 0; i < keys.length; ++i) {
+            assertSame(providers[i], table.get(keys[i]));
+            assertSame(providers[i], table.get(Key.get(keys[i].getTypeLiteral())));
+        }
+    }
+
+    @Test
+    public void testStoringProviderForTheSameKeyReplacesPrevious() {
+        ProviderTable table = new ProviderTable();
+        javax.inject.Provider<?> replaced = new ConstantProvider(1);
+        javax.inject.Provider<?> replacing = new ConstantProvider(2);
+
+        table.put(Key.get(Object.class), replaced);
+        table.put(Key.get(Object.class), replacing);
+
+        assertEquals(1, table.size());
+        assertSame(replacing, table.get(Key.get(Object.class)));
+    }
+
+    @Test
+    public void testLookupByClassReturnsProviderOfUnqualifiedBinding() {
+        Injector injector = Muice.createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                binder.bind(String.class).annotatedWith(TestedTypes.QualifierAnnotationA.class).toInstance("red");
+                binder.bind(String.class).toInstance("unqualified");
+            }
+        });
+
+        assertSame(injector.getProvider(Key.get(String.class)), injector.getProvider(String.class));
+        assertEquals("unqualified", injector.getInstance(String.class));
+        assertEquals("unqualified", injector.getInstance(String.class));
+    }
+
+    @Test(expected = BindingError.class)
+    public void testLookupByClassOfQualifiedOnlyBindingFails() {
+        Injector injector = Muice.createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                binder.bind(String.class).annotatedWith(TestedTypes.QualifierAnnotationA.class).toInstance("red");
+            }
+        });
+
+        injector.getInstance(String.class);
+    }
+
+    @Test
+    public void testLookupByClassDoesNotAllocate() {
+        java.lang.management.ThreadMXBean bean = java.lang.management.ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        Injector injector = injectorWithInstance("instance");
+        long id = Thread.currentThread().getId();
+        for (int i = 0; i < 10000; ++i) {
+            injector.getInstance(String.class);
+        }
+
+        long before = threads.getThreadAllocatedBytes(id);
+        for (int i = 0; i < 10000; ++i) {
+            injector.getInstance(String.class);
+        }
+        long allocated = threads.getThreadAllocatedBytes(id) - before;
+
+        assertTrue("allocated " + allocated + " bytes in 10000 lookups", allocated < 10000);
+    }
+
+    private static Injector injectorWithInstance(final String instance) {
+        return Muice.createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                binder.bind(String.class).toInstance(instance);
+            }
+        });
+    }
+
+    private static Class<?> arrayType(int dimensions) {
+        Class<?> type = Object.class;
+        for (int i = 0; i < dimensions; ++i) {
+            type = java.lang.reflect.Array.newInstance(type, 0).getClass();
+        }
+        return type;
+    }
+
+    private static class ConstantProvider implements javax.inject.Provider<Object> {
+        private final Object mValue;
+
+        ConstantProvider(Object value) {
+            mValue = value;
+        }
+
+        @Override
+        public Object get() {
+            return mValue;
+        }
+    }
+}
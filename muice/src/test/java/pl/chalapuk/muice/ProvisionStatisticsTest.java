@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+
+import javax.inject.Singleton;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Predicate;
+
+import pl.chalapuk.muice.defaults.ProvisionStatistics;
+import pl.chalapuk.muice.defaults.ProvisionStatistics.KeyStatistics;
+
+/**
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+public class ProvisionStatisticsTest {
+    private ProvisionStatistics mStatistics;
+    private Injector mInjector;
+
+    @Before
+    public void setUp() {
+        mStatistics = new ProvisionStatistics("test", new Predicate<Binding<?>>() {
+
+            @Override
+            public boolean apply(Binding<?> binding) {
+                return !binding.getKey().equals(Key.get(Ignored.class));
+            }
+        });
+        mInjector = createInjector(mStatistics);
+    }
+
+    @Test
+    public void testUnscopedProvisionsCounted() {
+        mInjector.getInstance(Unscoped.class);
+        mInjector.getInstance(Unscoped.class);
+        mInjector.getProvider(Unscoped.class).get();
+
+        KeyStatistics statistics = mStatistics.getStatistics(Key.get(Unscoped.class));
+        assertEquals(3L, statistics.getRequestCount());
+        assertEquals(3L, statistics.getProvisionCount());
+        assertEquals(0L, statistics.getScopeHitCount());
+    }
+
+    @Test
+    public void testSingletonHitsCounted() {
+        mInjector.getInstance(SingletonScoped.class);
+        mInjector.getInstance(SingletonScoped.class);
+        mInjector.getInstance(SingletonScoped.class);
+
+        KeyStatistics statistics = mStatistics.getStatistics(Key.get(SingletonScoped.class));
+        assertEquals(3L, statistics.getRequestCount());
+        assertEquals(1L, statistics.getProvisionCount());
+        assertEquals(2L, statistics.getScopeHitCount());
+    }
+
+    @Test
+    public void testRequestsOfLinkedKeyCounted() {
+        mInjector.getInstance(Object.class);
+        mInjector.getInstance(Object.class);
+
+        KeyStatistics linked = mStatistics.getStatistics(Key.get(Object.class));
+        assertEquals(2L, linked.getRequestCount());
+        assertEquals(0L, linked.getProvisionCount());
+        KeyStatistics target = mStatistics.getStatistics(Key.get(Unscoped.class));
+        assertEquals(2L, target.getRequestCount());
+        assertEquals(2L, target.getProvisionCount());
+    }
+
+    @Test
+    public void testNotSelectedBindingNotListened() {
+        mInjector.getInstance(Ignored.class);
+
+        assertNull(mStatistics.getStatistics(Key.get(Ignored.class)));
+    }
+
+    @Test
+    public void testFailuresCounted() {
+        try {
+            mInjector.getInstance(Throwing.class);
+            fail("expected " + InjectionError.class);
+        } catch (InjectionError e) {
+            // expected
+        }
+
+        KeyStatistics statistics = mStatistics.getStatistics(Key.get(Throwing.class));
+        assertEquals(1L, statistics.getFailureCount());
+        assertEquals(1L, statistics.getProvisionCount());
+    }
+
+    @Test
+    public void testLatencyHistogramFilled() {
+        for (int i = 0; i < 10; ++i) {
+            mInjector.getInstance(Unscoped.class);
+        }
+
+        KeyStatistics statistics = mStatistics.getStatistics(Key.get(Unscoped.class));
+        long total = 0L;
+        for (long count : statistics.getLatencyHistogram()) {
+            total += count;
+        }
+        assertEquals(10L, total);
+        assertTrue(statistics.getMedianNanos() <= statistics.get99thPercentileNanos());
+        assertTrue(statistics.getMedianNanos() > 0L);
+    }
+
+    @Test
+    public void testMostProvisionedKeysFirst() {
+        mInjector.getInstance(SingletonScoped.class);
+        mInjector.getInstance(Unscoped.class);
+        mInjector.getInstance(Unscoped.class);
+
+        assertEquals(Key.get(Unscoped.class).toString(),
+                mStatistics.getAllStatistics().get(0).getKey());
+    }
+
+    @Test
+    public void testStatisticsExposedThroughJmx() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        mStatistics.registerMBeans(server);
+        try {
+            mInjector.getInstance(Unscoped.class);
+
+            ObjectName name = new ObjectName("pl.chalapuk.muice:type=ProvisionStatistics"
+                    + ",name=" + ObjectName.quote("test")
+                    + ",key=" + ObjectName.quote(Key.get(Unscoped.class).toString()));
+            assertEquals(1L, server.getAttribute(name, "ProvisionCount"));
+        } finally {
+            mStatistics.unregisterMBeans();
+        }
+    }
+
+    @Test
+    public void testMBeansOfLaterBindingsRegistered() throws Exception {
+        ProvisionStatistics statistics = new ProvisionStatistics();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        statistics.registerMBeans(server);
+        try {
+            createInjector(statistics);
+
+            ObjectName name = new ObjectName("pl.chalapuk.muice:type=ProvisionStatistics"
+                    + ",name=" + ObjectName.quote("default")
+                    + ",key=" + ObjectName.quote(Key.get(Ignored.class).toString()));
+            assertTrue(server.isRegistered(name));
+        } finally {
+            statistics.unregisterMBeans();
+        }
+    }
+
+    private static Injector createInjector(ProvisionStatistics statistics) {
+        return Muice.newMuice()
+                .withProvisionListener(statistics)
+                .build()
+                .newInjector()
+                .withModules(new BindingModule() {
+
+                    @Override
+                    public void configure(Binder binder) {
+                        binder.bind(Unscoped.class);
+                        binder.bind(SingletonScoped.class);
+                        binder.bind(Ignored.class);
+                        binder.bind(Throwing.class);
+                        binder.bind(Object.class).to(Unscoped.class);
+                    }
+                })
+                .build();
+    }
+
+    public static class Unscoped {
+    }
+
+    @Singleton
+    public static class SingletonScoped {
+    }
+
+    public static class Ignored {
+    }
+
+    public static class Throwing {
+
+        public Throwing() {
+            throw new IllegalStateException();
+        }
+    }
+}
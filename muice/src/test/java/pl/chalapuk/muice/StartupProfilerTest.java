@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package pl.chalapuk.muice;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import pl.chalapuk.muice.customization.BuildListener.Phase;
+import pl.chalapuk.muice.defaults.StartupProfiler;
+
+/**
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+public class StartupProfilerTest {
+    private StartupProfiler mProfiler;
+    private Injector mInjector;
+
+    @Before
+    public void setUp() {
+        mProfiler = new StartupProfiler();
+        mInjector = Muice.newMuice()
+                .withBuildListener(mProfiler)
+                .build()
+                .newInjector()
+                .withModules(new BindingModule() {
+
+                    @Override
+                    public void configure(Binder binder) {
+                        binder.bind(String.class).toInstance("instance");
+                        binder.bind(Fast.class);
+                        binder.bind(Slow.class);
+                        binder.bind(SingletonDependency.class);
+                        binder.bind(Root.class);
+                    }
+                })
+                .build();
+    }
+
+    @Test
+    public void testPhasesOfBindingCreationMeasured() {
+        Key<Root> key = Key.get(Root.class);
+
+        assertTrue(mProfiler.getPhaseNanos(key, Phase.TYPE_ANALYSIS) > 0L);
+        assertTrue(mProfiler.getPhaseNanos(key, Phase.PRODUCER_CREATION) > 0L);
+        assertTrue(mProfiler.getPhaseNanos(key, Phase.SCOPE_DECORATION) > 0L);
+        assertTrue(mProfiler.getBindingNanos(key) > 0L);
+        assertTrue(mProfiler.getInjectorBuildNanos() > 0L);
+    }
+
+    @Test
+    public void testNothingConstructedDuringBuild() {
+        assertEquals(0L, mProfiler.getConstructionCount(Key.get(Root.class)));
+        assertTrue(mProfiler.getRoots().isEmpty());
+    }
+
+    @Test
+    public void testOnlyFirstConstructionsCounted() {
+        mInjector.getInstance(Root.class);
+        mInjector.getInstance(Root.class);
+
+        assertEquals(1L, mProfiler.getConstructionCount(Key.get(Root.class)));
+        assertEquals(1L, mProfiler.getConstructionCount(Key.get(Fast.class)));
+        assertEquals(1L, mProfiler.getConstructionCount(Key.get(SingletonDependency.class)));
+    }
+
+    @Test
+    public void testConstructionsNotCountedWhenNotTiming() {
+        StartupProfiler profiler = new StartupProfiler() {
+
+            @Override
+            public boolean isTimingConstructions() {
+                return false;
+            }
+        };
+        Injector injector = Muice.newMuice()
+                .withBuildListener(profiler)
+                .build()
+                .newInjector()
+                .withModules(new BindingModule() {
+
+                    @Override
+                    public void configure(Binder binder) {
+                        binder.bind(Fast.class);
+                    }
+                })
+                .build();
+        injector.getInstance(Fast.class);
+
+        assertEquals(0L, profiler.getConstructionCount(Key.get(Fast.class)));
+        assertTrue(profiler.getBindingNanos(Key.get(Fast.class)) > 0L);
+    }
+
+    @Test
+    public void testOnlyTopLevelConstructionsAreRoots() {
+        mInjector.getInstance(Fast.class);
+        mInjector.getInstance(Root.class);
+
+        assertEquals(Arrays.<Key<?>> asList(Key.get(Root.class), Key.get(Fast.class)),
+                mProfiler.getRoots());
+    }
+
+    @Test
+    public void testCriticalPathFollowsSlowestDependency() {
+        mInjector.getInstance(Root.class);
+
+        assertEquals(Arrays.<Key<?>> asList(Key.get(Root.class), Key.get(Slow.class)),
+                mProfiler.getCriticalPath(Key.get(Root.class)));
+    }
+
+    @Test
+    public void testSelfTimeExcludesDependencies() {
+        mInjector.getInstance(Root.class);
+
+        Key<Root> key = Key.get(Root.class);
+        assertTrue(mProfiler.getConstructionNanos(key) >= mProfiler.getConstructionNanos(
+                Key.get(Slow.class)));
+        assertTrue(mProfiler.getSelfNanos(key) < mProfiler.getConstructionNanos(key));
+    }
+
+    @Test
+    public void testCriticalPathOfUnknownKeyContainsOnlyTheKey() {
+        assertEquals(Collections.<Key<?>> singletonList(Key.get(Object.class)),
+                mProfiler.getCriticalPath(Key.get(Object.class)));
+    }
+
+    @Test
+    public void testReportContainsCriticalPath() {
+        mInjector.getInstance(Root.class);
+
+        String report = mProfiler.report(1);
+        assertTrue(report, report.contains("critical path of " + Key.get(Root.class)));
+        assertTrue(report, report.contains(Key.get(Slow.class).toString()));
+        assertTrue(report, report.contains("type_analysis"));
+    }
+
+    public static class Fast {
+    }
+
+    public static class Slow {
+
+        @Inject
+        public Slow() throws InterruptedException {
+            Thread.sleep(20);
+        }
+    }
+
+    @Singleton
+    public static class SingletonDependency {
+    }
+
+    public static class Root {
+
+        @Inject
+        public Root(Fast fast, Slow slow, SingletonDependency singleton, String string) {
+        }
+    }
+}
@@ -274,6 +274,40 @@ public class TestedTypes {
         }
     }
 
+    public static class WithFourDependencies {
+        public final Object mInjectedObject;
+        public final Interface mInjectedInterface;
+        public final Generic<Object> mInjectedGeneric;
+        public final int mInjectedInt;
+
+        @Inject
+        public WithFourDependencies(Object object, Interface inter, Generic<Object> generic,
+                int integer) {
+            mInjectedObject = object;
+            mInjectedInterface = inter;
+            mInjectedGeneric = generic;
+            mInjectedInt = integer;
+        }
+    }
+
+    public static class WithFiveDependencies {
+        public final Object mInjectedObject;
+        public final Interface mInjectedInterface;
+        public final Generic<Object> mInjectedGeneric;
+        public final WithDefaultConstructor mInjectedWithDefaultConstructor;
+        public final int mInjectedInt;
+
+        @Inject
+        public WithFiveDependencies(Object object, Interface inter, Generic<Object> generic,
+                WithDefaultConstructor withDefaultConstructor, int integer) {
+            mInjectedObject = object;
+            mInjectedInterface = inter;
+            mInjectedGeneric = generic;
+            mInjectedWithDefaultConstructor = withDefaultConstructor;
+            mInjectedInt = integer;
+        }
+    }
+
     @SuppressWarnings("rawtypes")
     public static class WithThreeDependencies {
         public final Generic<Object> mInjectedWithParam;
@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2013 Maciej Chałapuk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package pl.chalapuk.muice;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Inject;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author maciej@chalapuk.pl (Maciej Chałapuk)
+ */
+public class TrustedProvidersTest {
+    private Muice mMuice;
+
+    @Before
+    public void setUp() {
+        mMuice = Muice.newMuice()
+                .withTrustedProviders()
+                .build();
+    }
+
+    @Test
+    public void testInstancesOfCustomProviderAndProducerProvided() {
+        Injector injector = createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                binder.bind(String.class).toProvider(new javax.inject.Provider<String>() {
+
+                    @Override
+                    public String get() {
+                        return "provided";
+                    }
+                });
+                binder.bind(Integer.class).toProducer(new Producer<Integer>() {
+
+                    @Override
+                    public Integer newInstance(Injector unused) {
+                        return 1;
+                    }
+                });
+            }
+        });
+
+        assertEquals("provided", injector.getInstance(String.class));
+        assertEquals(Integer.valueOf(1), injector.getInstance(Integer.class));
+    }
+
+    @Test
+    public void testTypedProducerUsedDirectly() {
+        final Producer<Integer> producer = new Producer<Integer>() {
+
+            @Override
+            public Integer newInstance(Injector unused) {
+                return 1;
+            }
+        };
+        Injector injector = createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                binder.bind(Integer.class).toProducer(producer);
+            }
+        });
+
+        for (Binding<?> binding : injector.getBindings()) {
+            if (binding.getKey().equals(Key.get(Integer.class))) {
+                assertSame(producer, binding.getTarget());
+            }
+        }
+    }
+
+    @Test
+    public void testExceptionFromCustomProviderNotWrapped() {
+        Injector injector = createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                binder.bind(String.class).toProvider(new javax.inject.Provider<String>() {
+
+                    @Override
+                    public String get() {
+                        throw new IllegalStateException();
+                    }
+                });
+            }
+        });
+
+        try {
+            injector.getInstance(String.class);
+            fail("expected " + IllegalStateException.class);
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public void testWrongTypeFromRawProviderReportedOnFirstInstance() {
+        final javax.inject.Provider provider = new javax.inject.Provider() {
+
+            @Override
+            public Object get() {
+                return 1;
+            }
+        };
+        Injector injector = createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                binder.bind(String.class).toProvider(provider);
+            }
+        });
+
+        try {
+            injector.getInstance(String.class);
+            fail("expected " + InjectionError.class);
+        } catch (InjectionError e) {
+            assertTrue(e.getCause() instanceof ClassCastException);
+        }
+    }
+
+    @Test
+    public void testMuiceProviderInitializedOnce() {
+        final AtomicInteger initializations = new AtomicInteger();
+        Injector injector = createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                binder.bind(String.class).toProvider(new Provider<String>() {
+
+                    @Override
+                    public void initialize(Injector injector) {
+                        assertNotNull(injector);
+                        initializations.incrementAndGet();
+                    }
+
+                    @Override
+                    public String get() {
+                        return "provided";
+                    }
+                });
+            }
+        });
+
+        assertEquals("provided", injector.getInstance(String.class));
+        assertEquals("provided", injector.getInstance(String.class));
+        assertEquals(1, initializations.get());
+    }
+
+    @Test
+    public void testProviderTypeInjectedAndCalled() {
+        Injector injector = createInjector(new BindingModule() {
+
+            @Override
+            public void configure(Binder binder) {
+                binder.bind(Integer.class).toInstance(2);
+                binder.bind(StringProvider.class);
+                binder.bind(String.class).toProvider(StringProvider.class);
+            }
+        });
+
+        assertEquals("2", injector.getInstance(String.class));
+    }
+
+    private Injector createInjector(BindingModule module) {
+        return mMuice.newInjector()
+                .withModules(module)
+                .build();
+    }
+
+    public static class StringProvider implements javax.inject.Provider<String> {
+        private final Integer mValue;
+
+        @Inject
+        public StringProvider(Integer value) {
+            mValue = value;
+        }
+
+        @Override
+        public String get() {
+            return mValue.toString();
+        }
+    }
+}